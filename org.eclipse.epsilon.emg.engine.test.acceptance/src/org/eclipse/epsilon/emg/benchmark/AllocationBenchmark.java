@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.util.Arrays;
+
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+
+/**
+ * Measures the cost of splitting a total in parts with
+ * {@link EmgRandomGenerator#nextAddTo(int, int)} and the primitive
+ * allocations.
+ * <p>
+ * Usage: AllocationBenchmark [parts] [total] [iterations]
+ */
+public class AllocationBenchmark extends EmgBenchmark {
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int parts = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int total = args.length > 1 ? Integer.parseInt(args[1]) : 3000000;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		EmgRandomGenerator generator = new EmgRandomGenerator(new EolContext(), 17);
+		double[] weights = new double[parts];
+		Arrays.fill(weights, 1);
+
+		measure("nextAddTo", 1, iterations, () -> {
+			sink = generator.nextAddTo(parts, total);
+		});
+		measure("nextComposition", 1, iterations, () -> {
+			sink = generator.nextComposition(parts, total);
+		});
+		measure("nextMultinomial", 1, iterations, () -> {
+			sink = generator.nextMultinomial(total, weights);
+		});
+		measure("nextDirichletSplit", 1, iterations, () -> {
+			sink = generator.nextDirichletSplit(total, weights);
+		});
+	}
+
+}
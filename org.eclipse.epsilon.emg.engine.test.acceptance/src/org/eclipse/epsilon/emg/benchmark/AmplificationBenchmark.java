@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.emf.EmgAmplifier;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+
+/**
+ * Measures the cost per copied element of amplifying a PetriNet with the
+ * {@link EmgAmplifier}, with and without perturbations, compared with copying
+ * the net with the EMF copier.
+ * <p>
+ * Usage: AmplificationBenchmark [places] [factor] [iterations]
+ */
+public class AmplificationBenchmark extends EmgBenchmark {
+
+	private static EObject net;
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int places = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int factor = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		String metamodel = new File(AmplificationBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(System.getProperty("java.io.tmpdir"), "emg-amplification.xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		// Each place has an outgoing arc to a transition, with an arc back
+		long copied = (long) places * 4 * (factor - 1);
+		Task reset = () -> net = seed(model, places);
+		reset.run();
+
+		perElement(copied, measure("EcoreUtil.copy", 1, iterations, () -> {
+			for (int i = 1; i < factor; i++) {
+				sink = EcoreUtil.copy(net);
+			}
+		}, reset));
+		EmgAmplifier plain = new EmgAmplifier();
+		perElement(copied, measure("amplify", 1, iterations, () -> {
+			sink = plain.amplify(net, factor, new EmgRandomGenerator(new EolContext(), 1));
+		}, reset));
+		EmgAmplifier perturbed = new EmgAmplifier();
+		perturbed.addPerturbation("Element", "name", EmgAmplifier.copySuffix("_"));
+		perturbed.addPerturbation("Arc", "weight", EmgAmplifier.gaussianNoise(2));
+		perturbed.setCrossLinkProbability(0.1);
+		perElement(copied, measure("amplify, perturbed and cross linked", 1, iterations, () -> {
+			sink = perturbed.amplify(net, factor, new EmgRandomGenerator(new EolContext(), 1));
+		}, reset));
+	}
+
+	private static void perElement(long elements, double mean) {
+		System.out.println(String.format("%-45s %10.1f ns/element", "", mean * 1e6 / elements));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EObject seed(EmgEmfModel model, int places) throws Exception {
+		EObject net = model.createInstance("PetriNet");
+		model.getResource().getContents().clear();
+		List<EObject> netPlaces = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("places"));
+		List<EObject> transitions = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("transitions"));
+		List<EObject> arcs = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("arcs"));
+		for (int i = 0; i < places; i++) {
+			EObject place = create(model, "Place", "name", "P" + i);
+			EObject transition = create(model, "Transition", "name", "T" + i);
+			netPlaces.add(place);
+			transitions.add(transition);
+			EObject out = create(model, "PlaceToTransArc", "weight", i % 5);
+			set(out, "source", place);
+			set(out, "target", transition);
+			EObject back = create(model, "TransToPlaceArc", "weight", 1);
+			set(back, "source", transition);
+			set(back, "target", netPlaces.get(i / 2));
+			arcs.add(out);
+			arcs.add(back);
+		}
+		return net;
+	}
+
+	private static EObject create(EmgEmfModel model, String type, String attribute, Object value) throws Exception {
+		EObject element = model.createInstance(type);
+		set(element, attribute, value);
+		return element;
+	}
+
+	private static void set(EObject element, String feature, Object value) {
+		element.eSet(element.eClass().getEStructuralFeature(feature), value);
+	}
+
+}
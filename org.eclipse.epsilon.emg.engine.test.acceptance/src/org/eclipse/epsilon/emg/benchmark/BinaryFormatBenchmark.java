@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.epsilon.emg.emf.EmgBinarySerializer;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgMetamodelCache;
+import org.eclipse.epsilon.emg.emf.EmgOutputFormat;
+
+/**
+ * Compares the save and load throughput and the file size of PetriNets of
+ * 10^5 to 10^7 elements in XMI and in the binary formats of the
+ * {@link EmgBinarySerializer}. XMI refers to elements by their position in
+ * their containment lists, which is slow for large lists, so it is only
+ * measured up to a given size. 10^7 elements need a heap of about 4.5 GB.
+ * <p>
+ * Usage: BinaryFormatBenchmark [max elements] [max XMI elements] [iterations]
+ */
+public class BinaryFormatBenchmark extends EmgBenchmark {
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		long maxElements = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+		long maxXmiElements = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		String metamodel = new File(BinaryFormatBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		File directory = new File(System.getProperty("java.io.tmpdir"), "emg-binary");
+		directory.mkdirs();
+		for (long elements = 100000; elements <= maxElements; elements *= 10) {
+			List<EmgOutputFormat> formats = new ArrayList<>(Arrays.asList(EmgOutputFormat.XMI, EmgOutputFormat.BINARY,
+					EmgOutputFormat.COMPRESSED_BINARY));
+			if (elements > maxXmiElements) {
+				formats.remove(EmgOutputFormat.XMI);
+			}
+			double[] saves = new double[formats.size()];
+			EmgEmfModel model = new EmgEmfModel();
+			model.setName("M");
+			model.setMetamodelFile(metamodel);
+			model.setModelFile(new File(directory, "net.xmi").getAbsolutePath());
+			model.setReadOnLoad(false);
+			model.setStoredOnDisposal(false);
+			model.load();
+			// Without the content adapters of the model, the net is added and released at once
+			model.suspendNotifications();
+			model.getResource().getContents().add(seed(model, (int) (elements / 4)));
+			for (int i = 0; i < formats.size(); i++) {
+				EmgOutputFormat format = formats.get(i);
+				URI uri = uri(directory, format);
+				saves[i] = measure("save " + format + ", " + elements + " elements", 1, iterations, () -> {
+					model.getResource().setURI(uri);
+					if (format == EmgOutputFormat.XMI) {
+						model.getResource().save(Collections.emptyMap());
+					}
+					else {
+						serializer(format).save(model.getResource());
+					}
+				});
+			}
+			// The generated model is released, so the largest models fit in the heap when
+			// loaded, and detached first, so the resource does not unload each element
+			model.getResource().getContents().clear();
+			model.dispose();
+			for (int i = 0; i < formats.size(); i++) {
+				EmgOutputFormat format = formats.get(i);
+				URI uri = uri(directory, format);
+				double load = measure("load " + format + ", " + elements + " elements", 1, iterations, () -> {
+					Resource resource = resourceSet(metamodel).createResource(uri);
+					if (format == EmgOutputFormat.XMI) {
+						resource.load(Collections.emptyMap());
+					}
+					else {
+						serializer(format).load(resource);
+					}
+					sink = resource;
+				}, () -> sink = null);
+				System.out.println(String.format("%-45s %10.0f elements/s saved, %10.0f elements/s loaded, %d bytes",
+						"", elements / saves[i] * 1e3, elements / load * 1e3, new File(stored(uri, format).toFileString()).length()));
+			}
+		}
+	}
+
+	private static URI uri(File directory, EmgOutputFormat format) {
+		return URI.createFileURI(new File(directory, "net-" + format.name().toLowerCase() + ".xmi").getAbsolutePath());
+	}
+
+	private static URI stored(URI uri, EmgOutputFormat format) {
+		return format == EmgOutputFormat.XMI ? uri : serializer(format).getUri(uri);
+	}
+
+	private static EmgBinarySerializer serializer(EmgOutputFormat format) {
+		EmgBinarySerializer serializer = new EmgBinarySerializer();
+		serializer.setCompressed(format == EmgOutputFormat.COMPRESSED_BINARY);
+		return serializer;
+	}
+
+	private static ResourceSet resourceSet(String metamodel) throws Exception {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		for (EPackage ePackage : EmgMetamodelCache.getShared().getPackages(URI.createFileURI(metamodel))) {
+			resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+		}
+		return resourceSet;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EObject seed(EmgEmfModel model, int places) throws Exception {
+		EObject net = EcoreUtil.create(model.classForName("PetriNet"));
+		List<EObject> netPlaces = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("places"));
+		List<EObject> transitions = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("transitions"));
+		List<EObject> arcs = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("arcs"));
+		for (int i = 0; i < places; i++) {
+			EObject place = create(model, "Place", "name", "P" + i);
+			EObject transition = create(model, "Transition", "name", "T" + i);
+			netPlaces.add(place);
+			transitions.add(transition);
+			EObject out = create(model, "PlaceToTransArc", "weight", i % 5);
+			set(out, "source", place);
+			set(out, "target", transition);
+			EObject back = create(model, "TransToPlaceArc", "weight", 1);
+			set(back, "source", transition);
+			set(back, "target", netPlaces.get(i / 2));
+			arcs.add(out);
+			arcs.add(back);
+		}
+		return net;
+	}
+
+	private static EObject create(EmgEmfModel model, String type, String attribute, Object value) throws Exception {
+		EObject element = EcoreUtil.create(model.classForName(type));
+		set(element, attribute, value);
+		return element;
+	}
+
+	private static void set(EObject element, String feature, Object value) {
+		element.eSet(element.eClass().getEStructuralFeature(feature), value);
+	}
+
+}
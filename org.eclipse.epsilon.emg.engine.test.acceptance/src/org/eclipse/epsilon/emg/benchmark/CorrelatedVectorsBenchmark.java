@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.random.CorrelatedRandomVectorGenerator;
+import org.apache.commons.math3.random.GaussianRandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.eclipse.epsilon.emg.random.EmgCorrelatedVectors;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+
+/**
+ * Measures the cost per vector of the correlated vectors of the
+ * {@link EmgRandomGenerator}: factorising the covariance for every vector,
+ * looking up the cached vectors for every vector, using the vectors directly
+ * and drawing all of them in bulk.
+ * <p>
+ * Usage: CorrelatedVectorsBenchmark [vectors] [dimension] [iterations]
+ */
+public class CorrelatedVectorsBenchmark extends EmgBenchmark {
+
+	private static volatile double sink;
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int dimension = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		double[] mean = new double[dimension];
+		double[][] covariance = new double[dimension][dimension];
+		for (int i = 0; i < dimension; i++) {
+			mean[i] = i;
+			for (int j = 0; j < dimension; j++) {
+				// AR(1) correlations, positive definite
+				covariance[i][j] = Math.pow(0.7, Math.abs(i - j));
+			}
+		}
+		EmgRandomGenerator generator = new EmgRandomGenerator(new EolContext(), 17);
+		GaussianRandomGenerator normal = new GaussianRandomGenerator(new Well19937c(17));
+
+		measurePerOperation("factorise per vector", count / 10, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count / 10; i++) {
+				sum += new CorrelatedRandomVectorGenerator(mean, new Array2DRowRealMatrix(covariance), 1e-12, normal)
+						.nextVector()[0];
+			}
+			sink = sum;
+		});
+		measurePerOperation("nextCorrelated(mean, covariance)", count, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += generator.nextCorrelated(mean, covariance)[0];
+			}
+			sink = sum;
+		});
+		EmgCorrelatedVectors vectors = generator.getCorrelatedVectors(mean, covariance);
+		measurePerOperation("EmgCorrelatedVectors.next()", count, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += vectors.next()[0];
+			}
+			sink = sum;
+		});
+		measurePerOperation("EmgCorrelatedVectors.next(count)", count, 1, iterations, () -> {
+			double sum = 0;
+			for (double[] vector : vectors.next(count)) {
+				sum += vector[0];
+			}
+			sink = sum;
+		});
+	}
+
+}
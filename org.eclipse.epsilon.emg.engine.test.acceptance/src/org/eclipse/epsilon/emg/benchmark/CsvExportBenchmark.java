@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+
+/**
+ * Compares generating a PetriNet model only, generating it and storing it as
+ * XMI, and generating it while its elements are exported to CSV tables
+ * without storing it. The peak heap is the growth of the peaks of the heap
+ * pools over a generation, after a collection, so it is only an estimate.
+ * The disposal of the model is not measured.
+ * <p>
+ * Usage: CsvExportBenchmark [elements] [iterations]
+ */
+public class CsvExportBenchmark extends EmgBenchmark {
+
+	private static int runs;
+
+	private static EmgEmfModel target;
+
+	public static void main(String[] args) throws Exception {
+		int elements = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		File folder = new File(System.getProperty("java.io.tmpdir"), "emg-csv");
+		folder.mkdirs();
+		File script = createScript(new File(folder, "PetriNet.emg"), elements);
+		String metamodel = new File(CsvExportBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		File tables = new File(folder, "tables");
+		System.out.println("PetriNet model with " + elements + " elements");
+
+		report(elements, measure("Generate only", 1, iterations,
+				() -> generate(script, metamodel, folder, false, null), CsvExportBenchmark::dispose),
+				peak(() -> generate(script, metamodel, folder, false, null)));
+		dispose();
+		report(elements, measure("Generate and store XMI", 1, iterations,
+				() -> generate(script, metamodel, folder, true, null), CsvExportBenchmark::dispose),
+				peak(() -> generate(script, metamodel, folder, true, null)));
+		dispose();
+		report(elements, measure("Generate and export CSV", 1, iterations,
+				() -> generate(script, metamodel, folder, false, tables), CsvExportBenchmark::dispose),
+				peak(() -> generate(script, metamodel, folder, false, tables)));
+		dispose();
+		long bytes = 0;
+		for (File table : tables.listFiles()) {
+			bytes += table.length();
+		}
+		System.out.println(String.format("%-45s %d bytes of tables", "", bytes));
+	}
+
+	private static void report(int elements, double mean, long peak) {
+		System.out.println(String.format("%-45s %10.0f elements/s, %6d MB peak heap", "",
+				elements / mean * 1e3, peak >> 20));
+	}
+
+	/**
+	 * The growth of the heap over a task: the sum of the peaks of the heap
+	 * pools while it runs, less their use before it.
+	 */
+	private static long peak(Task task) throws Exception {
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		System.gc();
+		long before = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				before += pool.getUsage().getUsed();
+			}
+		}
+		task.run();
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return Math.max(0, peak - before);
+	}
+
+	private static void dispose() {
+		// Unloading a large resource computes the uri fragment of every
+		// element and the model cache removes them one by one, so the
+		// adapters and contents are discarded first
+		target.getResource().eAdapters().clear();
+		target.getResource().getContents().clear();
+		target.dispose();
+		target = null;
+	}
+
+	private static void generate(File script, String metamodel, File folder, boolean store, File tables) throws Exception {
+		target = new EmgEmfModel();
+		target.setName("M");
+		target.setMetamodelFile(metamodel);
+		// A new file each time, as resources are cached by uri
+		target.setModelFile(new File(folder, "PetriNet" + (runs++) + ".xmi").getAbsolutePath());
+		target.setReadOnLoad(false);
+		target.setStoredOnDisposal(false);
+		target.load();
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(target);
+		module.setUseSeed(true);
+		module.setSeed(42);
+		module.setStoreOnCompletion(store);
+		module.setSuppressNotifications(true);
+		module.setCsvExport(tables);
+		module.execute();
+		if (store) {
+			new File(folder, "PetriNet" + (runs - 1) + ".xmi").delete();
+		}
+	}
+
+	/**
+	 * Create a script that generates a net with the given number of elements:
+	 * 40% places, 40% transitions and 20% arcs between random places and
+	 * transitions.
+	 */
+	private static File createScript(File file, int elements) throws Exception {
+		int places = elements * 2 / 5;
+		int transitions = elements * 2 / 5;
+		int arcs = elements - places - transitions - 1;
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			writer.println("operation PetriNet create() {");
+			writer.println("	self.name = \"net\";");
+			writer.println("}");
+			writer.println("$instances " + places);
+			writer.println("$container PetriNet.all.first().places");
+			writer.println("operation Place create() {");
+			writer.println("	self.name = \"P_\" + nextString(\"LETTER_LOWER\", 8);");
+			writer.println("}");
+			writer.println("$instances " + transitions);
+			writer.println("$container PetriNet.all.first().transitions");
+			writer.println("operation Transition create() {");
+			writer.println("	self.name = \"T_\" + nextString(\"LETTER_LOWER\", 8);");
+			writer.println("}");
+			writer.println("$instances " + arcs);
+			writer.println("$container PetriNet.all.first().arcs");
+			writer.println("operation PlaceToTransArc create() {");
+			writer.println("	self.source = nextFromCollection(Place.all);");
+			writer.println("	self.target = nextFromCollection(Transition.all);");
+			writer.println("	self.weight = nextInt(1, 5);");
+			writer.println("}");
+		}
+		return file;
+	}
+
+}
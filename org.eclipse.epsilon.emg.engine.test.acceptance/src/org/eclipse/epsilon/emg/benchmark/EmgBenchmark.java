@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+/**
+ * Helper for the EMG benchmarks. Benchmarks are plain Java applications, they
+ * are not part of the acceptance test suite. Each task is run a number of
+ * times to warm up the JVM before it is measured.
+ */
+public abstract class EmgBenchmark {
+
+	/**
+	 * A measured task.
+	 */
+	public interface Task {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Run the task and print the mean and minimum time of the measured
+	 * iterations.
+	 *
+	 * @param name the name of the task
+	 * @param warmup the number of warm up iterations
+	 * @param iterations the number of measured iterations
+	 * @param task the task
+	 * @return the mean time in milliseconds
+	 * @throws Exception if the task fails
+	 */
+	public static double measure(String name, int warmup, int iterations, Task task) throws Exception {
+		return measure(name, warmup, iterations, task, () -> {});
+	}
+
+	/**
+	 * Run the task and print the mean and minimum time of the measured
+	 * iterations. The cleanup task is run after each iteration and is not
+	 * measured.
+	 *
+	 * @param name the name of the task
+	 * @param warmup the number of warm up iterations
+	 * @param iterations the number of measured iterations
+	 * @param task the task
+	 * @param cleanup the cleanup task
+	 * @return the mean time in milliseconds
+	 * @throws Exception if the task fails
+	 */
+	public static double measure(String name, int warmup, int iterations, Task task, Task cleanup) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			task.run();
+			cleanup.run();
+		}
+		long total = 0;
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < iterations; i++) {
+			long start = System.nanoTime();
+			task.run();
+			long time = System.nanoTime() - start;
+			cleanup.run();
+			total += time;
+			min = Math.min(min, time);
+		}
+		double mean = total / 1e6 / iterations;
+		System.out.println(String.format("%-45s mean %10.3f ms   min %10.3f ms   (%d runs)", name, mean, min / 1e6, iterations));
+		return mean;
+	}
+
+	/**
+	 * Print the time per operation of a task that performs the given number of
+	 * operations.
+	 *
+	 * @param name the name of the task
+	 * @param operations the number of operations performed by each run of the task
+	 * @param warmup the number of warm up iterations
+	 * @param iterations the number of measured iterations
+	 * @param task the task
+	 * @return the mean time per operation in nanoseconds
+	 * @throws Exception if the task fails
+	 */
+	public static double measurePerOperation(String name, long operations, int warmup, int iterations, Task task) throws Exception {
+		double mean = measure(name, warmup, iterations, task);
+		double perOperation = mean * 1e6 / operations;
+		System.out.println(String.format("%-45s %10.1f ns/op", "", perOperation));
+		return perOperation;
+	}
+
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgFragment;
+import org.eclipse.epsilon.emg.emf.EmgFragmenter;
+
+/**
+ * Compares saving a PetriNet in a single XMI resource with saving it in
+ * fragments on a thread pool with the {@link EmgFragmenter}, and prints the
+ * size and save time of each fragment.
+ * <p>
+ * Usage: FragmentBenchmark [places] [fragment size] [iterations]
+ */
+public class FragmentBenchmark extends EmgBenchmark {
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int places = args.length > 0 ? Integer.parseInt(args[0]) : 25000;
+		int fragmentSize = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		String metamodel = new File(FragmentBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		File directory = new File(System.getProperty("java.io.tmpdir"), "emg-fragments");
+		directory.mkdirs();
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(directory, "net.xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		model.getResource().getContents().add(seed(model, places));
+		measure("single save, " + places * 4 + " elements", 1, iterations, () -> {
+			model.getResource().save(Collections.emptyMap());
+			sink = model.getResource();
+		});
+		for (int threads : new int[] {1, 4}) {
+			EmgFragmenter fragmenter = new EmgFragmenter();
+			fragmenter.setFragmentSize(fragmentSize);
+			fragmenter.setThreads(threads);
+			measure("fragmented save, " + threads + " threads", 1, iterations, () -> {
+				sink = fragmenter.save(model.getResource());
+			});
+			for (EmgFragment fragment : fragmenter.save(model.getResource())) {
+				System.out.println("  " + fragment);
+			}
+		}
+		model.dispose();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EObject seed(EmgEmfModel model, int places) throws Exception {
+		EObject net = EcoreUtil.create(model.classForName("PetriNet"));
+		List<EObject> netPlaces = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("places"));
+		List<EObject> transitions = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("transitions"));
+		List<EObject> arcs = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("arcs"));
+		for (int i = 0; i < places; i++) {
+			EObject place = create(model, "Place", "name", "P" + i);
+			EObject transition = create(model, "Transition", "name", "T" + i);
+			netPlaces.add(place);
+			transitions.add(transition);
+			EObject out = create(model, "PlaceToTransArc", "weight", i % 5);
+			set(out, "source", place);
+			set(out, "target", transition);
+			EObject back = create(model, "TransToPlaceArc", "weight", 1);
+			set(back, "source", transition);
+			set(back, "target", netPlaces.get(i / 2));
+			arcs.add(out);
+			arcs.add(back);
+		}
+		return net;
+	}
+
+	private static EObject create(EmgEmfModel model, String type, String attribute, Object value) throws Exception {
+		EObject element = EcoreUtil.create(model.classForName(type));
+		set(element, attribute, value);
+		return element;
+	}
+
+	private static void set(EObject element, String feature, Object value) {
+		element.eSet(element.eClass().getEStructuralFeature(feature), value);
+	}
+
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import org.apache.commons.math3.random.RandomDataGenerator;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+
+/**
+ * Measures the cost per value of the Ziggurat normal and exponential values
+ * of the {@link EmgRandomGenerator}, compared with the ones of the
+ * {@link RandomDataGenerator}.
+ * <p>
+ * Usage: GaussianBenchmark [values] [iterations]
+ */
+public class GaussianBenchmark extends EmgBenchmark {
+
+	private static volatile double sink;
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		RandomDataGenerator data = new RandomDataGenerator();
+		data.reSeed(17);
+		EmgRandomGenerator generator = new EmgRandomGenerator(new EolContext(), 17);
+
+		measurePerOperation("RandomDataGenerator.nextGaussian(0, 1)", count, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += data.nextGaussian(0, 1);
+			}
+			sink = sum;
+		});
+		measurePerOperation("nextGaussian(0, 1)", count, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += generator.nextGaussian(0, 1);
+			}
+			sink = sum;
+		});
+		measurePerOperation("RandomDataGenerator.nextExponential(1)", count, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += data.nextExponential(1);
+			}
+			sink = sum;
+		});
+		measurePerOperation("nextExponential(1)", count, 1, iterations, () -> {
+			double sum = 0;
+			for (int i = 0; i < count; i++) {
+				sum += generator.nextExponential(1);
+			}
+			sink = sum;
+		});
+	}
+
+}
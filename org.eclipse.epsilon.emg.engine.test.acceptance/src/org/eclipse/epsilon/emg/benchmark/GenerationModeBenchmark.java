@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+
+/**
+ * Measures the generation of a PetriNet model with and without suppressing
+ * the notifications of the generated model. Places, transitions and arcs are
+ * added to the net through the $container annotation. The model is not stored
+ * and its disposal is not measured.
+ * <p>
+ * Usage: GenerationModeBenchmark [elements] [iterations]
+ */
+public class GenerationModeBenchmark extends EmgBenchmark {
+
+	private static int runs;
+
+	private static EmgEmfModel target;
+
+	public static void main(String[] args) throws Exception {
+		int elements = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		File folder = new File(System.getProperty("java.io.tmpdir"), "emg-benchmark");
+		folder.mkdirs();
+		File script = createScript(new File(folder, "PetriNet.emg"), elements);
+		String metamodel = new File(GenerationModeBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		System.out.println("PetriNet model with " + elements + " elements");
+
+		report("Notifications delivered", elements, measure("Notifications delivered", 1, iterations,
+				() -> generate(script, metamodel, folder, false), GenerationModeBenchmark::dispose));
+		report("Notifications suppressed", elements, measure("Notifications suppressed", 1, iterations,
+				() -> generate(script, metamodel, folder, true), GenerationModeBenchmark::dispose));
+	}
+
+	private static void report(String name, int elements, double mean) {
+		System.out.println(String.format("%-45s %10.1f ns/op", "", mean * 1e6 / elements));
+	}
+
+	private static void dispose() {
+		// Unloading a large resource computes the uri fragment of every
+		// element and the model cache removes them one by one, so the
+		// adapters and contents are discarded first
+		target.getResource().eAdapters().clear();
+		target.getResource().getContents().clear();
+		target.dispose();
+		target = null;
+	}
+
+	private static void generate(File script, String metamodel, File folder, boolean suppress) throws Exception {
+		target = new EmgEmfModel();
+		target.setName("M");
+		target.setMetamodelFile(metamodel);
+		// A new file each time, as resources are cached by uri
+		target.setModelFile(new File(folder, "PetriNet" + (runs++) + ".xmi").getAbsolutePath());
+		target.setReadOnLoad(false);
+		target.setStoredOnDisposal(false);
+		target.load();
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(target);
+		module.setUseSeed(true);
+		module.setSeed(42);
+		module.setStoreOnCompletion(false);
+		module.setSuppressNotifications(suppress);
+		module.execute();
+	}
+
+	/**
+	 * Create a script that generates a net with the given number of elements:
+	 * 40% places, 40% transitions and 20% arcs between random places and
+	 * transitions.
+	 */
+	private static File createScript(File file, int elements) throws Exception {
+		int places = elements * 2 / 5;
+		int transitions = elements * 2 / 5;
+		int arcs = elements - places - transitions - 1;
+		try (PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			writer.println("operation PetriNet create() {");
+			writer.println("	self.name = \"net\";");
+			writer.println("}");
+			writer.println("$instances " + places);
+			writer.println("$container PetriNet.all.first().places");
+			writer.println("operation Place create() {");
+			writer.println("	self.name = \"P_\" + nextString(\"LETTER_LOWER\", 8);");
+			writer.println("}");
+			writer.println("$instances " + transitions);
+			writer.println("$container PetriNet.all.first().transitions");
+			writer.println("operation Transition create() {");
+			writer.println("	self.name = \"T_\" + nextString(\"LETTER_LOWER\", 8);");
+			writer.println("}");
+			writer.println("$instances " + arcs);
+			writer.println("$container PetriNet.all.first().arcs");
+			writer.println("operation PlaceToTransArc create() {");
+			writer.println("	self.source = nextFromCollection(Place.all);");
+			writer.println("	self.target = nextFromCollection(Transition.all);");
+			writer.println("	self.weight = nextInt(1, 5);");
+			writer.println("}");
+		}
+		return file;
+	}
+
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.util.UUID;
+
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+
+/**
+ * Measures the cost per identifier of the identifiers of the
+ * {@link EmgRandomGenerator}, compared with {@link UUID#randomUUID()}.
+ * <p>
+ * Usage: IdGenerationBenchmark [identifiers] [iterations]
+ */
+public class IdGenerationBenchmark extends EmgBenchmark {
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		EmgRandomGenerator generator = new EmgRandomGenerator(new EolContext(), 17);
+
+		measurePerOperation("UUID.randomUUID()", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = UUID.randomUUID().toString();
+			}
+		});
+		measurePerOperation("nextUUID()", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextUUID();
+			}
+		});
+		measurePerOperation("nextULID()", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextULID();
+			}
+		});
+		measurePerOperation("nextBase62(8)", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextBase62(8);
+			}
+		});
+		measurePerOperation("nextUniqueBase62(8)", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextUniqueBase62(8);
+			}
+		});
+		measurePerOperation("nextUniqueInt(Integer.MAX_VALUE)", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextUniqueInt(Integer.MAX_VALUE);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgExtentIndex;
+import org.eclipse.epsilon.emg.emf.EmgInstanceFactory;
+
+/**
+ * Measures the cost per instance of creating PetriNet places in an
+ * {@link EmgEmfModel}, with the extent index attached as EmgModule does,
+ * through the generic createInstance of the model and through an
+ * {@link EmgInstanceFactory}.
+ * <p>
+ * Usage: InstanceCreationBenchmark [instances] [iterations]
+ */
+public class InstanceCreationBenchmark extends EmgBenchmark {
+
+	private static int runs;
+
+	private static String metamodel;
+
+	private static File folder;
+
+	private static EmgEmfModel model;
+
+	public static void main(String[] args) throws Exception {
+		int instances = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		folder = new File(System.getProperty("java.io.tmpdir"), "emg-benchmark");
+		folder.mkdirs();
+		metamodel = new File(InstanceCreationBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+
+		measureOnNewModel("createInstance(type)", instances, iterations, () -> createInstances(instances));
+		measureOnNewModel("EmgInstanceFactory", instances, iterations, () -> createWithFactory(instances));
+	}
+
+	private static void createInstances(int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			model.createInstance("Place");
+		}
+	}
+
+	private static void createWithFactory(int count) throws Exception {
+		EmgInstanceFactory factory = model.getInstanceFactory("Place");
+		factory.reserve(count);
+		for (int i = 0; i < count; i++) {
+			factory.createInstance();
+		}
+	}
+
+	/**
+	 * Measure the task on a new model each time, the model is loaded and
+	 * disposed outside of the measured time.
+	 */
+	private static void measureOnNewModel(String name, int count, int iterations, Task task) throws Exception {
+		load();
+		double mean = measure(name + ", " + count + " instances", 1, iterations, task, () -> {
+			dispose();
+			load();
+		});
+		dispose();
+		System.out.println(String.format("%-45s %10.1f ns/op", "", mean * 1e6 / count));
+	}
+
+	private static void load() throws Exception {
+		model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		// A new file each time, as resources are cached by uri
+		model.setModelFile(new File(folder, "Places" + (runs++) + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		model.setExtentIndex(new EmgExtentIndex());
+	}
+
+	private static void dispose() {
+		// Unloading a large resource computes the uri fragment of every
+		// element, so the adapters and contents are discarded first
+		model.getResource().eAdapters().clear();
+		model.getResource().getContents().clear();
+		model.dispose();
+		model = null;
+	}
+
+}
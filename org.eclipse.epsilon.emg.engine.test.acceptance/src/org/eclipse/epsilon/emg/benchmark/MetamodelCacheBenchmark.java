@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+
+/**
+ * Measures the start up time of the target model of an EMG run (i.e. loading
+ * the model and its metamodel) with and without the shared metamodel cache.
+ * A synthetic metamodel with the given number of classes is used.
+ * <p>
+ * Usage: MetamodelCacheBenchmark [classes]
+ */
+public class MetamodelCacheBenchmark extends EmgBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int classes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		File folder = new File(System.getProperty("java.io.tmpdir"), "emg-benchmark");
+		folder.mkdirs();
+		File metamodel = createMetamodel(new File(folder, "Large.ecore"), classes);
+		String model = new File(folder, "model.xmi").getAbsolutePath();
+		System.out.println("Metamodel with " + classes + " classes (" + metamodel.length() / 1024 + " KB)");
+
+		measure("EmfModel, metamodel loaded per run", 5, 20, () -> {
+			EmfModel m = new EmfModel();
+			m.setReuseUnmodifiedFileBasedMetamodels(false);
+			load(m, metamodel, model);
+		});
+		measure("EmgEmfModel, shared metamodel cache", 5, 20, () -> {
+			load(new EmgEmfModel(), metamodel, model);
+		});
+	}
+
+	private static void load(EmfModel m, File metamodel, String model) throws Exception {
+		m.setMetamodelFile(metamodel.getAbsolutePath());
+		m.setModelFile(model);
+		m.setReadOnLoad(false);
+		m.setStoredOnDisposal(false);
+		m.load();
+		m.createInstance("C0");
+		m.dispose();
+	}
+
+	/**
+	 * Create a metamodel with the given number of classes, each one with ten
+	 * attributes and two references.
+	 */
+	private static File createMetamodel(File file, int classes) throws Exception {
+		EcoreFactory factory = EcoreFactory.eINSTANCE;
+		EPackage ePackage = factory.createEPackage();
+		ePackage.setName("large");
+		ePackage.setNsPrefix("large");
+		ePackage.setNsURI("http://emg/benchmark/large");
+		EClass[] eClasses = new EClass[classes];
+		for (int i = 0; i < classes; i++) {
+			eClasses[i] = factory.createEClass();
+			eClasses[i].setName("C" + i);
+			if (i > 0) {
+				eClasses[i].getESuperTypes().add(eClasses[i / 2]);
+			}
+			for (int j = 0; j < 10; j++) {
+				EAttribute attribute = factory.createEAttribute();
+				attribute.setName("a" + i + "_" + j);
+				attribute.setEType(j % 2 == 0 ? EcorePackage.Literals.ESTRING : EcorePackage.Literals.EINT);
+				eClasses[i].getEStructuralFeatures().add(attribute);
+			}
+			ePackage.getEClassifiers().add(eClasses[i]);
+		}
+		for (int i = 0; i < classes; i++) {
+			for (int j = 0; j < 2; j++) {
+				EReference reference = factory.createEReference();
+				reference.setName("r" + i + "_" + j);
+				reference.setEType(eClasses[(i * 7 + j) % classes]);
+				reference.setUpperBound(-1);
+				eClasses[i].getEStructuralFeatures().add(reference);
+			}
+		}
+		Resource resource = new EcoreResourceFactoryImpl().createResource(URI.createFileURI(file.getAbsolutePath()));
+		resource.getContents().add(ePackage);
+		resource.save(Collections.emptyMap());
+		return file;
+	}
+
+}
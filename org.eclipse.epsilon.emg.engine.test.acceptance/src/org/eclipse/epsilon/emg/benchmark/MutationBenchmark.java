@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgMutator;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+
+/**
+ * Measures the cost per edit of mutating PetriNets of increasing sizes with
+ * the {@link EmgMutator}, which should not depend on the size of the net.
+ * <p>
+ * Usage: MutationBenchmark [edits] [iterations]
+ */
+public class MutationBenchmark extends EmgBenchmark {
+
+	private static final int[] PLACES = {1000, 10000, 100000};
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int edits = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		String metamodel = new File(MutationBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		for (int places : PLACES) {
+			EmgEmfModel model = new EmgEmfModel();
+			model.setName("M");
+			model.setMetamodelFile(metamodel);
+			model.setModelFile(new File(System.getProperty("java.io.tmpdir"), "emg-mutation-" + places + ".xmi").getAbsolutePath());
+			model.setReadOnLoad(false);
+			model.setStoredOnDisposal(false);
+			model.load();
+			// The net is built before it is added to the resource, so the adapters
+			// of the model do not visit its growing lists on each add
+			model.getResource().getContents().add(seed(model, places));
+			EmgMutator mutator = new EmgMutator(model.getResource(), new EmgRandomGenerator(new EolContext(), 1));
+			measurePerOperation("mutate, " + places * 4 + " elements", edits, 1, iterations, () -> {
+				sink = mutator.mutate(edits);
+			});
+			mutator.dispose();
+			model.dispose();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EObject seed(EmgEmfModel model, int places) throws Exception {
+		EObject net = EcoreUtil.create(model.classForName("PetriNet"));
+		List<EObject> netPlaces = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("places"));
+		List<EObject> transitions = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("transitions"));
+		List<EObject> arcs = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("arcs"));
+		for (int i = 0; i < places; i++) {
+			EObject place = create(model, "Place", "name", "P" + i);
+			EObject transition = create(model, "Transition", "name", "T" + i);
+			netPlaces.add(place);
+			transitions.add(transition);
+			EObject out = create(model, "PlaceToTransArc", "weight", i % 5);
+			set(out, "source", place);
+			set(out, "target", transition);
+			EObject back = create(model, "TransToPlaceArc", "weight", 1);
+			set(back, "source", transition);
+			set(back, "target", netPlaces.get(i / 2));
+			arcs.add(out);
+			arcs.add(back);
+		}
+		return net;
+	}
+
+	private static EObject create(EmgEmfModel model, String type, String attribute, Object value) throws Exception {
+		EObject element = EcoreUtil.create(model.classForName(type));
+		set(element, attribute, value);
+		return element;
+	}
+
+	private static void set(EObject element, String feature, Object value) {
+		element.eSet(element.eClass().getEStructuralFeature(feature), value);
+	}
+
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.eclipse.epsilon.eol.execute.context.Variable;
+import org.eclipse.epsilon.eol.types.EolPrimitiveType;
+
+/**
+ * Measures the cost per name of {@link EmgRandomGenerator#nextName(String)},
+ * compared with the list and camel case generators.
+ * <p>
+ * Usage: NameGenerationBenchmark [names] [iterations] [list file]
+ */
+public class NameGenerationBenchmark extends EmgBenchmark {
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		String list = args.length > 2 ? args[2]
+				: NameGenerationBenchmark.class.getResource("/lists/PokemonNames.txt").getPath();
+		EolContext context = new EolContext();
+		context.getFrameStack().put(new Variable("names", list, EolPrimitiveType.String));
+		EmgRandomGenerator generator = new EmgRandomGenerator(context, 17);
+
+		measurePerOperation("nextFromList(names)", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextFromList("names");
+			}
+		});
+		measurePerOperation("nextCamelCaseWords(LETTER, 10, 3)", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextCamelCaseWords("LETTER", 10, 3);
+			}
+		});
+		measurePerOperation("nextName(names)", count, 1, iterations, () -> {
+			for (int i = 0; i < count; i++) {
+				sink = generator.nextName("names");
+			}
+		});
+	}
+
+}
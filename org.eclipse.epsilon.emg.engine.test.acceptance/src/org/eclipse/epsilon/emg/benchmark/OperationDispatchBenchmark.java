@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.epsilon.common.parse.AST;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.operations.contributors.EmgOperationContributor;
+import org.eclipse.epsilon.eol.dom.Expression;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
+import org.eclipse.epsilon.eol.execute.introspection.java.ObjectMethod;
+import org.eclipse.epsilon.eol.execute.operations.contributors.OperationContributor;
+import org.eclipse.epsilon.eol.execute.operations.contributors.OperationContributorRegistry;
+import org.eclipse.epsilon.eol.types.EolNoType;
+import org.eclipse.epsilon.eol.util.ReflectionUtil;
+
+/**
+ * Measures the cost of resolving and executing calls through the
+ * {@link OperationContributorRegistry} of an EMG context, as the interpreter
+ * does for each operation call: first for unevaluated and then for evaluated
+ * parameters. The {@link EmgOperationContributor} is compared with a
+ * contributor that resolves the same methods reflectively and contributes to
+ * any object, for contributed calls and for unrelated calls on model elements
+ * that no contributor provides. The cost of the contributor alone, without
+ * the default contributors of the registry, is measured too.
+ * <p>
+ * Usage: OperationDispatchBenchmark [calls] [iterations]
+ */
+public class OperationDispatchBenchmark extends EmgBenchmark {
+
+	private static final List<Expression> NO_EXPRESSIONS = Collections.emptyList();
+
+	/**
+	 * Resolves the methods of an EmgOperationContributor as the default
+	 * OperationContributor lookup does.
+	 */
+	private static class ReflectiveContributor extends OperationContributor {
+
+		private final EmgOperationContributor generator;
+
+		private final Set<String> names;
+
+		ReflectiveContributor(EmgOperationContributor generator) {
+			this.generator = generator;
+			this.names = ReflectionUtil.getMethodNames(generator, false);
+		}
+
+		@Override
+		public boolean contributesTo(Object target) {
+			return true;
+		}
+
+		@Override
+		public ObjectMethod findContributedMethodForUnevaluatedParameters(Object target, String name,
+				List<Expression> parameterExpressions, IEolContext context) {
+			return find(name, new Object[] {new AST()});
+		}
+
+		@Override
+		public ObjectMethod findContributedMethodForEvaluatedParameters(Object target, String name,
+				Object[] parameters, IEolContext context, boolean overrideContextOperationContributorRegistry) {
+			return find(name, parameters);
+		}
+
+		private ObjectMethod find(String name, Object[] parameters) {
+			if (!names.contains(name)) {
+				return null;
+			}
+			Method method = ReflectionUtil.getMethodFor(generator, name, parameters, false, true);
+			return method == null ? null : new ObjectMethod(generator, method);
+		}
+	}
+
+	private static volatile Object sink;
+
+	public static void main(String[] args) throws Exception {
+		int calls = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		String metamodel = new File(OperationDispatchBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		File folder = new File(System.getProperty("java.io.tmpdir"), "emg-benchmark");
+		folder.mkdirs();
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder, "Dispatch" + System.nanoTime() + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		Object place = model.createInstance("Place");
+
+		EmgModule reflectiveModule = new EmgModule();
+		IEolContext reflective = reflectiveModule.getContext();
+		OperationContributor reflectiveContributor = new ReflectiveContributor(new EmgOperationContributor(reflectiveModule, 17));
+		reflective.getOperationContributorRegistry().add(reflectiveContributor);
+		EmgModule dispatchModule = new EmgModule();
+		IEolContext dispatch = dispatchModule.getContext();
+		OperationContributor dispatchContributor = new EmgOperationContributor(dispatchModule, 17);
+		dispatch.getOperationContributorRegistry().add(dispatchContributor);
+
+		for (IEolContext context : new IEolContext[] {reflective, dispatch}) {
+			String name = context == reflective ? "reflective" : "method handles";
+			OperationContributor contributor = context == reflective ? reflectiveContributor : dispatchContributor;
+			measurePerOperation("contributor only, nextInt(10), " + name, calls, 1, iterations,
+					() -> callContributor(contributor, context, "nextInt", new Object[] {10}, calls));
+			measurePerOperation("nextInt(10), " + name, calls, 1, iterations,
+					() -> call(context, EolNoType.NoInstance, "nextInt", new Object[] {10}, calls));
+			measurePerOperation("nextString(), " + name, calls, 1, iterations,
+					() -> call(context, EolNoType.NoInstance, "nextString", new Object[0], calls));
+			measurePerOperation("place.isMarked() (not found), " + name, calls, 1, iterations,
+					() -> call(context, place, "isMarked", new Object[0], calls));
+		}
+		model.dispose();
+	}
+
+	private static void callContributor(OperationContributor contributor, IEolContext context, String name,
+			Object[] parameters, int calls) throws Exception {
+		Object result = null;
+		for (int i = 0; i < calls; i++) {
+			ObjectMethod method = contributor.findContributedMethodForEvaluatedParameters(EolNoType.NoInstance, name,
+					parameters, context, false);
+			result = method.execute(parameters, null);
+		}
+		sink = result;
+	}
+
+	private static void call(IEolContext context, Object target, String name, Object[] parameters, int calls)
+			throws Exception {
+		OperationContributorRegistry registry = context.getOperationContributorRegistry();
+		Object result = null;
+		for (int i = 0; i < calls; i++) {
+			ObjectMethod method = registry.findContributedMethodForUnevaluatedParameters(target, name, NO_EXPRESSIONS, context);
+			if (method == null) {
+				method = registry.findContributedMethodForEvaluatedParameters(target, name, parameters, context);
+			}
+			if (method != null) {
+				result = method.execute(parameters, null);
+			}
+		}
+		sink = result;
+	}
+
+}
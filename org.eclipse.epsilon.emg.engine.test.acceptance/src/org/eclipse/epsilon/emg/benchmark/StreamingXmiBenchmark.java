@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgXmiWriter;
+
+/**
+ * Compares the throughput and the peak heap of storing PetriNets of 10^5 to
+ * 10^7 elements with EMF's XMI save and with the {@link EmgXmiWriter}. EMF
+ * refers to elements by their position in their containment lists, which is
+ * slow for large lists, so it is only measured up to a given size. The peak
+ * heap is the growth of the peaks of the heap pools over a save, after a
+ * collection, so it is only an estimate.
+ * <p>
+ * Usage: StreamingXmiBenchmark [max elements] [max EMF elements] [iterations]
+ */
+public class StreamingXmiBenchmark extends EmgBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		long maxElements = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+		long maxEmfElements = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		String metamodel = new File(StreamingXmiBenchmark.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		File directory = new File(System.getProperty("java.io.tmpdir"), "emg-streaming");
+		directory.mkdirs();
+		for (long elements = 100000; elements <= maxElements; elements *= 10) {
+			EmgEmfModel model = new EmgEmfModel();
+			model.setName("M");
+			model.setMetamodelFile(metamodel);
+			model.setModelFile(new File(directory, "net.xmi").getAbsolutePath());
+			model.setReadOnLoad(false);
+			model.setStoredOnDisposal(false);
+			model.load();
+			// Without the content adapters of the model, the net is added and released at once
+			model.suspendNotifications();
+			model.getResource().getContents().add(seed(model, (int) (elements / 4)));
+			if (elements <= maxEmfElements) {
+				URI uri = URI.createFileURI(new File(directory, "net-emf.xmi").getAbsolutePath());
+				model.getResource().setURI(uri);
+				double save = measure("EMF save, " + elements + " elements", 1, iterations,
+						() -> model.getResource().save(Collections.emptyMap()));
+				report(elements, save, peak(() -> model.getResource().save(Collections.emptyMap())), uri);
+			}
+			URI uri = URI.createFileURI(new File(directory, "net-streaming.xmi").getAbsolutePath());
+			model.getResource().setURI(uri);
+			EmgXmiWriter writer = new EmgXmiWriter();
+			double save = measure("streaming save, " + elements + " elements", 1, iterations,
+					() -> writer.save(model.getResource()));
+			report(elements, save, peak(() -> writer.save(model.getResource())), uri);
+			model.getResource().getContents().clear();
+			model.dispose();
+		}
+	}
+
+	private static void report(long elements, double save, long peak, URI uri) {
+		System.out.println(String.format("%-45s %10.0f elements/s, %6d MB peak heap, %d bytes", "",
+				elements / save * 1e3, peak >> 20, new File(uri.toFileString()).length()));
+	}
+
+	/**
+	 * The growth of the heap over a task: the sum of the peaks of the heap
+	 * pools while it runs, less their use before it.
+	 */
+	private static long peak(Task task) throws Exception {
+		List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans();
+		System.gc();
+		long before = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				before += pool.getUsage().getUsed();
+			}
+		}
+		task.run();
+		long peak = 0;
+		for (MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return Math.max(0, peak - before);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static EObject seed(EmgEmfModel model, int places) throws Exception {
+		EObject net = EcoreUtil.create(model.classForName("PetriNet"));
+		List<EObject> netPlaces = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("places"));
+		List<EObject> transitions = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("transitions"));
+		List<EObject> arcs = (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("arcs"));
+		for (int i = 0; i < places; i++) {
+			EObject place = create(model, "Place", "name", "P" + i);
+			EObject transition = create(model, "Transition", "name", "T" + i);
+			netPlaces.add(place);
+			transitions.add(transition);
+			EObject out = create(model, "PlaceToTransArc", "weight", i % 5);
+			set(out, "source", place);
+			set(out, "target", transition);
+			EObject back = create(model, "TransToPlaceArc", "weight", 1);
+			set(back, "source", transition);
+			set(back, "target", netPlaces.get(i / 2));
+			arcs.add(out);
+			arcs.add(back);
+		}
+		return net;
+	}
+
+	private static EObject create(EmgEmfModel model, String type, String attribute, Object value) throws Exception {
+		EObject element = EcoreUtil.create(model.classForName(type));
+		set(element, attribute, value);
+		return element;
+	}
+
+	private static void set(EObject element, String feature, Object value) {
+		element.eSet(element.eClass().getEStructuralFeature(feature), value);
+	}
+
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.createModel;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.get;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.list;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.set;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.smallNet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emg.emf.EmgAmplifier;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgAmplifierTest checks that the amplified copies keep the
+ * structure of the seed model.
+ */
+public class EmgAmplifierTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void copiesKeepTheStructure() throws Exception {
+		EObject net = seed("structure");
+		List<EObject> places = new ArrayList<>(list(net, "places"));
+		List<EObject> copies = new EmgAmplifier().amplify(net, 5, new EmgRandomGenerator(new EolContext(), 1));
+		// 4 places, 4 transitions and 10 arcs per copy
+		assertThat(copies, hasSize(4 * 18));
+		assertThat(list(net, "places"), hasSize(20));
+		assertThat(list(net, "transitions"), hasSize(20));
+		assertThat(list(net, "arcs"), hasSize(50));
+		assertThat(list(net, "places").subList(0, 4), is(places));
+		for (EObject arc : list(net, "arcs")) {
+			EObject source = (EObject) get(arc, "source");
+			EObject target = (EObject) get(arc, "target");
+			assertThat(list(source, "outgoing"), hasItem(arc));
+			assertThat(list(target, "incoming"), hasItem(arc));
+			// Each arc joins elements of its own copy
+			int copy = list(net, "arcs").indexOf(arc) / 10;
+			assertThat(list(net, "places").indexOf(source) / 4, is(copy));
+			assertThat(list(net, "transitions").indexOf(target) / 4, is(copy));
+		}
+		for (EObject place : list(net, "places")) {
+			assertThat(place.eContainer(), is(net));
+		}
+	}
+
+	@Test
+	public void attributesArePerturbed() throws Exception {
+		EObject net = seed("perturbed");
+		EmgAmplifier amplifier = new EmgAmplifier();
+		amplifier.addPerturbation("Element", "name", EmgAmplifier.copySuffix("_"));
+		amplifier.addPerturbation("Arc", "weight", EmgAmplifier.gaussianNoise(100));
+		amplifier.amplify(net, 3, new EmgRandomGenerator(new EolContext(), 1));
+		assertThat(get(list(net, "places").get(0), "name"), is("P0"));
+		assertThat(get(list(net, "places").get(4), "name"), is("P0_1"));
+		assertThat(get(list(net, "transitions").get(11), "name"), is("T3_2"));
+		Set<Object> weights = new HashSet<>();
+		for (EObject arc : list(net, "arcs").subList(10, 30)) {
+			weights.add(get(arc, "weight"));
+		}
+		assertThat(weights.size(), is(greaterThan(10)));
+	}
+
+	@Test
+	public void crossLinksJoinTheCopies() throws Exception {
+		EObject net = seed("crossed");
+		EmgAmplifier amplifier = new EmgAmplifier();
+		amplifier.setCrossLinkProbability(1);
+		amplifier.amplify(net, 10, new EmgRandomGenerator(new EolContext(), 1));
+		int crossed = 0;
+		for (EObject arc : list(net, "arcs").subList(10, 100)) {
+			int copy = list(net, "arcs").indexOf(arc) / 10;
+			if (list(net, "places").indexOf(get(arc, "source")) / 4 != copy) {
+				crossed++;
+			}
+			assertThat(list((EObject) get(arc, "source"), "outgoing"), hasItem(arc));
+		}
+		assertThat(crossed, is(greaterThan(60)));
+	}
+
+	@Test
+	public void seededAmplificationsAreReproducible() throws Exception {
+		List<Object> first = weights(seed("first"));
+		List<Object> second = weights(seed("second"));
+		assertThat(first, is(second));
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void theFactorMustBePositive() throws Exception {
+		new EmgAmplifier().amplify(seed("zero"), 0, new EmgRandomGenerator(new EolContext()));
+	}
+
+	private List<Object> weights(EObject net) throws Exception {
+		EmgAmplifier amplifier = new EmgAmplifier();
+		amplifier.addPerturbation("PlaceToTransArc", "weight", EmgAmplifier.gaussianNoise(3));
+		amplifier.setCrossLinkProbability(0.5);
+		amplifier.amplify(net, 4, new EmgRandomGenerator(new EolContext(), 8));
+		List<Object> values = new ArrayList<>();
+		for (EObject arc : list(net, "arcs")) {
+			values.add(get(arc, "weight"));
+			values.add(list(net, "places").indexOf(get(arc, "source")));
+		}
+		return values;
+	}
+
+	private EObject seed(String name) throws Exception {
+		return smallNet(createModel(folder.getRoot(), name));
+	}
+
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.createModel;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.largeNet;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.list;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgBinarySerializer;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgOutputFormat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgBinarySerializerTest checks that models saved in the binary
+ * formats load back equal, and that the module stores them.
+ */
+public class EmgBinarySerializerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		metamodel = new File(EmgBinarySerializerTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI());
+	}
+
+	@Test
+	public void binaryModelsLoadBackEqual() throws Exception {
+		Resource resource = seed("binary");
+		EmgBinarySerializer serializer = new EmgBinarySerializer();
+		serializer.save(resource);
+		assertThat(file("binary.xmi").exists(), is(false));
+		byte[] contents = Files.readAllBytes(file("binary.bin").toPath());
+		assertThat(new String(contents, 0, 5, "UTF-8"), is(not("<?xml")));
+		Resource loaded = create("binary").getResource();
+		serializer.load(loaded);
+		assertThat(EcoreUtil.equals(loaded.getContents(), resource.getContents()), is(true));
+	}
+
+	@Test
+	public void compressedModelsLoadBackEqual() throws Exception {
+		Resource resource = seed("compressed");
+		EmgBinarySerializer serializer = new EmgBinarySerializer();
+		serializer.save(resource);
+		long plain = file("compressed.bin").length();
+		serializer.setCompressed(true);
+		serializer.save(resource);
+		assertThat(file("compressed.bin.gz").length(), is(lessThan(plain)));
+		Resource loaded = create("compressed").getResource();
+		// The compression is detected
+		try (InputStream in = new FileInputStream(file("compressed.bin.gz"))) {
+			new EmgBinarySerializer().load(loaded, in);
+		}
+		assertThat(EcoreUtil.equals(loaded.getContents(), resource.getContents()), is(true));
+		List<EObject> arcs = list(loaded.getContents().get(0), "arcs");
+		EObject place = (EObject) arcs.get(7).eGet(arcs.get(7).eClass().getEStructuralFeature("source"));
+		assertThat(list(place, "outgoing"), hasItem(arcs.get(7)));
+	}
+
+	@Test
+	public void moduleStoresTheModelInBinary() throws Exception {
+		File seed = new File(folder.getRoot(), "module.xmi");
+		Files.copy(new File(EmgBinarySerializerTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/test.xmi").toURI()).toPath(), seed.toPath());
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel.getAbsolutePath());
+		model.setModelFile(seed.getAbsolutePath());
+		model.setReadOnLoad(true);
+		model.setStoredOnDisposal(false);
+		model.load();
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgBinarySerializerTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/AmplificationTest.emg").toURI()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setOutputFormat(EmgOutputFormat.COMPRESSED_BINARY);
+		byte[] xmi = Files.readAllBytes(seed.toPath());
+		module.execute();
+		// The binary stream does not overwrite the XMI of the model
+		assertThat(Files.readAllBytes(seed.toPath()), is(xmi));
+		Resource loaded = create("module").getResource();
+		EmgBinarySerializer serializer = new EmgBinarySerializer();
+		serializer.setCompressed(true);
+		assertThat(serializer.getUri(loaded.getURI()).lastSegment(), is("module.bin.gz"));
+		serializer.load(loaded);
+		assertThat(EcoreUtil.equals(loaded.getContents(), model.getResource().getContents()), is(true));
+	}
+
+	private File file(String name) {
+		return new File(folder.getRoot(), name);
+	}
+
+	private EmgEmfModel create(String name) throws Exception {
+		return createModel(folder.getRoot(), name);
+	}
+
+	private Resource seed(String name) throws Exception {
+		EmgEmfModel model = create(name);
+		largeNet(model, "net");
+		return model.getResource();
+	}
+
+}
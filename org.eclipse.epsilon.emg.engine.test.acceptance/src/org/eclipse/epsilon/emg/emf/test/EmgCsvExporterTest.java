@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgCsvExporter;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgCsvExporterTest checks the tables written for the elements
+ * created by a script.
+ */
+public class EmgCsvExporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		metamodel = new File(EmgCsvExporterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void createdElementsAreExported() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel());
+		File tables = folder.newFolder("tables");
+		EmgModule module = execute(model, tables);
+		assertThat(module.getExportedElements(), is(module.getStatistics().getElements()));
+		assertThat(new File(tables, "Place.outgoing.csv").exists(), is(false));
+
+		List<String> nets = read(tables, "PetriNet");
+		assertThat(nets, contains("id,container,name", "1,,batch"));
+		List<String> places = read(tables, "Place");
+		assertThat(places.get(0), is("id,container,name"));
+		assertThat(places, hasSize(model.getAllOfType("Place").size() + 1));
+		Set<String> placeIds = new HashSet<>();
+		for (String place : places.subList(1, places.size())) {
+			String[] columns = place.split(",");
+			assertThat(columns[1], is("1"));
+			placeIds.add(columns[0]);
+		}
+		// The arcs are created by the onmatch blocks
+		List<String> arcs = read(tables, "PlaceToTransArc");
+		assertThat(arcs.get(0), is("id,container,weight,source,target"));
+		assertThat(arcs, hasSize(model.getAllOfType("PlaceToTransArc").size() + 1));
+		assertThat(arcs.size(), is(greaterThan(1)));
+		for (String arc : arcs.subList(1, arcs.size())) {
+			String[] columns = arc.split(",");
+			assertThat(columns[1], is("1"));
+			assertThat(Integer.parseInt(columns[2]), is(both(greaterThanOrEqualTo(1)).and(lessThanOrEqualTo(5))));
+			assertThat(placeIds, hasItem(columns[3]));
+		}
+	}
+
+	@Test
+	public void valuesAreQuoted() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel());
+		File tables = folder.newFolder("quoted");
+		EmgCsvExporter exporter = new EmgCsvExporter(tables);
+		model.setExporter(exporter);
+		EObject net = model.createInstance("PetriNet");
+		set(net, "name", "a, \"quoted\"\nname");
+		EObject deleted = model.createInstance("PetriNet");
+		model.deleteElement(deleted);
+		exporter.close();
+		String contents = new String(Files.readAllBytes(new File(tables, "PetriNet.csv").toPath()), StandardCharsets.UTF_8);
+		assertThat(contents, is("id,container,name\n1,,\"a, \"\"quoted\"\"\nname\"\n"));
+		assertThat(exporter.getRows(), is(1L));
+	}
+
+	@Test
+	public void deletedElementsAreListed() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel());
+		File tables = folder.newFolder("deleted");
+		EmgCsvExporter exporter = new EmgCsvExporter(tables);
+		model.setExporter(exporter);
+		EObject written = model.createInstance("PetriNet");
+		set(written, "name", "written");
+		exporter.writeCreated();
+		EObject first = model.createInstance("PetriNet");
+		set(first, "name", "first");
+		EObject pending = model.createInstance("PetriNet");
+		EObject last = model.createInstance("PetriNet");
+		set(last, "name", "last");
+		model.deleteElement(pending);
+		model.deleteElement(written);
+		exporter.close();
+		assertThat(read(tables, "PetriNet"), contains("id,container,name", "1,,written", "2,,first", "4,,last"));
+		assertThat(read(tables, "deleted"), contains("id", "1"));
+		assertThat(exporter.getRows(), is(3L));
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void onlyEmgModelsAreExported() throws Exception {
+		execute(createModel(new EmfModel()), folder.newFolder("generic"));
+	}
+
+	private EmgModule execute(EmfModel model, File tables) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgCsvExporterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/BatchTest.emg").toURI()));
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(7);
+		module.setCsvExport(tables);
+		module.setStoreOnCompletion(false);
+		module.execute();
+		return module;
+	}
+
+	private <T extends EmfModel> T createModel(T model) throws Exception {
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), "model.xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private static List<String> read(File tables, String name) throws Exception {
+		return Files.readAllLines(new File(tables, name + ".csv").toPath(), StandardCharsets.UTF_8);
+	}
+
+	private static void set(EObject element, String feature, Object value) {
+		EStructuralFeature attribute = element.eClass().getEStructuralFeature(feature);
+		element.eSet(attribute, value);
+	}
+
+}
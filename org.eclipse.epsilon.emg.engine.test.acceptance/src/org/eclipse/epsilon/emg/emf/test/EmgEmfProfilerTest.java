@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.createModel;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.list;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.set;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.smallNet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.List;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgEmfProfiler;
+import org.eclipse.epsilon.emg.random.EmgProfile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgEmfProfilerTest checks the profile of an EMF model.
+ */
+public class EmgEmfProfilerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmgEmfModel model;
+
+	@Before
+	public void setUp() throws Exception {
+		model = createModel(folder.getRoot(), "profiled");
+		EObject net = smallNet(model);
+		// Repeated names, so they have a distribution
+		List<EObject> places = list(net, "places");
+		for (int i = 0; i < places.size(); i++) {
+			set(places.get(i), "name", "P" + (i % 2));
+		}
+	}
+
+	@Test
+	public void modelsAreProfiled() throws Exception {
+		EmgProfile profile = EmgEmfProfiler.profile(model.getResource());
+		assertThat(profile.getTypes(), containsInAnyOrder("PetriNet", "Place", "Transition", "PlaceToTransArc"));
+		assertThat(profile.getInstances("Place"), is(4));
+		assertThat(profile.getInstances("PlaceToTransArc"), is(10));
+		assertThat(profile.hasCardinalities("Place", "outgoing"), is(true));
+		assertThat(profile.hasCardinalities("PlaceToTransArc", "source"), is(true));
+		assertThat(profile.hasValues("Place", "incoming"), is(false));
+		Well19937c random = new Well19937c(1);
+		for (int i = 0; i < 100; i++) {
+			assertThat(profile.nextValue(random, "Place", "name"), isOneOf("P0", "P1"));
+			assertThat(profile.nextValue(random, "PlaceToTransArc", "weight"), isOneOf(1, 2, 3, 4));
+			assertThat(profile.nextCardinality(random, "Place", "outgoing"), isOneOf(1, 2, 3, 4));
+			assertThat(profile.nextCardinality(random, "Place", "incoming"), is(0));
+			assertThat(profile.nextCardinality(random, "PlaceToTransArc", "source"), is(1));
+			assertThat(profile.nextCardinality(random, "PetriNet", "arcs"), is(10));
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgExtentIndex;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EmgExtentIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File script;
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		script = new File(EmgExtentIndexTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/BatchTest.emg").toURI());
+		metamodel = new File(EmgExtentIndexTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void indexMatchesModelContents() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "indexed");
+		EmgModule module = execute(model);
+		EmgExtentIndex index = module.getExtentIndex();
+		assertThat(index, is(notNullValue()));
+		assertThat(model.getExtentIndex(), is(sameInstance(index)));
+		List<EObject> contents = contents(model);
+		assertThat(index.getAll(), containsInAnyOrder(contents.toArray()));
+		for (String type : new String[] {"PetriNet", "Place", "Transition", "PlaceToTransArc"}) {
+			assertThat(model.getAllOfType(type), containsInAnyOrder(ofType(contents, type).toArray()));
+		}
+		assertThat(model.getAllOfKind("Element"), hasSize(contents.size() - model.getAllOfKind("Arc").size()));
+		assertThat(model.getAllOfKind("Arc"), hasSize(model.getAllOfType("PlaceToTransArc").size()));
+	}
+
+	@Test
+	public void indexDoesNotChangeTheGeneratedModel() throws Exception {
+		execute(createModel(new EmgEmfModel(), "indexed"));
+		EmfModel plain = createModel(new EmfModel(), "plain");
+		EmgModule module = execute(plain);
+		assertThat(module.getExtentIndex(), is(nullValue()));
+		assertThat(read("indexed"), is(read("plain")));
+	}
+
+	@Test
+	public void extentsCanBeUsedFromScripts() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "script");
+		script = new File(EmgExtentIndexTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/ExtentTest.emg").toURI());
+		EmgModule module = execute(model);
+		assertThat(module.getExtentIndex(), is(notNullValue()));
+		EObject net = model.getAllOfType("PetriNet").iterator().next();
+		assertThat(net.eGet(net.eClass().getEStructuralFeature("name")), is("extent,5,false,true,6"));
+		List<String> names = new ArrayList<String>();
+		for (EObject place : model.getAllOfType("Place")) {
+			names.add((String) place.eGet(place.eClass().getEStructuralFeature("name")));
+		}
+		assertThat(names, contains("P1", "P2", "P3", "P4", "P5"));
+	}
+
+	@Test
+	public void deletedElementsAreRemoved() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "delete");
+		EmgModule module = execute(model);
+		EObject place = model.getAllOfType("Place").iterator().next();
+		int places = model.getAllOfType("Place").size();
+		int elements = module.getExtentIndex().size();
+		model.deleteElement(place);
+		assertThat(model.getAllOfType("Place"), hasSize(places - 1));
+		assertThat(model.getAllOfKind("Element"), not(hasItem(place)));
+		assertThat(module.getExtentIndex().size(), is(elements - 1));
+	}
+
+	@Test
+	public void detachedElementsAreRemoved() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "detach");
+		EmgModule module = execute(model);
+		EObject net = model.getAllOfType("PetriNet").iterator().next();
+		List<EObject> places = places(net);
+		EObject place = places.get(0);
+		int count = places.size();
+		places.remove(place);
+		assertThat(model.getAllOfType("Place"), not(hasItem(place)));
+		assertThat(model.getAllOfType("Place"), hasSize(count - 1));
+		model.getResource().getContents().remove(net);
+		assertThat(model.allContents(), is(empty()));
+		assertThat(module.getExtentIndex().size(), is(0));
+	}
+
+	@Test
+	public void movedElementsAreKept() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "move");
+		execute(model);
+		EObject net = model.getAllOfType("PetriNet").iterator().next();
+		List<EObject> places = places(net);
+		EObject place = places.get(0);
+		int count = places.size();
+		places.remove(place);
+		places.add(place);
+		assertThat(model.getAllOfType("Place"), hasItem(place));
+		assertThat(model.getAllOfType("Place"), hasSize(count));
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<EObject> places(EObject net) {
+		return (List<EObject>) net.eGet(net.eClass().getEStructuralFeature("places"));
+	}
+
+	private EmgModule execute(EmfModel model) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(42);
+		module.execute();
+		return module;
+	}
+
+	private <T extends EmfModel> T createModel(T model, String name) throws Exception {
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private List<EObject> contents(EmfModel model) {
+		List<EObject> contents = new ArrayList<EObject>();
+		for (TreeIterator<EObject> it = model.getResource().getAllContents(); it.hasNext();) {
+			contents.add(it.next());
+		}
+		return contents;
+	}
+
+	private List<EObject> ofType(List<EObject> contents, String type) {
+		List<EObject> result = new ArrayList<EObject>();
+		for (EObject element : contents) {
+			if (element.eClass().getName().equals(type)) {
+				result.add(element);
+			}
+		}
+		return result;
+	}
+
+	private String read(String name) throws Exception {
+		return new String(Files.readAllBytes(new File(folder.getRoot(), name + ".xmi").toPath()), "UTF-8");
+	}
+
+}
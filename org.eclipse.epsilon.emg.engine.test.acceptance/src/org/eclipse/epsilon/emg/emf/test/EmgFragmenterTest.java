@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.createModel;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.largeNet;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.list;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgFragment;
+import org.eclipse.epsilon.emg.emf.EmgFragmenter;
+import org.eclipse.epsilon.emg.emf.EmgMetamodelCache;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgFragmenterTest checks that a model saved in fragments is
+ * split by size and loads back with its references resolved.
+ */
+public class EmgFragmenterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		metamodel = new File(EmgFragmenterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI());
+	}
+
+	@Test
+	public void fragmentsAreSplitBySize() throws Exception {
+		Resource resource = seed("split");
+		EmgFragmenter fragmenter = new EmgFragmenter();
+		fragmenter.setFragmentSize(10);
+		fragmenter.setThreads(3);
+		List<EmgFragment> fragments = fragmenter.save(resource);
+		// 20 places, 20 transitions and 60 arcs in fragments of 10, the net in the main resource
+		assertThat(fragments, hasSize(11));
+		assertThat(fragments.get(0).getElements(), is(1L));
+		assertThat(fragments.get(0).getUri(), is(resource.getURI()));
+		for (int i = 1; i < fragments.size(); i++) {
+			EmgFragment fragment = fragments.get(i);
+			assertThat(fragment.getElements(), is(10L));
+			assertThat(fragment.getUri().lastSegment(), is("split-" + i + ".xmi"));
+			assertThat(fragment.getBytes(), is(new File(fragment.getUri().toFileString()).length()));
+			assertThat(fragment.getBytes(), is(greaterThan(0L)));
+			assertThat(fragment.getSaveTime(), is(greaterThan(0L)));
+		}
+	}
+
+	@Test
+	public void fragmentsLoadWithTheirReferences() throws Exception {
+		Resource resource = seed("loaded");
+		EmgFragmenter fragmenter = new EmgFragmenter();
+		fragmenter.setFragmentSize(7);
+		fragmenter.save(resource);
+		List<Resource> resources = fragmenter.load(resourceSet(), resource.getURI());
+		assertThat(resources, hasSize(1 + 15));
+		Resource main = resources.get(0);
+		int elements = 0;
+		for (Iterator<EObject> it = main.getAllContents(); it.hasNext(); it.next()) {
+			elements++;
+		}
+		assertThat(elements, is(1 + 100));
+		EObject net = main.getContents().get(0);
+		List<EObject> arcs = list(net, "arcs");
+		assertThat(arcs, hasSize(60));
+		for (EObject arc : arcs) {
+			EObject place = (EObject) arc.eGet(arc.eClass().getEStructuralFeature("source"));
+			assertThat(place.eIsProxy(), is(false));
+			assertThat(place.eResource(), is(not(main)));
+			assertThat(place.eContainer(), is(net));
+			assertThat(list(place, "outgoing"), hasItem(arc));
+		}
+	}
+
+	@Test
+	public void staleFragmentsAreDeleted() throws Exception {
+		Resource resource = seed("stale");
+		EmgFragmenter fragmenter = new EmgFragmenter();
+		fragmenter.setFragmentSize(10);
+		fragmenter.save(resource);
+		assertThat(new File(folder.getRoot(), "stale-10.xmi").exists(), is(true));
+		fragmenter.setFragmentSize(60);
+		assertThat(fragmenter.save(resource), hasSize(3));
+		assertThat(folder.getRoot().list(), arrayContainingInAnyOrder("stale.xmi", "stale-1.xmi", "stale-2.xmi"));
+		Resource main = fragmenter.load(resourceSet(), resource.getURI()).get(0);
+		int elements = 0;
+		for (Iterator<EObject> it = main.getAllContents(); it.hasNext();) {
+			assertThat(it.next().eIsProxy(), is(false));
+			elements++;
+		}
+		assertThat(elements, is(1 + 100));
+	}
+
+	@Test
+	public void moduleStoresTheModelInFragments() throws Exception {
+		File seed = new File(folder.getRoot(), "module.xmi");
+		Files.copy(new File(EmgFragmenterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/test.xmi").toURI()).toPath(), seed.toPath());
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel.getAbsolutePath());
+		model.setModelFile(seed.getAbsolutePath());
+		model.setReadOnLoad(true);
+		model.setStoredOnDisposal(false);
+		model.load();
+		int elements = model.allContents().size();
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgFragmenterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/AmplificationTest.emg").toURI()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setFragmentSize(2);
+		module.setSaveThreads(2);
+		assertThat(module.execute(), is(elements + 1));
+		List<EmgFragment> fragments = module.getFragments();
+		assertThat(fragments.size(), is(greaterThan(1)));
+		long stored = 0;
+		for (EmgFragment fragment : fragments) {
+			stored += fragment.getElements();
+		}
+		assertThat(stored, is((long) elements + 1));
+		List<Resource> resources = new EmgFragmenter().load(resourceSet(), URI.createFileURI(seed.getAbsolutePath()));
+		assertThat(resources, hasSize(fragments.size()));
+	}
+
+	@Test
+	public void modelsStoredInFragmentsAreNotMutated() throws Exception {
+		EmgEmfModel model = createModel(folder.getRoot(), "mutated");
+		EmgModule module = new EmgModule();
+		module.parse("operation PetriNet create { self.name = 'net'; }");
+		module.getContext().getModelRepository().addModel(model);
+		module.setFragmentSize(2);
+		module.setMutation(2, 5, folder.newFolder("versions"), false);
+		try {
+			module.execute();
+			fail("Fragments and mutations can't be combined");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString("can not be mutated"));
+		}
+		assertThat(model.allContents(), is(empty()));
+	}
+
+	private ResourceSet resourceSet() throws Exception {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		for (EPackage ePackage : EmgMetamodelCache.getShared().getPackages(URI.createFileURI(metamodel.getAbsolutePath()))) {
+			resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+		}
+		return resourceSet;
+	}
+
+	private Resource seed(String name) throws Exception {
+		EmgEmfModel model = createModel(folder.getRoot(), name);
+		largeNet(model, "net");
+		return model.getResource();
+	}
+
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emc.emf.ContainmentChangeAdapter;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgInstanceFactory;
+import org.eclipse.epsilon.eol.exceptions.models.EolNotInstantiableModelElementTypeException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EmgInstanceFactoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmgEmfModel model;
+
+	@Before
+	public void setUp() throws Exception {
+		String metamodel = new File(EmgInstanceFactoryTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+		model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), "factory.xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+	}
+
+	@Test
+	public void factoriesAreCachedByType() throws Exception {
+		EmgInstanceFactory factory = model.getInstanceFactory("Place");
+		assertThat(model.getInstanceFactory("Place"), is(sameInstance(factory)));
+		assertThat(factory.getEClass(), is(model.classForName("Place")));
+		assertThat(model.getInstanceFactory("Transition"), is(not(sameInstance(factory))));
+	}
+
+	@Test(expected = EolNotInstantiableModelElementTypeException.class)
+	public void abstractTypesAreNotInstantiable() throws Exception {
+		model.getInstanceFactory("Element");
+	}
+
+	@Test
+	public void instancesAreAddedAsCreateInstanceDoes() throws Exception {
+		EObject first = model.createInstance("Place");
+		// Populate the caches before the instances are created
+		assertThat(model.getAllOfType("Place"), contains(first));
+		assertThat(model.getAllOfKind("Element"), contains(first));
+		EmgInstanceFactory factory = model.getInstanceFactory("Place");
+		factory.reserve(3);
+		EObject second = factory.createInstance();
+		EObject third = factory.createInstance();
+		assertThat(model.getResource().getContents(), contains(first, second, third));
+		assertThat(model.getAllOfType("Place"), containsInAnyOrder(first, second, third));
+		assertThat(model.getAllOfKind("Element"), containsInAnyOrder(first, second, third));
+		assertThat(second.eAdapters(), hasItem(instanceOf(ContainmentChangeAdapter.class)));
+		assertThat(model.owns(second), is(true));
+	}
+
+	@Test
+	public void detachedInstancesAreNotInTheResource() throws Exception {
+		List<EObject> instances = model.getInstanceFactory("Transition").createDetachedInstances(4);
+		assertThat(instances, hasSize(4));
+		assertThat(model.getResource().getContents(), is(empty()));
+		for (EObject instance : instances) {
+			assertThat(instance.eClass().getName(), is("Transition"));
+			assertThat(instance.eResource(), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void factoriesAreDiscardedWhenTheModelIsLoaded() throws Exception {
+		EmgInstanceFactory factory = model.getInstanceFactory("Place");
+		model.load();
+		assertThat(model.getInstanceFactory("Place"), is(not(sameInstance(factory))));
+	}
+
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgMetamodelCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EmgMetamodelCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmgMetamodelCache cache;
+
+	private File metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new EmgMetamodelCache();
+		metamodel = folder.newFile("PetriNet.ecore");
+		Files.copy(EmgMetamodelCacheTest.class.getResourceAsStream("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore"),
+				metamodel.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Test
+	public void packagesAreReused() throws Exception {
+		URI uri = URI.createFileURI(metamodel.getAbsolutePath());
+		List<EPackage> first = cache.getPackages(uri);
+		List<EPackage> second = cache.getPackages(uri);
+		assertThat(first, hasSize(1));
+		assertThat(second, is(sameInstance(first)));
+		assertThat(cache.getLoads(), is(1L));
+		assertThat(cache.getHits(), is(1L));
+	}
+
+	@Test
+	public void modifiedMetamodelIsReloaded() throws Exception {
+		URI uri = URI.createFileURI(metamodel.getAbsolutePath());
+		List<EPackage> first = cache.getPackages(uri);
+		assertThat(metamodel.setLastModified(metamodel.lastModified() + 10000), is(true));
+		List<EPackage> second = cache.getPackages(uri);
+		assertThat(second, is(not(sameInstance(first))));
+		assertThat(cache.getLoads(), is(2L));
+	}
+
+	@Test
+	public void concurrentReadersShareOneLoad() throws Exception {
+		URI uri = URI.createFileURI(metamodel.getAbsolutePath());
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<EPackage>>> results = new ArrayList<Future<List<EPackage>>>();
+			for (int i = 0; i < threads; i++) {
+				results.add(pool.submit(new Callable<List<EPackage>>() {
+					@Override
+					public List<EPackage> call() throws Exception {
+						start.await();
+						return cache.getPackages(uri);
+					}
+				}));
+			}
+			start.countDown();
+			List<EPackage> expected = results.get(0).get();
+			for (Future<List<EPackage>> result : results) {
+				assertThat(result.get(), is(sameInstance(expected)));
+			}
+			assertThat(cache.getLoads(), is(1L));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void modelsShareCachedMetamodel() throws Exception {
+		EmgEmfModel first = createModel();
+		EmgEmfModel second = createModel();
+		assertThat(second.classForName("Place"), is(sameInstance(first.classForName("Place"))));
+		EObject place = first.createInstance("Place");
+		assertThat(place.eClass().getName(), is("Place"));
+		assertThat(cache.getLoads(), is(1L));
+	}
+
+	@Test
+	public void storedModelCanBeReloaded() throws Exception {
+		EmgEmfModel model = createModel();
+		EObject place = model.createInstance("Place");
+		model.setElementId(place, "p1");
+		model.store();
+		String xmi = new String(Files.readAllBytes(new File(folder.getRoot(), "model.xmi").toPath()), "UTF-8");
+		assertThat(xmi, containsString("schemaLocation"));
+		EmgEmfModel reloaded = new EmgEmfModel();
+		reloaded.setMetamodelCache(cache);
+		reloaded.setMetamodelFile(metamodel.getAbsolutePath());
+		reloaded.setModelFile(new File(folder.getRoot(), "model.xmi").getAbsolutePath());
+		reloaded.setReadOnLoad(true);
+		reloaded.setStoredOnDisposal(false);
+		reloaded.load();
+		assertThat(reloaded.getAllOfType("Place"), hasSize(1));
+	}
+
+	private EmgEmfModel createModel() throws Exception {
+		EmgEmfModel model = new EmgEmfModel();
+		model.setMetamodelCache(cache);
+		model.setMetamodelFile(metamodel.getAbsolutePath());
+		model.setModelFile(new File(folder.getRoot(), "model.xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+}
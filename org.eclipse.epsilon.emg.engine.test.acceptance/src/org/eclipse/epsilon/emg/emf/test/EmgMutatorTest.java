@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.createModel;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.smallNet;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgMutator;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgMutatorTest checks that the random edits leave a consistent
+ * model and are logged.
+ */
+public class EmgMutatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void editsKeepTheModelConsistent() throws Exception {
+		Resource resource = seed("consistent");
+		EmgMutator mutator = new EmgMutator(resource, new EmgRandomGenerator(new EolContext(), 3));
+		for (int step = 0; step < 20; step++) {
+			assertThat(mutator.mutate(50), is(50));
+			int elements = 0;
+			for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+				EObject element = it.next();
+				elements++;
+				assertThat(mutator.getId(element), is(not(-1)));
+				for (EReference reference : element.eClass().getEAllReferences()) {
+					for (EObject target : values(element, reference)) {
+						// Deleted elements are not referenced
+						assertThat(target.eResource(), is(resource));
+						if (reference.getEOpposite() != null) {
+							assertThat(values(target, reference.getEOpposite()), hasItem(element));
+						}
+					}
+				}
+			}
+			assertThat(mutator.size(), is(elements));
+		}
+		mutator.dispose();
+	}
+
+	@Test
+	public void eachEditIsLogged() throws Exception {
+		EmgMutator mutator = new EmgMutator(seed("logged"), new EmgRandomGenerator(new EolContext(), 3));
+		StringWriter log = new StringWriter();
+		mutator.setChangeLog(log);
+		mutator.mutate(100);
+		String[] lines = log.toString().split("\n");
+		assertThat(lines.length, is(100));
+		for (String line : lines) {
+			assertTrue(line, line.matches("(add \\d+ \\w+ \\d+ \\w+|delete \\d+|move \\d+ \\d+ \\w+"
+					+ "|set \\d+ \\w+ \".*\"|rewire \\d+ \\w+ -?\\d+ \\d+)"));
+		}
+	}
+
+	@Test
+	public void addedElementsGetNewIds() throws Exception {
+		Resource resource = seed("added");
+		EmgMutator mutator = new EmgMutator(resource, new EmgRandomGenerator(new EolContext(), 3));
+		mutator.setEditWeights(1, 0, 0, 0, 0);
+		StringWriter log = new StringWriter();
+		mutator.setChangeLog(log);
+		assertThat(mutator.getId(resource.getContents().get(0)), is(0));
+		mutator.mutate(10);
+		assertThat(mutator.size(), is(19 + 10));
+		assertThat(log.toString(), startsWith("add 19 "));
+	}
+
+	@Test
+	public void rootsAreNotDeleted() throws Exception {
+		Resource resource = seed("deleted");
+		EmgMutator mutator = new EmgMutator(resource, new EmgRandomGenerator(new EolContext(), 3));
+		mutator.setEditWeights(0, 1, 0, 0, 0);
+		// The 18 contents of the net can be deleted
+		assertThat(mutator.mutate(100), is(18));
+		assertThat(mutator.size(), is(1));
+		assertThat(resource.getContents(), hasSize(1));
+		assertThat(resource.getContents().get(0).eContents(), is(empty()));
+	}
+
+	@Test
+	public void seededMutationsAreReproducible() throws Exception {
+		assertThat(mutations("first"), is(mutations("second")));
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void weightsMustNotBeNegative() throws Exception {
+		new EmgMutator(seed("negative"), new EmgRandomGenerator(new EolContext())).setEditWeights(1, -1, 1, 1, 1);
+	}
+
+	private String mutations(String name) throws Exception {
+		EmgMutator mutator = new EmgMutator(seed(name), new EmgRandomGenerator(new EolContext(), 5));
+		StringWriter log = new StringWriter();
+		mutator.setChangeLog(log);
+		mutator.mutate(200);
+		return log.toString();
+	}
+
+	private Resource seed(String name) throws Exception {
+		EmgEmfModel model = createModel(folder.getRoot(), name);
+		smallNet(model);
+		return model.getResource();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<EObject> values(EObject element, EReference reference) {
+		Object value = element.eGet(reference);
+		if (reference.isMany()) {
+			return (List<EObject>) value;
+		}
+		return value == null ? Collections.<EObject>emptyList() : Collections.singletonList((EObject) value);
+	}
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.epsilon.emg.EmgGenerationStatistics;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgSuppressedNotificationsTest checks that generating with the
+ * notifications suppressed produces the same model as the normal generation.
+ */
+public class EmgSuppressedNotificationsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		metamodel = new File(EmgSuppressedNotificationsTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void suppressedGenerationMatchesNormalGeneration() throws Exception {
+		for (String script : new String[] {"BatchTest", "ContainerTest"}) {
+			// Each script generates new files, resources are shared by the models of a file
+			EmgModule normal = execute(script + ".emg", createModel(script + "Normal"), false);
+			EmgEmfModel model = createModel(script + "Suppressed");
+			EmgModule suppressed = execute(script + ".emg", model, true);
+			assertThat(read(script + "Suppressed"), is(read(script + "Normal")));
+			EmgGenerationStatistics expected = normal.getStatistics();
+			EmgGenerationStatistics actual = suppressed.getStatistics();
+			assertThat(actual.getElementsByType(), is(expected.getElementsByType()));
+			assertThat(actual.getAttributes(), is(expected.getAttributes()));
+			assertThat(actual.getReferences(), is(expected.getReferences()));
+			assertThat(actual.getMatches(), is(expected.getMatches()));
+		}
+	}
+
+	@Test
+	public void notificationsAreResumed() throws Exception {
+		EmgEmfModel model = createModel("resumed");
+		int adapters = model.getResource().eAdapters().size();
+		execute("ContainerTest.emg", model, true);
+		assertThat(model.isNotificationSuspended(), is(false));
+		assertThat(model.getResource().eDeliver(), is(true));
+		assertThat(model.getResource().eAdapters(), hasSize(adapters));
+		assertThat(model.getResource().eAdapters(), hasItem(instanceOf(EContentAdapter.class)));
+		int places = 0;
+		for (TreeIterator<EObject> it = model.getResource().getAllContents(); it.hasNext();) {
+			EObject element = it.next();
+			assertThat(element.eDeliver(), is(true));
+			if (element.eClass().getName().equals("Place")) {
+				places++;
+			}
+		}
+		// The model caches are rebuilt from the contents
+		model.setExtentIndex(null);
+		assertThat(model.getAllOfType("Place"), hasSize(places));
+		assertThat(places, is(50));
+	}
+
+	private EmgModule execute(String script, EmgEmfModel model, boolean suppress) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgSuppressedNotificationsTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/" + script).toURI()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(5);
+		module.setSuppressNotifications(suppress);
+		module.execute();
+		return module;
+	}
+
+	private EmgEmfModel createModel(String name) throws Exception {
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private String read(String name) throws Exception {
+		return new String(Files.readAllBytes(new File(folder.getRoot(), name + ".xmi").toPath()), "UTF-8");
+	}
+
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.createModel;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.largeNet;
+import static org.eclipse.epsilon.emg.emf.test.PetriNetFixture.list;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgMetamodelCache;
+import org.eclipse.epsilon.emg.emf.EmgOutputFormat;
+import org.eclipse.epsilon.emg.emf.EmgXmiWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgXmiWriterTest checks that the streamed XMI is loaded by EMF
+ * as the written model.
+ */
+public class EmgXmiWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		metamodel = new File(EmgXmiWriterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI());
+	}
+
+	@Test
+	public void streamedModelsLoadBackEqual() throws Exception {
+		EmgEmfModel model = create("streamed");
+		largeNet(model, "net");
+		new EmgXmiWriter().save(model.getResource());
+		Resource loaded = load("streamed");
+		assertThat(EcoreUtil.equals(loaded.getContents(), model.getResource().getContents()), is(true));
+		List<EObject> arcs = list(loaded.getContents().get(0), "arcs");
+		EObject place = (EObject) arcs.get(7).eGet(arcs.get(7).eClass().getEStructuralFeature("source"));
+		assertThat(list(place, "outgoing"), hasItem(arcs.get(7)));
+	}
+
+	@Test
+	public void rootsAndValuesAreWritten() throws Exception {
+		EmgEmfModel model = create("roots");
+		largeNet(model, "first <net> & \"quotes\"\n\tand lines");
+		largeNet(model, "second");
+		new EmgXmiWriter().save(model.getResource());
+		String contents = new String(Files.readAllBytes(new File(folder.getRoot(), "roots.xmi").toPath()), StandardCharsets.UTF_8);
+		assertThat(contents, containsString("<xmi:XMI"));
+		Resource loaded = load("roots");
+		assertThat(loaded.getContents(), hasSize(2));
+		assertThat(EcoreUtil.equals(loaded.getContents(), model.getResource().getContents()), is(true));
+	}
+
+	@Test
+	public void idsAreKept() throws Exception {
+		EmgEmfModel model = create("ids");
+		EObject net = largeNet(model, "net");
+		XMLResource resource = (XMLResource) model.getResource();
+		resource.setID(list(net, "places").get(3), "Place.3");
+		new EmgXmiWriter().save(resource);
+		XMLResource loaded = (XMLResource) load("ids");
+		EObject place = list(loaded.getContents().get(0), "places").get(3);
+		assertThat(loaded.getID(place), is("Place.3"));
+		assertThat(loaded.getID(list(loaded.getContents().get(0), "places").get(4)), startsWith("_"));
+	}
+
+	@Test
+	public void referencesToOtherResourcesAreUris() throws Exception {
+		EmgEmfModel other = create("other");
+		EObject otherNet = largeNet(other, "other");
+		other.getResource().save(Collections.emptyMap());
+		EmgEmfModel model = create("referencing");
+		EObject net = largeNet(model, "net");
+		EObject arc = list(net, "arcs").get(0);
+		EObject target = list(otherNet, "places").get(2);
+		arc.eSet(arc.eClass().getEStructuralFeature("source"), target);
+		new EmgXmiWriter().save(model.getResource());
+		Resource loaded = load("referencing");
+		EObject loadedArc = list(loaded.getContents().get(0), "arcs").get(0);
+		EObject source = (EObject) loadedArc.eGet(loadedArc.eClass().getEStructuralFeature("source"));
+		assertThat(source.eIsProxy(), is(false));
+		assertThat(source.eResource().getURI().lastSegment(), is("other.xmi"));
+		assertThat(source.eGet(source.eClass().getEStructuralFeature("name")), is("P2"));
+	}
+
+	@Test
+	public void nullValuesAreWrittenInNewDirectories() throws Exception {
+		EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		ePackage.setName("tags");
+		ePackage.setNsURI("http://emg/test/tags");
+		ePackage.setNsPrefix("tags");
+		EClass tagged = EcoreFactory.eINSTANCE.createEClass();
+		tagged.setName("Tagged");
+		EAttribute tags = EcoreFactory.eINSTANCE.createEAttribute();
+		tags.setName("tags");
+		tags.setEType(EcorePackage.Literals.ESTRING);
+		tags.setUpperBound(-1);
+		tags.setUnique(false);
+		tagged.getEStructuralFeatures().add(tags);
+		ePackage.getEClassifiers().add(tagged);
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+		File file = new File(folder.getRoot(), "new/directory/tags.xmi");
+		Resource resource = resourceSet.createResource(URI.createFileURI(file.getAbsolutePath()));
+		EObject element = EcoreUtil.create(tagged);
+		@SuppressWarnings("unchecked")
+		List<String> values = (List<String>) element.eGet(tags);
+		values.addAll(Arrays.asList("a", null, "b"));
+		resource.getContents().add(element);
+		new EmgXmiWriter().save(resource);
+		assertThat(file.isFile(), is(true));
+		resource.unload();
+		resource.load(Collections.emptyMap());
+		assertThat((List<?>) resource.getContents().get(0).eGet(tags), contains("a", null, "b"));
+	}
+
+	@Test
+	public void moduleStreamsTheModel() throws Exception {
+		File seed = new File(folder.getRoot(), "module.xmi");
+		Files.copy(new File(EmgXmiWriterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/test.xmi").toURI()).toPath(), seed.toPath());
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel.getAbsolutePath());
+		model.setModelFile(seed.getAbsolutePath());
+		model.setReadOnLoad(true);
+		model.setStoredOnDisposal(false);
+		model.load();
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgXmiWriterTest.class.getResource("/org/eclipse/epsilon/emg/engine/test/AmplificationTest.emg").toURI()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setOutputFormat(EmgOutputFormat.STREAMING_XMI);
+		module.execute();
+		Resource loaded = load("module");
+		assertThat(EcoreUtil.equals(loaded.getContents(), model.getResource().getContents()), is(true));
+	}
+
+	private Resource load(String name) throws Exception {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		for (EPackage ePackage : EmgMetamodelCache.getShared().getPackages(URI.createFileURI(metamodel.getAbsolutePath()))) {
+			resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+		}
+		return resourceSet.getResource(URI.createFileURI(new File(folder.getRoot(), name + ".xmi").getAbsolutePath()), true);
+	}
+
+	private EmgEmfModel create(String name) throws Exception {
+		return createModel(folder.getRoot(), name);
+	}
+
+}
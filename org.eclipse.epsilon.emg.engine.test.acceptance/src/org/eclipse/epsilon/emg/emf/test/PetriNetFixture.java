@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf.test;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+
+/**
+ * The PetriNetFixture builds the PetriNet models used by the tests of the
+ * EMF support, and reads and writes their features by name.
+ */
+public final class PetriNetFixture {
+
+	private PetriNetFixture() {
+	}
+
+	/**
+	 * @return the PetriNet metamodel of the tests
+	 */
+	public static File metamodel() throws Exception {
+		return new File(PetriNetFixture.class.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI());
+	}
+
+	/**
+	 * Create and load an empty PetriNet model, stored in
+	 * <code>&lt;name&gt;.xmi</code> in the folder.
+	 */
+	public static EmgEmfModel createModel(File folder, String name) throws Exception {
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel().getAbsolutePath());
+		model.setModelFile(new File(folder, name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	/**
+	 * A net of 4 places, place i joined by i + 1 arcs to a transition.
+	 */
+	public static EObject smallNet(EmgEmfModel model) throws Exception {
+		return createNet(model, "net", 4, i -> i + 1);
+	}
+
+	/**
+	 * A net of 20 places and 20 transitions, each place joined by 3 arcs to
+	 * a transition.
+	 */
+	public static EObject largeNet(EmgEmfModel model, String name) throws Exception {
+		return createNet(model, name, 20, i -> 3);
+	}
+
+	public static Object get(EObject element, String feature) {
+		return element.eGet(element.eClass().getEStructuralFeature(feature));
+	}
+
+	public static void set(EObject element, String feature, Object value) {
+		element.eSet(element.eClass().getEStructuralFeature(feature), value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public static List<EObject> list(EObject element, String feature) {
+		EStructuralFeature reference = element.eClass().getEStructuralFeature(feature);
+		return (List<EObject>) element.eGet(reference);
+	}
+
+	/**
+	 * A net of places P0, P1... each joined to a transition T0, T1... by arcs
+	 * of weights 1, 2... up to the number of arcs of the place.
+	 */
+	private static EObject createNet(EmgEmfModel model, String name, int places, IntUnaryOperator arcs)
+			throws Exception {
+		EObject net = model.createInstance("PetriNet");
+		set(net, "name", name);
+		for (int i = 0; i < places; i++) {
+			EObject place = model.createInstance("Place");
+			set(place, "name", "P" + i);
+			list(net, "places").add(place);
+			EObject transition = model.createInstance("Transition");
+			set(transition, "name", "T" + i);
+			list(net, "transitions").add(transition);
+			for (int j = 0; j < arcs.applyAsInt(i); j++) {
+				EObject arc = model.createInstance("PlaceToTransArc");
+				set(arc, "weight", j + 1);
+				set(arc, "source", place);
+				set(arc, "target", transition);
+				list(net, "arcs").add(arc);
+			}
+		}
+		return net;
+	}
+
+}
@@ -10,8 +10,28 @@
  ******************************************************************************/
 package org.eclipse.epsilon.emg.engine.test;
 
+import org.eclipse.epsilon.emg.emf.test.EmgExtentIndexTest;
+import org.eclipse.epsilon.emg.emf.test.EmgInstanceFactoryTest;
+import org.eclipse.epsilon.emg.emf.test.EmgMetamodelCacheTest;
+import org.eclipse.epsilon.emg.emf.test.EmgSuppressedNotificationsTest;
+import org.eclipse.epsilon.emg.emf.test.EmgEmfProfilerTest;
+import org.eclipse.epsilon.emg.emf.test.EmgAmplifierTest;
+import org.eclipse.epsilon.emg.emf.test.EmgFragmenterTest;
+import org.eclipse.epsilon.emg.emf.test.EmgBinarySerializerTest;
+import org.eclipse.epsilon.emg.emf.test.EmgCsvExporterTest;
+import org.eclipse.epsilon.emg.emf.test.EmgXmiWriterTest;
+import org.eclipse.epsilon.emg.emf.test.EmgMutatorTest;
 import org.eclipse.epsilon.emg.operation.contributors.test.EmgOperationContributionTest;
+import org.eclipse.epsilon.emg.operation.contributors.test.EmgOperationDispatchTest;
+import org.eclipse.epsilon.emg.random.test.EmgIdGeneratorTest;
+import org.eclipse.epsilon.emg.random.test.EmgPatternTest;
 import org.eclipse.epsilon.emg.random.test.EmgRandomGeneratorTest;
+import org.eclipse.epsilon.emg.random.test.EmgUniqueValuesTest;
+import org.eclipse.epsilon.emg.random.test.EmgNameModelTest;
+import org.eclipse.epsilon.emg.random.test.EmgAllocationTest;
+import org.eclipse.epsilon.emg.random.test.EmgZigguratTest;
+import org.eclipse.epsilon.emg.random.test.EmgCorrelatedVectorsTest;
+import org.eclipse.epsilon.emg.random.test.EmgProfileTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -20,7 +40,19 @@ import junit.framework.JUnit4TestAdapter;
 import junit.framework.Test;
 
 @RunWith(Suite.class)
-@SuiteClasses({EmgTests.class, EmgRandomGeneratorTest.class, EmgOperationContributionTest.class})
+@SuiteClasses({EmgTests.class, EmgRandomGeneratorTest.class, EmgOperationContributionTest.class,
+	EmgBatchExecutorTest.class, EmgMetamodelCacheTest.class, EmgExtentIndexTest.class,
+	EmgGenerationStatisticsTest.class, EmgBulkCreationTest.class,
+	EmgSuppressedNotificationsTest.class, EmgInstanceFactoryTest.class, EmgCompiledCreateOperationTest.class,
+	EmgOperationDispatchTest.class, EmgIdGeneratorTest.class,
+	EmgPatternTest.class, EmgUniqueValuesTest.class,
+		EmgNameModelTest.class, EmgAllocationTest.class,
+		EmgZigguratTest.class, EmgQuasiRandomTest.class,
+		EmgCorrelatedVectorsTest.class, EmgProfileTest.class, EmgEmfProfilerTest.class,
+		EmgAmplifierTest.class, EmgAmplificationTest.class,
+		EmgMutatorTest.class, EmgMutationTest.class, EmgShardedGeneratorTest.class,
+		EmgFragmenterTest.class, EmgBinarySerializerTest.class, EmgXmiWriterTest.class,
+		EmgCsvExporterTest.class})
 public class EmgAcceptanceTestSuite {
 	
 	public static Test suite() {
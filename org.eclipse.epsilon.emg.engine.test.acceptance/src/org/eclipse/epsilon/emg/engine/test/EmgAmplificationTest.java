@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgAmplifier;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgAmplificationTest checks that the module amplifies the seed
+ * model before executing the create operations.
+ */
+public class EmgAmplificationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void seedModelsAreAmplified() throws Exception {
+		EmgEmfModel model = load("amplified");
+		EmgModule module = module(model);
+		module.setAmplificationFactor(10);
+		module.getAmplifier().addPerturbation("Element", "name", EmgAmplifier.copySuffix("#"));
+		module.execute();
+		EObject net = model.getResource().getContents().get(0);
+		assertThat(model.getResource().getContents(), hasSize(1));
+		assertThat(list(net, "places"), hasSize(40));
+		assertThat(list(net, "arcs"), hasSize(280));
+		// The created transition is added after the copies
+		List<EObject> transitions = list(net, "transitions");
+		assertThat(transitions, hasSize(81));
+		assertThat(name(transitions.get(80)), is("added"));
+		assertThat(name(transitions.get(79)), endsWith("#9"));
+		assertThat(model.getAllOfType("Place"), hasSize(40));
+		assertThat(module.getStatistics().getElements("PlaceToTransArc"), is(9L * 4));
+	}
+
+	@Test
+	public void modelsAreNotAmplifiedByDefault() throws Exception {
+		EmgEmfModel model = load("seed");
+		module(model).execute();
+		EObject net = model.getResource().getContents().get(0);
+		assertThat(list(net, "places"), hasSize(4));
+		assertThat(list(net, "transitions"), hasSize(9));
+	}
+
+	private EmgEmfModel load(String name) throws Exception {
+		File seed = new File(folder.getRoot(), name + ".xmi");
+		Files.copy(new File(EmgAmplificationTest.class.getResource("test.xmi").toURI()).toPath(), seed.toPath());
+		String metamodel = new File(EmgAmplificationTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(seed.getAbsolutePath());
+		model.setReadOnLoad(true);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private EmgModule module(EmgEmfModel model) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgAmplificationTest.class.getResource("AmplificationTest.emg").toURI()));
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(3);
+		module.setStoreOnCompletion(false);
+		return module;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<EObject> list(EObject element, String feature) {
+		return (List<EObject>) element.eGet(element.eClass().getEStructuralFeature(feature));
+	}
+
+	private static String name(EObject element) {
+		return (String) element.eGet(element.eClass().getEStructuralFeature("name"));
+	}
+
+}
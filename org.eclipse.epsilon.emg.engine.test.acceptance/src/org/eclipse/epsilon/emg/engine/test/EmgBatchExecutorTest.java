@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.EmgBatchExecutor;
+import org.eclipse.epsilon.emg.EmgBatchResult;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.eol.exceptions.models.EolModelLoadingException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgBatchExecutorTest checks that the models generated by a batch
+ * are the same ones generated by single threaded executions.
+ */
+public class EmgBatchExecutorTest {
+
+	private static final long[] SEEDS = {3, 17, 31, 42, 1234};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File script;
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		script = new File(EmgBatchExecutorTest.class.getResource("BatchTest.emg").toURI());
+		metamodel = new File(EmgBatchExecutorTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void batchMatchesSingleThreadedExecution() throws Exception {
+		EmgBatchExecutor executor = new EmgBatchExecutor(script, (seed, index) -> createModel("batch" + index));
+		executor.setThreads(3);
+		List<EmgBatchResult> results = executor.execute(SEEDS);
+		assertThat(results, hasSize(SEEDS.length));
+		for (EmgBatchResult result : results) {
+			assertThat(result.getException(), is(nullValue()));
+			assertThat(result.getSeed(), is(SEEDS[result.getIndex()]));
+			EmgModule module = new EmgModule();
+			module.parse(script);
+			module.getContext().getModelRepository().addModel(createModel("single" + result.getIndex()));
+			module.setUseSeed(true);
+			module.setSeed(result.getSeed());
+			assertThat(module.execute(), is(result.getResult()));
+			assertThat(read("batch" + result.getIndex()), is(read("single" + result.getIndex())));
+		}
+		assertThat(read("batch0"), is(not(read("batch1"))));
+	}
+
+	@Test
+	public void batchWithStoreExecutor() throws Exception {
+		ExecutorService storeExecutor = Executors.newCachedThreadPool();
+		try {
+			EmgBatchExecutor executor = new EmgBatchExecutor(script, (seed, index) -> createModel("store" + index));
+			executor.setStoreExecutor(storeExecutor);
+			executor.setRetainModels(true);
+			List<EmgBatchResult> results = executor.execute(SEEDS);
+			for (EmgBatchResult result : results) {
+				assertThat(result.isSuccessful(), is(true));
+				assertThat(result.getModel(), is(notNullValue()));
+				assertThat(new File(folder.getRoot(), "store" + result.getIndex() + ".xmi").exists(), is(true));
+			}
+		}
+		finally {
+			storeExecutor.shutdown();
+		}
+	}
+
+	private EmfModel createModel(String name) throws EolModelLoadingException {
+		EmfModel model = new EmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private String read(String name) throws Exception {
+		return new String(Files.readAllBytes(new File(folder.getRoot(), name + ".xmi").toPath()), "UTF-8");
+	}
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgBulkCreationTest checks the creation of instances directly in
+ * the collection given by the $container annotation.
+ */
+public class EmgBulkCreationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File script;
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		script = new File(EmgBulkCreationTest.class.getResource("ContainerTest.emg").toURI());
+		metamodel = new File(EmgBulkCreationTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void instancesAreAddedToContainer() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "bulk");
+		EmgModule module = execute(model);
+		assertThat(model.getResource().getContents(), hasSize(1));
+		EObject net = model.getResource().getContents().get(0);
+		List<?> places = (List<?>) net.eGet(feature(net, "places"));
+		List<?> transitions = (List<?>) net.eGet(feature(net, "transitions"));
+		assertThat(places, hasSize(50));
+		assertThat(transitions, hasSize(both(greaterThanOrEqualTo(20)).and(lessThanOrEqualTo(30))));
+		assertThat(module.getNamedCreatedObjects().get("places"), is(equalTo((Object) places)));
+		assertThat(module.getNamedCreatedObjects().get("transitions"), is(equalTo((Object) transitions)));
+		assertThat(model.getAllOfType("Place"), hasSize(50));
+		assertThat(model.allContents(), hasSize(1 + places.size() + transitions.size() + 40));
+		for (Object place : places) {
+			EObject element = (EObject) place;
+			assertThat(element.eGet(feature(element, "name")), is(notNullValue()));
+		}
+	}
+
+	@Test
+	public void genericPathGeneratesTheSameModel() throws Exception {
+		execute(createModel(new EmgEmfModel(), "bulk"));
+		execute(createModel(new EmfModel(), "generic"));
+		assertThat(read("bulk"), is(read("generic")));
+	}
+
+	@Test
+	public void nonContainmentContainersReferenceInstancesOfTheModel() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "reference");
+		EmgModule module = new EmgModule();
+		module.parse("operation Transition create() { self.name = \"t\"; }\n"
+				+ "$instances 3\n"
+				+ "$container Transition.all.first().incoming\n"
+				+ "operation PlaceToTransArc create() { self.weight = self.target.incoming.size(); }");
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.execute();
+		EObject transition = model.getAllOfType("Transition").iterator().next();
+		List<?> incoming = (List<?>) transition.eGet(feature(transition, "incoming"));
+		assertThat(incoming, hasSize(3));
+		assertThat(model.getAllOfType("PlaceToTransArc"), containsInAnyOrder(incoming.toArray()));
+		// The create operations are invoked once the whole batch is in the container
+		for (Object element : incoming) {
+			EObject arc = (EObject) element;
+			assertThat(arc.eResource(), is(sameInstance(model.getResource())));
+			assertThat(arc.eGet(feature(arc, "weight")), is((Object) 3));
+		}
+	}
+
+	private EStructuralFeature feature(EObject element, String name) {
+		return element.eClass().getEStructuralFeature(name);
+	}
+
+	private EmgModule execute(EmfModel model) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(11);
+		module.execute();
+		return module;
+	}
+
+	private <T extends EmfModel> T createModel(T model, String name) throws Exception {
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private String read(String name) throws Exception {
+		return new String(Files.readAllBytes(new File(folder.getRoot(), name + ".xmi").toPath()), "UTF-8");
+	}
+
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emg.EmgCompiledCreateOperation;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.eol.dom.Operation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgCompiledCreateOperationTest checks that compiled create
+ * operations generate the same models as the interpreted ones.
+ */
+public class EmgCompiledCreateOperationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		metamodel = new File(EmgCompiledCreateOperationTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void compiledGenerationMatchesInterpretedGeneration() throws Exception {
+		for (String script : new String[] {"CompiledCreateTest.emg", "ContainerTest.emg", "BatchTest.emg"}) {
+			execute(script, "compiled" + script, true);
+			execute(script, "interpreted" + script, false);
+			assertThat(script, read("compiled" + script), is(read("interpreted" + script)));
+		}
+	}
+
+	@Test
+	public void onlySimpleOperationsAreCompiled() throws Exception {
+		EmgModule module = execute("CompiledCreateTest.emg", "model", true);
+		Map<String, EmgCompiledCreateOperation> compiled = new HashMap<String, EmgCompiledCreateOperation>();
+		for (Operation operation : module.getOperations()) {
+			if (operation.getName().equals("create")) {
+				compiled.put(operation.getContextTypeExpression().getName(),
+						EmgCompiledCreateOperation.compile(operation, module.getContext()));
+			}
+		}
+		assertThat(compiled.get("PetriNet"), is(nullValue()));
+		assertThat(compiled.get("Transition"), is(nullValue()));
+		assertThat(compiled.get("Place").size(), is(1));
+		assertThat(compiled.get("PlaceToTransArc").size(), is(1));
+		assertThat(compiled.get("TransToPlaceArc").size(), is(1));
+	}
+
+	@Test
+	public void userOperationsTakePrecedence() throws Exception {
+		EmgModule module = execute("CompiledCreateTest.emg", "model", true);
+		EmgEmfModel model = (EmgEmfModel) module.getContext().getModelRepository().getModelByName("M");
+		EObject net = model.getResource().getContents().get(0);
+		assertThat((String) net.eGet(net.eClass().getEStructuralFeature("name")), startsWith("U_"));
+	}
+
+	private EmgModule execute(String script, String name, boolean compile) throws Exception {
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgCompiledCreateOperationTest.class.getResource(script).toURI()));
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(17);
+		module.setCompileCreateOperations(compile);
+		module.execute();
+		return module;
+	}
+
+	private String read(String name) throws Exception {
+		return new String(Files.readAllBytes(new File(folder.getRoot(), name + ".xmi").toPath()), "UTF-8");
+	}
+
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.EmgGenerationStatistics;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgGenerationStatisticsTest checks the live counters against the
+ * contents of the generated model.
+ */
+public class EmgGenerationStatisticsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File script;
+
+	private String metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		script = new File(EmgGenerationStatisticsTest.class.getResource("BatchTest.emg").toURI());
+		metamodel = new File(EmgGenerationStatisticsTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+	}
+
+	@Test
+	public void countersMatchGeneratedModel() throws Exception {
+		EmgEmfModel model = createModel(new EmgEmfModel(), "stats");
+		EmgModule module = createModule(model);
+		Object result = module.execute();
+		EmgGenerationStatistics statistics = module.getStatistics();
+		assertThat(result, is(model.allContents().size()));
+		assertCountersMatch(model, statistics);
+		assertThat(statistics.getElements("PetriNet"), is(1L));
+		assertThat(statistics.getElements("Place"), is((long) model.getAllOfType("Place").size()));
+		assertThat(statistics.getElementsByType().keySet(), contains("PetriNet", "Place", "Transition", "PlaceToTransArc"));
+		assertThat(statistics.getMatches(), is((long) model.getAllOfType("PlaceToTransArc").size()));
+		assertThat(statistics.getMatches("placeToTrans"), is(statistics.getMatches()));
+		assertThat(statistics.getLoops(), is(1));
+	}
+
+	@Test
+	public void countersAreMaintainedForOtherModels() throws Exception {
+		EmfModel model = createModel(new EmfModel(), "plain");
+		EmgModule module = createModule(model);
+		Object result = module.execute();
+		EmgGenerationStatistics statistics = module.getStatistics();
+		assertThat(result, is(model.allContents().size()));
+		assertCountersMatch(model, statistics);
+		assertThat(statistics.getElementsByType().keySet(), contains("PetriNet", "Place", "Transition", "PlaceToTransArc"));
+		assertThat(statistics.getMatches(), is((long) model.getAllOfType("PlaceToTransArc").size()));
+	}
+
+	@Test
+	public void deletedElementsAreDiscounted() throws Exception {
+		EmfModel model = createModel(new EmfModel(), "deleted");
+		EmgModule module = new EmgModule();
+		module.parse("operation Place create() { self.name = \"p\"; }\n"
+				+ "post { var t = new Transition; t.name = \"t\"; var q = new Place; q.name = \"q\"; delete q; }");
+		module.getContext().getModelRepository().addModel(model);
+		module.execute();
+		EmgGenerationStatistics statistics = module.getStatistics();
+		assertThat(statistics.getElements("Place"), is(1L));
+		assertThat(statistics.getElements("Transition"), is(1L));
+		assertCountersMatch(model, statistics);
+	}
+
+	@Test
+	public void deletedContentsAreDiscounted() throws Exception {
+		EmfModel model = createModel(new EmfModel(), "contents");
+		EmgModule module = new EmgModule();
+		module.parse("operation Place create() { self.name = \"p\"; }\n"
+				+ "post { var n = new PetriNet; n.name = \"n\"; var q = new Place; n.places.add(q);"
+				+ " var t = new Transition; n.transitions.add(t); delete n; }");
+		module.getContext().getModelRepository().addModel(model);
+		module.execute();
+		EmgGenerationStatistics statistics = module.getStatistics();
+		assertThat(statistics.getElements("PetriNet"), is(0L));
+		assertThat(statistics.getElements("Place"), is(1L));
+		assertThat(statistics.getElements("Transition"), is(0L));
+		assertCountersMatch(model, statistics);
+	}
+
+	/**
+	 * Assert that the element, attribute and reference counters match the
+	 * generated model, counting the non container references at both ends.
+	 */
+	private void assertCountersMatch(EmfModel model, EmgGenerationStatistics statistics) {
+		long elements = 0;
+		long attributes = 0;
+		long references = 0;
+		for (TreeIterator<EObject> it = model.getResource().getAllContents(); it.hasNext();) {
+			EObject element = it.next();
+			elements++;
+			for (EAttribute attribute : element.eClass().getEAllAttributes()) {
+				attributes += count(element, attribute);
+			}
+			for (EReference reference : element.eClass().getEAllReferences()) {
+				if (!reference.isContainer()) {
+					references += count(element, reference);
+				}
+			}
+		}
+		assertThat(statistics.getElements(), is(elements));
+		assertThat(statistics.getAttributes(), is(attributes));
+		assertThat(statistics.getReferences(), is(references));
+	}
+
+	private long count(EObject element, EStructuralFeature feature) {
+		if (!element.eIsSet(feature)) {
+			return 0;
+		}
+		if (feature.isMany()) {
+			return ((Collection<?>) element.eGet(feature)).size();
+		}
+		return 1;
+	}
+
+	private EmgModule createModule(EmfModel model) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(7);
+		return module;
+	}
+
+	private <T extends EmfModel> T createModel(T model, String name) throws Exception {
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgMutationTest checks that the module writes the mutated versions
+ * of the generated model.
+ */
+public class EmgMutationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void snapshotsAreStored() throws Exception {
+		EmgEmfModel model = load("snapshots");
+		File versions = new File(folder.getRoot(), "versions");
+		EmgModule module = module(model);
+		module.setMutation(3, 5, versions, true);
+		module.execute();
+		String previous = null;
+		for (int step = 1; step <= 3; step++) {
+			File version = new File(versions, "v" + step + ".xmi");
+			assertThat(version.exists(), is(true));
+			String contents = new String(Files.readAllBytes(version.toPath()), StandardCharsets.UTF_8);
+			assertThat(contents, is(not(previous)));
+			previous = contents;
+		}
+		assertThat(new File(versions, "changes.log").exists(), is(false));
+	}
+
+	@Test
+	public void changesAreLogged() throws Exception {
+		EmgEmfModel model = load("changes");
+		File versions = new File(folder.getRoot(), "changes");
+		EmgModule module = module(model);
+		module.setMutation(4, 10, versions, false);
+		module.execute();
+		List<String> lines = Files.readAllLines(new File(versions, "changes.log").toPath(), StandardCharsets.UTF_8);
+		assertThat(lines, hasSize(4 * 11));
+		assertThat(lines.get(0), is("# step 1"));
+		assertThat(lines.get(33), is("# step 4"));
+		assertThat(versions.list(), arrayWithSize(1));
+	}
+
+	@Test
+	public void seededMutationsAreReproducible() throws Exception {
+		assertThat(changes("first"), is(changes("second")));
+	}
+
+	private List<String> changes(String name) throws Exception {
+		File versions = new File(folder.getRoot(), name + "-changes");
+		EmgModule module = module(load(name));
+		module.setMutation(5, 20, versions, false);
+		module.execute();
+		return Files.readAllLines(new File(versions, "changes.log").toPath(), StandardCharsets.UTF_8);
+	}
+
+	private EmgEmfModel load(String name) throws Exception {
+		File seed = new File(folder.getRoot(), name + ".xmi");
+		Files.copy(new File(EmgMutationTest.class.getResource("test.xmi").toURI()).toPath(), seed.toPath());
+		String metamodel = new File(EmgMutationTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(seed.getAbsolutePath());
+		model.setReadOnLoad(true);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private EmgModule module(EmgEmfModel model) throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgMutationTest.class.getResource("AmplificationTest.emg").toURI()));
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(3);
+		module.setStoreOnCompletion(false);
+		return module;
+	}
+
+}
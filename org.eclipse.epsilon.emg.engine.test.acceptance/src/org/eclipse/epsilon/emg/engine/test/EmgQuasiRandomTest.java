@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator.QuasiRandomSequence;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgQuasiRandomTest checks that the elements generated in quasi
+ * random mode cover the combinations of their values.
+ */
+public class EmgQuasiRandomTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void sobolPointsCoverTheGrid() throws Exception {
+		EmgRandomGenerator gen = new EmgRandomGenerator(new EolContext(), 3);
+		gen.setQuasiRandomSequence(QuasiRandomSequence.Sobol, 2, 0);
+		Set<String> cells = new HashSet<>();
+		for (int i = 0; i < 64; i++) {
+			gen.nextQuasiRandomPoint();
+			cells.add(gen.nextInt(8) + "_" + (int) (gen.nextReal() * 8));
+		}
+		assertThat(cells, hasSize(64));
+	}
+
+	@Test
+	public void haltonPointsSpreadBetterThanPseudoRandomValues() throws Exception {
+		EmgRandomGenerator quasi = new EmgRandomGenerator(new EolContext(), 3);
+		quasi.setQuasiRandomSequence(QuasiRandomSequence.Halton, 3, 0);
+		EmgRandomGenerator pseudo = new EmgRandomGenerator(new EolContext(), 3);
+		Set<String> quasiCells = new HashSet<>();
+		Set<String> pseudoCells = new HashSet<>();
+		for (int i = 0; i < 72; i++) {
+			quasi.nextQuasiRandomPoint();
+			quasiCells.add(quasi.nextInt(1, 6) + "_" + quasi.nextInt(6) + "_" + quasi.nextBoolean());
+			pseudoCells.add(pseudo.nextInt(1, 6) + "_" + pseudo.nextInt(6) + "_" + pseudo.nextBoolean());
+		}
+		assertThat(quasiCells.size(), is(greaterThan(pseudoCells.size())));
+	}
+
+	@Test
+	public void drawsOutsidePointsArePseudoRandom() throws Exception {
+		EmgRandomGenerator quasi = new EmgRandomGenerator(new EolContext(), 3);
+		quasi.setQuasiRandomSequence(QuasiRandomSequence.Sobol, 1, 0);
+		// Never starts a point
+		EmgRandomGenerator pseudo = new EmgRandomGenerator(new EolContext(), 3);
+		pseudo.setQuasiRandomSequence(QuasiRandomSequence.Sobol, 1, 0);
+		quasi.nextQuasiRandomPoint();
+		quasi.nextGaussian(0, 1);
+		quasi.endQuasiRandomPoint();
+		assertThat(quasi.nextExponential(2), is(pseudo.nextExponential(2)));
+	}
+
+	@Test
+	public void seededGeneratorsAreReproducible() throws Exception {
+		EmgRandomGenerator first = new EmgRandomGenerator(new EolContext(), 42);
+		EmgRandomGenerator second = new EmgRandomGenerator(new EolContext(), 42);
+		first.setQuasiRandomSequence(QuasiRandomSequence.Sobol, 4, 10);
+		second.setQuasiRandomSequence(QuasiRandomSequence.Sobol, 4, 10);
+		for (int i = 0; i < 50; i++) {
+			first.nextQuasiRandomPoint();
+			second.nextQuasiRandomPoint();
+			assertThat(first.nextGaussian(0, 1), is(second.nextGaussian(0, 1)));
+			assertThat(first.nextValue(), is(second.nextValue()));
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void haltonDimensionsAreLimited() throws Exception {
+		new EmgRandomGenerator(new EolContext()).setQuasiRandomSequence(QuasiRandomSequence.Halton, 41, 0);
+	}
+
+	@Test
+	public void createdElementsCoverTheGrid() throws Exception {
+		// The net is point 63, the places 64 to 127 and the transitions 128 to 191
+		EmgEmfModel model = execute("quasi", QuasiRandomSequence.Sobol, 63);
+		assertThat(names(model, "places"), hasSize(64));
+		assertThat(names(model, "transitions"), hasSize(64));
+		EmgEmfModel pseudo = execute("pseudo", null, 0);
+		assertThat(names(pseudo, "places").size(), is(lessThan(64)));
+	}
+
+	private EmgEmfModel execute(String name, QuasiRandomSequence sequence, int start) throws Exception {
+		String metamodel = new File(EmgQuasiRandomTest.class.getResource("PetriNet.ecore").toURI()).getAbsolutePath();
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel);
+		model.setModelFile(new File(folder.getRoot(), name + ".xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		EmgModule module = new EmgModule();
+		module.parse(new File(EmgQuasiRandomTest.class.getResource("QuasiRandomTest.emg").toURI()));
+		assertThat(module.getParseProblems(), is(empty()));
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(17);
+		module.setStoreOnCompletion(false);
+		module.setQuasiRandomSequence(sequence, 2, start);
+		module.execute();
+		return model;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Set<Object> names(EmgEmfModel model, String feature) {
+		EObject net = model.getResource().getContents().get(0);
+		Set<Object> names = new HashSet<>();
+		for (EObject element : (Iterable<EObject>) net.eGet(net.eClass().getEStructuralFeature(feature))) {
+			EStructuralFeature name = element.eClass().getEStructuralFeature("name");
+			names.add(element.eGet(name));
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.engine.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.EmgPartition;
+import org.eclipse.epsilon.emg.EmgShardedGenerator;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgOutputFormat;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgShardedGeneratorTest checks that the partitions of a model do
+ * not depend on the number of shards that generate them, and that references
+ * between partitions are resolved.
+ */
+public class EmgShardedGeneratorTest {
+
+	private static final int PARTITIONS = 4;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File script;
+
+	private File metamodel;
+
+	@Before
+	public void setUp() throws Exception {
+		script = new File(EmgShardedGeneratorTest.class.getResource("ShardTest.emg").toURI());
+		metamodel = new File(EmgShardedGeneratorTest.class.getResource("PetriNet.ecore").toURI());
+	}
+
+	@Test
+	public void partitionsDoNotDependOnTheShards() throws Exception {
+		List<File> single = generate("single", 1);
+		List<File> sharded = generate("sharded", 3);
+		File inProcess = folder.newFolder("in-process");
+		EmgShardedGenerator.generate(script, metamodel, inProcess, "M", "part-%d.xmi", 7, PARTITIONS, 0, PARTITIONS);
+		for (int p = 0; p < PARTITIONS; p++) {
+			String partition = read(single.get(p));
+			assertThat(read(sharded.get(p)), is(partition));
+			assertThat(read(new File(inProcess, "part-" + p + ".xmi")), is(partition));
+		}
+		assertThat(read(single.get(0)), is(not(read(single.get(1)))));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void mergedPartitionsResolveTheReferences() throws Exception {
+		List<File> files = generate("merged", 2);
+		File target = new File(folder.getRoot(), "merged.xmi");
+		EmgShardedGenerator.merge(files, metamodel, target);
+		EmgEmfModel model = load(target);
+		assertThat(model.getAllOfType("PetriNet"), hasSize(PARTITIONS));
+		assertThat(model.getAllOfType("Place"), hasSize(30));
+		assertThat(model.getAllOfType("Transition"), hasSize(20));
+		assertThat(model.getAllOfType("PlaceToTransArc"), hasSize(50));
+		Set<String> ids = new HashSet<>();
+		for (Object place : model.getAllOfType("Place")) {
+			ids.add(((XMLResource) model.getResource()).getID((EObject) place));
+		}
+		for (int i = 0; i < 30; i++) {
+			assertThat(ids, hasItem(EmgPartition.getId("Place", i)));
+		}
+		int crossed = 0;
+		for (Object arc : model.getAllOfType("PlaceToTransArc")) {
+			EObject source = (EObject) get((EObject) arc, "source");
+			EObject transition = (EObject) get((EObject) arc, "target");
+			assertThat(source.eIsProxy(), is(false));
+			assertThat(transition.eIsProxy(), is(false));
+			assertThat(source.eResource(), is(model.getResource()));
+			assertThat((List<Object>) get(source, "outgoing"), hasItem(arc));
+			if (source.eContainer() != ((EObject) arc).eContainer()) {
+				crossed++;
+			}
+		}
+		assertThat(crossed, is(greaterThan(0)));
+	}
+
+	@Test
+	public void partitionsSplitTheInstances() throws Exception {
+		File file = new File(folder.getRoot(), "part-1.xmi");
+		EmgEmfModel model = create(file);
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(model);
+		module.setUseSeed(true);
+		module.setSeed(7);
+		module.setPartition(1, PARTITIONS, "part-%d.xmi");
+		module.execute();
+		// 30 places in ranges of 8, 8, 7 and 7
+		List<?> places = (List<?>) model.getAllOfType("Place");
+		assertThat(places, hasSize(8));
+		XMLResource resource = (XMLResource) model.getResource();
+		assertThat(resource.getID((EObject) places.get(0)), is("Place.8"));
+		assertThat(resource.getID((EObject) places.get(7)), is("Place.15"));
+		assertThat(module.getPartition().getInstances("Place"), is(30L));
+		String contents = read(file);
+		assertThat(contents, containsString("part-0.xmi#Place."));
+	}
+
+	@Test
+	public void ownersMatchTheRanges() throws Exception {
+		for (int partitions = 1; partitions <= 7; partitions++) {
+			for (long total : new long[] {0, 1, 3, 7, 30, 101}) {
+				for (int p = 0; p < partitions; p++) {
+					for (long i = EmgPartition.start(total, p, partitions); i < EmgPartition.start(total, p + 1, partitions); i++) {
+						assertThat(EmgPartition.owner(total, i, partitions), is(p));
+					}
+				}
+				assertThat(EmgPartition.start(total, partitions, partitions), is(total));
+			}
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void partitionsNeedASeed() throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(create(new File(folder.getRoot(), "unseeded.xmi")));
+		module.setPartition(0, 2, "part-%d.xmi");
+		module.execute();
+	}
+
+	@Test
+	public void partitionsAreNotStoredInBinary() throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse(script);
+		module.getContext().getModelRepository().addModel(create(new File(folder.getRoot(), "part-0.xmi")));
+		module.setUseSeed(true);
+		module.setSeed(7);
+		module.setPartition(0, 2, "part-%d.xmi");
+		module.setOutputFormat(EmgOutputFormat.BINARY);
+		try {
+			module.execute();
+			fail("Binary partitions lose their ids");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString("Partitions can only be stored in XMI"));
+		}
+		assertThat(folder.getRoot().list(), is(emptyArray()));
+	}
+
+	private List<File> generate(String name, int shards) throws Exception {
+		EmgShardedGenerator generator = new EmgShardedGenerator(script, metamodel, folder.newFolder(name));
+		generator.setModelName("M");
+		generator.setPartitions(PARTITIONS);
+		generator.setShards(shards);
+		return generator.execute(7);
+	}
+
+	private EmgEmfModel create(File file) throws Exception {
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(metamodel.getAbsolutePath());
+		model.setModelFile(file.getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private EmgEmfModel load(File file) throws Exception {
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("Merged");
+		model.setMetamodelFile(metamodel.getAbsolutePath());
+		model.setModelFile(file.getAbsolutePath());
+		model.setReadOnLoad(true);
+		model.setStoredOnDisposal(false);
+		model.load();
+		return model;
+	}
+
+	private static Object get(EObject element, String feature) {
+		return element.eGet(element.eClass().getEStructuralFeature(feature));
+	}
+
+	private static String read(File file) throws Exception {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.operation.contributors.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.operations.contributors.EmgOperationContributor;
+import org.eclipse.epsilon.eol.dom.Expression;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
+import org.eclipse.epsilon.eol.execute.introspection.java.ObjectMethod;
+import org.eclipse.epsilon.eol.execute.operations.contributors.OperationContributorRegistry;
+import org.eclipse.epsilon.eol.types.EolNoType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgOperationDispatchTest checks that the operations of the
+ * EmgOperationContributor are resolved through the operation contributor
+ * registry as the reflective lookup does.
+ */
+public class EmgOperationDispatchTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmgOperationContributor contributor;
+
+	private IEolContext context;
+
+	private OperationContributorRegistry registry;
+
+	@Before
+	public void setUp() throws Exception {
+		EmgModule module = new EmgModule();
+		contributor = new EmgOperationContributor(module, 17);
+		context = module.getContext();
+		registry = context.getOperationContributorRegistry();
+		registry.add(contributor);
+	}
+
+	@Test
+	public void overloadsAreResolvedByArity() throws Exception {
+		assertThat(find("nextInt").getMethod().getParameterTypes().length, is(0));
+		assertThat(find("nextInt", 5).getMethod().getParameterTypes().length, is(1));
+		assertThat(find("nextInt", 1, 5).getMethod().getParameterTypes().length, is(2));
+		assertThat(find("nextInt", 1, 2, 3), is(nullValue()));
+	}
+
+	@Test
+	public void overloadsAreResolvedByType() throws Exception {
+		assertThat(find("nextSample", Arrays.asList("a", "b"), 1).getMethod().getParameterTypes()[0],
+				is(equalTo((Object) Collection.class)));
+		assertThat(find("nextSample", "villians", 1).getMethod().getParameterTypes()[0],
+				is(equalTo((Object) String.class)));
+		assertThat(find("nextString", "abc", 3).getMethod().getParameterTypes()[0],
+				is(equalTo((Object) String.class)));
+		assertThat(find("nextInt", "5"), is(nullValue()));
+	}
+
+	@Test
+	public void methodsAreExecuted() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			int value = (Integer) find("nextInt", 3, 6).execute(new Object[] {3, 6}, null);
+			assertThat(value, is(both(greaterThanOrEqualTo(3)).and(lessThanOrEqualTo(6))));
+		}
+		float real = (Float) find("nextReal", 2.0f).execute(new Object[] {2.0f}, null);
+		assertThat(real, is(both(greaterThanOrEqualTo(0.0f)).and(lessThanOrEqualTo(2.0f))));
+		String string = (String) find("nextString", "NUMERIC", 8).execute(new Object[] {"NUMERIC", 8}, null);
+		assertThat(string.length(), is(8));
+		assertThat(string.matches("[0-9]*"), is(true));
+		assertThat(find("setSeed", 5).execute(new Object[] {5}, null), is(nullValue()));
+	}
+
+	@Test
+	public void methodsMatchTheSeededGenerator() throws Exception {
+		EmgOperationContributor reference = new EmgOperationContributor(new EmgModule(), 17);
+		for (int i = 0; i < 10; i++) {
+			assertThat(find("nextInt", 1000).execute(new Object[] {1000}, null), is((Object) reference.nextInt(1000)));
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void exceptionsAreReportedAsEolExceptions() throws Exception {
+		find("nextInt", 5, 1).execute(new Object[] {5, 1}, null);
+	}
+
+	@Test
+	public void callsWithAReceiverAreContributed() throws Exception {
+		assertThat(contributor.contributesTo(EolNoType.NoInstance), is(true));
+		assertThat(contributor.contributesTo("a string"), is(true));
+		ObjectMethod method = registry.findContributedMethodForEvaluatedParameters("a string", "nextInt",
+				new Object[] {5}, context);
+		assertThat(method, is(notNullValue()));
+		assertThat((Integer) method.execute(new Object[] {5}, null), is(both(greaterThanOrEqualTo(0)).and(lessThan(5))));
+		assertThat(registry.findContributedMethodForEvaluatedParameters("a string", "isPlaceFull", new Object[0],
+				context), is(nullValue()));
+	}
+
+	@Test
+	public void scriptsCanCallOperationsOnElements() throws Exception {
+		EmgModule module = new EmgModule();
+		module.parse("operation Place create() { self.name = \"P\" + self.nextInt(3); }");
+		assertThat(module.getParseProblems(), is(empty()));
+		EmgEmfModel model = new EmgEmfModel();
+		model.setName("M");
+		model.setMetamodelFile(new File(EmgOperationDispatchTest.class
+				.getResource("/org/eclipse/epsilon/emg/engine/test/PetriNet.ecore").toURI()).getAbsolutePath());
+		model.setModelFile(new File(folder.getRoot(), "receiver.xmi").getAbsolutePath());
+		model.setReadOnLoad(false);
+		model.setStoredOnDisposal(false);
+		model.load();
+		module.getContext().getModelRepository().addModel(model);
+		module.execute();
+		EObject place = model.getAllOfType("Place").iterator().next();
+		assertThat((String) place.eGet(place.eClass().getEStructuralFeature("name")), isOneOf("P0", "P1", "P2"));
+	}
+
+	@Test
+	public void unknownOperationsAreNotContributed() throws Exception {
+		assertThat(find("isPlaceFull"), is(nullValue()));
+		assertThat(find("nextint", 5), is(nullValue()));
+		assertThat(contributor.findContributedMethodForUnevaluatedParameters(EolNoType.NoInstance, "nextInt",
+				Collections.<Expression>emptyList(), context), is(nullValue()));
+	}
+
+	private ObjectMethod find(String name, Object... arguments) {
+		return registry.findContributedMethodForEvaluatedParameters(EolNoType.NoInstance, name, arguments, context);
+	}
+
+}
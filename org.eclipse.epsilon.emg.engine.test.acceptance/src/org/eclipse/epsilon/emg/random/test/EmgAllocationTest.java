@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.eclipse.epsilon.emg.random.EmgAllocation;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+/**
+ * The Class EmgAllocationTest checks that the allocations add to the total
+ * and have the expected distributions.
+ */
+@RunWith(JUnitParamsRunner.class)
+public class EmgAllocationTest {
+
+	private EmgAllocation allocation;
+
+	@Before
+	public void setUp() throws Exception {
+		allocation = new EmgAllocation(new Well19937c(31));
+	}
+
+	@Test
+	@Parameters
+	public void compositionsAddToTheTotal(int n, int m, int min) throws Exception {
+		for (int i = 0; i < 20; i++) {
+			int[] parts = allocation.nextComposition(n, m, min);
+			assertThat(parts.length, is(n));
+			assertThat(Arrays.stream(parts).asLongStream().sum(), is((long) m));
+			assertThat(Arrays.stream(parts).min().getAsInt(), is(greaterThanOrEqualTo(min)));
+		}
+	}
+	@SuppressWarnings("unused")
+	private List<List<Integer>> parametersForCompositionsAddToTheTotal() {
+		return Arrays.asList(
+				Arrays.asList(1, 10, 0),
+				Arrays.asList(10, 0, 0),
+				Arrays.asList(50, 3, 0),
+				Arrays.asList(3, 100, 0),
+				Arrays.asList(100, 1000, 2),
+				Arrays.asList(10, 1000000000, 0),
+				Arrays.asList(1000000, 2000000, 0),
+				Arrays.asList(1000000, 2000000, 1));
+	}
+
+	@Test
+	public void smallCompositionsAreEquallyLikely() throws Exception {
+		// The 15 compositions of 4 in 3 parts
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 30000; i++) {
+			counts.merge(Arrays.toString(allocation.nextComposition(3, 4, 0)), 1, Integer::sum);
+		}
+		assertThat(counts.size(), is(15));
+		for (int count : counts.values()) {
+			assertThat(count, is(both(greaterThan(1800)).and(lessThan(2200))));
+		}
+	}
+
+	@Test
+	public void largeCompositionsAreEquallyLikely() throws Exception {
+		// For compositions of 100 in 3 parts, P(first < 50) = 3825/5151
+		int below = 0;
+		long sum = 0;
+		int samples = 100000;
+		for (int i = 0; i < samples; i++) {
+			int[] parts = allocation.nextComposition(3, 100, 0);
+			if (parts[0] < 50) {
+				below++;
+			}
+			sum += parts[2];
+		}
+		assertThat((double) below / samples, is(closeTo(3825.0 / 5151, 0.01)));
+		assertThat((double) sum / samples, is(closeTo(100.0 / 3, 0.5)));
+	}
+
+	@Test
+	public void multinomialsFollowTheWeights() throws Exception {
+		double[] weights = {1, 0, 3, 6};
+		int[] parts = allocation.nextMultinomial(1000000, weights);
+		assertThat(Arrays.stream(parts).sum(), is(1000000));
+		assertThat(parts[1], is(0));
+		assertThat(parts[0] / 1000000.0, is(closeTo(0.1, 0.005)));
+		assertThat(parts[2] / 1000000.0, is(closeTo(0.3, 0.005)));
+		assertThat(parts[3] / 1000000.0, is(closeTo(0.6, 0.005)));
+	}
+
+	@Test
+	public void dirichletProportionsAddToOne() throws Exception {
+		double[] alpha = {0.5, 1, 2, 8};
+		double[] means = new double[alpha.length];
+		for (int i = 0; i < 20000; i++) {
+			double[] proportions = allocation.nextDirichlet(alpha);
+			assertThat(Arrays.stream(proportions).sum(), is(closeTo(1, 1e-9)));
+			for (int j = 0; j < alpha.length; j++) {
+				means[j] += proportions[j] / 20000;
+			}
+		}
+		for (int j = 0; j < alpha.length; j++) {
+			assertThat(means[j], is(closeTo(alpha[j] / 11.5, 0.01)));
+		}
+	}
+
+	@Test
+	public void dirichletSplitsAddToTheTotal() throws Exception {
+		double[] alpha = new double[1000];
+		Arrays.fill(alpha, 0.3);
+		int[] parts = allocation.nextDirichletSplit(12345, alpha);
+		assertThat(Arrays.stream(parts).sum(), is(12345));
+		assertThat(Arrays.stream(parts).min().getAsInt(), is(greaterThanOrEqualTo(0)));
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void compositionsNeedEnoughTotal() throws Exception {
+		allocation.nextComposition(10, 19, 2);
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void weightsMustNotBeNegative() throws Exception {
+		allocation.nextMultinomial(10, new double[] {1, -1});
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void alphasMustBePositive() throws Exception {
+		allocation.nextDirichlet(new double[] {1, 0});
+	}
+
+}
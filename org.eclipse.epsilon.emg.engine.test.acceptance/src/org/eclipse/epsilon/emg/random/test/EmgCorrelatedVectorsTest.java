@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.stat.correlation.Covariance;
+import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.operations.contributors.EmgOperationContributor;
+import org.eclipse.epsilon.emg.random.EmgCorrelatedVectors;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The Class EmgCorrelatedVectorsTest checks that the correlated vectors have
+ * the given mean and covariance.
+ */
+public class EmgCorrelatedVectorsTest {
+
+	private static final int SAMPLES = 100000;
+
+	private static final double[] MEAN = {10, -5, 100};
+
+	private static final double[][] COVARIANCE = {
+			{4, 3, -2},
+			{3, 9, 0},
+			{-2, 0, 25}};
+
+	private EmgRandomGenerator gen;
+
+	@Before
+	public void setUp() throws Exception {
+		gen = new EmgRandomGenerator(new EolContext(), 23);
+	}
+
+	@Test
+	public void vectorsHaveTheMeanAndCovariance() throws Exception {
+		double[][] vectors = gen.nextCorrelated(MEAN, COVARIANCE, SAMPLES);
+		assertThat(vectors.length, is(SAMPLES));
+		assertMoments(vectors, MEAN, COVARIANCE);
+	}
+
+	@Test
+	public void singularCovariancesAreSupported() throws Exception {
+		// The third value is the sum of the first two
+		double[][] covariance = {
+				{1, 0.5, 1.5},
+				{0.5, 2, 2.5},
+				{1.5, 2.5, 4}};
+		double[] mean = {0, 1, 1};
+		EmgCorrelatedVectors vectors = gen.getCorrelatedVectors(mean, covariance);
+		double[][] values = new double[SAMPLES][];
+		for (int i = 0; i < SAMPLES; i++) {
+			values[i] = vectors.next();
+			assertThat(values[i][2], is(closeTo(values[i][0] + values[i][1], 1e-9)));
+		}
+		assertMoments(values, mean, covariance);
+	}
+
+	@Test
+	public void vectorsAreCachedByValue() throws Exception {
+		double[][] covariance = {{1, 0}, {0, 1}};
+		EmgCorrelatedVectors first = gen.getCorrelatedVectors(new double[] {1, 2}, covariance);
+		covariance[1][1] = 2;
+		assertThat(gen.getCorrelatedVectors(new double[] {1, 2}, new double[][] {{1, 0}, {0, 1}}),
+				is(sameInstance(first)));
+		assertThat(gen.getCorrelatedVectors(new double[] {1, 2}, covariance), is(not(sameInstance(first))));
+	}
+
+	@Test
+	public void sequencesAreConverted() throws Exception {
+		EmgOperationContributor contributor = new EmgOperationContributor(new EmgModule(), 23);
+		List<Integer> mean = Arrays.asList(10, -5, 100);
+		List<List<Integer>> covariance = Arrays.asList(
+				Arrays.asList(4, 3, -2),
+				Arrays.asList(3, 9, 0),
+				Arrays.asList(-2, 0, 25));
+		EmgCorrelatedVectors vectors = contributor.getCorrelatedVectors(mean, covariance);
+		assertThat(contributor.getCorrelatedVectors(MEAN, COVARIANCE), is(sameInstance(vectors)));
+		assertThat(contributor.nextCorrelated(mean, covariance).length, is(3));
+		assertThat(contributor.nextCorrelated(mean, covariance, 7).length, is(7));
+	}
+
+	@Test
+	public void seededGeneratorsAreReproducible() throws Exception {
+		EmgRandomGenerator other = new EmgRandomGenerator(new EolContext(), 23);
+		for (int i = 0; i < 100; i++) {
+			assertThat(gen.nextCorrelated(MEAN, COVARIANCE), is(other.nextCorrelated(MEAN, COVARIANCE)));
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void covariancesMustBeSymmetric() throws Exception {
+		gen.getCorrelatedVectors(new double[] {0, 0}, new double[][] {{1, 0.5}, {0.2, 1}});
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void covariancesMustBePositiveSemiDefinite() throws Exception {
+		gen.getCorrelatedVectors(new double[] {0, 0}, new double[][] {{1, 2}, {2, 1}});
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void covariancesMustMatchTheMean() throws Exception {
+		gen.getCorrelatedVectors(new double[] {0, 0, 0}, new double[][] {{1, 0}, {0, 1}});
+	}
+
+	private static void assertMoments(double[][] vectors, double[] mean, double[][] covariance) {
+		double[][] sample = new Covariance(vectors).getCovarianceMatrix().getData();
+		for (int i = 0; i < mean.length; i++) {
+			final int column = i;
+			double average = Arrays.stream(vectors).mapToDouble(v -> v[column]).average().getAsDouble();
+			assertThat(average, is(closeTo(mean[i], 0.05 * Math.sqrt(covariance[i][i]))));
+			for (int j = 0; j < mean.length; j++) {
+				assertThat(sample[i][j], is(closeTo(covariance[i][j],
+						0.03 * Math.sqrt(covariance[i][i] * covariance[j][j]))));
+			}
+		}
+	}
+
+}
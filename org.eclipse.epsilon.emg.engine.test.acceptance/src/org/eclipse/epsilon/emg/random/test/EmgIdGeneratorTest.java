@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.eclipse.epsilon.emg.random.EmgIdGenerator;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Test;
+
+/**
+ * The Class EmgIdGeneratorTest checks the format, order and uniqueness of the
+ * identifiers, and that seeded generators produce the same identifiers.
+ */
+public class EmgIdGeneratorTest {
+
+	@Test
+	public void uuidsAreVersion4() throws Exception {
+		EmgIdGenerator ids = new EmgIdGenerator(new Well19937c(3), () -> 0L);
+		for (String id : ids.nextUUIDs(1000)) {
+			assertThat(id.matches("[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"), is(true));
+			UUID uuid = UUID.fromString(id);
+			assertThat(uuid.version(), is(4));
+			assertThat(uuid.variant(), is(2));
+			assertThat(uuid.toString(), is(id));
+		}
+	}
+
+	@Test
+	public void seededGeneratorsAreReproducible() throws Exception {
+		EmgRandomGenerator first = new EmgRandomGenerator(new EolContext(), 42);
+		EmgRandomGenerator second = new EmgRandomGenerator(new EolContext(), 42);
+		assertThat(first.nextUUIDs(10), is(second.nextUUIDs(10)));
+		assertThat(first.nextULIDs(10), is(second.nextULIDs(10)));
+		assertThat(first.nextUniqueBase62s(6, 10), is(second.nextUniqueBase62s(6, 10)));
+		assertThat(first.nextBase62(12), is(second.nextBase62(12)));
+		first.setSeed(7);
+		second.setSeed(7);
+		assertThat(first.nextUniqueInt(100), is(second.nextUniqueInt(100)));
+	}
+
+	@Test
+	public void ulidsAreSorted() throws Exception {
+		long[] time = {1500000000000L};
+		EmgIdGenerator ids = new EmgIdGenerator(new Well19937c(3), () -> time[0]);
+		List<String> generated = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			generated.addAll(ids.nextULIDs(20));
+			time[0] += i % 2;
+		}
+		// A clock that goes back must not break the order
+		time[0] -= 100;
+		generated.addAll(ids.nextULIDs(20));
+		List<String> sorted = new ArrayList<>(generated);
+		sorted.sort(null);
+		assertThat(generated, is(sorted));
+		assertThat(new HashSet<>(generated), hasSize(generated.size()));
+		for (String id : generated) {
+			assertThat(id.matches("[0-9A-HJKMNP-TV-Z]{26}"), is(true));
+		}
+		// The first 10 characters are the timestamp
+		assertThat(generated.get(0).substring(0, 10), is("01BMZFF600"));
+	}
+
+	@Test
+	public void seededUlidsHaveTimestampsOfTheSeed() throws Exception {
+		List<String> first = new EmgRandomGenerator(new EolContext(), 42).nextULIDs(100);
+		List<String> other = new EmgRandomGenerator(new EolContext(), 43).nextULIDs(100);
+		assertThat(time(first.get(0)), is(not(time(other.get(0)))));
+		// 2017 to 2027
+		for (String id : first) {
+			assertThat(time(id), is(both(greaterThanOrEqualTo(1483228800000L)).and(lessThan(1798761600000L))));
+		}
+		// A millisecond per ULID
+		for (int i = 1; i < first.size(); i++) {
+			assertThat(time(first.get(i)), is(time(first.get(i - 1)) + 1));
+		}
+	}
+
+	@Test
+	public void uniqueBase62IdentifiersCoverTheirRange() throws Exception {
+		EmgIdGenerator ids = new EmgIdGenerator(new Well19937c(3), () -> 0L);
+		Set<String> generated = new HashSet<>(ids.nextUniqueBase62s(2, 62 * 62));
+		assertThat(generated, hasSize(62 * 62));
+		for (String id : generated) {
+			assertThat(id.matches("[0-9A-Za-z]{2}"), is(true));
+		}
+		try {
+			ids.nextUniqueBase62(2);
+			throw new AssertionError("The identifiers of length 2 should have been exhausted");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString("3844"));
+		}
+		assertThat(ids.nextUniqueBase62(10).length(), is(10));
+	}
+
+	@Test
+	public void uniqueIntegersArePermutations() throws Exception {
+		EmgIdGenerator ids = new EmgIdGenerator(new Well19937c(5), () -> 0L);
+		for (int n : new int[] {1, 2, 7, 64, 1000}) {
+			Set<Integer> values = new HashSet<>();
+			List<Integer> order = new ArrayList<>();
+			for (int i = 0; i < n; i++) {
+				int value = ids.nextUniqueInt(n);
+				assertThat(value, is(both(greaterThanOrEqualTo(0)).and(lessThan(n))));
+				values.add(value);
+				order.add(value);
+			}
+			assertThat(values, hasSize(n));
+			if (n == 1000) {
+				List<Integer> sorted = new ArrayList<>(order);
+				sorted.sort(null);
+				assertThat(order, is(not(sorted)));
+			}
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void uniqueBase62LengthIsBounded() throws Exception {
+		new EmgIdGenerator(new Well19937c(3), () -> 0L).nextUniqueBase62(EmgIdGenerator.MAX_BASE62_LENGTH + 1);
+	}
+
+	/**
+	 * The timestamp of a ULID, its first 10 base 32 characters.
+	 */
+	private static long time(String ulid) {
+		long time = 0;
+		for (int i = 0; i < 10; i++) {
+			time = time * 32 + "0123456789ABCDEFGHJKMNPQRSTVWXYZ".indexOf(ulid.charAt(i));
+		}
+		return time;
+	}
+
+}
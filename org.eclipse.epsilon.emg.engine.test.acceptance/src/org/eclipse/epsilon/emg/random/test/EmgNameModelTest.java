@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.eclipse.epsilon.emg.random.EmgNameModel;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.eclipse.epsilon.eol.execute.context.Variable;
+import org.eclipse.epsilon.eol.types.EolPrimitiveType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgNameModelTest checks that the names of the n-gram models are
+ * made of the n-grams of the corpus, are novel and are reproducible.
+ */
+public class EmgNameModelTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String pokenamesPath;
+
+	private List<String> pokenames;
+
+	@Before
+	public void setUp() throws Exception {
+		URL pokenamesResource = getClass().getResource("/lists/PokemonNames.txt");
+		pokenamesPath = pokenamesResource.getPath();
+		pokenames = Files.readAllLines(new File(pokenamesPath).toPath(), StandardCharsets.UTF_8);
+	}
+
+	private EmgRandomGenerator createGenerator(long seed, String listID, String list) {
+		EolContext context = new EolContext();
+		context.getFrameStack().put(new Variable(listID, list, EolPrimitiveType.String));
+		return new EmgRandomGenerator(context, seed);
+	}
+
+	@Test
+	public void namesAreNovelAndMadeOfCorpusNGrams() throws Exception {
+		EmgRandomGenerator gen = createGenerator(7, "pokenames", pokenamesPath);
+		int minLength = pokenames.stream().mapToInt(String::length).min().getAsInt();
+		int maxLength = pokenames.stream().mapToInt(String::length).max().getAsInt();
+		for (int i = 0; i < 500; i++) {
+			String name = gen.nextName("pokenames");
+			assertThat(pokenames, not(hasItem(name)));
+			assertThat(name.length(), is(both(greaterThanOrEqualTo(minLength)).and(lessThanOrEqualTo(maxLength))));
+			for (int j = 0; j + 3 <= name.length(); j++) {
+				String trigram = name.substring(j, j + 3);
+				assertThat(name + " has " + trigram, pokenames.stream().anyMatch(p -> p.contains(trigram)), is(true));
+			}
+		}
+	}
+
+	@Test
+	public void lengthsAreBounded() throws Exception {
+		EmgRandomGenerator gen = createGenerator(7, "pokenames", pokenamesPath);
+		for (int i = 0; i < 200; i++) {
+			assertThat(gen.nextName("pokenames", 2, 5, 7).length(), is(both(greaterThanOrEqualTo(5)).and(lessThanOrEqualTo(7))));
+		}
+	}
+
+	@Test
+	public void seededGeneratorsAreReproducible() throws Exception {
+		EmgRandomGenerator first = createGenerator(42, "pokenames", pokenamesPath);
+		EmgRandomGenerator second = createGenerator(42, "pokenames", pokenamesPath);
+		for (int i = 0; i < 50; i++) {
+			assertThat(first.nextName("pokenames"), is(second.nextName("pokenames")));
+		}
+	}
+
+	@Test
+	public void readModelsGenerateTheSameNames() throws Exception {
+		EmgNameModel model = EmgNameModel.train(pokenames, 3);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		model.write(out);
+		EmgNameModel read = EmgNameModel.read(new ByteArrayInputStream(out.toByteArray()));
+		assertThat(read.getOrder(), is(3));
+		Well19937c random = new Well19937c(3);
+		Well19937c readRandom = new Well19937c(3);
+		for (int i = 0; i < 50; i++) {
+			assertThat(read.generate(readRandom), is(model.generate(random)));
+		}
+	}
+
+	@Test
+	public void modelsArePersistedNextToTheList() throws Exception {
+		File list = folder.newFile("names.txt");
+		Files.write(list.toPath(), pokenames, StandardCharsets.UTF_8);
+		EmgRandomGenerator gen = createGenerator(5, "names", list.getPath());
+		gen.setNameModelPersistence(true);
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			names.add(gen.nextName("names"));
+		}
+		File modelFile = new File(list.getPath() + ".ngram3");
+		assertThat(modelFile.isFile(), is(true));
+		// The list is not read again while the model is newer
+		Files.write(list.toPath(), Arrays.asList("Zzz"), StandardCharsets.UTF_8);
+		list.setLastModified(modelFile.lastModified() - 1000);
+		EmgRandomGenerator reader = createGenerator(5, "names", list.getPath());
+		reader.setNameModelPersistence(true);
+		for (int i = 0; i < 20; i++) {
+			assertThat(reader.nextName("names"), is(names.get(i)));
+		}
+	}
+
+	@Test
+	public void modelsThatCantBePersistedAreKeptInMemory() throws Exception {
+		File list = folder.newFile("names.txt");
+		Files.write(list.toPath(), pokenames, StandardCharsets.UTF_8);
+		// A folder in the place of the model file can be neither read nor written
+		File modelFile = folder.newFolder("names.txt.ngram3");
+		EmgRandomGenerator gen = createGenerator(5, "names", list.getPath());
+		gen.setNameModelPersistence(true);
+		EmgRandomGenerator memory = createGenerator(5, "names", list.getPath());
+		for (int i = 0; i < 20; i++) {
+			assertThat(gen.nextName("names"), is(memory.nextName("names")));
+		}
+		assertThat(modelFile.isDirectory(), is(true));
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void theOrderMustBePositive() throws Exception {
+		EmgNameModel.train(pokenames, 0);
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void theCorpusMustHaveWords() throws Exception {
+		EmgNameModel.train(Arrays.asList(" ", ""), 2);
+	}
+
+}
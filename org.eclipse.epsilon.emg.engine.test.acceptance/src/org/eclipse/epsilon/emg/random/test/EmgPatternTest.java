@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.eclipse.epsilon.emg.random.EmgPattern;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+/**
+ * The Class EmgPatternTest checks that the strings generated from a pattern
+ * match the regular expression.
+ */
+@RunWith(JUnitParamsRunner.class)
+public class EmgPatternTest {
+
+	@Test
+	@Parameters
+	public void generatedStringsMatch(String regex) throws Exception {
+		EmgPattern pattern = EmgPattern.compile(regex);
+		Well19937c random = new Well19937c(11);
+		for (int i = 0; i < 500; i++) {
+			String value = pattern.generate(random);
+			assertThat(value + " should match " + regex, value.matches(regex), is(true));
+		}
+	}
+	@SuppressWarnings("unused")
+	private List<String> parametersForGeneratedStringsMatch() {
+		return Arrays.asList(
+				"[A-Z]{3}-\\d{4}",
+				"[a-z]{3,8}(\\.[a-z]{2,5})?@[a-z]{4,10}\\.(com|org|ac\\.uk)",
+				"v?\\d{1,2}\\.\\d{1,2}(\\.\\d{1,3})?(-(alpha|beta|rc)\\d?)?",
+				"^(?:ab|c)+x*y?$",
+				"[^a-zA-Z0-9]{5}",
+				"\\w+\\s\\W\\D\\S.",
+				"[-a-c_]{2,}|[\\d\\]]{3}",
+				"\\x41\\u0042\\t[\\.\\-]",
+				"\\x{43}[\\x{61}-\\x{7A}]{2}",
+				"(a|b|(c|d)e){0}z",
+				"abc{2}d+?e*+");
+	}
+
+	@Test
+	public void alternativesHaveTheSameProbability() throws Exception {
+		EmgPattern pattern = EmgPattern.compile("a|bb|ccc");
+		Well19937c random = new Well19937c(11);
+		int[] counts = new int[3];
+		for (int i = 0; i < 3000; i++) {
+			counts[pattern.generate(random).length() - 1]++;
+		}
+		for (int count : counts) {
+			assertThat(count, is(both(greaterThan(850)).and(lessThan(1150))));
+		}
+	}
+
+	@Test
+	public void repetitionsCoverTheBounds() throws Exception {
+		EmgPattern pattern = EmgPattern.compile("x{2,5}");
+		Well19937c random = new Well19937c(11);
+		Set<Integer> lengths = new HashSet<>();
+		for (int i = 0; i < 200; i++) {
+			lengths.add(pattern.generate(random).length());
+		}
+		assertThat(lengths, containsInAnyOrder(2, 3, 4, 5));
+	}
+
+	@Test
+	public void seededGeneratorsAreReproducible() throws Exception {
+		EmgRandomGenerator first = new EmgRandomGenerator(new EolContext(), 42);
+		EmgRandomGenerator second = new EmgRandomGenerator(new EolContext(), 42);
+		for (int i = 0; i < 20; i++) {
+			assertThat(first.nextFromPattern("[A-Z]{3}-\\d{4}"), is(second.nextFromPattern("[A-Z]{3}-\\d{4}")));
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void invalidPatternsAreReported() throws Exception {
+		EmgPattern.compile("[a-z");
+	}
+
+	@Test
+	@Parameters
+	public void malformedPatternsAreReported(String regex) throws Exception {
+		try {
+			EmgPattern.compile(regex);
+			fail(regex + " should be rejected");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString(" index "));
+		}
+	}
+	@SuppressWarnings("unused")
+	private List<String> parametersForMalformedPatternsAreReported() {
+		return Arrays.asList(
+				"ab\\x4",
+				"\\xZZ",
+				"\\u12",
+				"\\u12G4",
+				"[\\u00",
+				"\\x{}",
+				"\\x{41",
+				"\\x{4G}",
+				"\\x{110000}",
+				"\\x{1F600}",
+				"ab\\",
+				"[a\\",
+				"a{2",
+				"a{x}",
+				"a{3,2}",
+				"[z-a]");
+	}
+
+	@Test
+	public void malformedEscapesReportTheirPosition() throws Exception {
+		try {
+			EmgPattern.compile("ab\\x{1F600}");
+			fail();
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), is("Unsupported supplementary character \\x{1F600} at index 2 of pattern ab\\x{1F600}"));
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void backReferencesAreNotSupported() throws Exception {
+		EmgPattern.compile("(a)\\1");
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void lookaroundsAreNotSupported() throws Exception {
+		EmgPattern.compile("a(?=b)");
+	}
+
+}
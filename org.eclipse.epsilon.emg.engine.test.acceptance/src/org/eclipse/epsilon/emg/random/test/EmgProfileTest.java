@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.eclipse.epsilon.emg.random.EmgProfile;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The Class EmgProfileTest checks that the values drawn from a profile follow
+ * the profiled distributions, also after the profile is saved and read back.
+ */
+public class EmgProfileTest {
+
+	private static final int SAMPLES = 100000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private EmgProfile profile;
+
+	@Before
+	public void setUp() throws Exception {
+		EmgProfile.Builder builder = new EmgProfile.Builder();
+		Well19937c random = new Well19937c(3);
+		String[] colours = {"red", "green", "green", "blue", "blue", "blue"};
+		for (int i = 0; i < 6000; i++) {
+			builder.addInstance("Item");
+			builder.addValue("Item", "colour", colours[i % colours.length]);
+			builder.addValue("Item", "price", 100 * random.nextDouble() * random.nextDouble());
+			builder.addValue("Item", "stock", random.nextInt(1000));
+			builder.addValue("Item", "label", null);
+			builder.addCardinality("Item", "tags", i % 4 == 0 ? 3 : 1);
+		}
+		for (int i = 0; i < 2000; i++) {
+			builder.addInstance("Shop");
+		}
+		profile = builder.build();
+	}
+
+	@Test
+	public void typesFollowTheirInstances() throws Exception {
+		assertThat(profile.getTypes(), contains("Item", "Shop"));
+		assertThat(profile.getInstances("Item"), is(6000));
+		assertThat(profile.getInstances("Order"), is(0));
+		Map<String, Integer> counts = count(random -> profile.nextType(random));
+		assertThat(counts.get("Item") / (double) SAMPLES, is(closeTo(0.75, 0.01)));
+	}
+
+	@Test
+	public void categoriesFollowTheirFrequencies() throws Exception {
+		Map<String, Integer> counts = count(random -> profile.nextValue(random, "Item", "colour"));
+		assertThat(counts.keySet(), containsInAnyOrder("red", "green", "blue"));
+		assertThat(counts.get("red") / (double) SAMPLES, is(closeTo(1.0 / 6, 0.01)));
+		assertThat(counts.get("blue") / (double) SAMPLES, is(closeTo(0.5, 0.01)));
+		Map<String, Integer> tags = count(random -> profile.nextCardinality(random, "Item", "tags"));
+		assertThat(tags.get("3") / (double) SAMPLES, is(closeTo(0.25, 0.01)));
+		assertThat(profile.hasValues("Item", "label"), is(false));
+	}
+
+	@Test
+	public void histogramsFollowTheValues() throws Exception {
+		Well19937c random = new Well19937c(5);
+		DescriptiveStatistics prices = new DescriptiveStatistics();
+		DescriptiveStatistics stocks = new DescriptiveStatistics();
+		for (int i = 0; i < SAMPLES; i++) {
+			prices.addValue((Double) profile.nextValue(random, "Item", "price"));
+			Object stock = profile.nextValue(random, "Item", "stock");
+			assertThat(stock, is(instanceOf(Integer.class)));
+			stocks.addValue((Integer) stock);
+		}
+		// The product of two uniforms has mean 1/4 and median 0.1867
+		assertThat(prices.getMean(), is(closeTo(25, 1)));
+		assertThat(prices.getPercentile(50), is(closeTo(18.67, 1)));
+		assertThat(prices.getMin(), is(greaterThanOrEqualTo(0.0)));
+		assertThat(prices.getMax(), is(lessThanOrEqualTo(100.0)));
+		assertThat(stocks.getMean(), is(closeTo(499.5, 10)));
+	}
+
+	@Test
+	public void profilesAreReadBack() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		profile.write(out);
+		EmgProfile read = EmgProfile.read(new ByteArrayInputStream(out.toByteArray()));
+		assertThat(read.getTypes(), contains("Item", "Shop"));
+		Well19937c first = new Well19937c(7);
+		Well19937c second = new Well19937c(7);
+		for (int i = 0; i < 1000; i++) {
+			assertThat(read.nextValue(first, "Item", "price"), is(profile.nextValue(second, "Item", "price")));
+			assertThat(read.nextValue(first, "Item", "colour"), is(profile.nextValue(second, "Item", "colour")));
+			assertThat(read.nextCardinality(first, "Item", "tags"), is(profile.nextCardinality(second, "Item", "tags")));
+		}
+	}
+
+	@Test
+	public void generatorsDrawFromSavedProfiles() throws Exception {
+		File file = folder.newFile("shop.emgp");
+		profile.save(file);
+		EmgRandomGenerator gen = new EmgRandomGenerator(new EolContext(), 11);
+		assertThat(gen.getProfileInstances(file.getPath(), "Item", 100), is(600000));
+		assertThat(gen.nextProfileValue(file.getPath(), "Item", "colour"), isOneOf("red", "green", "blue"));
+		assertThat(gen.nextProfileCardinality(file.getPath(), "Item", "tags"), isOneOf(1, 3));
+		assertThat(gen.nextProfileType(file.getPath()), isOneOf("Item", "Shop"));
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void unknownFeaturesAreReported() throws Exception {
+		profile.nextValue(new Well19937c(), "Item", "weight");
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void missingProfilesAreReported() throws Exception {
+		new EmgRandomGenerator(new EolContext()).nextProfileType(new File(folder.getRoot(), "none.emgp").getPath());
+	}
+
+	private interface Draw {
+		Object next(Well19937c random) throws EolRuntimeException;
+	}
+
+	private static Map<String, Integer> count(Draw draw) throws EolRuntimeException {
+		Well19937c random = new Well19937c(9);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < SAMPLES; i++) {
+			counts.merge(String.valueOf(draw.next(random)), 1, Integer::sum);
+		}
+		return counts;
+	}
+
+}
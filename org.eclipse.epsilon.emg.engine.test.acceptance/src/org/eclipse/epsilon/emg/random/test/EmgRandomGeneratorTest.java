@@ -339,6 +339,27 @@ public class EmgRandomGeneratorTest {
         		Arrays.asList(true,  true,  true,  true)
         		);
     }
+
+	@Test
+	public void uriPortsAreUniform() throws Exception {
+		gen.setSeed(17);
+		// Ten bins of 1000 ports, the last of 999
+		int[] bins = new int[10];
+		int zeros = 0;
+		int draws = 20000;
+		for (int i = 0; i < draws; i++) {
+			int port = new java.net.URI(gen.nextHttpURI(true, false, false, false)).getPort();
+			assertThat(port, is(both(greaterThanOrEqualTo(0)).and(lessThanOrEqualTo(9998))));
+			bins[port / 1000]++;
+			if (port == 0) {
+				zeros++;
+			}
+		}
+		for (int bin : bins) {
+			assertThat(bin, is(both(greaterThan(1700)).and(lessThan(2300))));
+		}
+		assertThat(zeros, is(lessThan(10)));
+	}
 	
 	
 	
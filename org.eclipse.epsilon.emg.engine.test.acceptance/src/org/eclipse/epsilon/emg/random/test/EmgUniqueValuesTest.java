@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.emg.random.EmgUniqueValues;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The Class EmgUniqueValuesTest checks that the unique generators don't
+ * repeat values in a scope and fail when the scope is close to exhausted.
+ */
+public class EmgUniqueValuesTest {
+
+	private EmgRandomGenerator gen;
+
+	@Before
+	public void setUp() throws Exception {
+		gen = new EmgRandomGenerator(new EolContext(), 23);
+	}
+
+	@Test
+	public void stringsAreUniqueInTheirScope() throws Exception {
+		Set<String> values = new HashSet<>();
+		for (int i = 0; i < 200000; i++) {
+			String value = gen.nextUniqueString("Place.name", 5);
+			assertThat(value.length(), is(5));
+			values.add(value);
+		}
+		assertThat(values, hasSize(200000));
+	}
+
+	@Test
+	public void scopesAreIndependent() throws Exception {
+		Set<Integer> first = new HashSet<>();
+		Set<Integer> second = new HashSet<>();
+		for (int i = 0; i < 9; i++) {
+			first.add(gen.nextUniqueInt("first", 1, 10));
+			second.add(gen.nextUniqueInt("second", 1, 10));
+		}
+		assertThat(first, hasSize(9));
+		assertThat(second, hasSize(9));
+	}
+
+	@Test
+	public void exhaustedSpacesFailFast() throws Exception {
+		Set<String> values = new HashSet<>();
+		for (int i = 0; i < 90; i++) {
+			values.add(gen.nextUniqueString("code", "NUMERIC", 2));
+		}
+		assertThat(values, hasSize(90));
+		try {
+			gen.nextUniqueString("code", "NUMERIC", 2);
+			fail("The scope should be exhausted");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString("'code' are close to exhausted"));
+			assertThat(e.getMessage(), containsString("90 of 100"));
+		}
+	}
+
+	@Test
+	public void unknownSpacesFailAfterRepeatedCollisions() throws Exception {
+		Set<String> values = new HashSet<>();
+		for (int i = 0; i < 8; i++) {
+			values.add(gen.nextUniqueFromPattern("ab", "[ab]{3}"));
+		}
+		assertThat(values, hasSize(8));
+		try {
+			gen.nextUniqueFromPattern("ab", "[ab]{3}");
+			fail("The scope should be exhausted");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString("the last " + EmgUniqueValues.MAX_ATTEMPTS));
+		}
+	}
+
+	@Test
+	public void addedValuesAreNotGenerated() throws Exception {
+		for (int i = 1; i <= 50; i++) {
+			assertThat(gen.addUniqueValue("id", i), is(true));
+		}
+		assertThat(gen.addUniqueValue("id", 50), is(false));
+		for (int i = 0; i < 40; i++) {
+			assertThat(gen.nextUniqueInt("id", 1, 100), is(greaterThan(50)));
+		}
+	}
+
+	@Test
+	public void valuesWithTheSameHashCodeAreDistinct() throws Exception {
+		double first = 1.0;
+		double second = Double.longBitsToDouble(0x3FF0000100000001L);
+		assertThat(Double.hashCode(second), is(Double.hashCode(first)));
+		assertThat(gen.addUniqueValue("weight", first), is(true));
+		assertThat(gen.addUniqueValue("weight", second), is(true));
+		assertThat(gen.addUniqueValue("weight", second), is(false));
+		BigInteger big = new BigInteger("8589934562");
+		assertThat(big.hashCode(), is(BigInteger.ONE.hashCode()));
+		assertThat(gen.addUniqueValue("amount", BigInteger.ONE), is(true));
+		assertThat(gen.addUniqueValue("amount", big), is(true));
+	}
+
+	@Test
+	public void integerScopesCanBeFilled() throws Exception {
+		gen.addUniqueValue("port", 3);
+		Set<Integer> values = new HashSet<>();
+		for (int i = 0; i < 9; i++) {
+			values.add(gen.nextUniqueInt("port", 1, 10));
+		}
+		assertThat(values, containsInAnyOrder(1, 2, 4, 5, 6, 7, 8, 9, 10));
+		try {
+			gen.nextUniqueInt("port", 1, 10);
+			fail("The scope should be exhausted");
+		}
+		catch (EolRuntimeException e) {
+			assertThat(e.getMessage(), containsString("All the 10 unique values have been generated"));
+		}
+	}
+
+	@Test
+	public void camelCaseWordsAreUnique() throws Exception {
+		Set<String> values = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			values.add(gen.nextUniqueCamelCaseWords("Transition.name", "LETTER", 6, 2));
+		}
+		assertThat(values, hasSize(1000));
+	}
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos Rodriguez - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import org.apache.commons.math3.distribution.ExponentialDistribution;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.random.Well19937c;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.emg.random.EmgZiggurat;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator.Distribution;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.EolContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The Class EmgZigguratTest checks the distribution of the Ziggurat normal
+ * and exponential values.
+ */
+public class EmgZigguratTest {
+
+	private static final int SAMPLES = 200000;
+
+	/** The start of the tail of the normal ziggurat. */
+	private static final double NORMAL_TAIL = 3.442619855899;
+
+	private EmgZiggurat ziggurat;
+
+	@Before
+	public void setUp() throws Exception {
+		ziggurat = new EmgZiggurat(new Well19937c(13));
+	}
+
+	@Test
+	public void gaussianValuesAreNormal() throws Exception {
+		double[] values = new double[SAMPLES];
+		int tail = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			values[i] = ziggurat.nextGaussian();
+			if (Math.abs(values[i]) > NORMAL_TAIL) {
+				tail++;
+			}
+		}
+		double p = new KolmogorovSmirnovTest().kolmogorovSmirnovTest(new NormalDistribution(), values);
+		assertThat(p, is(greaterThan(0.001)));
+		DescriptiveStatistics statistics = new DescriptiveStatistics(values);
+		assertThat(statistics.getMean(), is(closeTo(0, 0.01)));
+		assertThat(statistics.getStandardDeviation(), is(closeTo(1, 0.01)));
+		assertThat(statistics.getSkewness(), is(closeTo(0, 0.03)));
+		assertThat(statistics.getKurtosis(), is(closeTo(0, 0.05)));
+		// P(|X| > r) = 0.000576, about 115 values
+		assertThat(tail, is(both(greaterThan(75)).and(lessThan(160))));
+	}
+
+	@Test
+	public void exponentialValuesAreExponential() throws Exception {
+		double[] values = new double[SAMPLES];
+		int tail = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			values[i] = ziggurat.nextExponential();
+			assertThat(values[i], is(greaterThanOrEqualTo(0.0)));
+			if (values[i] > 5) {
+				tail++;
+			}
+		}
+		double p = new KolmogorovSmirnovTest().kolmogorovSmirnovTest(new ExponentialDistribution(1), values);
+		assertThat(p, is(greaterThan(0.001)));
+		DescriptiveStatistics statistics = new DescriptiveStatistics(values);
+		assertThat(statistics.getMean(), is(closeTo(1, 0.01)));
+		assertThat(statistics.getStandardDeviation(), is(closeTo(1, 0.02)));
+		// P(X > 5) = 0.00674, about 1348 values
+		assertThat(tail, is(both(greaterThan(1220)).and(lessThan(1480))));
+	}
+
+	@Test
+	public void parametersScaleTheValues() throws Exception {
+		EmgRandomGenerator gen = new EmgRandomGenerator(new EolContext(), 5);
+		DescriptiveStatistics gaussian = new DescriptiveStatistics();
+		DescriptiveStatistics exponential = new DescriptiveStatistics();
+		for (int i = 0; i < SAMPLES; i++) {
+			gaussian.addValue(gen.nextGaussian(10, 2));
+			exponential.addValue(gen.nextExponential(3));
+		}
+		assertThat(gaussian.getMean(), is(closeTo(10, 0.02)));
+		assertThat(gaussian.getStandardDeviation(), is(closeTo(2, 0.02)));
+		assertThat(exponential.getMean(), is(closeTo(3, 0.03)));
+	}
+
+	@Test
+	public void nextValueUsesTheGivenDistribution() throws Exception {
+		EmgRandomGenerator gen = new EmgRandomGenerator(new EolContext(), 5);
+		DescriptiveStatistics gaussian = new DescriptiveStatistics();
+		for (int i = 0; i < 20000; i++) {
+			gaussian.addValue(gen.nextValue(Distribution.Gaussian, new Number[] {-4, 0.5}));
+		}
+		assertThat(gaussian.getMean(), is(closeTo(-4, 0.02)));
+		assertThat(gaussian.getStandardDeviation(), is(closeTo(0.5, 0.02)));
+	}
+
+	@Test
+	public void seededGeneratorsAreReproducible() throws Exception {
+		EmgRandomGenerator first = new EmgRandomGenerator(new EolContext(), 42);
+		EmgRandomGenerator second = new EmgRandomGenerator(new EolContext(), 42);
+		for (int i = 0; i < 100; i++) {
+			assertThat(first.nextGaussian(0, 1), is(second.nextGaussian(0, 1)));
+			assertThat(first.nextExponential(1), is(second.nextExponential(1)));
+		}
+	}
+
+	@Test(expected = EolRuntimeException.class)
+	public void theStandardDeviationMustBePositive() throws Exception {
+		new EmgRandomGenerator(new EolContext()).nextGaussian(0, 0);
+	}
+
+}
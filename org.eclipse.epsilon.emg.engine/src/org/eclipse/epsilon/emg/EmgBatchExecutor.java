@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.exceptions.models.EolModelLoadingException;
+import org.eclipse.epsilon.eol.execute.context.Variable;
+import org.eclipse.epsilon.eol.models.IModel;
+
+/**
+ * The EmgBatchExecutor runs an EMG script once per seed, running the generations
+ * concurrently on a bounded thread pool. Each run has its own {@link EmgModule},
+ * context and target model so the model generated for a seed is the same one a
+ * single threaded execution with that seed would generate. The list corpora
+ * (files or CSV values used by the nextFromList operations) are read once and
+ * shared by all runs.
+ * <p>
+ * Epsilon modules keep execution state in their AST (e.g. resolved types and
+ * operation caches), so the script is parsed once to validate it and then each
+ * run parses its own copy from the cached source.
+ */
+public class EmgBatchExecutor {
+
+    /**
+     * Creates the target model for each of the runs. The model must be loaded and
+     * should not be stored on disposal, the executor stores it after generation.
+     * Model drivers keep static state (e.g. EMF's file based metamodels) so the
+     * factory is invoked by one thread at a time. Creating the models as
+     * {@link org.eclipse.epsilon.emg.emf.EmgEmfModel}s avoids reading the
+     * metamodel files for each run.
+     */
+    public interface TargetModelFactory {
+
+        /**
+         * Creates the target model.
+         *
+         * @param seed the seed of the run
+         * @param index the position of the seed in the batch
+         * @return the loaded model
+         * @throws EolModelLoadingException if the model can not be loaded
+         */
+        IModel createModel(long seed, int index) throws EolModelLoadingException;
+    }
+
+    /** The source of the EMG script. */
+    private final String source;
+
+    /** The file of the EMG script. */
+    private final File sourceFile;
+
+    /** The target model factory. */
+    private final TargetModelFactory modelFactory;
+
+    /** The parameters to add to the context of each run. */
+    private final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+
+    /** The list values shared by all runs. */
+    private final Map<String, List<Object>> listCorpusCache = new ConcurrentHashMap<String, List<Object>>();
+
+    /** The maximum number of concurrent generations. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /** The executor used to store the models, if null models are stored by the generation thread. */
+    private ExecutorService storeExecutor;
+
+    /** If the generated models should be kept in the results. */
+    private boolean retainModels;
+
+    /**
+     * Instantiates a new batch executor.
+     *
+     * @param sourceFile the EMG script
+     * @param modelFactory the target model factory
+     * @throws EolRuntimeException if the script can not be read or has parse problems
+     */
+    public EmgBatchExecutor(File sourceFile, TargetModelFactory modelFactory) throws EolRuntimeException {
+        this.sourceFile = sourceFile;
+        this.modelFactory = modelFactory;
+        try {
+            source = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new EolRuntimeException("Unable to read the EMG script " + sourceFile + ": " + e.getMessage());
+        }
+        EmgModule module = createModule();
+        if (!module.getParseProblems().isEmpty()) {
+            throw new EolRuntimeException("The EMG script has parse problems: " + module.getParseProblems());
+        }
+    }
+
+    /**
+     * Add a parameter to the context of each run, e.g. the file of a list
+     * used by nextFromList.
+     *
+     * @param name the name
+     * @param value the value
+     */
+    public void addParameter(String name, Object value) {
+        parameters.put(name, value);
+    }
+
+    /**
+     * @param threads the maximum number of concurrent generations
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Use a different executor to store the generated models, so generation
+     * threads are not blocked by I/O. The executor is not shut down by the
+     * batch executor.
+     *
+     * @param storeExecutor the store executor
+     */
+    public void setStoreExecutor(ExecutorService storeExecutor) {
+        this.storeExecutor = storeExecutor;
+    }
+
+    /**
+     * @param retainModels if true, models are not disposed and are available
+     * in the results
+     */
+    public void setRetainModels(boolean retainModels) {
+        this.retainModels = retainModels;
+    }
+
+    /**
+     * Run the EMG script once for each seed.
+     *
+     * @param seeds the seeds
+     * @return the results, in the same order as the seeds
+     * @throws EolRuntimeException if the batch is interrupted
+     */
+    public List<EmgBatchResult> execute(long... seeds) throws EolRuntimeException {
+        List<EmgBatchResult> results = new ArrayList<EmgBatchResult>(seeds.length);
+        if (seeds.length == 0) {
+            return results;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, seeds.length), new BatchThreadFactory());
+        try {
+            Queue<Future<?>> stores = new ConcurrentLinkedQueue<Future<?>>();
+            List<Future<EmgBatchResult>> runs = new ArrayList<Future<EmgBatchResult>>(seeds.length);
+            for (int i = 0; i < seeds.length; i++) {
+                final long seed = seeds[i];
+                final int index = i;
+                runs.add(pool.submit(() -> generate(seed, index, stores)));
+            }
+            for (Future<EmgBatchResult> run : runs) {
+                results.add(run.get());
+            }
+            for (Future<?> store : stores) {
+                store.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EolRuntimeException("The batch execution was interrupted.");
+        } catch (ExecutionException e) {
+            EolRuntimeException.propagate(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Generate the model for the given seed.
+     *
+     * @param seed the seed
+     * @param index the index
+     * @param stores the pending stores, if models are stored by the store executor
+     * @return the batch result
+     */
+    private EmgBatchResult generate(long seed, int index, Queue<Future<?>> stores) {
+        EmgBatchResult result = new EmgBatchResult(seed, index);
+        try {
+            IModel model;
+            synchronized (modelFactory) {
+                model = modelFactory.createModel(seed, index);
+            }
+            result.model = model;
+            EmgModule module = createModule();
+            module.getContext().getModelRepository().addModel(model);
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                module.getContext().getFrameStack().put(
+                        Variable.createReadOnlyVariable(parameter.getKey(), parameter.getValue()));
+            }
+            module.setUseSeed(true);
+            module.setSeed(seed);
+            module.setStoreOnCompletion(false);
+            module.setListCorpusCache(listCorpusCache);
+            long start = System.nanoTime();
+            result.result = module.execute();
+            result.generationTime = System.nanoTime() - start;
+            if (storeExecutor == null) {
+                store(result, model);
+            }
+            else {
+                stores.add(storeExecutor.submit(() -> store(result, model)));
+            }
+        } catch (Exception e) {
+            result.exception = e;
+        }
+        return result;
+    }
+
+    /**
+     * Store the model and dispose it, unless models are retained.
+     *
+     * @param result the result
+     * @param model the model
+     */
+    private void store(EmgBatchResult result, IModel model) {
+        long start = System.nanoTime();
+        model.store();
+        result.storeTime = System.nanoTime() - start;
+        if (!retainModels) {
+            model.dispose();
+            result.model = null;
+        }
+    }
+
+    /**
+     * Creates a new module from the cached source.
+     *
+     * @return the module
+     * @throws EolRuntimeException if the source can not be parsed
+     */
+    private EmgModule createModule() throws EolRuntimeException {
+        EmgModule module = new EmgModule();
+        try {
+            module.parse(source, sourceFile);
+        } catch (Exception e) {
+            EolRuntimeException.propagate(e);
+        }
+        return module;
+    }
+
+    /**
+     * Creates named daemon threads for the batch.
+     */
+    private static class BatchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "emg-batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import org.eclipse.epsilon.eol.models.IModel;
+
+/**
+ * The outcome of one of the runs of an {@link EmgBatchExecutor}.
+ */
+public class EmgBatchResult {
+
+    /** The seed used by the run. */
+    private final long seed;
+
+    /** The position of the seed in the batch. */
+    private final int index;
+
+    /** The value returned by {@link EmgModule#execute()}. */
+    Object result;
+
+    /** The generated model, only kept if the batch retains the models. */
+    IModel model;
+
+    /** The time spent in {@link EmgModule#execute()}, in nanoseconds. */
+    long generationTime;
+
+    /** The time spent storing the model, in nanoseconds. */
+    long storeTime;
+
+    /** The exception that stopped the run, if any. */
+    Exception exception;
+
+    /**
+     * Instantiates a new batch result.
+     *
+     * @param seed the seed
+     * @param index the index
+     */
+    EmgBatchResult(long seed, int index) {
+        this.seed = seed;
+        this.index = index;
+    }
+
+    /**
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return the index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the value returned by the module execution
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the model, or null if the batch does not retain models
+     */
+    public IModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return the generation time in nanoseconds
+     */
+    public long getGenerationTime() {
+        return generationTime;
+    }
+
+    /**
+     * @return the store time in nanoseconds
+     */
+    public long getStoreTime() {
+        return storeTime;
+    }
+
+    /**
+     * @return the exception, or null if the run was successful
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    /**
+     * @return true, if the run was successful
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("seed %d: %s (generation %.2f ms, store %.2f ms)", seed,
+                isSuccessful() ? result : exception.getMessage(),
+                generationTime / 1e6, storeTime / 1e6);
+    }
+}
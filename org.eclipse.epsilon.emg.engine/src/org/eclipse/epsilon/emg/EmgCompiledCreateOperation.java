@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.epsilon.eol.IEolModule;
+import org.eclipse.epsilon.eol.dom.Annotation;
+import org.eclipse.epsilon.eol.dom.AssignmentStatement;
+import org.eclipse.epsilon.eol.dom.BooleanLiteral;
+import org.eclipse.epsilon.eol.dom.Expression;
+import org.eclipse.epsilon.eol.dom.ExpressionInBrackets;
+import org.eclipse.epsilon.eol.dom.IntegerLiteral;
+import org.eclipse.epsilon.eol.dom.NameExpression;
+import org.eclipse.epsilon.eol.dom.NegativeOperatorExpression;
+import org.eclipse.epsilon.eol.dom.Operation;
+import org.eclipse.epsilon.eol.dom.OperationCallExpression;
+import org.eclipse.epsilon.eol.dom.PlusOperatorExpression;
+import org.eclipse.epsilon.eol.dom.PropertyCallExpression;
+import org.eclipse.epsilon.eol.dom.RealLiteral;
+import org.eclipse.epsilon.eol.dom.Statement;
+import org.eclipse.epsilon.eol.dom.StringLiteral;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
+import org.eclipse.epsilon.eol.execute.introspection.IPropertySetter;
+import org.eclipse.epsilon.eol.execute.introspection.java.ObjectMethod;
+import org.eclipse.epsilon.eol.execute.operations.AbstractOperation;
+import org.eclipse.epsilon.eol.types.EolNoType;
+
+/**
+ * A compiled form of a create operation whose body is made only of
+ * assignments to properties of self, e.g.
+ * <pre>
+ * operation Place create() {
+ *     self.name = "P_" + nextString();
+ *     self.tokens = nextInt(1, 10);
+ * }
+ * </pre>
+ * The assigned values can be literals, concatenations (+) and contextless
+ * calls to contributed operations (e.g. the ones of the
+ * EmgOperationContributor) with literal arguments. The operations and
+ * property setters are resolved once, so executing the compiled operation
+ * does not interpret the AST nor push a frame for each instance.
+ * <p>
+ * The compiled operation resolves the calls as the interpreter does: calls
+ * to operations that could also be resolved to a built-in operation, a user
+ * defined operation or an operation contributed for unevaluated parameters
+ * are not compiled. {@link #compile(Operation, IEolContext)} returns null for
+ * the operations that can't be compiled, which must be interpreted.
+ */
+public class EmgCompiledCreateOperation {
+
+    /** Annotations handled by the interpreter when the operation is executed. */
+    private static final String[] INTERPRETED_ANNOTATIONS = {"pre", "post", "cached"};
+
+    /**
+     * A compiled expression.
+     */
+    private interface Value {
+        Object evaluate() throws EolRuntimeException;
+    }
+
+    /** The assignments of the body, in order. */
+    private final List<Assignment> assignments;
+
+    /**
+     * Instantiates a new compiled create operation.
+     *
+     * @param assignments the assignments
+     */
+    private EmgCompiledCreateOperation(List<Assignment> assignments) {
+        this.assignments = assignments;
+    }
+
+    /**
+     * Compile the create operation.
+     *
+     * @param operation the operation
+     * @param context the context in which the operation is executed
+     * @return the compiled operation, or null if the operation can't be
+     * compiled and must be interpreted
+     */
+    public static EmgCompiledCreateOperation compile(Operation operation, IEolContext context) {
+        if (!operation.getFormalParameters().isEmpty() || operation.getBody() == null) {
+            return null;
+        }
+        if (operation.getAnnotationBlock() != null) {
+            for (Annotation annotation : operation.getAnnotationBlock().getAnnotations()) {
+                for (String name : INTERPRETED_ANNOTATIONS) {
+                    if (annotation.getName().equals(name)) {
+                        return null;
+                    }
+                }
+            }
+        }
+        List<Assignment> assignments = new ArrayList<Assignment>();
+        try {
+            for (Statement statement : operation.getBody().getStatements()) {
+                Assignment assignment = compileAssignment(statement, context);
+                if (assignment == null) {
+                    return null;
+                }
+                assignments.add(assignment);
+            }
+        } catch (EolRuntimeException e) {
+            // Let the interpreter report the error
+            return null;
+        }
+        return new EmgCompiledCreateOperation(assignments);
+    }
+
+    /**
+     * Execute the operation on the instance.
+     *
+     * @param self the instance
+     * @throws EolRuntimeException if a value can't be computed or assigned
+     */
+    public void execute(Object self) throws EolRuntimeException {
+        for (int i = 0; i < assignments.size(); i++) {
+            assignments.get(i).execute(self);
+        }
+    }
+
+    /**
+     * @return the number of assignments in the operation
+     */
+    public int size() {
+        return assignments.size();
+    }
+
+    private static Assignment compileAssignment(Statement statement, IEolContext context) throws EolRuntimeException {
+        // Special assignments (:=) are subclasses
+        if (statement.getClass() != AssignmentStatement.class) {
+            return null;
+        }
+        AssignmentStatement assignment = (AssignmentStatement) statement;
+        if (!(assignment.getTargetExpression() instanceof PropertyCallExpression)) {
+            return null;
+        }
+        PropertyCallExpression target = (PropertyCallExpression) assignment.getTargetExpression();
+        if (target.isArrow() || !(target.getTargetExpression() instanceof NameExpression)
+                || !((NameExpression) target.getTargetExpression()).getName().equals("self")) {
+            return null;
+        }
+        Value value = compileValue(assignment.getValueExpression(), context);
+        if (value == null) {
+            return null;
+        }
+        return new Assignment(target.getPropertyNameExpression(), value, context);
+    }
+
+    private static Value compileValue(Expression expression, IEolContext context) throws EolRuntimeException {
+        if (expression instanceof ExpressionInBrackets) {
+            return compileValue(((ExpressionInBrackets) expression).getExpression(), context);
+        }
+        if (isLiteral(expression)) {
+            return new Constant(context.getExecutorFactory().execute(expression, context));
+        }
+        if (expression instanceof PlusOperatorExpression) {
+            PlusOperatorExpression plus = (PlusOperatorExpression) expression;
+            Value first = compileValue(plus.getFirstOperand(), context);
+            Value second = plus.getSecondOperand() == null ? null : compileValue(plus.getSecondOperand(), context);
+            if (first == null || second == null) {
+                return null;
+            }
+            Concatenation concatenation = new Concatenation(plus, first, second, context);
+            if (first instanceof Constant && second instanceof Constant) {
+                return new Constant(concatenation.evaluate());
+            }
+            return concatenation;
+        }
+        if (expression instanceof OperationCallExpression) {
+            return compileCall((OperationCallExpression) expression, context);
+        }
+        return null;
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        if (expression instanceof NegativeOperatorExpression) {
+            Expression operand = ((NegativeOperatorExpression) expression).getFirstOperand();
+            return operand instanceof IntegerLiteral || operand instanceof RealLiteral;
+        }
+        return expression instanceof StringLiteral || expression instanceof IntegerLiteral
+                || expression instanceof RealLiteral || expression instanceof BooleanLiteral;
+    }
+
+    private static Value compileCall(OperationCallExpression call, IEolContext context) throws EolRuntimeException {
+        if (call.getTargetExpression() != null || call.isArrow()) {
+            return null;
+        }
+        String name = call.getOperationName();
+        AbstractOperation builtin = context.getOperationFactory().getOperationFor(name);
+        if (builtin != null && !builtin.isOverridable()) {
+            return null;
+        }
+        if (context.getModule() instanceof IEolModule) {
+            for (Operation operation : ((IEolModule) context.getModule()).getOperations()) {
+                if (operation.getName().equals(name)) {
+                    return null;
+                }
+            }
+        }
+        Object target = EolNoType.NoInstance;
+        if (context.getOperationContributorRegistry()
+                .findContributedMethodForUnevaluatedParameters(target, name, call.getParameterExpressions(), context) != null) {
+            return null;
+        }
+        Object[] arguments = new Object[call.getParameterExpressions().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            Expression parameter = call.getParameterExpressions().get(i);
+            if (!isLiteral(parameter)) {
+                return null;
+            }
+            arguments[i] = context.getExecutorFactory().execute(parameter, context);
+        }
+        ObjectMethod method = context.getOperationContributorRegistry()
+                .findContributedMethodForEvaluatedParameters(target, name, arguments, context);
+        if (method == null) {
+            return null;
+        }
+        return new ContributedCall(call, method, arguments);
+    }
+
+    /**
+     * An assignment to a property of self. The property setter is resolved
+     * for the first instance, all the instances of a create operation have the
+     * same type.
+     */
+    private static class Assignment {
+
+        private final NameExpression property;
+
+        private final Value value;
+
+        private final IEolContext context;
+
+        private IPropertySetter setter;
+
+        Assignment(NameExpression property, Value value, IEolContext context) {
+            this.property = property;
+            this.value = value;
+            this.context = context;
+        }
+
+        void execute(Object self) throws EolRuntimeException {
+            if (setter == null) {
+                setter = context.getIntrospectionManager().getPropertySetterFor(self, property.getName(), context);
+            }
+            setter.setObject(self);
+            setter.setProperty(property.getName());
+            setter.setAst(property);
+            setter.setContext(context);
+            setter.invoke(value.evaluate());
+        }
+    }
+
+    /**
+     * A literal, or a concatenation of literals.
+     */
+    private static class Constant implements Value {
+
+        private final Object value;
+
+        Constant(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate() {
+            return value;
+        }
+    }
+
+    /**
+     * The sum or concatenation of two values, computed by the + operator of
+     * the interpreter.
+     */
+    private static class Concatenation implements Value {
+
+        private final PlusOperatorExpression operator;
+
+        private final Value first;
+
+        private final Value second;
+
+        private final IEolContext context;
+
+        Concatenation(PlusOperatorExpression operator, Value first, Value second, IEolContext context) {
+            this.operator = operator;
+            this.first = first;
+            this.second = second;
+            this.context = context;
+        }
+
+        @Override
+        public Object evaluate() throws EolRuntimeException {
+            return operator.execute(first.evaluate(), second.evaluate(), context);
+        }
+    }
+
+    /**
+     * A call to a contributed operation with literal arguments.
+     */
+    private static class ContributedCall implements Value {
+
+        private final OperationCallExpression call;
+
+        private final ObjectMethod method;
+
+        private final Object[] arguments;
+
+        ContributedCall(OperationCallExpression call, ObjectMethod method, Object[] arguments) {
+            this.call = call;
+            this.method = method;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object evaluate() throws EolRuntimeException {
+            return call.wrap(method.execute(arguments.clone(), call));
+        }
+    }
+
+}
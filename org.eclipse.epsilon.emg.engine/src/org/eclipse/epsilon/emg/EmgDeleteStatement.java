@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import org.eclipse.epsilon.common.util.CollectionUtil;
+import org.eclipse.epsilon.eol.dom.DeleteStatement;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
+import org.eclipse.epsilon.eol.models.IModel;
+import org.eclipse.epsilon.eol.types.EolCollectionType;
+
+/**
+ * A <code>delete</code> statement of an EMG script that tells the module of
+ * the model elements it deletes, so they and their contents are discounted
+ * whatever the type of the generated model. Elements are deleted as by the
+ * EOL statement.
+ */
+class EmgDeleteStatement extends DeleteStatement {
+
+    private final EmgModule module;
+
+    EmgDeleteStatement(EmgModule module) {
+        this.module = module;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.dom.DeleteStatement#execute(org.eclipse.epsilon.eol.execute.context.IEolContext)
+     */
+    @Override
+    public Object execute(IEolContext context) throws EolRuntimeException {
+        Object result = expression == null ? null : context.getExecutorFactory().execute(expression, context);
+        for (Object instance : EolCollectionType.clone(CollectionUtil.asCollection(result))) {
+            IModel owningModel = context.getModelRepository().getOwningModel(instance);
+            if (owningModel != null) {
+                module.deleteInstance(instance, owningModel);
+            }
+        }
+        return null;
+    }
+
+}
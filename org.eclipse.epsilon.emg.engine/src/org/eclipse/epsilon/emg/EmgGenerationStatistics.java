@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The EmgGenerationStatistics keeps live counters of an EMG execution: the
+ * elements created (in total and by type), the attribute and reference values
+ * set, the matches found (in total and by pattern) and the number of matching
+ * loops. Counters are updated as the generation progresses, so reading them
+ * does not require traversing the generated model.
+ * <p>
+ * The counters are maintained by the {@link EmgModule}: elements as they are
+ * created and deleted, in any type of generated model, and attribute and
+ * reference values when the generator is done with the elements that hold
+ * them (see {@link org.eclipse.epsilon.emg.emf.EmgValueCounter}).
+ */
+public class EmgGenerationStatistics {
+
+    /** The number of elements of each type. */
+    private final Map<String, Counter> elementsByType = new LinkedHashMap<String, Counter>();
+
+    /** The number of matches of each pattern. */
+    private final Map<String, Counter> matchesByPattern = new LinkedHashMap<String, Counter>();
+
+    /** The number of elements. */
+    private long elements;
+
+    /** The number of attribute values set. */
+    private long attributes;
+
+    /** The number of reference values set. */
+    private long references;
+
+    /** The number of matches. */
+    private long matches;
+
+    /** The number of times the patterns were matched. */
+    private int loops;
+
+    /**
+     * Count a created element.
+     *
+     * @param type the name of the element type
+     */
+    public void elementCreated(String type) {
+        elements++;
+        counter(elementsByType, type).value++;
+    }
+
+    /**
+     * Discount a deleted element.
+     *
+     * @param type the name of the element type
+     */
+    public void elementDeleted(String type) {
+        elements--;
+        counter(elementsByType, type).value--;
+    }
+
+    /**
+     * Count set attribute values.
+     *
+     * @param values the number of values set
+     */
+    public void attributesSet(int values) {
+        attributes += values;
+    }
+
+    /**
+     * Count set reference values.
+     *
+     * @param values the number of values set
+     */
+    public void referencesSet(int values) {
+        references += values;
+    }
+
+    /**
+     * Count the matches of a pattern.
+     *
+     * @param pattern the name of the pattern
+     * @param values the number of matches
+     */
+    public void matchesFound(String pattern, int values) {
+        matches += values;
+        counter(matchesByPattern, pattern).value += values;
+    }
+
+    /**
+     * Count a matching loop.
+     */
+    public void loopExecuted() {
+        loops++;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public long getElements() {
+        return elements;
+    }
+
+    /**
+     * @param type the name of the type
+     * @return the number of elements of the type (not including subtypes)
+     */
+    public long getElements(String type) {
+        Counter counter = elementsByType.get(type);
+        return counter == null ? 0 : counter.value;
+    }
+
+    /**
+     * @return the number of elements of each type, in order of creation of the
+     * first element of each type
+     */
+    public Map<String, Long> getElementsByType() {
+        return snapshot(elementsByType);
+    }
+
+    /**
+     * @return the number of attribute values set
+     */
+    public long getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @return the number of reference values set
+     */
+    public long getReferences() {
+        return references;
+    }
+
+    /**
+     * @return the number of matches
+     */
+    public long getMatches() {
+        return matches;
+    }
+
+    /**
+     * @param pattern the name of the pattern
+     * @return the number of matches of the pattern
+     */
+    public long getMatches(String pattern) {
+        Counter counter = matchesByPattern.get(pattern);
+        return counter == null ? 0 : counter.value;
+    }
+
+    /**
+     * @return the number of matches of each pattern
+     */
+    public Map<String, Long> getMatchesByPattern() {
+        return snapshot(matchesByPattern);
+    }
+
+    /**
+     * @return the number of times the patterns were matched
+     */
+    public int getLoops() {
+        return loops;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "EmgGenerationStatistics [elements=" + elements + ", attributes=" + attributes
+                + ", references=" + references + ", matches=" + matches + ", loops=" + loops
+                + ", elementsByType=" + getElementsByType() + "]";
+    }
+
+    private Counter counter(Map<String, Counter> counters, String key) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(key, counter);
+        }
+        return counter;
+    }
+
+    private Map<String, Long> snapshot(Map<String, Counter> counters) {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().value);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * A mutable counter, so counting does not box values.
+     */
+    private static class Counter {
+
+        private long value;
+    }
+
+}
@@ -12,21 +12,64 @@
  ******************************************************************************/
 package org.eclipse.epsilon.emg;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.epsilon.common.module.ModuleElement;
+import org.eclipse.epsilon.common.parse.AST;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emg.emf.EmgAmplifier;
+import org.eclipse.epsilon.emg.emf.EmgBinarySerializer;
+import org.eclipse.epsilon.emg.emf.EmgCsvExporter;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgExtentIndex;
+import org.eclipse.epsilon.emg.emf.EmgFragment;
+import org.eclipse.epsilon.emg.emf.EmgFragmenter;
+import org.eclipse.epsilon.emg.emf.EmgInstanceFactory;
+import org.eclipse.epsilon.emg.emf.EmgMutator;
+import org.eclipse.epsilon.emg.emf.EmgOutputFormat;
+import org.eclipse.epsilon.emg.emf.EmgValueCounter;
+import org.eclipse.epsilon.emg.emf.EmgXmiWriter;
 import org.eclipse.epsilon.emg.operations.contributors.EmgOperationContributor;
+import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator.QuasiRandomSequence;
 import org.eclipse.epsilon.eol.dom.Annotation;
 import org.eclipse.epsilon.eol.dom.AnnotationBlock;
+import org.eclipse.epsilon.eol.dom.DeleteStatement;
+import org.eclipse.epsilon.eol.dom.NewInstanceExpression;
 import org.eclipse.epsilon.eol.dom.Operation;
 import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
 import org.eclipse.epsilon.eol.exceptions.models.EolModelElementTypeNotFoundException;
+import org.eclipse.epsilon.eol.models.IModel;
 import org.eclipse.epsilon.eol.types.EolModelElementType;
 import org.eclipse.epsilon.epl.EplModule;
-import org.eclipse.epsilon.epl.execute.PatternMatchModel;
 
 /**
  * The Emg Module is responsible for execution emg scripts. Emg scripts are used to generate models.
@@ -48,6 +91,16 @@ public class EmgModule extends EplModule {
      */
     private static final String PARAMETERS_ANNOTATION = "parameters";
 
+    /**
+     * The containment collection to which the created elements are added
+     */
+    private static final String CONTAINER_ANNOTATION = "container";
+
+    /**
+     * Create all the instances of the operation in every partition
+     */
+    private static final String REPLICATE_ANNOTATION = "replicate";
+
     /**
      * The name of the create operation
      */
@@ -61,6 +114,83 @@ public class EmgModule extends EplModule {
 
     private boolean useSeed;
 
+    /** If the generated model should be stored at the end of the execution. */
+    private boolean storeOnCompletion = true;
+
+    /** If notifications of the generated model are suspended during generation. */
+    private boolean suppressNotifications;
+
+    /** If simple create operations are compiled instead of interpreted. */
+    private boolean compileCreateOperations = true;
+
+    /** The quasi random sequence of the generator, if any. */
+    private QuasiRandomSequence quasiRandomSequence;
+
+    /** The dimensions of the quasi random points. */
+    private int quasiRandomDimensions;
+
+    /** The index of the first quasi random point. */
+    private int quasiRandomStart;
+
+    /** The list values shared with other modules, if any. */
+    private Map<String, List<Object>> listCorpusCache;
+
+    /** The amplification factor of the generated model, one if it is not amplified. */
+    private int amplificationFactor = 1;
+
+    /** The amplifier of the generated model. */
+    private final EmgAmplifier amplifier = new EmgAmplifier();
+
+    /** The number of mutated versions of the generated model, zero if it is not mutated. */
+    private int mutationSteps;
+
+    /** The number of random edits of each mutated version. */
+    private int mutationEdits;
+
+    /** The directory of the mutated versions or their change log. */
+    private File mutationDirectory;
+
+    /** If true, each mutated version is stored, otherwise only their change log. */
+    private boolean mutationSnapshots;
+
+    /** The format of the stored model. */
+    private EmgOutputFormat outputFormat = EmgOutputFormat.XMI;
+
+    /** The fragmenter of the stored model. */
+    private final EmgFragmenter fragmenter = new EmgFragmenter();
+
+    /** If true, the stored model is split in fragments. */
+    private boolean fragmented;
+
+    /** The resources of the last stored model, if it was split in fragments. */
+    private List<EmgFragment> fragments = Collections.emptyList();
+
+    /** The directory of the CSV tables of the created elements, null if they are not exported. */
+    private File csvDirectory;
+
+    /** The exporter of the current execution, if any. */
+    private EmgCsvExporter csvExporter;
+
+    /** The partition of the model generated by this module, null if the whole model is generated. */
+    private EmgPartition partition;
+
+    /** The extent index of the generated model, if any. */
+    private EmgExtentIndex extentIndex;
+
+    /** The statistics of the last execution. */
+    private EmgGenerationStatistics statistics;
+
+    /** The counter of the values of the created elements. */
+    private EmgValueCounter valueCounter;
+
+    /** The model whose elements are counted in the statistics. */
+    private IModel countedModel;
+
+    /** If true, the counted model was empty when the execution started. */
+    private boolean countedModelWasEmpty;
+
+    /** The elements created since their values were last counted. */
+    private List<EObject> uncounted = new ArrayList<EObject>();
 
     /** A maps to keep track of objects created by create operations that
      * us the @name annotation. The key of the map is the value of the
@@ -84,6 +214,247 @@ public class EmgModule extends EplModule {
         this.useSeed = useSeed;
     }
 
+    /**
+     * @param storeOnCompletion if false, the generated model is not stored at the
+     * end of the execution and it is the responsibility of the caller to store it
+     */
+    public void setStoreOnCompletion(boolean storeOnCompletion) {
+        this.storeOnCompletion = storeOnCompletion;
+    }
+
+    /**
+     * @param suppressNotifications if true and the generated model is an
+     * {@link EmgEmfModel}, the model does not deliver notifications while the
+     * create operations and the patterns are executed. The model caches are
+     * rebuilt before the post blocks are executed.
+     * @see EmgEmfModel#suspendNotifications()
+     */
+    public void setSuppressNotifications(boolean suppressNotifications) {
+        this.suppressNotifications = suppressNotifications;
+    }
+
+    /**
+     * @param compileCreateOperations if true (the default), create operations
+     * made only of simple assignments are compiled instead of interpreted
+     * @see EmgCompiledCreateOperation
+     */
+    public void setCompileCreateOperations(boolean compileCreateOperations) {
+        this.compileCreateOperations = compileCreateOperations;
+    }
+
+    /**
+     * Generate the numeric values of the create operations in quasi random
+     * mode: each created element is a point of the sequence.
+     *
+     * @param sequence the low discrepancy sequence
+     * @param dimensions the number of draws of each element that are quasi random
+     * @param start the index of the first point, e.g. the number of points
+     * used by the previous models of a suite
+     * @see IEmgRandomGenerator#setQuasiRandomSequence(QuasiRandomSequence, int, int)
+     */
+    public void setQuasiRandomSequence(QuasiRandomSequence sequence, int dimensions, int start) {
+        this.quasiRandomSequence = sequence;
+        this.quasiRandomDimensions = dimensions;
+        this.quasiRandomStart = start;
+    }
+
+    /**
+     * @param listCorpusCache the list values to share with other modules
+     * @see EmgOperationContributor#setListCorpusCache(Map)
+     */
+    public void setListCorpusCache(Map<String, List<Object>> listCorpusCache) {
+        this.listCorpusCache = listCorpusCache;
+    }
+
+    /**
+     * Amplify the generated model before the create operations are executed:
+     * the subgraph contained in each of its roots is replicated so the model
+     * has <code>factor</code> times its elements, without executing any
+     * script. The perturbations of the copied attributes and the cross links
+     * between copies are configured in the {@link #getAmplifier() amplifier}.
+     * The generated model must be an EMF model read on load.
+     *
+     * @param factor the amplification factor, one (the default) to not
+     * amplify the model
+     * @see EmgAmplifier
+     */
+    public void setAmplificationFactor(int factor) {
+        this.amplificationFactor = factor;
+    }
+
+    /**
+     * @return the amplifier of the generated model
+     */
+    public EmgAmplifier getAmplifier() {
+        return amplifier;
+    }
+
+    /**
+     * Derive a sequence of versions from the generated model after it is
+     * stored: each version applies <code>edits</code> random edits to the
+     * previous one (see {@link EmgMutator}). The versions are stored in the
+     * directory as v1, v2, ... with the extension of the model, or, if
+     * snapshots are not wanted, only their edits are written to the
+     * <code>changes.log</code> file of the directory, each version starting
+     * with a <code># step &lt;n&gt;</code> line. The generated model must be
+     * an EMF model, and it is left as the last version. A model stored in
+     * fragments can not be mutated, because the fragments leave the contents
+     * of its resource.
+     *
+     * @param steps the number of versions, zero (the default) to not mutate
+     * the model
+     * @param edits the number of edits of each version
+     * @param directory the directory of the versions or the change log
+     * @param snapshots if true, store each version, otherwise only the
+     * change log
+     */
+    public void setMutation(int steps, int edits, File directory, boolean snapshots) {
+        this.mutationSteps = steps;
+        this.mutationEdits = edits;
+        this.mutationDirectory = directory;
+        this.mutationSnapshots = snapshots;
+    }
+
+    /**
+     * Store the generated model in a binary format instead of the format of
+     * its resource, next to it with the extension of the format (see
+     * {@link EmgBinarySerializer}, which also loads it back), or as XMI
+     * written in a single walk of the model (see {@link EmgXmiWriter}). The
+     * generated model must be an EMF model. Partitions can not be stored in
+     * a binary format, which drops the ids the other partitions refer to.
+     *
+     * @param outputFormat the format of the stored model, XMI by default
+     */
+    public void setOutputFormat(EmgOutputFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * Store the generated model in several resources, the subtrees of its
+     * roots grouped in fragments of about the given number of elements, which
+     * are saved in parallel (see {@link EmgFragmenter}). The generated model
+     * must be an EMF model, and can not be mutated afterwards.
+     *
+     * @param fragmentSize the number of elements of each fragment, zero (the
+     * default) to store the model in a single resource
+     */
+    public void setFragmentSize(int fragmentSize) {
+        fragmented = fragmentSize > 0;
+        if (fragmented) {
+            fragmenter.setFragmentSize(fragmentSize);
+        }
+    }
+
+    /**
+     * @param threads the number of threads that save the fragments, by default
+     * the number of processors
+     */
+    public void setSaveThreads(int threads) {
+        fragmenter.setThreads(threads);
+    }
+
+    /**
+     * @return the resources of the model stored by the last execution, with
+     * their size and save time, the main resource first, or an empty list if
+     * the model was not split in fragments
+     */
+    public List<EmgFragment> getFragments() {
+        return fragments;
+    }
+
+    /**
+     * Export the elements created by the script to CSV tables, one per EClass
+     * with the references as ids of the target rows, as they are generated
+     * (see {@link EmgCsvExporter}): the row of an element is written after
+     * the create operation or the pre, post, onmatch or nomatch block that
+     * created it is executed. The elements are generated in the model as
+     * usual, so patterns can match them; to not store the model too, see
+     * {@link #setStoreOnCompletion(boolean)}. The generated model must be an
+     * {@link EmgEmfModel}.
+     *
+     * @param directory the directory of the tables, null (the default) to not
+     * export the elements
+     */
+    public void setCsvExport(File directory) {
+        this.csvDirectory = directory;
+    }
+
+    /**
+     * @return the number of elements exported by the current or last
+     * execution, zero if they are not exported
+     */
+    public long getExportedElements() {
+        return csvExporter == null ? 0 : csvExporter.getRows();
+    }
+
+    /**
+     * Generate only one partition of the model. The instances of each create
+     * operation are split between the partitions and the partition is
+     * generated with a seed derived from the seed of the module, so the
+     * partitions are the same whichever process generates them (see
+     * {@link EmgPartition}). The instance numbers are drawn from the seed of
+     * the module. Patterns are matched and the pre and post blocks are
+     * executed within the partition. Create operations annotated with
+     * <code>@replicate</code>, e.g. the one of the root container, create all
+     * their instances in every partition, without stable ids.
+     * <p>
+     * The generated model must be an EMF model stored in an XML resource: the
+     * elements are stored with their stable ids, and references to elements
+     * of other partitions (see {@link #getPartitionElement(String, long)}) as
+     * proxies to the files of the partitions.
+     *
+     * @param partition the number of the partition, from 0
+     * @param partitions the number of partitions
+     * @param fileName the file name of the partitions, with a %d for the
+     * number of the partition, e.g. <code>part-%d.xmi</code>
+     * @throws EolRuntimeException if the partition is not in the partitions
+     * @see EmgShardedGenerator
+     */
+    public void setPartition(int partition, int partitions, String fileName) throws EolRuntimeException {
+        this.partition = new EmgPartition(partition, partitions, fileName);
+    }
+
+    /**
+     * @return the partition generated by this module, null if the whole model
+     * is generated
+     */
+    public EmgPartition getPartition() {
+        return partition;
+    }
+
+    /**
+     * Get an instance of a type of the partitioned model, in the numbering of
+     * its type across partitions. If the instance belongs to another
+     * partition, or has not been created yet, a proxy to it is returned.
+     *
+     * @param type the name of the type
+     * @param index the number of the instance
+     * @return the instance or its proxy
+     * @throws EolRuntimeException if the model is not partitioned or there is
+     * no such instance
+     */
+    public Object getPartitionElement(String type, long index) throws EolRuntimeException {
+        if (partition == null) {
+            throw new EolRuntimeException("The model is not generated in partitions");
+        }
+        int owner = partition.getOwner(type, index);
+        if (owner < 0) {
+            throw new EolRuntimeException(String.format("There is no %s number %d in the partitions", type, index));
+        }
+        if (owner == partition.getPartition()) {
+            Object instance = partition.getInstance(type, index);
+            if (instance != null) {
+                return instance;
+            }
+        }
+        EmfModel model = getPartitionedModel();
+        EClass eClass = model.classForName(type);
+        InternalEObject proxy = (InternalEObject) EcoreUtil.create(eClass);
+        URI file = URI.createURI(partition.getFileName(owner)).resolve(model.getResource().getURI());
+        proxy.eSetProxyURI(file.appendFragment(EmgPartition.getId(type, index)));
+        return proxy;
+    }
+
     /**
      * @return the namedCreatedObjects
      */
@@ -92,18 +463,214 @@ public class EmgModule extends EplModule {
     }
 
 
+    /**
+     * The extent index keeps the elements created in the generated model by
+     * type, so Type.all does not need to traverse the model. The index is
+     * only available if the generated model is an {@link EmgEmfModel} that is
+     * empty when the execution starts.
+     *
+     * @return the extent index, or null if the extents are computed by the model
+     */
+    public EmgExtentIndex getExtentIndex() {
+        return extentIndex;
+    }
+
+    /**
+     * The statistics of the generation are updated as the execution
+     * progresses. The element counters are maintained for any type of
+     * generated model, the attribute and reference counters if its elements
+     * are EObjects.
+     *
+     * @return the statistics of the current or last execution, null if the
+     * module has not been executed
+     */
+    public EmgGenerationStatistics getStatistics() {
+        return statistics;
+    }
+
     /**
      * Initialise the contributors
      */
-    private void preload() {
+    private void preload() throws EolRuntimeException {
         context.setModule(this);
-        if (useSeed) {
+        if (partition != null) {
+            if (!useSeed) {
+                throw new EolRuntimeException("The partitions of a model must be generated with a seed");
+            }
+            randomGenerator = new EmgOperationContributor(this, EmgPartition.seed(seed, partition.getPartition()));
+        }
+        else if (useSeed) {
             randomGenerator = new EmgOperationContributor(this, seed);
         }
         else {
             randomGenerator = new EmgOperationContributor(this);
         }
+        if (listCorpusCache != null) {
+            randomGenerator.setListCorpusCache(listCorpusCache);
+        }
+        if (quasiRandomSequence != null) {
+            randomGenerator.setQuasiRandomSequence(quasiRandomSequence, quasiRandomDimensions, quasiRandomStart);
+        }
         context.getOperationContributorRegistry().add(randomGenerator);
+        statistics = new EmgGenerationStatistics();
+        valueCounter = new EmgValueCounter(statistics);
+        countedModel = getGeneratedModel();
+        countedModelWasEmpty = countedModel instanceof EmfModel && ((EmfModel) countedModel).getResource() != null
+                && ((EmfModel) countedModel).getResource().getContents().isEmpty();
+        uncounted.clear();
+        attachExtentIndex();
+        attachExporter();
+    }
+
+    /**
+     * Attach an extent index to the generated model, if it is an empty
+     * {@link EmgEmfModel}. Elements in non empty models were
+     * not created by this module and would not be in the index.
+     */
+    private void attachExtentIndex() {
+        extentIndex = null;
+        if (!(getGeneratedModel() instanceof EmgEmfModel)) {
+            return;
+        }
+        EmgEmfModel model = (EmgEmfModel) getGeneratedModel();
+        if (countedModelWasEmpty) {
+            extentIndex = new EmgExtentIndex();
+            model.setExtentIndex(extentIndex);
+        }
+    }
+
+    /**
+     * Attach a new exporter to the generated model, if the created elements
+     * are exported.
+     *
+     * @throws EolRuntimeException if the model is not an {@link EmgEmfModel}
+     */
+    private void attachExporter() throws EolRuntimeException {
+        csvExporter = null;
+        if (csvDirectory == null) {
+            return;
+        }
+        if (!(getGeneratedModel() instanceof EmgEmfModel)) {
+            throw new EolRuntimeException("Only EMG EMF models can be exported");
+        }
+        csvExporter = new EmgCsvExporter(csvDirectory);
+        ((EmgEmfModel) getGeneratedModel()).setExporter(csvExporter);
+    }
+
+    /**
+     * Count an element created in the generated model. Its values are counted
+     * when the generator is done with it, see {@link #finishCreated()}.
+     *
+     * @param instance the created element
+     */
+    void instanceCreated(Object instance) {
+        if (countedModel == null || !countedModel.owns(instance)) {
+            return;
+        }
+        statistics.elementCreated(countedModel.getTypeNameOf(instance));
+        if (instance instanceof EObject) {
+            uncounted.add((EObject) instance);
+        }
+    }
+
+    /**
+     * Delete an element from its model. If the model is the generated one,
+     * the element and the elements it contained are discounted.
+     *
+     * @param instance the element
+     * @param model the model that owns the element
+     * @throws EolRuntimeException if the element can not be deleted
+     */
+    void deleteInstance(Object instance, IModel model) throws EolRuntimeException {
+        if (model != countedModel) {
+            model.deleteElement(instance);
+            return;
+        }
+        // The contents are deleted with the element, so they are collected first
+        List<Object> deleted = new ArrayList<Object>();
+        deleted.add(instance);
+        if (instance instanceof EObject) {
+            for (TreeIterator<EObject> it = ((EObject) instance).eAllContents(); it.hasNext();) {
+                deleted.add(it.next());
+            }
+        }
+        List<String> types = new ArrayList<String>(deleted.size());
+        for (Object element : deleted) {
+            types.add(model.getTypeNameOf(element));
+        }
+        model.deleteElement(instance);
+        for (String type : types) {
+            statistics.elementDeleted(type);
+        }
+        if (!uncounted.isEmpty()) {
+            Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+            removed.addAll(deleted);
+            uncounted.removeAll(removed);
+        }
+    }
+
+    /**
+     * Count the values of the elements created since the values were last
+     * counted and write their rows, if they are exported. Called when the
+     * generator is done with the elements, e.g. after their create operation
+     * or the onmatch block that created them.
+     *
+     * @throws EolRuntimeException if a table can not be written
+     */
+    void finishCreated() throws EolRuntimeException {
+        if (!uncounted.isEmpty()) {
+            valueCounter.countValues(uncounted);
+            // Batches of containers can be large, so their list is released
+            uncounted = new ArrayList<EObject>();
+        }
+        if (csvExporter == null) {
+            return;
+        }
+        try {
+            csvExporter.writeCreated();
+        }
+        catch (IOException e) {
+            throw new EolRuntimeException("The created elements could not be exported: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the pending rows and close the tables of the exporter, and detach
+     * it from the generated model.
+     *
+     * @param failed if true, the execution failed and the failure is reported
+     * instead of the failures of the exporter
+     * @throws EolRuntimeException if a table can not be written
+     */
+    private void closeExporter(boolean failed) throws EolRuntimeException {
+        if (csvExporter == null) {
+            return;
+        }
+        ((EmgEmfModel) getGeneratedModel()).setExporter(null);
+        try {
+            csvExporter.close();
+        }
+        catch (IOException e) {
+            if (!failed) {
+                throw new EolRuntimeException("The created elements could not be exported: " + e.getMessage());
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.epl.EplModule#adapt(org.eclipse.epsilon.common.parse.AST, org.eclipse.epsilon.common.module.ModuleElement)
+     */
+    @Override
+    public ModuleElement adapt(AST cst, ModuleElement parentAst) {
+        ModuleElement element = super.adapt(cst, parentAst);
+        // The new and delete expressions tell the module of the elements they create and delete
+        if (element != null && element.getClass() == NewInstanceExpression.class) {
+            return new EmgNewInstanceExpression(this);
+        }
+        if (element != null && element.getClass() == DeleteStatement.class) {
+            return new EmgDeleteStatement(this);
+        }
+        return element;
     }
 
     /* (non-Javadoc)
@@ -130,22 +697,79 @@ public class EmgModule extends EplModule {
      */
     @Override
     public Object execute() throws EolRuntimeException {
+        if (fragmented && storeOnCompletion && mutationSteps > 0) {
+            throw new EolRuntimeException("A model stored in fragments can not be mutated");
+        }
         preload();
+        boolean generated = false;
+        try {
+            generate();
+            generated = true;
+        }
+        finally {
+            closeExporter(!generated);
+        }
+        assignPartitionIds();
+        IModel model = getGeneratedModel();
+        if (storeOnCompletion && fragmented) {
+            // The fragments leave the contents of the model's resource
+            int elements = countElements(model);
+            store(model);
+            return elements;
+        }
+        if (storeOnCompletion) {
+            store(model);
+        }
+        mutate();
+        return countElements(model);
+    }
+
+    /**
+     * @return the number of created elements, or of all the elements of the
+     * model if it was not empty
+     */
+    private int countElements(IModel model) {
+        // Is the total size more important than the matches?
+        if (countedModelWasEmpty) {
+            return (int) statistics.getElements();
+        }
+        return model.allContents().size();
+    }
+
+    /**
+     * Execute the pre blocks, the create operations, the patterns and the
+     * post blocks, exporting the created elements if needed.
+     *
+     * @throws EolRuntimeException if the execution fails
+     */
+    private void generate() throws EolRuntimeException {
         execute(getPre(), context);
-        executeCreateOperations();
-        prepareContext(context);
-        EmgPatternMatcher patternMatcher = new EmgPatternMatcher(randomGenerator);
-        PatternMatchModel matchModel = null;
+        finishCreated();
+        countInstances();
+        EmgEmfModel silencedModel = null;
+        if (suppressNotifications && getGeneratedModel() instanceof EmgEmfModel) {
+            silencedModel = (EmgEmfModel) getGeneratedModel();
+            silencedModel.suspendNotifications();
+        }
         try {
+            amplify();
+            executeCreateOperations();
+            prepareContext(context);
+            EmgPatternMatcher patternMatcher = new EmgPatternMatcher(randomGenerator);
+            patternMatcher.setStatistics(statistics);
             int loops = 1;
-            matchModel = patternMatcher.match(this);
+            long matches = statistics.getMatches();
+            patternMatcher.match(this);
+            statistics.loopExecuted();
             if (repeatWhileMatchesFound) {
 
-                while (!matchModel.allContents().isEmpty()) {
+                while (statistics.getMatches() > matches) {
                     if (maxLoops != INFINITE) {
                         if (loops == maxLoops) break;
                     }
-                    matchModel = patternMatcher.match(this);
+                    matches = statistics.getMatches();
+                    patternMatcher.match(this);
+                    statistics.loopExecuted();
                     loops++;
                 }
             }
@@ -153,11 +777,217 @@ public class EmgModule extends EplModule {
         catch (Exception ex) {
             EolRuntimeException.propagate(ex);
         }
+        finally {
+            if (silencedModel != null) {
+                silencedModel.resumeNotifications();
+            }
+        }
         execute(getPost(), context);
-        context.getModelRepository().getModels().get(0).store();
-//        return matchModel;
-        // Is the total size more important than the matches?
-        return context.getModelRepository().getModels().get(0).allContents().size();
+        finishCreated();
+    }
+
+    /**
+     * Amplify the generated model by the amplification factor, using the
+     * random generator of the module.
+     *
+     * @throws EolRuntimeException if the model is not an EMF model or a
+     * perturbation fails
+     */
+    private void amplify() throws EolRuntimeException {
+        if (amplificationFactor == 1) {
+            return;
+        }
+        IModel model = getGeneratedModel();
+        if (!(model instanceof EmfModel)) {
+            throw new EolRuntimeException("Only EMF models can be amplified");
+        }
+        EmfModel emfModel = (EmfModel) model;
+        for (EObject root : new ArrayList<EObject>(emfModel.getResource().getContents())) {
+            List<EObject> copies = amplifier.amplify(root, amplificationFactor, randomGenerator);
+            if (emfModel == countedModel) {
+                for (EObject copy : copies) {
+                    statistics.elementCreated(copy.eClass().getName());
+                }
+                valueCounter.countValues(copies);
+            }
+        }
+        emfModel.clearCache();
+    }
+
+    /**
+     * Store the generated model, in fragments if a fragment size is set, or
+     * in the output format.
+     *
+     * @param model the generated model
+     * @throws EolRuntimeException if the model is not an EMF model or a
+     * fragment can not be saved
+     */
+    private void store(IModel model) throws EolRuntimeException {
+        if (!fragmented && outputFormat == EmgOutputFormat.XMI) {
+            model.store();
+            return;
+        }
+        if (!(model instanceof EmfModel)) {
+            throw new EolRuntimeException("Only EMF models can be stored in fragments or other formats");
+        }
+        if (partition != null && (outputFormat == EmgOutputFormat.BINARY
+                || outputFormat == EmgOutputFormat.COMPRESSED_BINARY)) {
+            throw new EolRuntimeException("Partitions can only be stored in XMI, which keeps the ids of their elements");
+        }
+        Resource resource = ((EmfModel) model).getResource();
+        try {
+            if (fragmented) {
+                if (outputFormat != EmgOutputFormat.XMI) {
+                    throw new EolRuntimeException("Fragments can only be stored in the format of their resources");
+                }
+                fragments = fragmenter.save(resource);
+            }
+            else if (outputFormat == EmgOutputFormat.STREAMING_XMI) {
+                new EmgXmiWriter().save(resource);
+            }
+            else {
+                EmgBinarySerializer serializer = new EmgBinarySerializer();
+                serializer.setCompressed(outputFormat == EmgOutputFormat.COMPRESSED_BINARY);
+                serializer.save(resource);
+            }
+        }
+        catch (IOException e) {
+            throw new EolRuntimeException("The model could not be stored: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Derive the mutated versions of the generated model, using the random
+     * generator of the module.
+     *
+     * @throws EolRuntimeException if the model is not an EMF model or the
+     * versions can not be written
+     */
+    private void mutate() throws EolRuntimeException {
+        if (mutationSteps <= 0) {
+            return;
+        }
+        IModel model = getGeneratedModel();
+        if (!(model instanceof EmfModel)) {
+            throw new EolRuntimeException("Only EMF models can be mutated");
+        }
+        EmfModel emfModel = (EmfModel) model;
+        Resource resource = emfModel.getResource();
+        String extension = resource.getURI() == null || resource.getURI().fileExtension() == null
+                ? "xmi" : resource.getURI().fileExtension();
+        mutationDirectory.mkdirs();
+        EmgMutator mutator = new EmgMutator(resource, randomGenerator);
+        mutator.setStatistics(statistics);
+        Writer changeLog = null;
+        try {
+            if (!mutationSnapshots) {
+                changeLog = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(new File(mutationDirectory, "changes.log")), StandardCharsets.UTF_8));
+                mutator.setChangeLog(changeLog);
+            }
+            for (int step = 1; step <= mutationSteps; step++) {
+                if (changeLog != null) {
+                    changeLog.write("# step " + step + "\n");
+                }
+                mutator.mutate(mutationEdits);
+                if (mutationSnapshots) {
+                    try (OutputStream out = new FileOutputStream(
+                            new File(mutationDirectory, "v" + step + "." + extension))) {
+                        mutator.writeSnapshot(out);
+                    }
+                }
+            }
+            if (changeLog != null) {
+                changeLog.close();
+            }
+        }
+        catch (IOException e) {
+            throw new EolRuntimeException("The mutated versions could not be written: " + e.getMessage());
+        }
+        finally {
+            mutator.dispose();
+            emfModel.clearCache();
+            if (changeLog != null) {
+                try {
+                    changeLog.close();
+                }
+                catch (IOException e) {
+                    // The failure of the mutation is reported instead
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the instances of the create operations in all the partitions, so
+     * each partition can create its range. Ranges of instances are drawn with
+     * the seed of the module, which is the same for all the partitions.
+     *
+     * @throws EolRuntimeException if an annotation can not be evaluated
+     */
+    private void countInstances() throws EolRuntimeException {
+        if (partition == null) {
+            return;
+        }
+        getPartitionedModel();
+        partition.clear();
+        EmgRandomGenerator counts = new EmgRandomGenerator(context, seed);
+        for (Operation operation : getOperations()) {
+            if (!operation.getName().equals(CREATE_OPERATION) || operation.hasAnnotation(REPLICATE_ANNOTATION)) {
+                continue;
+            }
+            EolModelElementType instancesType = (EolModelElementType) operation.getContextType(context);
+            if (!instancesType.isInstantiable()) {
+                continue;
+            }
+            long total = 1;
+            List<Object> annotationValues = operation.getAnnotationsValues(NUMBER_OF_INSTANCES_ANNOTATION, context);
+            if (!annotationValues.isEmpty()) {
+                Object val = annotationValues.get(0);
+                if (val instanceof List && ((List<?>) val).size() > 1) {
+                    List<?> valC = (List<?>) val;
+                    total = counts.nextInt(getInt(valC.get(0)), getInt(valC.get(1)));
+                }
+                else {
+                    total = getLong(val instanceof List ? ((List<?>) val).get(0) : val);
+                }
+            }
+            partition.addOperation(operation, instancesType.getTypeName(), Math.max(total, 0));
+        }
+    }
+
+    /**
+     * Store the stable ids of the instances created in the partition. The ids
+     * are assigned after the post blocks because XML resources forget the ids
+     * of elements moved from their contents to a container.
+     */
+    private void assignPartitionIds() throws EolRuntimeException {
+        if (partition == null) {
+            return;
+        }
+        XMLResource resource = (XMLResource) getPartitionedModel().getResource();
+        partition.forEachInstance((instance, id) -> resource.setID((EObject) instance, id));
+    }
+
+    /**
+     * @return the generated model, if it can be partitioned
+     * @throws EolRuntimeException if it is not an EMF model in an XML resource
+     */
+    private EmfModel getPartitionedModel() throws EolRuntimeException {
+        IModel model = getGeneratedModel();
+        if (!(model instanceof EmfModel) || !(((EmfModel) model).getResource() instanceof XMLResource)) {
+            throw new EolRuntimeException("Only EMF models stored in XML resources can be generated in partitions");
+        }
+        return (EmfModel) model;
+    }
+
+    /**
+     * @return the generated model, i.e. the first model of the repository, or
+     * null if there are no models
+     */
+    private IModel getGeneratedModel() {
+        List<IModel> models = context.getModelRepository().getModels();
+        return models.isEmpty() ? null : models.get(0);
     }
 
     /**
@@ -173,6 +1003,7 @@ public class EmgModule extends EplModule {
         String annotationName;
         String instancesListName;
         List<Object> arguments;
+        Object container;
         int numInstances;
         
         for (Operation operation: getOperations()) {
@@ -186,6 +1017,7 @@ public class EmgModule extends EplModule {
                 numInstances = 1;
                 instancesListName = "";             
                 arguments = Collections.emptyList();
+                container = null;
                 
                 annotationBlock = operation.getAnnotationBlock();
                 if (!(annotationBlock==null)){
@@ -199,6 +1031,10 @@ public class EmgModule extends EplModule {
                         
                         switch (annotationName) {
                         case NUMBER_OF_INSTANCES_ANNOTATION:
+                        	if (partition != null && partition.isPartitioned(operation)) {
+                        	    // Counted for all the partitions
+                        	    break;
+                        	}
                         	if (!annotationValues.isEmpty()) {
                                 Object val=annotationValues.get(0);
                                 if (val instanceof List) {
@@ -228,11 +1064,29 @@ public class EmgModule extends EplModule {
                         		arguments = (List<Object>) annotationParameters;
                             }
                         	break;
+                        case CONTAINER_ANNOTATION:
+                        	if (!annotationValues.isEmpty()) {
+                        		container = annotationValues.get(0);
+                        	}
+                        	break;
                         }                    
                     }//end for loop annotations
                 }
+                boolean partitioned = partition != null && partition.isPartitioned(operation);
+                if (partitioned) {
+                    numInstances = partition.getInstances(operation);
+                }
                 // Create the instances
-                createInstances(operation, instancesType, numInstances, instancesListName, arguments);
+                List<?> created;
+                if (container == null) {
+                    created = createInstances(operation, instancesType, numInstances, instancesListName, arguments, partitioned);
+                }
+                else {
+                    created = createInstancesInContainer(operation, instancesType, numInstances, instancesListName, arguments, container);
+                }
+                if (partitioned) {
+                    partition.addInstances(operation, instancesType.getTypeName(), created);
+                }
                 
             }
 
@@ -241,16 +1095,26 @@ public class EmgModule extends EplModule {
     
 
     /**
+     * Create the instances one at a time, invoking the create operation for
+     * each instance after it is created.
+     * <p>
+     * If the model is an {@link EmgEmfModel} the instances are created by
+     * its {@link EmgInstanceFactory} for the type, so the EClass and its
+     * factory are resolved once for the operation and the instances are added
+     * to the resource contents without checking for duplicates. Other models
+     * create each instance through the type.
+     *
      * @param operation				The "create" operation, will be invoked with the new instance as argument
      * @param instancesType			The type of the new instance
      * @param numInstances			Number of instances to create
      * @param instancesListName		Name of the list where instances are collected, if any
      * @param arguments			The list of arguments used to instantiate the object
-     * @return
+     * @param keep				If true, the created instances are returned
+     * @return The created instances, or null if they are not kept
      * @throws EolRuntimeException
      */
-    private void createInstances(Operation operation, EolModelElementType instancesType,
-            int numInstances, String instancesListName, List<Object> arguments) throws EolRuntimeException {
+    private List<Object> createInstances(Operation operation, EolModelElementType instancesType,
+            int numInstances, String instancesListName, List<Object> arguments, boolean keep) throws EolRuntimeException {
     	
     	List<Object> instances = null;
     	if (!instancesListName.isEmpty()) {
@@ -260,13 +1124,136 @@ public class EmgModule extends EplModule {
             	namedCreatedObjects.put(instancesListName, instances);
             }
         }
+        List<Object> created = keep ? new ArrayList<Object>(numInstances) : null;
+        EmgInstanceFactory factory = null;
+        IModel model = instancesType.getModel();
+        if (model instanceof EmgEmfModel && arguments.isEmpty()) {
+            factory = ((EmgEmfModel) model).getInstanceFactory(instancesType.getName());
+            factory.reserve(numInstances);
+        }
+        EmgCompiledCreateOperation compiled = compile(operation, numInstances);
         for (int i=0; i<numInstances; i++) {  
-            Object modelObject = instancesType.createInstance(arguments);
-            operation.execute(modelObject, null, context);
+            Object modelObject = factory == null ? instancesType.createInstance(arguments) : factory.createInstance();
+            instanceCreated(modelObject);
+            randomGenerator.nextQuasiRandomPoint();
+            if (compiled == null) {
+                operation.execute(modelObject, null, context);
+            }
+            else {
+                compiled.execute(modelObject);
+            }
+            finishCreated();
             if (!instancesListName.isEmpty()) {
             	instances.add(modelObject);
             }
+            if (keep) {
+                created.add(modelObject);
+            }
         }
+        randomGenerator.endQuasiRandomPoint();
+        return created;
+    }
+
+    /**
+     * Create the instances and add them to the container in a single
+     * operation, then invoke the create operation for each instance. The
+     * create operations are invoked after all the instances have been added
+     * to the container.
+     * <p>
+     * If the model is an {@link EmgEmfModel} and the container is a
+     * containment reference, the instances are created outside the model
+     * resource and the batch is added with
+     * {@link InternalEList#addAllUnique(java.util.Collection)}, so EMF does not
+     * check the uniqueness of each element nor remove it from the resource
+     * contents. The container list is grown once to fit the batch. Other
+     * containers only reference the instances, so they are created in the
+     * model resource one by one.
+     *
+     * @param operation             The "create" operation, will be invoked with the new instance as argument
+     * @param instancesType         The type of the new instance
+     * @param numInstances          Number of instances to create
+     * @param instancesListName     Name of the list where instances are collected, if any
+     * @param arguments             The list of arguments used to instantiate the object
+     * @param container             The collection to which the instances are added
+     * @return The created instances
+     * @throws EolRuntimeException
+     */
+    @SuppressWarnings("unchecked")
+    private List<? extends Object> createInstancesInContainer(Operation operation, EolModelElementType instancesType,
+            int numInstances, String instancesListName, List<Object> arguments, Object container) throws EolRuntimeException {
+
+        if (!(container instanceof Collection)) {
+            throw new EolRuntimeException(String.format("The $%s annotation of the %s create operation must be a collection.",
+                    CONTAINER_ANNOTATION, instancesType.getName()), operation);
+        }
+        List<? extends Object> batch;
+        IModel model = instancesType.getModel();
+        if (model instanceof EmgEmfModel && arguments.isEmpty() && isContainment(container)) {
+            batch = ((EmgEmfModel) model).createDetachedInstances(instancesType.getName(), numInstances);
+            if (container instanceof BasicEList) {
+                ((BasicEList<Object>) container).grow(((BasicEList<Object>) container).size() + numInstances);
+            }
+            ((InternalEList<Object>) container).addAllUnique(batch);
+        }
+        else {
+            List<Object> instances = new ArrayList<Object>(numInstances);
+            for (int i=0; i<numInstances; i++) {
+                instances.add(instancesType.createInstance(arguments));
+            }
+            ((Collection<Object>) container).addAll(instances);
+            batch = instances;
+        }
+        for (Object modelObject : batch) {
+            instanceCreated(modelObject);
+        }
+        EmgCompiledCreateOperation compiled = compile(operation, numInstances);
+        for (Object modelObject : batch) {
+            randomGenerator.nextQuasiRandomPoint();
+            if (compiled == null) {
+                operation.execute(modelObject, null, context);
+            }
+            else {
+                compiled.execute(modelObject);
+            }
+        }
+        randomGenerator.endQuasiRandomPoint();
+        // The batch was created before the operations were executed
+        finishCreated();
+        if (!instancesListName.isEmpty()) {
+            List<Object> instances = namedCreatedObjects.get(instancesListName);
+            if (instances == null) {
+                instances = new ArrayList<Object>(numInstances);
+                namedCreatedObjects.put(instancesListName, instances);
+            }
+            instances.addAll(batch);
+        }
+        return batch;
+    }
+
+    /**
+     * @param container the container of a create operation
+     * @return true if the container is the list of a containment reference
+     */
+    private boolean isContainment(Object container) {
+        if (!(container instanceof InternalEList) || !(container instanceof EStructuralFeature.Setting)) {
+            return false;
+        }
+        EStructuralFeature feature = ((EStructuralFeature.Setting) container).getEStructuralFeature();
+        return feature instanceof EReference && ((EReference) feature).isContainment();
+    }
+
+    /**
+     * Compile the create operation, if compilation is enabled.
+     *
+     * @param operation the create operation
+     * @param numInstances the number of instances the operation is executed for
+     * @return the compiled operation, or null if the operation must be interpreted
+     */
+    private EmgCompiledCreateOperation compile(Operation operation, int numInstances) {
+        if (!compileCreateOperations || numInstances == 0) {
+            return null;
+        }
+        return EmgCompiledCreateOperation.compile(operation, context);
     }
 
     /**
@@ -282,4 +1269,19 @@ public class EmgModule extends EplModule {
             return Integer.parseInt((String) object);
     }
 
+    /**
+     * Gets the long representation of the object, either by casting or by
+     * parsing it as a String, so partitioned models can have more than
+     * Integer.MAX_VALUE instances of a create operation.
+     *
+     * @param object the object
+     * @return the long
+     */
+    protected long getLong(Object object) {
+        if (object instanceof Number) {
+            return ((Number) object).longValue();
+        }
+        return Long.parseLong((String) object);
+    }
+
 }
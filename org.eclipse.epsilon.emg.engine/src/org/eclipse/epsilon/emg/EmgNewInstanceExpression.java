@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import org.eclipse.epsilon.eol.dom.NewInstanceExpression;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
+
+/**
+ * A <code>new</code> expression of an EMG script that tells the module of the
+ * model elements it creates, so they are counted whatever the type of the
+ * generated model.
+ */
+class EmgNewInstanceExpression extends NewInstanceExpression {
+
+    private final EmgModule module;
+
+    EmgNewInstanceExpression(EmgModule module) {
+        this.module = module;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.dom.NewInstanceExpression#execute(org.eclipse.epsilon.eol.execute.context.IEolContext)
+     */
+    @Override
+    public Object execute(IEolContext context) throws EolRuntimeException {
+        Object instance = super.execute(context);
+        module.instanceCreated(instance);
+        return instance;
+    }
+
+}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.eclipse.epsilon.eol.dom.Operation;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgPartition describes one of the partitions of a model generated in
+ * parts. The instances of each create operation are split in equal ranges,
+ * one per partition, and each partition is generated with its own seed, so
+ * a partition does not depend on which other partitions are generated, by
+ * the same process or by others.
+ * <p>
+ * The instances of each type are numbered across partitions, in the order of
+ * the create operations, and the instance number <i>i</i> of type <i>T</i>
+ * gets the stable id <code>T.i</code>. The partition that owns an instance is
+ * computed from its number, so references to instances of other partitions
+ * can be written as proxies without generating the other partitions.
+ */
+public class EmgPartition {
+
+    /** The number of the partition. */
+    private final int partition;
+
+    /** The number of partitions. */
+    private final int partitions;
+
+    /** The file name of the partitions, with a %d for the number of the partition. */
+    private final String fileName;
+
+    /** The instances of each create operation. */
+    private final Map<Operation, Range> ranges = new IdentityHashMap<>();
+
+    /** The instances of each type, in the order of the create operations. */
+    private final Map<String, List<Range>> typeRanges = new HashMap<>();
+
+    /** The number of instances of each type. */
+    private final Map<String, Long> typeTotals = new HashMap<>();
+
+    /** The instances created in this partition, by type. */
+    private final Map<String, List<Instances>> instances = new HashMap<>();
+
+    /**
+     * Instantiates a new partition.
+     *
+     * @param partition the number of the partition, from 0
+     * @param partitions the number of partitions
+     * @param fileName the file name of the partitions, with a %d for the
+     * number of the partition, e.g. <code>part-%d.xmi</code>
+     * @throws EolRuntimeException if the partition is not in the partitions
+     */
+    public EmgPartition(int partition, int partitions, String fileName) throws EolRuntimeException {
+        if (partitions < 1 || partition < 0 || partition >= partitions) {
+            throw new EolRuntimeException(String.format("Invalid partition %d of %d", partition, partitions));
+        }
+        this.partition = partition;
+        this.partitions = partitions;
+        this.fileName = fileName;
+    }
+
+    /**
+     * @return the number of the partition
+     */
+    public int getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return the number of partitions
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @param partition the number of a partition
+     * @return the file name of the partition
+     */
+    public String getFileName(int partition) {
+        return String.format(fileName, partition);
+    }
+
+    /**
+     * The seed of a partition. Seeds of consecutive partitions are mixed so
+     * their random sequences are not correlated.
+     *
+     * @param seed the seed of the model
+     * @param partition the number of the partition
+     * @return the seed of the partition
+     */
+    public static long seed(long seed, int partition) {
+        // The finaliser of SplitMix64
+        long z = seed + (partition + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The number of the first instance of a partition. The first
+     * <code>total % partitions</code> partitions have one more instance than
+     * the others.
+     *
+     * @param total the number of instances of all the partitions
+     * @param partition the number of the partition, <code>partitions</code>
+     * for the end of the last partition
+     * @param partitions the number of partitions
+     * @return the number of the first instance
+     */
+    public static long start(long total, int partition, int partitions) {
+        return (total / partitions) * partition + Math.min(partition, total % partitions);
+    }
+
+    /**
+     * The partition of an instance, the inverse of
+     * {@link #start(long, int, int)}.
+     *
+     * @param total the number of instances of all the partitions
+     * @param index the number of the instance, less than the total
+     * @param partitions the number of partitions
+     * @return the number of the partition
+     */
+    public static int owner(long total, long index, int partitions) {
+        long size = total / partitions;
+        long larger = (total % partitions) * (size + 1);
+        if (index < larger) {
+            return (int) (index / (size + 1));
+        }
+        return (int) (total % partitions + (index - larger) / size);
+    }
+
+    /**
+     * @param type the name of the type
+     * @param index the number of the instance
+     * @return the stable id of the instance
+     */
+    public static String getId(String type, long index) {
+        return type + "." + index;
+    }
+
+    /**
+     * Forget the create operations and instances of a previous generation.
+     */
+    void clear() {
+        ranges.clear();
+        typeRanges.clear();
+        typeTotals.clear();
+        instances.clear();
+    }
+
+    /**
+     * Add a create operation, in the order they are executed.
+     *
+     * @param operation the create operation
+     * @param type the name of the type of the instances
+     * @param total the number of instances of all the partitions
+     */
+    void addOperation(Operation operation, String type, long total) {
+        long offset = typeTotals.getOrDefault(type, 0L);
+        Range range = new Range(offset, total);
+        ranges.put(operation, range);
+        typeRanges.computeIfAbsent(type, t -> new ArrayList<>()).add(range);
+        typeTotals.put(type, offset + total);
+    }
+
+    /**
+     * @param operation the create operation
+     * @return true, if the instances of the operation are split between the
+     * partitions
+     */
+    boolean isPartitioned(Operation operation) {
+        return ranges.containsKey(operation);
+    }
+
+    /**
+     * @param operation the create operation
+     * @return the number of instances of the operation in this partition
+     * @throws EolRuntimeException if there are more than Integer.MAX_VALUE
+     */
+    int getInstances(Operation operation) throws EolRuntimeException {
+        Range range = ranges.get(operation);
+        long instances = start(range.total, partition + 1, partitions) - start(range.total, partition, partitions);
+        if (instances > Integer.MAX_VALUE) {
+            throw new EolRuntimeException(String.format("The %d instances of the partition are too many, "
+                    + "use more partitions", instances));
+        }
+        return (int) instances;
+    }
+
+    /**
+     * @param operation the create operation
+     * @return the number of the first instance of the operation in this
+     * partition, in the numbering of its type
+     */
+    long getFirstInstance(Operation operation) {
+        Range range = ranges.get(operation);
+        return range.offset + start(range.total, partition, partitions);
+    }
+
+    /**
+     * Add the instances created by an operation in this partition.
+     *
+     * @param operation the create operation
+     * @param type the name of the type of the instances
+     * @param created the instances, in order
+     */
+    void addInstances(Operation operation, String type, List<?> created) {
+        instances.computeIfAbsent(type, t -> new ArrayList<>())
+                .add(new Instances(getFirstInstance(operation), created));
+    }
+
+    /**
+     * @param type the name of the type
+     * @param index the number of the instance
+     * @return the instance, or null if it has not been created in this
+     * partition
+     */
+    Object getInstance(String type, long index) {
+        List<Instances> created = instances.get(type);
+        if (created != null) {
+            for (Instances block : created) {
+                if (index >= block.first && index < block.first + block.elements.size()) {
+                    return block.elements.get((int) (index - block.first));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Visit the instances created in this partition.
+     *
+     * @param visitor the visitor of each instance and its stable id
+     */
+    void forEachInstance(BiConsumer<Object, String> visitor) {
+        for (Map.Entry<String, List<Instances>> entry : instances.entrySet()) {
+            for (Instances block : entry.getValue()) {
+                for (int i = 0; i < block.elements.size(); i++) {
+                    visitor.accept(block.elements.get(i), getId(entry.getKey(), block.first + i));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param type the name of the type
+     * @return the number of instances of the type in all the partitions
+     */
+    public long getInstances(String type) {
+        return typeTotals.getOrDefault(type, 0L);
+    }
+
+    /**
+     * @param type the name of the type
+     * @param index the number of the instance
+     * @return the number of the partition that owns the instance, -1 if
+     * there is no such instance
+     */
+    public int getOwner(String type, long index) {
+        List<Range> ranges = typeRanges.get(type);
+        if (ranges == null || index < 0) {
+            return -1;
+        }
+        for (Range range : ranges) {
+            if (index < range.offset + range.total) {
+                return owner(range.total, index - range.offset, partitions);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The instances created by an operation in this partition.
+     */
+    private static final class Instances {
+
+        /** The number of the first instance, in the numbering of its type. */
+        private final long first;
+
+        private final List<?> elements;
+
+        Instances(long first, List<?> elements) {
+            this.first = first;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * The instances of a create operation.
+     */
+    private static final class Range {
+
+        /** The number of the first instance, in the numbering of its type. */
+        private final long offset;
+
+        /** The number of instances of all the partitions. */
+        private final long total;
+
+        Range(long offset, long total) {
+            this.offset = offset;
+            this.total = total;
+        }
+    }
+
+}
@@ -50,6 +50,9 @@ public class EmgPatternMatcher extends PatternMatcher {
     /** The random generator. */
     IEmgRandomGenerator randomGenerator;
 
+    /** The generation statistics, if any. */
+    private EmgGenerationStatistics statistics;
+
     /**
      * Instantiates a new EMG pattern matcher.
      *
@@ -59,6 +62,13 @@ public class EmgPatternMatcher extends PatternMatcher {
         randomGenerator=rand;
     }
 
+    /**
+     * @param statistics the generation statistics in which matches are counted
+     */
+    public void setStatistics(EmgGenerationStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /* (non-Javadoc)
      * @see org.eclipse.epsilon.epl.execute.PatternMatcher#match(org.eclipse.epsilon.epl.dom.Pattern, org.eclipse.epsilon.eol.execute.context.IEolContext)
      */
@@ -98,6 +108,7 @@ public class EmgPatternMatcher extends PatternMatcher {
             if (matches) {
             	if (randomGenerator.nextValue() < enforceProbability) {
             		context.getExecutorFactory().execute(pattern.getOnMatch(), context);
+            		finishCreated(context);
                     patternMatches.add(createPatternMatch(pattern, candidate));
                     if (noRepeat) {
                         matchList.addAll(candidate);
@@ -107,15 +118,29 @@ public class EmgPatternMatcher extends PatternMatcher {
             }
             else {
             	context.getExecutorFactory().execute(pattern.getNoMatch(), context);
+            	finishCreated(context);
             }
             context.getFrameStack().leaveLocal(pattern);
         }
         context.getFrameStack().leaveLocal(pattern);
+        if (statistics != null) {
+            statistics.matchesFound(pattern.getName(), matchCounter);
+        }
         return patternMatches;
     }
     
     
 
+    /**
+     * Count and export the elements created by the last block, if the
+     * patterns are matched by an {@link EmgModule}.
+     */
+    private void finishCreated(IEolContext context) throws EolRuntimeException {
+        if (context.getModule() instanceof EmgModule) {
+            ((EmgModule) context.getModule()).finishCreated();
+        }
+    }
+
 	/**
      * Get the $probability annotation value. If not present or no value is provided, returns 1
      * @param hasProbabilityAnnotation 
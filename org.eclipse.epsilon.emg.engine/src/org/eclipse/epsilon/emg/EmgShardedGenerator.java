@@ -0,0 +1,308 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.epsilon.emg.emf.EmgEmfModel;
+import org.eclipse.epsilon.emg.emf.EmgMetamodelCache;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgShardedGenerator generates an EMF model in partitions, so the model
+ * is not bound by the heap of one process (see
+ * {@link EmgModule#setPartition(int, int, String)}). The partitions are split
+ * in consecutive ranges, one per shard, and each shard is generated by a
+ * separate local Java process that stores each of its partitions in its own
+ * file. The partition files are the same for any number of shards, for a
+ * given seed and number of partitions.
+ * <p>
+ * References between partitions are stored as proxies to the stable ids of
+ * the referenced elements, so the partitions can be loaded together in a
+ * resource set. Models that fit in a heap can also be
+ * {@link #merge(List, File, File) merged} in a single file.
+ */
+public class EmgShardedGenerator {
+
+    /** The EMG script. */
+    private final File script;
+
+    /** The metamodel of the generated model. */
+    private final File metamodel;
+
+    /** The directory of the partition files. */
+    private final File directory;
+
+    /** The name of the generated model in the script. */
+    private String modelName = "Model";
+
+    /** The file name of the partitions, with a %d for the number of the partition. */
+    private String fileName = "part-%d.xmi";
+
+    /** The number of partitions. */
+    private int partitions = 1;
+
+    /** The number of processes. */
+    private int shards = 1;
+
+    /** The class path of the processes. */
+    private String classPath = System.getProperty("java.class.path");
+
+    /** The arguments of the Java virtual machines of the processes, e.g. -Xmx. */
+    private final List<String> jvmArguments = new ArrayList<>();
+
+    /**
+     * Instantiates a new sharded generator.
+     *
+     * @param script the EMG script
+     * @param metamodel the metamodel file of the generated model
+     * @param directory the directory of the partition files
+     */
+    public EmgShardedGenerator(File script, File metamodel, File directory) {
+        this.script = script;
+        this.metamodel = metamodel;
+        this.directory = directory;
+    }
+
+    /**
+     * @param modelName the name of the generated model in the script
+     */
+    public void setModelName(String modelName) {
+        this.modelName = modelName;
+    }
+
+    /**
+     * @param fileName the file name of the partitions, with a %d for the
+     * number of the partition, <code>part-%d.xmi</code> by default
+     */
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * @param partitions the number of partitions, which with the seed
+     * determines the generated model
+     */
+    public void setPartitions(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is needed.");
+        }
+        this.partitions = partitions;
+    }
+
+    /**
+     * @param shards the number of processes, at most one per partition
+     */
+    public void setShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is needed.");
+        }
+        this.shards = shards;
+    }
+
+    /**
+     * @param classPath the class path of the processes, by default the class
+     * path of this process
+     */
+    public void setClassPath(String classPath) {
+        this.classPath = classPath;
+    }
+
+    /**
+     * Add an argument for the Java virtual machine of each process, e.g. its
+     * maximum heap size.
+     *
+     * @param argument the argument
+     */
+    public void addJvmArgument(String argument) {
+        jvmArguments.add(argument);
+    }
+
+    /**
+     * Generate the partitions of the model, running the shards concurrently.
+     * The output of each shard is written to a <code>shard-&lt;n&gt;.log</code>
+     * file in the directory.
+     *
+     * @param seed the seed
+     * @return the partition files, in order
+     * @throws EolRuntimeException if a shard fails or is interrupted
+     */
+    public List<File> execute(long seed) throws EolRuntimeException {
+        directory.mkdirs();
+        int processes = Math.min(shards, partitions);
+        List<Process> running = new ArrayList<>(processes);
+        try {
+            for (int shard = 0; shard < processes; shard++) {
+                int first = (int) EmgPartition.start(partitions, shard, processes);
+                int end = (int) EmgPartition.start(partitions, shard + 1, processes);
+                running.add(start(seed, first, end, new File(directory, "shard-" + shard + ".log")));
+            }
+            for (int shard = 0; shard < processes; shard++) {
+                if (running.get(shard).waitFor() != 0) {
+                    throw new EolRuntimeException(String.format("The shard %d failed, see %s", shard,
+                            new File(directory, "shard-" + shard + ".log")));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new EolRuntimeException("The shards could not be started: " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EolRuntimeException("The sharded generation was interrupted.");
+        }
+        finally {
+            for (Process process : running) {
+                process.destroy();
+            }
+        }
+        List<File> files = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            files.add(new File(directory, String.format(fileName, p)));
+        }
+        return files;
+    }
+
+    private Process start(long seed, int first, int end, File log) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+        command.addAll(jvmArguments);
+        command.add("-cp");
+        command.add(classPath);
+        command.add(EmgShardedGenerator.class.getName());
+        Collections.addAll(command, script.getAbsolutePath(), metamodel.getAbsolutePath(),
+                directory.getAbsolutePath(), modelName, fileName, Long.toString(seed),
+                Integer.toString(partitions), Integer.toString(first), Integer.toString(end));
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+    }
+
+    /**
+     * Generate a range of partitions in this process, one after the other.
+     *
+     * @param script the EMG script
+     * @param metamodel the metamodel file of the generated model
+     * @param directory the directory of the partition files
+     * @param modelName the name of the generated model in the script
+     * @param fileName the file name of the partitions, with a %d for the
+     * number of the partition
+     * @param seed the seed
+     * @param partitions the number of partitions
+     * @param first the first partition of the range
+     * @param end the end of the range, exclusive
+     * @throws Exception if the script or the model can not be loaded, or the
+     * generation fails
+     */
+    public static void generate(File script, File metamodel, File directory, String modelName, String fileName,
+            long seed, int partitions, int first, int end) throws Exception {
+        for (int p = first; p < end; p++) {
+            EmgEmfModel model = new EmgEmfModel();
+            model.setName(modelName);
+            model.setMetamodelFile(metamodel.getAbsolutePath());
+            model.setModelFile(new File(directory, String.format(fileName, p)).getAbsolutePath());
+            model.setReadOnLoad(false);
+            model.setStoredOnDisposal(false);
+            model.load();
+            EmgModule module = new EmgModule();
+            module.parse(script);
+            if (!module.getParseProblems().isEmpty()) {
+                throw new EolRuntimeException("The EMG script has parse problems: " + module.getParseProblems());
+            }
+            module.getContext().getModelRepository().addModel(model);
+            module.setUseSeed(true);
+            module.setSeed(seed);
+            module.setPartition(p, partitions, fileName);
+            module.execute();
+            module.getContext().getModelRepository().dispose();
+        }
+    }
+
+    /**
+     * Merge the partitions of a model in a single file. All the partitions
+     * are loaded, so the model must fit in the heap. The roots of the
+     * partitions are kept in order, and the elements keep their stable ids.
+     *
+     * @param files the partition files, in order
+     * @param metamodel the metamodel file of the model
+     * @param target the merged file
+     * @throws Exception if the metamodel or the partitions can not be loaded,
+     * or the merged model can not be stored
+     */
+    public static void merge(List<File> files, File metamodel, File target) throws Exception {
+        ResourceSet resourceSet = new ResourceSetImpl();
+        resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+        for (EPackage ePackage : EmgMetamodelCache.getShared().getPackages(
+                URI.createFileURI(metamodel.getAbsolutePath()))) {
+            resourceSet.getPackageRegistry().put(ePackage.getNsURI(), ePackage);
+        }
+        List<Resource> parts = new ArrayList<>(files.size());
+        for (File file : files) {
+            parts.add(resourceSet.getResource(URI.createFileURI(file.getAbsolutePath()), true));
+        }
+        EcoreUtil.resolveAll(resourceSet);
+        XMLResource merged = (XMLResource) resourceSet.createResource(URI.createFileURI(target.getAbsolutePath()));
+        for (Resource part : parts) {
+            List<EObject> elements = new ArrayList<>();
+            List<String> ids = new ArrayList<>();
+            for (Iterator<EObject> it = part.getAllContents(); it.hasNext();) {
+                EObject element = it.next();
+                String id = ((XMLResource) part).getID(element);
+                if (id != null) {
+                    elements.add(element);
+                    ids.add(id);
+                }
+            }
+            merged.getContents().addAll(new ArrayList<>(part.getContents()));
+            for (int i = 0; i < elements.size(); i++) {
+                merged.setID(elements.get(i), ids.get(i));
+            }
+        }
+        merged.save(Collections.emptyMap());
+    }
+
+    /**
+     * Generate a range of partitions, as a shard process.
+     *
+     * @param args the EMG script, the metamodel, the directory, the model
+     * name, the file name of the partitions, the seed, the number of
+     * partitions, and the first and end of the range
+     */
+    public static void main(String[] args) {
+        if (args.length != 9) {
+            System.err.println("Usage: EmgShardedGenerator script metamodel directory modelName fileName "
+                    + "seed partitions first end");
+            System.exit(2);
+        }
+        try {
+            generate(new File(args[0]), new File(args[1]), new File(args[2]), args[3], args[4],
+                    Long.parseLong(args[5]), Integer.parseInt(args[6]), Integer.parseInt(args[7]),
+                    Integer.parseInt(args[8]));
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgAmplifier scales a seed model by replicating the subgraph contained
+ * in a root element: the elements of the many valued containment references
+ * of the root, and everything they contain, are copied as many times as
+ * needed and added to the same references of the root. A model amplified by
+ * a factor of 100 has 100 times the elements below its root.
+ * <p>
+ * The copies are made in bulk, without interpreting any script. The
+ * references between elements of the subgraph are remapped to the same copy,
+ * or with the cross link probability to a random other copy (the original
+ * elements are copy zero), so the copies are connected as the seed elements
+ * are. References to elements outside the subgraph, e.g. to the root, keep
+ * their target. Bidirectional references are copied from one of their ends
+ * only, the other end is updated by EMF.
+ * <p>
+ * Attribute values are copied as they are, unless a {@link Perturbation} has
+ * been added for the attribute, which can change the value of each copy
+ * using the (seeded) random generator. Derived, transient and unchangeable
+ * features are not copied.
+ */
+public class EmgAmplifier {
+
+    /**
+     * A Perturbation changes the attribute values of the copies.
+     */
+    public interface Perturbation {
+
+        /**
+         * @param value the value of the original element, not null
+         * @param copy the index of the copy, from 1
+         * @param random the random generator
+         * @return the value of the copy
+         * @throws EolRuntimeException if the value can not be perturbed
+         */
+        Object perturb(Object value, int copy, IEmgRandomGenerator random) throws EolRuntimeException;
+    }
+
+    /** The perturbations, by type name and attribute name. */
+    private final Map<String, Map<String, Perturbation>> perturbations = new HashMap<>();
+
+    /** The copy plans of the classes. */
+    private final Map<EClass, ClassPlan> plans = new HashMap<>();
+
+    /** The probability of remapping a reference to a random copy. */
+    private double crossLinkProbability;
+
+    /** The random generator of the current amplification. */
+    private IEmgRandomGenerator random;
+
+    /**
+     * @param crossLinkProbability the probability that a reference between
+     * elements of the subgraph is remapped to a random copy instead of the
+     * same copy, zero by default
+     */
+    public void setCrossLinkProbability(double crossLinkProbability) {
+        this.crossLinkProbability = crossLinkProbability;
+    }
+
+    /**
+     * Perturb the values of the attribute in the copies of the elements of
+     * the type or its subtypes.
+     *
+     * @param type the name of the EClass
+     * @param attribute the name of the attribute
+     * @param perturbation the perturbation
+     */
+    public void addPerturbation(String type, String attribute, Perturbation perturbation) {
+        perturbations.computeIfAbsent(type, t -> new HashMap<>()).put(attribute, perturbation);
+        plans.clear();
+    }
+
+    /**
+     * A perturbation of numeric values that adds a normally distributed
+     * noise. The values keep their type; integral values are rounded.
+     *
+     * @param sd the standard deviation of the noise
+     * @return the perturbation
+     */
+    public static Perturbation gaussianNoise(double sd) {
+        return (value, copy, random) -> {
+            if (!(value instanceof Number)) {
+                throw new EolRuntimeException("Only numbers can have a gaussian noise: " + value);
+            }
+            double noisy = ((Number) value).doubleValue() + random.nextGaussian(0, sd);
+            if (value instanceof Integer) {
+                return (int) Math.round(noisy);
+            }
+            if (value instanceof Long) {
+                return Math.round(noisy);
+            }
+            if (value instanceof Float) {
+                return (float) noisy;
+            }
+            if (value instanceof Short) {
+                return (short) Math.round(noisy);
+            }
+            if (value instanceof Byte) {
+                return (byte) Math.round(noisy);
+            }
+            return noisy;
+        };
+    }
+
+    /**
+     * A perturbation of string values that appends the index of the copy,
+     * e.g. to keep names unique.
+     *
+     * @param separator the separator of the value and the index
+     * @return the perturbation
+     */
+    public static Perturbation copySuffix(String separator) {
+        return (value, copy, random) -> value + separator + copy;
+    }
+
+    /**
+     * Amplify the subgraph contained in the root.
+     *
+     * @param root the root
+     * @param factor the number of times the elements of the subgraph are in
+     * the amplified model, at least one
+     * @param random the random generator of the perturbations and cross links
+     * @return the copies, in copy order
+     * @throws EolRuntimeException if the factor is not positive or a
+     * perturbation fails
+     */
+    public List<EObject> amplify(EObject root, int factor, IEmgRandomGenerator random)
+            throws EolRuntimeException {
+        if (factor < 1) {
+            throw new EolRuntimeException("The amplification factor must be positive: " + factor);
+        }
+        this.random = random;
+        List<EObject> seeds = new ArrayList<>();
+        List<EReference> seedFeatures = new ArrayList<>();
+        for (EReference containment : root.eClass().getEAllContainments()) {
+            if (containment.isMany() && isCopied(containment)) {
+                for (EObject child : EmgAmplifier.<EObject>eList(root, containment)) {
+                    seeds.add(child);
+                    seedFeatures.add(containment);
+                }
+            }
+        }
+        // The elements of the subgraph, in containment order, and their index
+        List<EObject> elements = new ArrayList<>();
+        Map<EObject, Integer> index = new IdentityHashMap<>();
+        for (EObject seed : seeds) {
+            index.put(seed, elements.size());
+            elements.add(seed);
+            for (Iterator<EObject> it = seed.eAllContents(); it.hasNext();) {
+                EObject element = it.next();
+                index.put(element, elements.size());
+                elements.add(element);
+            }
+        }
+        int size = elements.size();
+        EObject[][] copies = new EObject[factor][];
+        copies[0] = elements.toArray(new EObject[size]);
+        for (int c = 1; c < factor; c++) {
+            EObject[] copy = new EObject[size];
+            for (int i = 0; i < size; i++) {
+                EObject original = copies[0][i];
+                ClassPlan plan = plan(original.eClass());
+                copy[i] = EcoreUtil.create(original.eClass());
+                copyAttributes(plan, original, copy[i], c);
+            }
+            copies[c] = copy;
+        }
+        List<EObject> result = new ArrayList<>(size * (factor - 1));
+        for (int c = 1; c < factor; c++) {
+            EObject[] copy = copies[c];
+            for (int i = 0; i < size; i++) {
+                EObject original = copies[0][i];
+                ClassPlan plan = plan(original.eClass());
+                for (EReference containment : plan.containments) {
+                    if (containment.isMany()) {
+                        InternalEList<EObject> children = eList(copy[i], containment);
+                        for (EObject child : EmgAmplifier.<EObject>eList(original, containment)) {
+                            children.addUnique(copy[index.get(child)]);
+                        }
+                    }
+                    else {
+                        EObject child = (EObject) original.eGet(containment);
+                        if (child != null) {
+                            copy[i].eSet(containment, copy[index.get(child)]);
+                        }
+                    }
+                }
+                for (EReference reference : plan.references) {
+                    if (reference.isMany()) {
+                        InternalEList<EObject> targets = eList(copy[i], reference);
+                        // Cross links can map two targets to the same element
+                        boolean check = crossLinkProbability > 0 && reference.isUnique();
+                        for (EObject target : EmgAmplifier.<EObject>eList(original, reference)) {
+                            EObject remapped = remap(target, index, copies, c);
+                            if (check) {
+                                targets.add(remapped);
+                            }
+                            else {
+                                targets.addUnique(remapped);
+                            }
+                        }
+                    }
+                    else {
+                        EObject target = (EObject) original.eGet(reference);
+                        if (target != null) {
+                            copy[i].eSet(reference, remap(target, index, copies, c));
+                        }
+                    }
+                }
+            }
+            // One notification per feature, the adapters of the root may
+            // traverse the contents on each notification
+            for (int s = 0; s < seeds.size();) {
+                EReference containment = seedFeatures.get(s);
+                List<EObject> children = new ArrayList<>();
+                for (; s < seeds.size() && seedFeatures.get(s) == containment; s++) {
+                    children.add(copy[index.get(seeds.get(s))]);
+                }
+                eList(root, containment).addAllUnique(children);
+            }
+            for (EObject element : copy) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    private EObject remap(EObject target, Map<EObject, Integer> index, EObject[][] copies, int copy)
+            throws EolRuntimeException {
+        Integer i = index.get(target);
+        if (i == null) {
+            return target;
+        }
+        if (crossLinkProbability > 0 && random.nextReal() < crossLinkProbability) {
+            return copies[random.nextInt(copies.length)][i];
+        }
+        return copies[copy][i];
+    }
+
+    private void copyAttributes(ClassPlan plan, EObject original, EObject copy, int c)
+            throws EolRuntimeException {
+        for (int a = 0; a < plan.attributes.size(); a++) {
+            EAttribute attribute = plan.attributes.get(a);
+            if (!original.eIsSet(attribute)) {
+                continue;
+            }
+            Perturbation perturbation = plan.perturbations.get(a);
+            if (attribute.isMany()) {
+                InternalEList<Object> values = eList(copy, attribute);
+                for (Object value : eList(original, attribute)) {
+                    values.addUnique(perturbation == null || value == null
+                            ? value : perturbation.perturb(value, c, random));
+                }
+            }
+            else {
+                Object value = original.eGet(attribute);
+                copy.eSet(attribute, perturbation == null || value == null
+                        ? value : perturbation.perturb(value, c, random));
+            }
+        }
+    }
+
+    private ClassPlan plan(EClass eClass) {
+        ClassPlan plan = plans.get(eClass);
+        if (plan == null) {
+            plan = new ClassPlan();
+            for (EAttribute attribute : eClass.getEAllAttributes()) {
+                if (isCopied(attribute)) {
+                    plan.attributes.add(attribute);
+                    plan.perturbations.add(perturbation(eClass, attribute.getName()));
+                }
+            }
+            for (EReference reference : eClass.getEAllReferences()) {
+                if (!isCopied(reference) || reference.isContainer()) {
+                    continue;
+                }
+                if (reference.isContainment()) {
+                    plan.containments.add(reference);
+                }
+                else if (isCopiedEnd(reference)) {
+                    plan.references.add(reference);
+                }
+            }
+            plans.put(eClass, plan);
+        }
+        return plan;
+    }
+
+    private Perturbation perturbation(EClass eClass, String attribute) {
+        Map<String, Perturbation> ofType = perturbations.get(eClass.getName());
+        if (ofType != null && ofType.containsKey(attribute)) {
+            return ofType.get(attribute);
+        }
+        for (EClass superType : eClass.getEAllSuperTypes()) {
+            ofType = perturbations.get(superType.getName());
+            if (ofType != null && ofType.containsKey(attribute)) {
+                return ofType.get(attribute);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCopied(EStructuralFeature feature) {
+        return feature.isChangeable() && !feature.isDerived() && !feature.isTransient();
+    }
+
+    /**
+     * Bidirectional references are copied from a single end: the single
+     * valued one, or else the one with the smaller name.
+     */
+    private static boolean isCopiedEnd(EReference reference) {
+        EReference opposite = reference.getEOpposite();
+        if (opposite == null || !isCopied(opposite)) {
+            return true;
+        }
+        if (reference.isMany() != opposite.isMany()) {
+            return !reference.isMany();
+        }
+        int order = reference.getName().compareTo(opposite.getName());
+        if (order == 0) {
+            order = reference.getEContainingClass().getName().compareTo(opposite.getEContainingClass().getName());
+        }
+        return order <= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> InternalEList<T> eList(EObject element, EStructuralFeature feature) {
+        return (InternalEList<T>) element.eGet(feature);
+    }
+
+    /**
+     * The features of a class that are copied.
+     */
+    private static final class ClassPlan {
+
+        private final List<EAttribute> attributes = new ArrayList<>();
+
+        /** The perturbation of each attribute, null if it is not perturbed. */
+        private final List<Perturbation> perturbations = new ArrayList<>();
+
+        private final List<EReference> containments = new ArrayList<>();
+
+        private final List<EReference> references = new ArrayList<>();
+    }
+
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.BinaryIO.Version;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectInputStream;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectOutputStream;
+
+/**
+ * The EmgBinarySerializer saves and loads the contents of a resource of any
+ * kind (e.g. the XMI resource of a generated model) in EMF's binary resource
+ * format. Classes and features are written once and referred to by number,
+ * elements are referred to by their position in the stream and values are
+ * written in binary, so saving and loading are much cheaper than in XMI, and
+ * the files much smaller.
+ * <p>
+ * The stream can be compressed with GZIP as it is written, and compressed
+ * streams are detected when loaded. The ids of XML resources are not saved.
+ * <p>
+ * The stream of a resource is not stored at the URI of the resource, which
+ * names a file of the format of the resource, but next to it with the
+ * extension <code>bin</code>, or <code>bin.gz</code> if it is compressed
+ * (e.g. <code>model.bin</code> for <code>model.xmi</code>).
+ */
+public class EmgBinarySerializer {
+
+    /** The extension of the binary streams. */
+    public static final String EXTENSION = "bin";
+
+    /** The extension added to the binary streams when they are compressed. */
+    public static final String COMPRESSED_EXTENSION = "gz";
+
+    /** The size of the buffers of the streams. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The options of the binary streams. */
+    private static final Map<String, Object> OPTIONS = new HashMap<>();
+
+    static {
+        OPTIONS.put(BinaryResourceImpl.OPTION_VERSION, Version.VERSION_1_1);
+        OPTIONS.put(BinaryResourceImpl.OPTION_STYLE_BINARY_FLOATING_POINT, Boolean.TRUE);
+        OPTIONS.put(BinaryResourceImpl.OPTION_STYLE_BINARY_DATE, Boolean.TRUE);
+        OPTIONS.put(BinaryResourceImpl.OPTION_STYLE_BINARY_ENUMERATOR, Boolean.TRUE);
+        OPTIONS.put(BinaryResourceImpl.OPTION_BUFFER_CAPACITY, BUFFER_SIZE);
+    }
+
+    /** If the saved streams are compressed. */
+    private boolean compressed;
+
+    /**
+     * @param compressed if true, the saved streams are compressed with GZIP
+     */
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    /**
+     * @param uri the URI of a resource
+     * @return the URI of the binary stream of the resource, compressed or not
+     */
+    public URI getUri(URI uri) {
+        URI binary = uri.trimFileExtension().appendFileExtension(EXTENSION);
+        return compressed ? binary.appendFileExtension(COMPRESSED_EXTENSION) : binary;
+    }
+
+    /**
+     * Save the contents of a resource next to it, at its binary URI (see
+     * {@link #getUri(URI)}).
+     *
+     * @param resource the resource
+     * @throws IOException if the stream can not be written
+     */
+    public void save(Resource resource) throws IOException {
+        try (OutputStream out = getURIConverter(resource).createOutputStream(getUri(resource.getURI()))) {
+            save(resource, out);
+        }
+    }
+
+    /**
+     * Save the contents of a resource to a stream. If the stream is
+     * compressed, it is compressed for speed rather than size. The stream is
+     * not closed.
+     *
+     * @param resource the resource
+     * @param out the stream
+     * @throws IOException if the stream can not be written
+     */
+    public void save(Resource resource, OutputStream out) throws IOException {
+        // The binary stream writes byte by byte, so the compressor is buffered
+        GZIPOutputStream gzip = null;
+        if (compressed) {
+            gzip = new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+        OutputStream stream = new BufferedOutputStream(compressed ? gzip : out, BUFFER_SIZE);
+        EObjectOutputStream objects = new EObjectOutputStream(stream, OPTIONS);
+        objects.saveResource(resource);
+        objects.flush();
+        stream.flush();
+        if (compressed) {
+            gzip.finish();
+        }
+    }
+
+    /**
+     * Load the contents of a resource from its binary URI (see
+     * {@link #getUri(URI)}), adding them to the current contents of the
+     * resource.
+     *
+     * @param resource the resource
+     * @throws IOException if the stream can not be read
+     */
+    public void load(Resource resource) throws IOException {
+        try (InputStream in = getURIConverter(resource).createInputStream(getUri(resource.getURI()))) {
+            load(resource, in);
+        }
+    }
+
+    /**
+     * Load the contents of a resource from a stream, compressed or not,
+     * adding them to the current contents of the resource. The packages of
+     * the elements are looked up in the package registry of the resource set
+     * of the resource, if any, or in the global one. The stream is not
+     * closed.
+     *
+     * @param resource the resource
+     * @param in the stream
+     * @throws IOException if the stream can not be read
+     */
+    public void load(Resource resource, InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+        buffered.mark(2);
+        int magic = buffered.read() | buffered.read() << 8;
+        buffered.reset();
+        InputStream stream = buffered;
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            stream = new BufferedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        new EObjectInputStream(stream, OPTIONS).loadResource(resource);
+    }
+
+    private static URIConverter getURIConverter(Resource resource) {
+        return resource.getResourceSet() == null ? URIConverter.INSTANCE : resource.getResourceSet().getURIConverter();
+    }
+
+}
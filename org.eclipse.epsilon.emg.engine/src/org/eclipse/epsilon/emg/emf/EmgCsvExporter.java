@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * The EmgCsvExporter writes the elements created in an {@link EmgEmfModel}
+ * as rows of CSV tables, one per EClass, as they are generated, through
+ * buffered writers over file channels. The rows are written when the
+ * generator is done with the elements (e.g. after their create operation or
+ * the onmatch block that created them), so the output is never held in
+ * memory; only the ids of the elements are kept.
+ * <p>
+ * The table of an EClass, <code>&lt;EClass&gt;.csv</code>, has an
+ * <code>id</code> column, a <code>container</code> column with the id of the
+ * container of the element, and a column for each single valued attribute
+ * and non containment reference, references holding the id of their target.
+ * Each many valued attribute or reference has a table of its own,
+ * <code>&lt;EClass&gt;.&lt;feature&gt;.csv</code>, with <code>id,value</code>
+ * or <code>source,target</code> rows. Containment references are given by
+ * the container column of the contained elements, and many valued references
+ * whose opposite is single valued by the column of the opposite, so they are
+ * not exported. Derived and transient features and feature maps are not
+ * exported either.
+ * <p>
+ * Ids are numbers from 1, unique across the tables, assigned as elements are
+ * created or first referenced. Rows are snapshots: values set in an element
+ * after its row is written (e.g. by a later pattern) are not exported, and
+ * the rows of elements deleted afterwards stay in their tables. The ids of
+ * those elements, and of deleted elements that were referenced, are written
+ * to the <code>deleted.csv</code> table. Elements deleted before their row
+ * is written are not exported.
+ */
+public class EmgCsvExporter {
+
+    /** The size of the buffers of the writers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The directory of the tables. */
+    private final File directory;
+
+    /** The table of each EClass. */
+    private final Map<EClass, Table> tables = new HashMap<>();
+
+    /** The names of the tables of the EClasses. */
+    private final Set<String> tableNames = new HashSet<>();
+
+    /** The writers of all the tables. */
+    private final List<Writer> writers = new ArrayList<>();
+
+    /** The ids of the created and referenced elements. */
+    private final EmgIdMap ids = new EmgIdMap();
+
+    private int nextId = 1;
+
+    /** The name of the table of the deleted elements. */
+    private static final String DELETED = "deleted";
+
+    /** The elements created since the rows were last written, null once deleted. */
+    private List<EObject> pending = new ArrayList<>();
+
+    /** The positions of the pending elements. */
+    private EmgIdMap pendingPositions = new EmgIdMap();
+
+    /** The ids of the exported elements deleted since the rows were last written. */
+    private List<Integer> deleted = new ArrayList<>();
+
+    /** The table of the deleted elements, null until an element is deleted. */
+    private Writer deletedOut;
+
+    /** The number of rows written to the tables of the EClasses. */
+    private long rows;
+
+    /**
+     * @param directory the directory of the tables, created if needed. Tables
+     * in the directory are overwritten.
+     */
+    public EmgCsvExporter(File directory) {
+        this.directory = directory;
+        tableNames.add(DELETED);
+    }
+
+    /**
+     * @return the number of elements written to the tables of their EClasses
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Write the rows of the elements created since the rows were last
+     * written.
+     *
+     * @throws IOException if a table can not be written
+     */
+    public void writeCreated() throws IOException {
+        if (!pending.isEmpty()) {
+            for (int i = 0; i < pending.size(); i++) {
+                EObject element = pending.get(i);
+                if (element != null) {
+                    getTable(element.eClass()).write(element);
+                    rows++;
+                }
+            }
+            // Batches of containers can be large, so their list is released
+            pending = new ArrayList<>();
+            pendingPositions = new EmgIdMap();
+        }
+        if (!deleted.isEmpty()) {
+            if (deletedOut == null) {
+                deletedOut = open(DELETED);
+                deletedOut.write("id\n");
+            }
+            for (int i = 0; i < deleted.size(); i++) {
+                deletedOut.write(Integer.toString(deleted.get(i)));
+                deletedOut.write('\n');
+            }
+            deleted.clear();
+        }
+    }
+
+    /**
+     * Write the rows of the pending elements and close the tables. Closing a
+     * closed exporter has no effect.
+     *
+     * @throws IOException if a table can not be written
+     */
+    public void close() throws IOException {
+        IOException failure = null;
+        try {
+            writeCreated();
+        }
+        catch (IOException e) {
+            failure = e;
+        }
+        for (Writer writer : writers) {
+            try {
+                writer.close();
+            }
+            catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        writers.clear();
+        tables.clear();
+        pending.clear();
+        deleted.clear();
+        deletedOut = null;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Give the element an id and write its row with the next pending rows.
+     *
+     * @param element the created element
+     */
+    void created(EObject element) {
+        getId(element);
+        pendingPositions.put(element, pending.size());
+        pending.add(element);
+    }
+
+    /**
+     * Do not write the row of a deleted element, if it is pending, or write
+     * its id to the deleted table with the next pending rows, if it was
+     * exported.
+     *
+     * @param element the deleted element
+     */
+    void deleted(EObject element) {
+        int position = pendingPositions.get(element);
+        if (position >= 0) {
+            pending.set(position, null);
+            return;
+        }
+        int id = ids.get(element);
+        if (id >= 0) {
+            deleted.add(id);
+        }
+    }
+
+    private int getId(EObject element) {
+        int id = ids.get(element);
+        if (id < 0) {
+            id = nextId++;
+            ids.put(element, id);
+        }
+        return id;
+    }
+
+    private Table getTable(EClass eClass) throws IOException {
+        Table table = tables.get(eClass);
+        if (table == null) {
+            String name = eClass.getName();
+            if (!tableNames.add(name)) {
+                name = eClass.getEPackage().getName() + "." + name;
+                tableNames.add(name);
+            }
+            table = new Table(eClass, name);
+            tables.put(eClass, table);
+        }
+        return table;
+    }
+
+    private Writer open(String name) throws IOException {
+        Files.createDirectories(directory.toPath());
+        FileChannel channel = FileChannel.open(new File(directory, name + ".csv").toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE),
+                BUFFER_SIZE);
+        writers.add(writer);
+        return writer;
+    }
+
+    private static boolean isExported(EStructuralFeature feature) {
+        if (feature.isTransient() || feature.isDerived() || FeatureMapUtil.isFeatureMap(feature)) {
+            return false;
+        }
+        if (feature instanceof EReference) {
+            EReference reference = (EReference) feature;
+            EReference opposite = reference.getEOpposite();
+            return !reference.isContainment() && !reference.isContainer()
+                    && !(reference.isMany() && opposite != null && !opposite.isMany());
+        }
+        return true;
+    }
+
+    /**
+     * The table of an EClass and the tables of its many valued features.
+     */
+    private final class Table {
+
+        private final Writer out;
+
+        /** The single valued features, in the order of their columns. */
+        private final List<EStructuralFeature> columns = new ArrayList<>();
+
+        /** The many valued features. */
+        private final List<EStructuralFeature> manyValued = new ArrayList<>();
+
+        /** The tables of the many valued features. */
+        private final List<Writer> manyValuedOut = new ArrayList<>();
+
+        Table(EClass eClass, String name) throws IOException {
+            out = open(name);
+            out.write("id,container");
+            for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+                if (!isExported(feature)) {
+                    continue;
+                }
+                if (feature.isMany()) {
+                    Writer featureOut = open(name + "." + feature.getName());
+                    featureOut.write(feature instanceof EReference ? "source,target\n" : "id,value\n");
+                    manyValued.add(feature);
+                    manyValuedOut.add(featureOut);
+                }
+                else {
+                    out.write(',');
+                    out.write(feature.getName());
+                    columns.add(feature);
+                }
+            }
+            out.write('\n');
+        }
+
+        void write(EObject element) throws IOException {
+            String id = Integer.toString(getId(element));
+            out.write(id);
+            out.write(',');
+            EObject container = element.eContainer();
+            if (container != null) {
+                out.write(Integer.toString(getId(container)));
+            }
+            for (int i = 0; i < columns.size(); i++) {
+                out.write(',');
+                EStructuralFeature feature = columns.get(i);
+                Object value = element.eGet(feature, false);
+                if (value != null) {
+                    writeValue(out, feature, value);
+                }
+            }
+            out.write('\n');
+            for (int i = 0; i < manyValued.size(); i++) {
+                EStructuralFeature feature = manyValued.get(i);
+                Writer featureOut = manyValuedOut.get(i);
+                for (Object value : values(element, feature)) {
+                    featureOut.write(id);
+                    featureOut.write(',');
+                    writeValue(featureOut, feature, value);
+                    featureOut.write('\n');
+                }
+            }
+        }
+
+        private List<?> values(EObject element, EStructuralFeature feature) {
+            Object values = element.eGet(feature, false);
+            // Proxies are not resolved
+            return values instanceof InternalEList ? ((InternalEList<?>) values).basicList() : (List<?>) values;
+        }
+
+        private void writeValue(Writer writer, EStructuralFeature feature, Object value) throws IOException {
+            if (feature instanceof EAttribute) {
+                writeEscaped(writer, EcoreUtil.convertToString(((EAttribute) feature).getEAttributeType(), value));
+            }
+            else {
+                writer.write(Integer.toString(getId((EObject) value)));
+            }
+        }
+
+        /**
+         * Write a value, quoted if it has separators, quotes or line breaks.
+         */
+        private void writeEscaped(Writer writer, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quoted = false;
+            for (int i = 0; i < value.length() && !quoted; i++) {
+                char c = value.charAt(i);
+                quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quoted) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) == '"') {
+                    writer.write(value, start, i + 1 - start);
+                    writer.write('"');
+                    start = i + 1;
+                }
+            }
+            writer.write(value, start, value.length() - start);
+            writer.write('"');
+        }
+    }
+
+}
@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.eclipse.epsilon.emc.emf.CachedResourceSet;
+import org.eclipse.epsilon.emc.emf.DefaultXMIResource;
+import org.eclipse.epsilon.emc.emf.EmfModel;
+import org.eclipse.epsilon.emc.emf.EmfUtil;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.exceptions.models.EolModelElementTypeNotFoundException;
+import org.eclipse.epsilon.eol.exceptions.models.EolModelLoadingException;
+import org.eclipse.epsilon.eol.exceptions.models.EolNotInstantiableModelElementTypeException;
+
+/**
+ * An EmfModel for the models generated by EMG. File based metamodels are taken
+ * from an {@link EmgMetamodelCache} (by default the one shared by the process)
+ * so the metamodel files are only read once, regardless of how many models are
+ * generated.
+ * <p>
+ * If an {@link EmgExtentIndex} is attached, the elements created through the
+ * model are added to it and the extents of the types (e.g. Type.all) are
+ * served from it instead of from the contents of the model. Models stored in
+ * XMI resources tell the index of the elements detached from their resource.
+ * <p>
+ * Notifications can be suspended while the model is generated, see
+ * {@link #suspendNotifications()}.
+ */
+public class EmgEmfModel extends EmfModel {
+
+    /** The metamodel cache, if null metamodels are loaded by the EmfModel. */
+    private EmgMetamodelCache metamodelCache = EmgMetamodelCache.getShared();
+
+    /** The extent index, if null extents are computed by the EmfModel. */
+    private EmgExtentIndex extentIndex;
+
+    /** The exporter of the created elements, if any. */
+    private EmgCsvExporter exporter;
+
+    /** The content adapters detached from the resource while notifications are suspended. */
+    private List<Adapter> detachedAdapters;
+
+    /** The elements that don't deliver notifications, null if notifications are not suspended. */
+    private List<EObject> silencedElements;
+
+    /** The instance factory of each type, by type name. */
+    private final Map<String, EmgInstanceFactory> instanceFactories = new HashMap<String, EmgInstanceFactory>();
+
+    /**
+     * @return the metamodel cache
+     */
+    public EmgMetamodelCache getMetamodelCache() {
+        return metamodelCache;
+    }
+
+    /**
+     * @param metamodelCache the metamodel cache, or null to load the metamodels
+     * for each model
+     */
+    public void setMetamodelCache(EmgMetamodelCache metamodelCache) {
+        this.metamodelCache = metamodelCache;
+    }
+
+    /**
+     * @return the extent index, or null if extents are computed from the model contents
+     */
+    public EmgExtentIndex getExtentIndex() {
+        return extentIndex;
+    }
+
+    /**
+     * Attach an extent index to the model. The index only knows about the
+     * elements created through the model after it is attached, so it should
+     * only be attached to empty models.
+     * <p>
+     * The model caches are not used nor updated while an index is attached,
+     * they are cleared when the index is attached or detached.
+     *
+     * @param extentIndex the extent index, or null to compute extents from the
+     * model contents
+     */
+    public void setExtentIndex(EmgExtentIndex extentIndex) {
+        this.extentIndex = extentIndex;
+        clearCache();
+    }
+
+    /**
+     * @return the exporter of the created elements, or null if they are not
+     * exported
+     */
+    public EmgCsvExporter getExporter() {
+        return exporter;
+    }
+
+    /**
+     * Export the elements created after the exporter is attached. Their rows
+     * are written when {@link EmgCsvExporter#writeCreated()} is invoked.
+     *
+     * @param exporter the exporter, or null to stop exporting
+     */
+    public void setExporter(EmgCsvExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * @return true if notifications are suspended
+     */
+    public boolean isNotificationSuspended() {
+        return silencedElements != null;
+    }
+
+    /**
+     * Suspend the delivery of notifications of the model resource, its
+     * elements and the elements created until notifications are resumed, and
+     * detach the content adapters of the resource (e.g. the adapter that keeps
+     * the model caches up to date and cross referencers). Generating a model
+     * only writes to it, so the work done by the adapters is not needed.
+     * <p>
+     * While notifications are suspended the model caches are not updated when
+     * elements are moved or created outside the model, and adapters attached
+     * to the elements (e.g. by other tools) are not notified.
+     */
+    public void suspendNotifications() {
+        if (silencedElements != null) {
+            return;
+        }
+        detachedAdapters = new ArrayList<Adapter>();
+        for (Adapter adapter : modelImpl.eAdapters()) {
+            if (adapter instanceof EContentAdapter) {
+                detachedAdapters.add(adapter);
+            }
+        }
+        modelImpl.eAdapters().removeAll(detachedAdapters);
+        modelImpl.eSetDeliver(false);
+        silencedElements = new ArrayList<EObject>();
+        for (TreeIterator<EObject> it = modelImpl.getAllContents(); it.hasNext();) {
+            silence(it.next());
+        }
+    }
+
+    /**
+     * Resume the delivery of notifications. Elements that were created in the
+     * resource contents and then added to a containment reference are removed
+     * from the resource contents in a single pass (this is done per element by
+     * Epsilon's containment change adapters when notifications are delivered).
+     * The detached adapters are attached
+     * again, which updates them in a single pass over the model contents, and
+     * the model caches are cleared so they are computed again when needed.
+     */
+    public void resumeNotifications() {
+        if (silencedElements == null) {
+            return;
+        }
+        for (int i = 0; i < silencedElements.size(); i++) {
+            silencedElements.get(i).eSetDeliver(true);
+        }
+        silencedElements = null;
+        removeContainedRoots();
+        modelImpl.eSetDeliver(true);
+        modelImpl.eAdapters().addAll(detachedAdapters);
+        detachedAdapters = null;
+        clearCache();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.models.CachedModel#allContents()
+     */
+    @Override
+    public Collection<EObject> allContents() {
+        if (extentIndex == null) {
+            return super.allContents();
+        }
+        return extentIndex.getAll();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.models.CachedModel#getAllOfType(java.lang.String)
+     */
+    @Override
+    public Collection<EObject> getAllOfType(String type) throws EolModelElementTypeNotFoundException {
+        if (extentIndex == null) {
+            return super.getAllOfType(type);
+        }
+        return extentIndex.getAllOfType(classForName(type));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.models.CachedModel#getAllOfKind(java.lang.String)
+     */
+    @Override
+    public Collection<EObject> getAllOfKind(String type) throws EolModelElementTypeNotFoundException {
+        if (extentIndex == null) {
+            return super.getAllOfKind(type);
+        }
+        return extentIndex.getAllOfKind(classForName(type));
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.models.CachedModel#addToCache(java.lang.String, java.lang.Object)
+     */
+    @Override
+    protected void addToCache(String type, EObject instance) throws EolModelElementTypeNotFoundException {
+        if (extentIndex == null) {
+            super.addToCache(type, instance);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.eol.models.CachedModel#removeFromCache(java.lang.Object)
+     */
+    @Override
+    protected void removeFromCache(EObject instance) throws EolModelElementTypeNotFoundException {
+        if (extentIndex == null) {
+            super.removeFromCache(instance);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.EmfModel#forceAddToCache(org.eclipse.emf.ecore.EObject)
+     */
+    @Override
+    protected void forceAddToCache(EObject instance) throws EolModelElementTypeNotFoundException {
+        if (extentIndex == null) {
+            super.forceAddToCache(instance);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.EmfModel#forceRemoveFromCache(org.eclipse.emf.ecore.EObject)
+     */
+    @Override
+    protected void forceRemoveFromCache(EObject instance) throws EolModelElementTypeNotFoundException {
+        if (extentIndex == null) {
+            super.forceRemoveFromCache(instance);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.AbstractEmfModel#createInstanceInModel(java.lang.String)
+     */
+    @Override
+    protected EObject createInstanceInModel(String type)
+            throws EolModelElementTypeNotFoundException, EolNotInstantiableModelElementTypeException {
+        EObject instance = super.createInstanceInModel(type);
+        created(instance);
+        return instance;
+    }
+
+    /**
+     * Create a batch of instances of the type that are not added to the
+     * contents of the model resource, so they can be added to a containment
+     * reference without first being removed from the resource. The EClass and
+     * its factory are resolved once for the batch.
+     * <p>
+     * The instances are added to the model caches when they are added to an
+     * element of the model. Instances that are not added to a container are
+     * not persisted.
+     *
+     * @param type the name of the type
+     * @param count the number of instances
+     * @return the instances
+     * @throws EolModelElementTypeNotFoundException if the type is not found
+     * @throws EolNotInstantiableModelElementTypeException if the type is abstract
+     */
+    public List<EObject> createDetachedInstances(String type, int count)
+            throws EolModelElementTypeNotFoundException, EolNotInstantiableModelElementTypeException {
+        return getInstanceFactory(type).createDetachedInstances(count);
+    }
+
+    /**
+     * Get the instance factory of the type. Factories are kept until the model
+     * is loaded again.
+     *
+     * @param type the name of the type
+     * @return the instance factory
+     * @throws EolModelElementTypeNotFoundException if the type is not found
+     * @throws EolNotInstantiableModelElementTypeException if the type is abstract
+     */
+    public EmgInstanceFactory getInstanceFactory(String type)
+            throws EolModelElementTypeNotFoundException, EolNotInstantiableModelElementTypeException {
+        EmgInstanceFactory factory = instanceFactories.get(type);
+        if (factory == null) {
+            EClass eClass = classForName(type);
+            if (eClass.isAbstract()) {
+                throw new EolNotInstantiableModelElementTypeException(name, type);
+            }
+            factory = new EmgInstanceFactory(this, type, eClass, modelImpl);
+            instanceFactories.put(type, factory);
+        }
+        return factory;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.AbstractEmfModel#deleteElementInModel(java.lang.Object)
+     */
+    @Override
+    protected boolean deleteElementInModel(Object instance) throws EolRuntimeException {
+        boolean deleted = super.deleteElementInModel(instance);
+        if (deleted && extentIndex != null) {
+            extentIndex.remove((EObject) instance);
+        }
+        if (deleted && exporter != null) {
+            exporter.deleted((EObject) instance);
+        }
+        return deleted;
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.EmfModel#loadModel()
+     */
+    @Override
+    protected void loadModel() throws EolModelLoadingException {
+        instanceFactories.clear();
+        super.loadModel();
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.EmfModel#createResourceSet()
+     */
+    @Override
+    protected ResourceSet createResourceSet() {
+        return new CachedResourceSet() {
+
+            @Override
+            public Resource createNewResource(URI uri, String contentType) {
+                Resource.Factory factory = getResourceFactoryRegistry().getFactory(uri, contentType);
+                if (factory == null || factory.getClass() == XMIResourceFactoryImpl.class
+                        || factory.getClass() == DefaultXMIResource.Factory.class) {
+                    return new ModelResource(uri);
+                }
+                return super.createNewResource(uri, contentType);
+            }
+        };
+    }
+
+    /* (non-Javadoc)
+     * @see org.eclipse.epsilon.emc.emf.EmfModel#determinePackagesFrom(org.eclipse.emf.ecore.resource.ResourceSet)
+     */
+    @Override
+    protected void determinePackagesFrom(ResourceSet resourceSet) throws EolModelLoadingException {
+        if (metamodelCache == null) {
+            super.determinePackagesFrom(resourceSet);
+            return;
+        }
+        packages = new ArrayList<EPackage>();
+        for (URI metamodelFileUri : metamodelFileUris) {
+            try {
+                for (EPackage ePackage : metamodelCache.getPackages(metamodelFileUri)) {
+                    register(ePackage, resourceSet.getPackageRegistry());
+                    packages.add(ePackage);
+                    EmfUtil.collectDependencies(ePackage, packages);
+                }
+            } catch (Exception e) {
+                throw new EolModelLoadingException(e, this);
+            }
+        }
+        for (URI metamodelUri : metamodelUris) {
+            EPackage ePackage = EPackage.Registry.INSTANCE.getEPackage(metamodelUri.toString());
+            if (ePackage == null) {
+                throw new EolModelLoadingException(new IllegalArgumentException("Could not locate a metamodel with the URI '"
+                        + metamodelUri + "'. Please ensure that this metamodel has been registered with Epsilon."), this);
+            }
+            packages.add(ePackage);
+            EmfUtil.collectDependencies(ePackage, packages);
+        }
+    }
+
+    /**
+     * Add an instance created in the model by an instance factory to the
+     * model caches, as {@link #createInstance(String)} does, the extent index
+     * and the pending rows of the exporter.
+     *
+     * @param type the name of the type of the instance
+     * @param instance the instance
+     * @throws EolModelElementTypeNotFoundException if the type is not found
+     */
+    void createdInModel(String type, EObject instance) throws EolModelElementTypeNotFoundException {
+        if (isCachingEnabled()) {
+            addToCache(type, instance);
+        }
+        created(instance);
+    }
+
+    /**
+     * Add a new instance to the extent index and the pending rows of the
+     * exporter.
+     *
+     * @param instance the instance
+     */
+    void created(EObject instance) {
+        if (silencedElements != null) {
+            silence(instance);
+        }
+        if (extentIndex != null) {
+            extentIndex.add(instance);
+        }
+        if (exporter != null) {
+            exporter.created(instance);
+        }
+    }
+
+    /**
+     * Remove the elements that have a container from the resource contents.
+     * The list of contents is rebuilt, instead of removing the elements one by
+     * one, so the cost is linear on the number of root elements.
+     */
+    @SuppressWarnings("unchecked")
+    private void removeContainedRoots() {
+        EList<EObject> contents = modelImpl.getContents();
+        List<EObject> roots = new ArrayList<EObject>(contents.size());
+        List<EObject> contained = new ArrayList<EObject>();
+        for (EObject root : contents) {
+            if (root.eContainer() == null) {
+                roots.add(root);
+            }
+            else {
+                contained.add(root);
+            }
+        }
+        if (contained.isEmpty()) {
+            return;
+        }
+        ((BasicEList<EObject>) contents).setData(roots.size(), roots.toArray());
+        Resource.Internal resource = (Resource.Internal) modelImpl;
+        for (EObject element : contained) {
+            if (resource.isLoaded()) {
+                resource.detached(element);
+            }
+            ((InternalEObject) element).eSetResource(null, null);
+        }
+    }
+
+    /**
+     * Stop the element from delivering notifications.
+     *
+     * @param element the element
+     */
+    private void silence(EObject element) {
+        element.eSetDeliver(false);
+        silencedElements.add(element);
+    }
+
+    /**
+     * Register the package and its sub packages in the registry, so the model
+     * resource can resolve them when it is loaded and saved.
+     *
+     * @param ePackage the package
+     * @param registry the registry
+     */
+    private void register(EPackage ePackage, EPackage.Registry registry) {
+        if (ePackage.getNsURI() != null) {
+            registry.put(ePackage.getNsURI(), ePackage);
+        }
+        for (EPackage subPackage : ePackage.getESubpackages()) {
+            register(subPackage, registry);
+        }
+    }
+
+    /**
+     * The XMI resource of the model, which tells the extent index of the
+     * elements detached from it.
+     */
+    private final class ModelResource extends DefaultXMIResource {
+
+        ModelResource(URI uri) {
+            super(uri);
+        }
+
+        @Override
+        public void detached(EObject eObject) {
+            super.detached(eObject);
+            if (extentIndex != null && this == modelImpl) {
+                extentIndex.detached(eObject, this);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.eclipse.emf.common.util.Enumerator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.random.EmgProfile;
+
+/**
+ * The EmgEmfProfiler builds the {@link EmgProfile} of an EMF model in a single
+ * pass over its elements. For each element it counts an instance of its
+ * EClass, adds the values of its attributes and the number of values of its
+ * many valued features. Single valued references add a cardinality of zero or
+ * one, i.e. how often they are set.
+ * <p>
+ * Derived, volatile and container features are not profiled. Enumeration
+ * values are kept as their literals, and values of other data types that are
+ * not strings, booleans, characters or numbers as their string
+ * representation.
+ */
+public class EmgEmfProfiler {
+
+    /** The builder of the profile. */
+    private final EmgProfile.Builder builder = new EmgProfile.Builder();
+
+    /**
+     * Profile the elements of the resource.
+     *
+     * @param resource the resource
+     * @return the profile
+     */
+    public static EmgProfile profile(Resource resource) {
+        return profile(resource, EmgProfile.DEFAULT_BINS);
+    }
+
+    /**
+     * Profile the elements of the resource.
+     *
+     * @param resource the resource
+     * @param bins the number of bins of the histograms
+     * @return the profile
+     */
+    public static EmgProfile profile(Resource resource, int bins) {
+        EmgEmfProfiler profiler = new EmgEmfProfiler();
+        profiler.addAll(resource.getAllContents());
+        return profiler.getProfile(bins);
+    }
+
+    /**
+     * Add the elements.
+     *
+     * @param elements the elements
+     */
+    public void addAll(Iterator<? extends EObject> elements) {
+        while (elements.hasNext()) {
+            add(elements.next());
+        }
+    }
+
+    /**
+     * Add the element.
+     *
+     * @param element the element
+     */
+    public void add(EObject element) {
+        EClass eClass = element.eClass();
+        String type = eClass.getName();
+        builder.addInstance(type);
+        for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+            if (feature.isDerived() || feature.isVolatile()
+                    || (feature instanceof EReference && ((EReference) feature).isContainer())) {
+                continue;
+            }
+            String name = feature.getName();
+            Object value = element.eGet(feature);
+            if (feature.isMany()) {
+                Collection<?> values = (Collection<?>) value;
+                builder.addCardinality(type, name, values.size());
+                if (feature instanceof EAttribute) {
+                    for (Object item : values) {
+                        builder.addValue(type, name, toValue((EAttribute) feature, item));
+                    }
+                }
+            }
+            else if (feature instanceof EAttribute) {
+                if (element.eIsSet(feature)) {
+                    builder.addValue(type, name, toValue((EAttribute) feature, value));
+                }
+            }
+            else {
+                builder.addCardinality(type, name, value == null ? 0 : 1);
+            }
+        }
+    }
+
+    /**
+     * @return the profile of the added elements
+     */
+    public EmgProfile getProfile() {
+        return builder.build();
+    }
+
+    /**
+     * @param bins the number of bins of the histograms
+     * @return the profile of the added elements
+     */
+    public EmgProfile getProfile(int bins) {
+        return builder.build(bins);
+    }
+
+    private static Object toValue(EAttribute attribute, Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character) {
+            return value;
+        }
+        if (value instanceof Enumerator) {
+            return ((Enumerator) value).getLiteral();
+        }
+        return EcoreUtil.convertToString(attribute.getEAttributeType(), value);
+    }
+
+}
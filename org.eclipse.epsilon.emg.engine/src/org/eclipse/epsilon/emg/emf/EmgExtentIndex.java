@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * The EmgExtentIndex keeps the extent (all of type and all of kind) of each
+ * EClass of the elements created during a generation. The index is updated
+ * as elements are created, so the extents can be retrieved without traversing
+ * the model.
+ * <p>
+ * Extents are kept in creation order in random access lists. A removed
+ * element is replaced by the last element of its extents, so removals take
+ * constant time. The lists returned by the index are read only
+ * {@link Extent} views that reflect later changes, as the collections
+ * returned by a cached EmfModel do.
+ * <p>
+ * The index is told of the elements created and deleted through the model
+ * (e.g. by <code>new</code> and <code>delete</code> in a script), and of the
+ * elements detached from the resource of the model (see
+ * {@link #detached(EObject, Resource)}), which are dropped with their
+ * contents unless they are back in the resource when the extents are next
+ * read.
+ */
+public class EmgExtentIndex {
+
+    /** All the indexed elements. */
+    private final Members all = new Members();
+
+    /** The elements of each EClass. */
+    private final Map<EClass, Members> ofType = new HashMap<EClass, Members>();
+
+    /** The elements of each EClass, including the elements of its subclasses. */
+    private final Map<EClass, Members> ofKind = new HashMap<EClass, Members>();
+
+    /** The extents to which the elements of each EClass are added. */
+    private final Map<EClass, List<Members>> extentsOf = new HashMap<EClass, List<Members>>();
+
+    /** The elements detached from the resource since the extents were last read. */
+    private final List<EObject> detached = new ArrayList<EObject>();
+
+    /** The resource the elements were detached from. */
+    private Resource resource;
+
+    /**
+     * Add the element to the extents of its EClass and its super types.
+     *
+     * @param element the element
+     */
+    public void add(EObject element) {
+        if (!all.add(element)) {
+            return;
+        }
+        List<Members> extents = extentsOf(element.eClass());
+        for (int i = 0; i < extents.size(); i++) {
+            extents.get(i).add(element);
+        }
+    }
+
+    /**
+     * Remove the element from the extents of its EClass and its super types.
+     *
+     * @param element the element
+     */
+    public void remove(EObject element) {
+        if (!all.remove(element)) {
+            return;
+        }
+        List<Members> extents = extentsOf(element.eClass());
+        for (int i = 0; i < extents.size(); i++) {
+            extents.get(i).remove(element);
+        }
+    }
+
+    /**
+     * Tell the index that the element was detached from the resource. The
+     * element and its contents are removed from the extents when they are
+     * next read, unless by then the element is back in the resource (e.g.
+     * it was moved from the resource contents to a container).
+     *
+     * @param element the element
+     * @param resource the resource of the model
+     */
+    public void detached(EObject element, Resource resource) {
+        this.resource = resource;
+        detached.add(element);
+    }
+
+    /**
+     * @return all the indexed elements
+     */
+    public Extent getAll() {
+        return new Extent(this, all);
+    }
+
+    /**
+     * @param eClass the EClass
+     * @return the elements whose EClass is the given one
+     */
+    public Extent getAllOfType(EClass eClass) {
+        return new Extent(this, extent(ofType, eClass));
+    }
+
+    /**
+     * @param eClass the EClass
+     * @return the elements whose EClass is the given one or one of its subclasses
+     */
+    public Extent getAllOfKind(EClass eClass) {
+        if (eClass == EcorePackage.Literals.EOBJECT) {
+            return getAll();
+        }
+        return new Extent(this, extent(ofKind, eClass));
+    }
+
+    /**
+     * @return the number of indexed elements
+     */
+    public int size() {
+        removeDetached();
+        return all.size();
+    }
+
+    /**
+     * Remove all the elements from the index.
+     */
+    public void clear() {
+        all.clear();
+        for (Members extent : ofType.values()) {
+            extent.clear();
+        }
+        for (Members extent : ofKind.values()) {
+            extent.clear();
+        }
+        detached.clear();
+    }
+
+    /**
+     * Remove the elements detached from the resource, and their contents,
+     * if they are still out of it.
+     */
+    private void removeDetached() {
+        if (detached.isEmpty()) {
+            return;
+        }
+        List<EObject> elements = new ArrayList<EObject>(detached);
+        detached.clear();
+        for (EObject element : elements) {
+            if (EcoreUtil.getRootContainer(element).eResource() == resource) {
+                continue;
+            }
+            remove(element);
+            for (TreeIterator<EObject> it = element.eAllContents(); it.hasNext();) {
+                remove(it.next());
+            }
+        }
+    }
+
+    /**
+     * Get the extents to which the elements of the EClass are added: the
+     * extent of its type, and the extent of kind of the EClass and its super
+     * types. The extents are resolved once for each EClass.
+     */
+    private List<Members> extentsOf(EClass eClass) {
+        List<Members> extents = extentsOf.get(eClass);
+        if (extents == null) {
+            extents = new ArrayList<Members>();
+            extents.add(extent(ofType, eClass));
+            extents.add(extent(ofKind, eClass));
+            for (EClass superType : eClass.getEAllSuperTypes()) {
+                extents.add(extent(ofKind, superType));
+            }
+            extentsOf.put(eClass, extents);
+        }
+        return extents;
+    }
+
+    /**
+     * Get the extent of the EClass, creating it if needed. Empty extents are
+     * created on lookup so views returned before the first instance of the
+     * EClass is created see the instances created afterwards.
+     */
+    private Members extent(Map<EClass, Members> extents, EClass eClass) {
+        Members extent = extents.get(eClass);
+        if (extent == null) {
+            extent = new Members();
+            extents.put(eClass, extent);
+        }
+        return extent;
+    }
+
+    /**
+     * A read only view of an extent. The class is public, unlike the views of
+     * {@link java.util.Collections}, so scripts can invoke its methods (e.g.
+     * <code>Place.all.size()</code>) through reflection.
+     */
+    public static final class Extent extends AbstractList<EObject> implements RandomAccess {
+
+        private final EmgExtentIndex index;
+
+        private final Members members;
+
+        Extent(EmgExtentIndex index, Members members) {
+            this.index = index;
+            this.members = members;
+        }
+
+        @Override
+        public EObject get(int index) {
+            this.index.removeDetached();
+            return members.elements.get(index);
+        }
+
+        @Override
+        public int size() {
+            index.removeDetached();
+            return members.elements.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public boolean contains(Object element) {
+            index.removeDetached();
+            return members.positions.containsKey(element);
+        }
+    }
+
+    /**
+     * The elements of an extent and their positions in it.
+     */
+    private static final class Members {
+
+        private final List<EObject> elements = new ArrayList<EObject>();
+
+        private final Map<EObject, Integer> positions = new IdentityHashMap<EObject, Integer>();
+
+        int size() {
+            return elements.size();
+        }
+
+        boolean add(EObject element) {
+            if (positions.containsKey(element)) {
+                return false;
+            }
+            positions.put(element, elements.size());
+            elements.add(element);
+            return true;
+        }
+
+        boolean remove(EObject element) {
+            Integer position = positions.remove(element);
+            if (position == null) {
+                return false;
+            }
+            EObject last = elements.remove(elements.size() - 1);
+            if (last != element) {
+                elements.set(position, last);
+                positions.put(last, position);
+            }
+            return true;
+        }
+
+        void clear() {
+            elements.clear();
+            positions.clear();
+        }
+    }
+
+}
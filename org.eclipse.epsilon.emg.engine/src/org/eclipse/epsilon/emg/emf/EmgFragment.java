@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * One of the resources saved by an {@link EmgFragmenter}: the main resource
+ * of the model or one of its fragments.
+ */
+public class EmgFragment {
+
+    /** The URI of the resource. */
+    private final URI uri;
+
+    /** The number of elements stored in the resource. */
+    private final long elements;
+
+    /** The size of the saved file in bytes, -1 if the resource is not a file. */
+    long bytes = -1;
+
+    /** The time spent saving the resource, in nanoseconds. */
+    long saveTime;
+
+    /**
+     * Instantiates a new fragment.
+     *
+     * @param uri the URI of the resource
+     * @param elements the number of elements stored in the resource
+     */
+    EmgFragment(URI uri, long elements) {
+        this.uri = uri;
+        this.elements = elements;
+    }
+
+    /**
+     * @return the URI of the resource
+     */
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * @return the number of elements stored in the resource
+     */
+    public long getElements() {
+        return elements;
+    }
+
+    /**
+     * @return the size of the saved file in bytes, -1 if the resource is not
+     * a file
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the save time in nanoseconds
+     */
+    public long getSaveTime() {
+        return saveTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d elements, %d bytes (save %.2f ms)", uri.lastSegment(), elements, bytes,
+                saveTime / 1e6);
+    }
+}
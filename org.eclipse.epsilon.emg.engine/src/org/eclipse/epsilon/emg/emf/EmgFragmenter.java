@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * The EmgFragmenter saves a model in several resources, so large models are
+ * saved (and loaded) in parallel. The elements contained by the roots of the
+ * model are grouped in fragments of about the same number of elements, each
+ * one stored in its own resource, and the main resource keeps the roots and
+ * cross-resource containment references to the fragments. Subtrees are not
+ * split between fragments unless they have more elements than a fragment,
+ * in which case their root stays in the resource of its container and its
+ * children are grouped in fragments.
+ * <p>
+ * Only the children of containment references that resolve proxies (the
+ * default in Ecore) are moved to fragments. The fragments of
+ * <code>model.xmi</code> are <code>model-1.xmi</code>,
+ * <code>model-2.xmi</code>, etc. in the same directory, and stale fragments
+ * of a previous save are deleted.
+ * <p>
+ * The resources are saved concurrently. EMF objects are not thread safe,
+ * but saving only reads the model, and the metamodel must have its derived
+ * features initialised (see {@link EmgMetamodelCache}).
+ */
+public class EmgFragmenter {
+
+    /** The default number of elements of a fragment. */
+    public static final int DEFAULT_FRAGMENT_SIZE = 100000;
+
+    /** The number of elements of a fragment. */
+    private int fragmentSize = DEFAULT_FRAGMENT_SIZE;
+
+    /** The number of threads that save the resources. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /** The options of the resources' save and load. */
+    private Map<?, ?> options = Collections.emptyMap();
+
+    /**
+     * @param fragmentSize the number of elements of a fragment
+     */
+    public void setFragmentSize(int fragmentSize) {
+        if (fragmentSize < 1) {
+            throw new IllegalArgumentException("Fragments need at least one element.");
+        }
+        this.fragmentSize = fragmentSize;
+    }
+
+    /**
+     * @param threads the number of threads that save or load the resources
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed.");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param options the options of the resources' save and load
+     */
+    public void setOptions(Map<?, ?> options) {
+        this.options = options;
+    }
+
+    /**
+     * Split the model of the resource in fragments and save the resource
+     * and its fragments. The fragments stay in the resource set of the
+     * resource.
+     *
+     * @param resource the resource
+     * @return the saved resources, the main resource first
+     * @throws IOException if a resource can not be saved
+     */
+    public List<EmgFragment> save(Resource resource) throws IOException {
+        detachFragments(resource);
+        Splitter splitter = new Splitter();
+        for (EObject root : resource.getContents()) {
+            splitter.main++;
+            splitter.measure(root);
+            splitter.split(root);
+        }
+        splitter.close();
+        List<Resource> resources = new ArrayList<>();
+        List<EmgFragment> fragments = new ArrayList<>();
+        resources.add(resource);
+        fragments.add(new EmgFragment(resource.getURI(), splitter.main));
+        for (int i = 0; i < splitter.fragments.size(); i++) {
+            URI uri = getFragmentUri(resource.getURI(), i + 1);
+            Resource fragment = createResource(resource.getResourceSet(), uri);
+            ((InternalEList<EObject>) fragment.getContents()).addAllUnique(splitter.fragments.get(i));
+            resources.add(fragment);
+            fragments.add(new EmgFragment(uri, splitter.sizes.get(i)));
+        }
+        deleteStaleFragments(resource.getURI(), resources.size());
+        List<Callable<Void>> saves = new ArrayList<>(resources.size());
+        for (int i = 0; i < resources.size(); i++) {
+            Resource saved = resources.get(i);
+            EmgFragment fragment = fragments.get(i);
+            saves.add(() -> {
+                long start = System.nanoTime();
+                saved.save(options);
+                fragment.saveTime = System.nanoTime() - start;
+                if (fragment.getUri().isFile()) {
+                    fragment.bytes = new File(fragment.getUri().toFileString()).length();
+                }
+                return null;
+            });
+        }
+        run(saves, threads);
+        return fragments;
+    }
+
+    /**
+     * Load a resource saved in fragments, loading the fragments in parallel.
+     * The references between fragments are resolved when they are first
+     * used.
+     *
+     * @param resourceSet the resource set
+     * @param uri the URI of the main resource
+     * @return the main resource and its fragments
+     * @throws IOException if a resource can not be loaded
+     */
+    public List<Resource> load(ResourceSet resourceSet, URI uri) throws IOException {
+        List<Resource> resources = new ArrayList<>();
+        resources.add(createResource(resourceSet, uri));
+        for (int i = 1; uri.isFile() && new File(getFragmentUri(uri, i).toFileString()).exists(); i++) {
+            resources.add(createResource(resourceSet, getFragmentUri(uri, i)));
+        }
+        List<Callable<Void>> loads = new ArrayList<>(resources.size());
+        for (Resource resource : resources) {
+            loads.add(() -> {
+                resource.load(options);
+                return null;
+            });
+        }
+        run(loads, threads);
+        return resources;
+    }
+
+    /**
+     * @param uri the URI of the main resource
+     * @param fragment the number of the fragment, from 1
+     * @return the URI of the fragment
+     */
+    public static URI getFragmentUri(URI uri, int fragment) {
+        String extension = uri.fileExtension();
+        String name = uri.trimFileExtension().lastSegment() + "-" + fragment;
+        return uri.trimSegments(1).appendSegment(extension == null ? name : name + "." + extension);
+    }
+
+    /**
+     * Create a resource in the resource set of the main resource, if any. The
+     * resource is created by its factory, because some resource sets (e.g.
+     * the cached ones of Epsilon) reuse the resources they created before.
+     */
+    private static Resource createResource(ResourceSet resourceSet, URI uri) {
+        Resource.Factory factory = null;
+        if (resourceSet != null) {
+            factory = resourceSet.getResourceFactoryRegistry().getFactory(uri);
+        }
+        if (factory == null) {
+            factory = Resource.Factory.Registry.INSTANCE.getFactory(uri);
+        }
+        Resource resource = factory.createResource(uri);
+        if (resourceSet != null) {
+            resourceSet.getResources().add(resource);
+        }
+        return resource;
+    }
+
+    /**
+     * Remove the fragments of a previous save from the resource set. Their
+     * elements are only detached from the fragments, so they stay in their
+     * containers, in the main resource.
+     */
+    private static void detachFragments(Resource resource) {
+        ResourceSet resourceSet = resource.getResourceSet();
+        if (resourceSet == null) {
+            return;
+        }
+        String prefix = resource.getURI().trimFileExtension().lastSegment() + "-";
+        for (Resource fragment : new ArrayList<>(resourceSet.getResources())) {
+            URI uri = fragment.getURI();
+            if (fragment != resource && uri != null && uri.segmentCount() == resource.getURI().segmentCount()
+                    && uri.trimSegments(1).equals(resource.getURI().trimSegments(1))
+                    && uri.trimFileExtension().lastSegment().matches(Pattern.quote(prefix) + "\\d+")) {
+                fragment.getContents().clear();
+                resourceSet.getResources().remove(fragment);
+            }
+        }
+    }
+
+    private static void deleteStaleFragments(URI uri, int fragment) {
+        if (!uri.isFile()) {
+            return;
+        }
+        for (File stale = new File(getFragmentUri(uri, fragment).toFileString()); stale.exists();
+                stale = new File(getFragmentUri(uri, ++fragment).toFileString())) {
+            stale.delete();
+        }
+    }
+
+    private static void run(List<Callable<Void>> tasks, int threads) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(tasks.size());
+            for (Callable<Void> task : tasks) {
+                futures.add(pool.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The fragments were interrupted");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Groups the subtrees of the model in fragments. The subtrees with more
+     * elements than a fragment are measured in a single post-order walk of
+     * the model, and the others, which are disjoint, when they are added to
+     * a fragment, so each element is counted at most twice.
+     */
+    private final class Splitter {
+
+        /** The number of elements of the subtrees larger than a fragment. */
+        private final Map<EObject, Long> large = new IdentityHashMap<>();
+
+        /** The roots of the subtrees of each fragment. */
+        private final List<List<EObject>> fragments = new ArrayList<>();
+
+        /** The number of elements of each fragment. */
+        private final List<Long> sizes = new ArrayList<>();
+
+        /** The number of elements that stay in the main resource. */
+        private long main;
+
+        private List<EObject> current = new ArrayList<>();
+
+        private long currentSize;
+
+        /**
+         * Record the subtrees of the root with more elements than a fragment.
+         * The walk keeps its own stack, so deep models don't overflow the
+         * stack of the thread.
+         */
+        void measure(EObject root) {
+            Deque<Subtree> path = new ArrayDeque<>();
+            path.push(new Subtree(root));
+            while (!path.isEmpty()) {
+                Subtree subtree = path.peek();
+                if (subtree.children.hasNext()) {
+                    path.push(new Subtree(subtree.children.next()));
+                    continue;
+                }
+                path.pop();
+                if (subtree.size > fragmentSize) {
+                    large.put(subtree.root, subtree.size);
+                }
+                if (!path.isEmpty()) {
+                    path.peek().size += subtree.size;
+                }
+            }
+        }
+
+        void split(EObject parent) {
+            for (EReference containment : parent.eClass().getEAllContainments()) {
+                if (!containment.isResolveProxies() || containment.isTransient() || containment.isDerived()) {
+                    continue;
+                }
+                Object value = parent.eGet(containment);
+                if (value == null) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                List<EObject> children = containment.isMany() ? (List<EObject>) value
+                        : Collections.singletonList((EObject) value);
+                for (EObject child : children) {
+                    if (large.containsKey(child)) {
+                        main++;
+                        split(child);
+                        continue;
+                    }
+                    long size = 1;
+                    for (Iterator<EObject> it = child.eAllContents(); it.hasNext(); it.next()) {
+                        size++;
+                    }
+                    current.add(child);
+                    currentSize += size;
+                    if (currentSize >= fragmentSize) {
+                        close();
+                    }
+                }
+            }
+        }
+
+        void close() {
+            if (!current.isEmpty()) {
+                fragments.add(current);
+                sizes.add(currentSize);
+                current = new ArrayList<>();
+                currentSize = 0;
+            }
+        }
+    }
+
+    /**
+     * A subtree being measured: its root, the children still to walk and the
+     * number of elements walked so far.
+     */
+    private static final class Subtree {
+
+        private final EObject root;
+
+        private final Iterator<EObject> children;
+
+        private long size = 1;
+
+        Subtree(EObject root) {
+            this.root = root;
+            this.children = root.eContents().iterator();
+        }
+    }
+
+}
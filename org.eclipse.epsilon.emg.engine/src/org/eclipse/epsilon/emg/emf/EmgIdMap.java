@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * An identity map of elements to non negative int ids, with open
+ * addressing, used by the writers of generated models. Unlike an
+ * IdentityHashMap of Integers, an entry costs two array slots.
+ */
+final class EmgIdMap {
+
+    private EObject[] keys = new EObject[1 << 10];
+
+    private int[] values = new int[1 << 10];
+
+    private int size;
+
+    /**
+     * @return the id of the element, or -1
+     */
+    int get(EObject key) {
+        int mask = keys.length - 1;
+        for (int i = System.identityHashCode(key) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == null) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Add the id of an element that is not in the map.
+     */
+    void put(EObject key, int value) {
+        if (++size > keys.length / 2) {
+            EObject[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new EObject[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+        insert(key, value);
+    }
+
+    private void insert(EObject key, int value) {
+        int mask = keys.length - 1;
+        int i = System.identityHashCode(key) & mask;
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EFactory;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.epsilon.emc.emf.ContainmentChangeAdapter;
+import org.eclipse.epsilon.eol.exceptions.models.EolModelElementTypeNotFoundException;
+
+/**
+ * The EmgInstanceFactory creates the instances of a type of an
+ * {@link EmgEmfModel}. The EClass and its EFactory are resolved once, when the
+ * factory is created, instead of for each instance as
+ * {@link EmgEmfModel#createInstance(String)} does.
+ * <p>
+ * Instances created in the model are added to the resource contents without
+ * checking for duplicates, which is not needed for new instances and is
+ * linear on the number of root elements.
+ */
+public class EmgInstanceFactory {
+
+    /** The model. */
+    private final EmgEmfModel model;
+
+    /** The name of the type. */
+    private final String type;
+
+    /** The EClass of the type. */
+    private final EClass eClass;
+
+    /** The factory of the EClass. */
+    private final EFactory factory;
+
+    /** The resource of the model. */
+    private final Resource resource;
+
+    /**
+     * Instantiates a new instance factory.
+     *
+     * @param model the model
+     * @param type the name of the type
+     * @param eClass the EClass of the type, must not be abstract
+     * @param resource the resource of the model
+     */
+    EmgInstanceFactory(EmgEmfModel model, String type, EClass eClass, Resource resource) {
+        this.model = model;
+        this.type = type;
+        this.eClass = eClass;
+        this.factory = eClass.getEPackage().getEFactoryInstance();
+        this.resource = resource;
+    }
+
+    /**
+     * @return the EClass of the instances
+     */
+    public EClass getEClass() {
+        return eClass;
+    }
+
+    /**
+     * Grow the resource contents so the given number of instances can be
+     * added without growing it again.
+     *
+     * @param count the number of instances that will be created
+     */
+    public void reserve(int count) {
+        EList<EObject> contents = resource.getContents();
+        if (contents instanceof BasicEList) {
+            ((BasicEList<EObject>) contents).grow(contents.size() + count);
+        }
+    }
+
+    /**
+     * Create an instance in the model, as {@link EmgEmfModel#createInstance(String)}
+     * does.
+     *
+     * @return the instance
+     * @throws EolModelElementTypeNotFoundException if the type is not found
+     * when the instance is added to the model caches
+     */
+    public EObject createInstance() throws EolModelElementTypeNotFoundException {
+        EObject instance = factory.create(eClass);
+        ((InternalEList<EObject>) resource.getContents()).addUnique(instance);
+        instance.eAdapters().add(new ContainmentChangeAdapter(instance, resource));
+        model.createdInModel(type, instance);
+        return instance;
+    }
+
+    /**
+     * Create a batch of instances that are not added to the contents of the
+     * model resource, see {@link EmgEmfModel#createDetachedInstances(String, int)}.
+     *
+     * @param count the number of instances
+     * @return the instances
+     */
+    public List<EObject> createDetachedInstances(int count) {
+        List<EObject> instances = new ArrayList<EObject>(count);
+        for (int i = 0; i < count; i++) {
+            EObject instance = factory.create(eClass);
+            instance.eAdapters().add(new ContainmentChangeAdapter(instance, resource));
+            model.created(instance);
+            instances.add(instance);
+        }
+        return instances;
+    }
+
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.impl.EPackageRegistryImpl;
+import org.eclipse.epsilon.emc.emf.EmfUtil;
+
+/**
+ * The EmgMetamodelCache keeps the EPackages loaded from metamodel files (e.g.
+ * .ecore files) so they can be shared by all the models generated in the
+ * same process. Entries are keyed by the metamodel URI and are reloaded if
+ * the timestamp of the metamodel file changes.
+ * <p>
+ * The cache is safe for concurrent use. After loading, the derived features of
+ * the EClasses (all features, all super types, etc.), which EMF computes lazily,
+ * are initialised so the packages can then be read from different threads.
+ * The packages must not be modified.
+ */
+public class EmgMetamodelCache {
+
+    /** The cache shared by the process. */
+    private static final EmgMetamodelCache SHARED = new EmgMetamodelCache();
+
+    /** The cached metamodels, keyed by URI. */
+    private final ConcurrentMap<String, CachedMetamodel> metamodels = new ConcurrentHashMap<String, CachedMetamodel>();
+
+    /** The number of requests served from the cache. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of requests that required loading the metamodel. */
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * @return the cache shared by the process
+     */
+    public static EmgMetamodelCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the packages defined in the metamodel, loading them if they are not
+     * cached or if the metamodel file has changed since they were loaded.
+     *
+     * @param metamodelUri the metamodel uri
+     * @return the packages of the metamodel
+     * @throws Exception if the metamodel can not be loaded
+     */
+    public List<EPackage> getPackages(URI metamodelUri) throws Exception {
+        final long timestamp = getTimestamp(metamodelUri);
+        CachedMetamodel metamodel = metamodels.get(metamodelUri.toString());
+        if (metamodel != null && metamodel.timestamp == timestamp) {
+            hits.incrementAndGet();
+            return metamodel.packages;
+        }
+        try {
+            metamodel = metamodels.compute(metamodelUri.toString(), (key, current) -> {
+                if (current != null && current.timestamp == timestamp) {
+                    hits.incrementAndGet();
+                    return current;
+                }
+                try {
+                    return load(metamodelUri, timestamp);
+                } catch (Exception e) {
+                    throw new MetamodelLoadingException(e);
+                }
+            });
+        } catch (MetamodelLoadingException e) {
+            throw (Exception) e.getCause();
+        }
+        return metamodel.packages;
+    }
+
+    /**
+     * Remove the metamodel from the cache.
+     *
+     * @param metamodelUri the metamodel uri
+     */
+    public void evict(URI metamodelUri) {
+        metamodels.remove(metamodelUri.toString());
+    }
+
+    /**
+     * Remove all metamodels from the cache.
+     */
+    public void clear() {
+        metamodels.clear();
+    }
+
+    /**
+     * @return the number of requests served from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests that loaded the metamodel
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * Load the metamodel and initialise its derived features.
+     *
+     * @param metamodelUri the metamodel uri
+     * @param timestamp the timestamp of the metamodel file
+     * @return the cached metamodel
+     * @throws Exception if the metamodel can not be loaded
+     */
+    private CachedMetamodel load(URI metamodelUri, long timestamp) throws Exception {
+        loads.incrementAndGet();
+        List<EPackage> packages = EmfUtil.register(metamodelUri, new EPackageRegistryImpl(), false);
+        for (EPackage ePackage : packages) {
+            initialiseDerivedFeatures(ePackage);
+        }
+        return new CachedMetamodel(Collections.unmodifiableList(new ArrayList<EPackage>(packages)), timestamp);
+    }
+
+    /**
+     * Initialise the lazily computed features of the classes in the package, so
+     * concurrent readers don't race to compute them.
+     *
+     * @param ePackage the package
+     */
+    private void initialiseDerivedFeatures(EPackage ePackage) {
+        for (Iterator<EObject> it = ePackage.eAllContents(); it.hasNext();) {
+            EObject element = it.next();
+            if (element instanceof EClass) {
+                EClass eClass = (EClass) element;
+                eClass.getEAllSuperTypes();
+                eClass.getEAllAttributes();
+                eClass.getEAllReferences();
+                eClass.getEAllContainments();
+                eClass.getEAllOperations();
+                eClass.getEIDAttribute();
+                for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+                    eClass.getFeatureID(feature);
+                    eClass.getEStructuralFeature(feature.getName());
+                    feature.getEType();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the timestamp of the metamodel, 0 if the metamodel is not a file.
+     *
+     * @param metamodelUri the metamodel uri
+     * @return the timestamp
+     */
+    private long getTimestamp(URI metamodelUri) {
+        if (metamodelUri.isFile()) {
+            return new File(metamodelUri.toFileString()).lastModified();
+        }
+        return 0;
+    }
+
+    /**
+     * The packages loaded from a metamodel and the timestamp of the metamodel
+     * file when they were loaded.
+     */
+    private static class CachedMetamodel {
+
+        private final List<EPackage> packages;
+
+        private final long timestamp;
+
+        CachedMetamodel(List<EPackage> packages, long timestamp) {
+            this.packages = packages;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Wraps metamodel loading exceptions thrown inside the map computation.
+     */
+    private static class MetamodelLoadingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        MetamodelLoadingException(Exception cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,642 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.epsilon.emg.EmgGenerationStatistics;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgMutator derives a sequence of versions of a model by applying random
+ * edits to it: adding, deleting and moving elements, setting attributes and
+ * rewiring references. Each step applies a given number of edits, drawn from
+ * the (seeded) random generator, so the versions are reproducible and each
+ * one is a small change of the previous one.
+ * <p>
+ * The elements are indexed by type when the mutator is created, and an
+ * {@link ECrossReferenceAdapter} is attached to the resource so deleted
+ * elements are removed from the references to them without searching the
+ * model. The content adapters of the resource, like the ones Epsilon's EMF
+ * models use to track the roots of the model (which visit the whole
+ * containment list on each change), are detached until the mutator is
+ * {@link #dispose() disposed}. After that, the cost of a step is
+ * proportional to the number of edits (and the size of the deleted
+ * subtrees), not to the size of the model.
+ * <p>
+ * Elements are identified by a number: the elements of the model get the
+ * numbers of their position in the contents of the resource when the
+ * mutator is created, and added elements the next numbers. Each edit is
+ * written as a line of the change log, if one is set:
+ * <pre>
+ * add &lt;id&gt; &lt;type&gt; &lt;container id&gt; &lt;feature&gt;
+ * delete &lt;id&gt;
+ * move &lt;id&gt; &lt;container id&gt; &lt;feature&gt;
+ * set &lt;id&gt; &lt;attribute&gt; "&lt;value&gt;"
+ * rewire &lt;id&gt; &lt;reference&gt; &lt;index, -1 if single valued&gt; &lt;target id&gt;
+ * </pre>
+ * Added elements get random values for their attributes of primitive or
+ * enumeration types; attributes of other types are not set.
+ */
+public class EmgMutator {
+
+    /**
+     * The kinds of edits.
+     */
+    public enum Edit {
+        Add, Delete, Move, Set, Rewire
+    }
+
+    /** The attempts to find an applicable edit before giving up. */
+    private static final int MAX_ATTEMPTS = 100;
+
+    /** The maximum random integer value of the attributes. */
+    private static final int MAX_INT_VALUE = 1000;
+
+    /** The length of the random string values of the attributes. */
+    private static final int STRING_LENGTH = 8;
+
+    /** The resource. */
+    private final Resource resource;
+
+    /** The random generator. */
+    private final IEmgRandomGenerator random;
+
+    /** The inverse references of the elements. */
+    private final ECrossReferenceAdapter crossReferences = new ECrossReferenceAdapter();
+
+    /** The content adapters detached from the resource. */
+    private final List<Adapter> detachedAdapters = new ArrayList<>();
+
+    /** All the elements. */
+    private final Elements all = new Elements();
+
+    /** The elements of each EClass, without subclasses. */
+    private final Map<EClass, Elements> ofType = new HashMap<>();
+
+    /** The id of each element. */
+    private final Map<EObject, Integer> ids = new IdentityHashMap<>();
+
+    /** The concrete EClasses of the packages of the model. */
+    private final Set<EClass> concreteClasses = new LinkedHashSet<>();
+
+    /** The concrete subclasses of each EClass. */
+    private final Map<EClass, List<EClass>> concreteSubclasses = new HashMap<>();
+
+    /** The features of each EClass that are edited. */
+    private final Map<EClass, ClassFeatures> features = new HashMap<>();
+
+    /** The cumulative weights of the kinds of edits. */
+    private final double[] editWeights = {1, 2, 3, 4, 5};
+
+    /** The next id. */
+    private int nextId;
+
+    /** The change log, if any. */
+    private Writer changeLog;
+
+    /** The statistics, if any. */
+    private EmgGenerationStatistics statistics;
+
+    /**
+     * Instantiates a new mutator of the model of the resource.
+     *
+     * @param resource the resource
+     * @param random the random generator
+     */
+    public EmgMutator(Resource resource, IEmgRandomGenerator random) {
+        this.resource = resource;
+        this.random = random;
+        Set<EPackage> packages = new LinkedHashSet<>();
+        for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+            EObject element = it.next();
+            index(element);
+            packages.add(element.eClass().getEPackage());
+        }
+        for (EPackage ePackage : packages) {
+            for (EClassifier classifier : ePackage.getEClassifiers()) {
+                if (classifier instanceof EClass && !((EClass) classifier).isAbstract()
+                        && !((EClass) classifier).isInterface()) {
+                    concreteClasses.add((EClass) classifier);
+                }
+            }
+        }
+        for (Adapter adapter : resource.eAdapters()) {
+            if (adapter instanceof EContentAdapter) {
+                detachedAdapters.add(adapter);
+            }
+        }
+        resource.eAdapters().removeAll(detachedAdapters);
+        resource.eAdapters().add(crossReferences);
+    }
+
+    /**
+     * Set the relative frequency of each kind of edit, one by default.
+     *
+     * @param add the weight of adding elements
+     * @param delete the weight of deleting elements
+     * @param move the weight of moving elements to other containers
+     * @param set the weight of setting attributes
+     * @param rewire the weight of changing references
+     * @throws EolRuntimeException if a weight is negative or all are zero
+     */
+    public void setEditWeights(double add, double delete, double move, double set, double rewire)
+            throws EolRuntimeException {
+        double[] weights = {add, delete, move, set, rewire};
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (!(weights[i] >= 0)) {
+                throw new EolRuntimeException("The edit weights must not be negative: " + weights[i]);
+            }
+            total += weights[i];
+            editWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new EolRuntimeException("At least one edit weight must be positive");
+        }
+    }
+
+    /**
+     * @param changeLog the writer of the change log, null to not log the edits
+     */
+    public void setChangeLog(Writer changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * @param statistics the statistics of the added and deleted elements, if any
+     */
+    public void setStatistics(EmgGenerationStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param element the element
+     * @return the id of the element, or -1 if it is not in the model
+     */
+    public int getId(EObject element) {
+        Integer id = ids.get(element);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the number of elements in the model
+     */
+    public int size() {
+        return all.size();
+    }
+
+    /**
+     * Apply the edits to the model.
+     *
+     * @param edits the number of edits
+     * @return the number of edits applied, less than requested only if no
+     * edit could be applied to the model, e.g. if it is empty
+     * @throws EolRuntimeException if the change log can not be written
+     */
+    public int mutate(int edits) throws EolRuntimeException {
+        for (int i = 0; i < edits; i++) {
+            boolean applied = false;
+            for (int attempt = 0; attempt < MAX_ATTEMPTS && !applied; attempt++) {
+                applied = apply(nextEdit());
+            }
+            if (!applied) {
+                return i;
+            }
+        }
+        return edits;
+    }
+
+    /**
+     * Write the current version of the model to the stream, in the format of
+     * the resource.
+     *
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    public void writeSnapshot(OutputStream out) throws IOException {
+        resource.save(out, Collections.emptyMap());
+    }
+
+    /**
+     * Detach the mutator from the resource, and attach the content adapters
+     * detached when it was created.
+     */
+    public void dispose() {
+        resource.eAdapters().remove(crossReferences);
+        resource.eAdapters().addAll(detachedAdapters);
+        detachedAdapters.clear();
+    }
+
+    private Edit nextEdit() {
+        double r = random.nextReal() * editWeights[editWeights.length - 1];
+        for (int i = 0; i < editWeights.length - 1; i++) {
+            if (r < editWeights[i]) {
+                return Edit.values()[i];
+            }
+        }
+        return Edit.Rewire;
+    }
+
+    /**
+     * Try to apply an edit of the kind to a random element.
+     *
+     * @return false if the edit could not be applied to the element
+     */
+    private boolean apply(Edit edit) throws EolRuntimeException {
+        if (all.size() == 0) {
+            return false;
+        }
+        EObject element = all.get(random.nextInt(all.size()));
+        switch (edit) {
+        case Add:
+            return add(element);
+        case Delete:
+            return delete(element);
+        case Move:
+            return move(element);
+        case Set:
+            return set(element);
+        default:
+            return rewire(element);
+        }
+    }
+
+    private boolean add(EObject container) throws EolRuntimeException {
+        List<EReference> containments = features(container.eClass()).containments;
+        if (containments.isEmpty()) {
+            return false;
+        }
+        EReference containment = containments.get(random.nextInt(containments.size()));
+        if (!containment.isMany() && container.eGet(containment) != null) {
+            return false;
+        }
+        List<EClass> types = concreteSubclasses(containment.getEReferenceType());
+        if (types.isEmpty()) {
+            return false;
+        }
+        EClass type = types.get(random.nextInt(types.size()));
+        EObject element = EcoreUtil.create(type);
+        for (EAttribute attribute : features(type).attributes) {
+            element.eSet(attribute, nextValue(attribute));
+        }
+        addTo(container, containment, element);
+        index(element);
+        if (statistics != null) {
+            statistics.elementCreated(type.getName());
+        }
+        log("add " + getId(element) + " " + type.getName() + " " + getId(container) + " " + containment.getName());
+        return true;
+    }
+
+    private boolean delete(EObject element) throws EolRuntimeException {
+        if (element.eContainer() == null) {
+            return false;
+        }
+        log("delete " + getId(element));
+        List<EObject> deleted = new ArrayList<>();
+        deleted.add(element);
+        for (Iterator<EObject> it = element.eAllContents(); it.hasNext();) {
+            deleted.add(it.next());
+        }
+        // EcoreUtil.delete searches the whole model for the references to the
+        // deleted elements, the cross reference adapter already knows them
+        for (EObject removed : deleted) {
+            unindex(removed);
+            for (EStructuralFeature.Setting setting : new ArrayList<>(crossReferences.getInverseReferences(removed, false))) {
+                EStructuralFeature feature = setting.getEStructuralFeature();
+                if (feature.isChangeable() && !(feature instanceof EReference && (((EReference) feature).isContainment()
+                        || ((EReference) feature).isContainer()))) {
+                    EcoreUtil.remove(setting, removed);
+                }
+            }
+        }
+        EcoreUtil.remove(element);
+        return true;
+    }
+
+    private boolean move(EObject element) throws EolRuntimeException {
+        if (element.eContainer() == null) {
+            return false;
+        }
+        EObject container = all.get(random.nextInt(all.size()));
+        List<EReference> containments = new ArrayList<>();
+        for (EReference containment : features(container.eClass()).containments) {
+            if (containment.getEReferenceType().isSuperTypeOf(element.eClass())
+                    && (containment.isMany() || container.eGet(containment) == null)) {
+                containments.add(containment);
+            }
+        }
+        if (containments.isEmpty()) {
+            return false;
+        }
+        // The container must not be the element or one of its descendants
+        for (EObject ancestor = container; ancestor != null; ancestor = ancestor.eContainer()) {
+            if (ancestor == element) {
+                return false;
+            }
+        }
+        EReference containment = containments.get(random.nextInt(containments.size()));
+        addTo(container, containment, element);
+        log("move " + getId(element) + " " + getId(container) + " " + containment.getName());
+        return true;
+    }
+
+    private boolean set(EObject element) throws EolRuntimeException {
+        List<EAttribute> attributes = features(element.eClass()).attributes;
+        if (attributes.isEmpty()) {
+            return false;
+        }
+        EAttribute attribute = attributes.get(random.nextInt(attributes.size()));
+        Object value = nextValue(attribute);
+        element.eSet(attribute, value);
+        log("set " + getId(element) + " " + attribute.getName() + " "
+                + quote(EcoreUtil.convertToString(attribute.getEAttributeType(), value)));
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean rewire(EObject element) throws EolRuntimeException {
+        List<EReference> references = features(element.eClass()).references;
+        if (references.isEmpty()) {
+            return false;
+        }
+        EReference reference = references.get(random.nextInt(references.size()));
+        EObject target = nextOfKind(reference.getEReferenceType());
+        if (target == null) {
+            return false;
+        }
+        int index = -1;
+        if (reference.isMany()) {
+            List<EObject> values = (List<EObject>) element.eGet(reference);
+            if (reference.isUnique() && values.contains(target)) {
+                return false;
+            }
+            if (!values.isEmpty() && random.nextBoolean()) {
+                index = random.nextInt(values.size());
+                values.set(index, target);
+            }
+            else {
+                index = values.size();
+                values.add(target);
+            }
+        }
+        else {
+            element.eSet(reference, target);
+        }
+        log("rewire " + getId(element) + " " + reference.getName() + " " + index + " " + getId(target));
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void addTo(EObject container, EReference containment, EObject element) {
+        if (containment.isMany()) {
+            ((List<EObject>) container.eGet(containment)).add(element);
+        }
+        else {
+            container.eSet(containment, element);
+        }
+    }
+
+    /**
+     * A random element of the type or its subclasses, with the probability
+     * of the number of elements of each class.
+     */
+    private EObject nextOfKind(EClass type) throws EolRuntimeException {
+        List<EClass> classes = concreteSubclasses(type);
+        int total = 0;
+        for (EClass eClass : classes) {
+            Elements elements = ofType.get(eClass);
+            total += elements == null ? 0 : elements.size();
+        }
+        if (total == 0) {
+            return null;
+        }
+        int r = random.nextInt(total);
+        for (EClass eClass : classes) {
+            Elements elements = ofType.get(eClass);
+            int size = elements == null ? 0 : elements.size();
+            if (r < size) {
+                return elements.get(r);
+            }
+            r -= size;
+        }
+        return null;
+    }
+
+    private Object nextValue(EAttribute attribute) throws EolRuntimeException {
+        EDataType type = attribute.getEAttributeType();
+        if (type instanceof EEnum) {
+            List<EEnumLiteral> literals = ((EEnum) type).getELiterals();
+            return literals.get(random.nextInt(literals.size())).getInstance();
+        }
+        Class<?> instanceClass = type.getInstanceClass();
+        if (instanceClass == String.class) {
+            return random.nextString(STRING_LENGTH);
+        }
+        if (instanceClass == int.class || instanceClass == Integer.class) {
+            return random.nextInt(MAX_INT_VALUE);
+        }
+        if (instanceClass == long.class || instanceClass == Long.class) {
+            return (long) random.nextInt(MAX_INT_VALUE);
+        }
+        if (instanceClass == short.class || instanceClass == Short.class) {
+            return (short) random.nextInt(MAX_INT_VALUE);
+        }
+        if (instanceClass == double.class || instanceClass == Double.class) {
+            return (double) random.nextReal(MAX_INT_VALUE);
+        }
+        if (instanceClass == float.class || instanceClass == Float.class) {
+            return random.nextReal(MAX_INT_VALUE);
+        }
+        return random.nextBoolean();
+    }
+
+    private static boolean isRandomType(EDataType type) {
+        if (type instanceof EEnum) {
+            return !((EEnum) type).getELiterals().isEmpty();
+        }
+        Class<?> c = type.getInstanceClass();
+        return c == String.class || c == int.class || c == Integer.class || c == long.class || c == Long.class
+                || c == short.class || c == Short.class || c == double.class || c == Double.class
+                || c == float.class || c == Float.class || c == boolean.class || c == Boolean.class;
+    }
+
+    private List<EClass> concreteSubclasses(EClass type) {
+        List<EClass> result = concreteSubclasses.get(type);
+        if (result == null) {
+            result = new ArrayList<>();
+            for (EClass eClass : concreteClasses) {
+                if (type == EcorePackage.Literals.EOBJECT || type.isSuperTypeOf(eClass)) {
+                    result.add(eClass);
+                }
+            }
+            concreteSubclasses.put(type, result);
+        }
+        return result;
+    }
+
+    private ClassFeatures features(EClass eClass) {
+        ClassFeatures result = features.get(eClass);
+        if (result == null) {
+            result = new ClassFeatures();
+            for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+                if (!feature.isChangeable() || feature.isDerived() || feature.isTransient()) {
+                    continue;
+                }
+                if (feature instanceof EAttribute) {
+                    if (!feature.isMany() && isRandomType(((EAttribute) feature).getEAttributeType())) {
+                        result.attributes.add((EAttribute) feature);
+                    }
+                }
+                else if (((EReference) feature).isContainment()) {
+                    result.containments.add((EReference) feature);
+                }
+                else if (!((EReference) feature).isContainer()) {
+                    result.references.add((EReference) feature);
+                }
+            }
+            features.put(eClass, result);
+        }
+        return result;
+    }
+
+    private void index(EObject element) {
+        ids.put(element, nextId++);
+        all.add(element);
+        ofType.computeIfAbsent(element.eClass(), c -> new Elements()).add(element);
+    }
+
+    private void unindex(EObject element) {
+        ids.remove(element);
+        all.remove(element);
+        ofType.get(element.eClass()).remove(element);
+        if (statistics != null) {
+            statistics.elementDeleted(element.eClass().getName());
+        }
+    }
+
+    private void log(String edit) throws EolRuntimeException {
+        if (changeLog == null) {
+            return;
+        }
+        try {
+            changeLog.write(edit);
+            changeLog.write('\n');
+        }
+        catch (IOException e) {
+            throw new EolRuntimeException("The change log could not be written: " + e.getMessage());
+        }
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+            case '\\':
+                quoted.append('\\').append(c);
+                break;
+            case '\n':
+                quoted.append("\\n");
+                break;
+            case '\r':
+                quoted.append("\\r");
+                break;
+            default:
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * A list of elements with constant time removal, which does not keep the
+     * order of the elements.
+     */
+    private static final class Elements {
+
+        private final List<EObject> elements = new ArrayList<>();
+
+        private final Map<EObject, Integer> positions = new IdentityHashMap<>();
+
+        int size() {
+            return elements.size();
+        }
+
+        EObject get(int index) {
+            return elements.get(index);
+        }
+
+        void add(EObject element) {
+            positions.put(element, elements.size());
+            elements.add(element);
+        }
+
+        void remove(EObject element) {
+            Integer position = positions.remove(element);
+            if (position == null) {
+                return;
+            }
+            EObject last = elements.remove(elements.size() - 1);
+            if (last != element) {
+                elements.set(position, last);
+                positions.put(last, position);
+            }
+        }
+    }
+
+    /**
+     * The features of a class that are edited.
+     */
+    private static final class ClassFeatures {
+
+        /** The single valued attributes of primitive or enumeration types. */
+        private final List<EAttribute> attributes = new ArrayList<>();
+
+        private final List<EReference> containments = new ArrayList<>();
+
+        private final List<EReference> references = new ArrayList<>();
+    }
+
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+/**
+ * The formats in which the generated model can be stored.
+ */
+public enum EmgOutputFormat {
+
+    /** The format of the resource of the model, XMI for the models of EMG. */
+    XMI,
+
+    /** XMI written in a single walk of the model (see {@link EmgXmiWriter}). */
+    STREAMING_XMI,
+
+    /**
+     * EMF's binary resource format (see {@link EmgBinarySerializer}), next to
+     * the resource with the extension <code>bin</code>.
+     */
+    BINARY,
+
+    /**
+     * EMF's binary resource format, compressed with GZIP as it is written,
+     * with the extension <code>bin.gz</code>.
+     */
+    COMPRESSED_BINARY
+}
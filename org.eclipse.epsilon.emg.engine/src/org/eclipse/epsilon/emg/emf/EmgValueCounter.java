@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.epsilon.emg.EmgGenerationStatistics;
+
+/**
+ * The EmgValueCounter adds the attribute and reference values of generated
+ * elements to the statistics. The values are read from the elements when the
+ * generator is done with them (e.g. after their create operation), so no
+ * adapter needs to be attached to each element; values set in an element
+ * after it is counted are not counted, nor discounted if it is deleted.
+ * <p>
+ * Values of opposite references, and of containment references, are counted
+ * at both ends: at the end of the counted element, and at the other end
+ * unless the element there is counted in the same batch, as it counts its
+ * own values. Container references are not counted.
+ */
+public class EmgValueCounter {
+
+    /** The statistics. */
+    private final EmgGenerationStatistics statistics;
+
+    /**
+     * Instantiates a new value counter.
+     *
+     * @param statistics the statistics to update
+     */
+    public EmgValueCounter(EmgGenerationStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Count the values of a batch of elements.
+     *
+     * @param elements the elements
+     */
+    public void countValues(List<? extends EObject> elements) {
+        Set<EObject> batch;
+        if (elements.size() == 1) {
+            batch = Collections.<EObject>singleton(elements.get(0));
+        }
+        else {
+            batch = Collections.newSetFromMap(new IdentityHashMap<EObject, Boolean>(elements.size() * 2));
+            batch.addAll(elements);
+        }
+        for (int i = 0; i < elements.size(); i++) {
+            countValues(elements.get(i), batch);
+        }
+    }
+
+    private void countValues(EObject element, Set<EObject> batch) {
+        for (EStructuralFeature feature : element.eClass().getEAllStructuralFeatures()) {
+            if (!element.eIsSet(feature)) {
+                continue;
+            }
+            if (feature instanceof EAttribute) {
+                statistics.attributesSet(feature.isMany() ? ((Collection<?>) element.eGet(feature)).size() : 1);
+                continue;
+            }
+            EReference reference = (EReference) feature;
+            if (reference.isContainer()) {
+                continue;
+            }
+            Object value = element.eGet(reference, false);
+            Collection<?> values = reference.isMany() ? (Collection<?>) value : Collections.singleton(value);
+            statistics.referencesSet(values.size());
+            // The container reference at the other end of a containment is not counted
+            if (reference.getEOpposite() != null && !reference.isContainment()) {
+                for (Object target : values) {
+                    if (!batch.contains(target)) {
+                        statistics.referencesSet(1);
+                    }
+                }
+            }
+        }
+        EObject container = element.eContainer();
+        if (container != null && !batch.contains(container)) {
+            statistics.referencesSet(1);
+        }
+    }
+
+}
@@ -0,0 +1,499 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.emf;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+
+/**
+ * The EmgXmiWriter writes the contents of a resource as XMI in a single walk
+ * of its containment tree, straight to a buffered channel. Unlike the save of
+ * an XMI resource, it does not build the document in memory, and it refers
+ * to elements by <code>xmi:id</code> instead of by their position in their
+ * containment lists, which is slow to compute for the large lists of
+ * generated models. The written files are loaded by the XMI resources of EMF.
+ * <p>
+ * Only the elements of classes that can be referenced by a non containment
+ * reference get an id, <code>_&lt;n&gt;</code> in the order they are first
+ * written or referenced, unless the resource is an XML resource that already
+ * has an id for them. References to elements of other resources are written
+ * as URIs relative to the resource. The metamodel is taken from the packages
+ * of the roots, the packages they reach, and the packages of the resource
+ * set; feature maps are not supported. As in the save of XMI resources, the
+ * null values of many-valued attributes are written as <code>xsi:nil</code>
+ * elements.
+ */
+public class EmgXmiWriter {
+
+    /** The namespace of XMI. */
+    private static final String XMI_URI = "http://www.omg.org/XMI";
+
+    /** The namespace of XML schema instances. */
+    private static final String XSI_URI = "http://www.w3.org/2001/XMLSchema-instance";
+
+    /** The size of the buffers of the writer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Write the contents of a resource at its URI, through a file channel if
+     * it is a file, creating its directory if needed.
+     *
+     * @param resource the resource
+     * @throws IOException if the resource can not be written
+     */
+    public void save(Resource resource) throws IOException {
+        URI uri = resource.getURI();
+        if (uri.isFile()) {
+            Path path = Paths.get(uri.toFileString()).toAbsolutePath();
+            Files.createDirectories(path.getParent());
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                save(resource, channel);
+            }
+        }
+        else {
+            URIConverter converter = resource.getResourceSet() == null ? URIConverter.INSTANCE
+                    : resource.getResourceSet().getURIConverter();
+            try (OutputStream out = converter.createOutputStream(uri)) {
+                save(resource, Channels.newChannel(out));
+            }
+        }
+    }
+
+    /**
+     * Write the contents of a resource to a channel. The channel is not
+     * closed.
+     *
+     * @param resource the resource
+     * @param channel the channel
+     * @throws IOException if the channel can not be written or the model
+     * can not be written as XMI
+     */
+    public void save(Resource resource, WritableByteChannel channel) throws IOException {
+        Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE),
+                BUFFER_SIZE);
+        new Walk(resource, out).write();
+        out.flush();
+    }
+
+    /**
+     * The state of the walk of one resource.
+     */
+    private static final class Walk {
+
+        private final Resource resource;
+
+        private final Writer out;
+
+        /** The resource, if it keeps ids. */
+        private final XMLResource xmlResource;
+
+        /** The prefixes of the packages declared in the root element. */
+        private final Map<EPackage, String> prefixes = new LinkedHashMap<>();
+
+        /** The non containment references of the packages. */
+        private final List<EReference> references = new ArrayList<>();
+
+        /** If the elements of each class can be referenced. */
+        private final Map<EClass, Boolean> referenceable = new HashMap<>();
+
+        /** The generated ids. */
+        private final EmgIdMap ids = new EmgIdMap();
+
+        private int nextId;
+
+        /** The indentations of each depth. */
+        private final List<String> indents = new ArrayList<>();
+
+        Walk(Resource resource, Writer out) {
+            this.resource = resource;
+            this.out = out;
+            this.xmlResource = resource instanceof XMLResource ? (XMLResource) resource : null;
+        }
+
+        void write() throws IOException {
+            List<EObject> roots = resource.getContents();
+            for (EObject root : roots) {
+                addPackage(root.eClass().getEPackage(), true);
+            }
+            if (resource.getResourceSet() != null) {
+                for (Object value : new ArrayList<>(resource.getResourceSet().getPackageRegistry().values())) {
+                    if (value instanceof EPackage) {
+                        addPackage((EPackage) value, false);
+                    }
+                }
+            }
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            if (roots.size() == 1) {
+                EObject root = roots.get(0);
+                writeElement(qualifiedName(root.eClass()), root, root.eClass(), 0, true);
+            }
+            else {
+                out.write("\n<xmi:XMI");
+                writeNamespaces();
+                out.write('>');
+                for (EObject root : roots) {
+                    writeElement(qualifiedName(root.eClass()), root, root.eClass(), 1, false);
+                }
+                out.write("\n</xmi:XMI>");
+            }
+            out.write('\n');
+        }
+
+        /**
+         * Declare a package, the packages of the types it uses, and their
+         * super and sub packages. Ecore is only declared if it is the package
+         * of a root, not for its data types.
+         */
+        private void addPackage(EPackage ePackage, boolean root) {
+            if (ePackage == null || prefixes.containsKey(ePackage) || ePackage == EcorePackage.eINSTANCE && !root) {
+                return;
+            }
+            String prefix = ePackage.getNsPrefix() == null || ePackage.getNsPrefix().isEmpty() ? "ns"
+                    : ePackage.getNsPrefix();
+            String unique = prefix;
+            for (int i = 1; prefixes.containsValue(unique); i++) {
+                unique = prefix + "_" + i;
+            }
+            prefixes.put(ePackage, unique);
+            for (EClassifier classifier : ePackage.getEClassifiers()) {
+                if (classifier instanceof EClass) {
+                    EClass eClass = (EClass) classifier;
+                    for (EClass superType : eClass.getESuperTypes()) {
+                        addPackage(superType.getEPackage(), false);
+                    }
+                    for (EStructuralFeature feature : eClass.getEStructuralFeatures()) {
+                        if (feature instanceof EReference) {
+                            EReference reference = (EReference) feature;
+                            if (!reference.isContainment() && !reference.isContainer() && isSaved(reference)) {
+                                references.add(reference);
+                            }
+                        }
+                        if (feature.getEType() != null) {
+                            addPackage(feature.getEType().getEPackage(), false);
+                        }
+                    }
+                }
+            }
+            addPackage(ePackage.getESuperPackage(), false);
+            for (EPackage subpackage : ePackage.getESubpackages()) {
+                addPackage(subpackage, false);
+            }
+        }
+
+        private void writeNamespaces() throws IOException {
+            out.write(" xmi:version=\"2.0\" xmlns:xmi=\"" + XMI_URI + "\" xmlns:xsi=\"" + XSI_URI + "\"");
+            for (Map.Entry<EPackage, String> entry : prefixes.entrySet()) {
+                out.write(" xmlns:");
+                out.write(entry.getValue());
+                out.write("=\"");
+                writeEscaped(entry.getKey().getNsURI(), true);
+                out.write('"');
+            }
+        }
+
+        private void writeElement(String tag, EObject element, EClass type, int depth, boolean root) throws IOException {
+            EClass eClass = element.eClass();
+            writeIndent(depth);
+            out.write('<');
+            out.write(tag);
+            if (root) {
+                writeNamespaces();
+            }
+            else if (eClass != type) {
+                out.write(" xsi:type=\"");
+                out.write(qualifiedName(eClass));
+                out.write('"');
+            }
+            String id = getId(element, isReferenceable(eClass));
+            if (id != null) {
+                out.write(" xmi:id=\"");
+                writeEscaped(id, true);
+                out.write('"');
+            }
+            boolean children = false;
+            for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+                if (!isSaved(feature) || !element.eIsSet(feature)) {
+                    continue;
+                }
+                if (FeatureMapUtil.isFeatureMap(feature)) {
+                    throw new IOException("Feature maps can not be written: " + feature.getName());
+                }
+                if (feature instanceof EAttribute) {
+                    if (feature.isMany()) {
+                        children = true;
+                    }
+                    else {
+                        Object value = element.eGet(feature);
+                        if (value != null) {
+                            writeAttribute(feature.getName(), EcoreUtil.convertToString(((EAttribute) feature)
+                                    .getEAttributeType(), value));
+                        }
+                    }
+                }
+                else {
+                    EReference reference = (EReference) feature;
+                    if (reference.isContainment()) {
+                        children = true;
+                    }
+                    else if (!reference.isContainer()) {
+                        writeReference(element, reference);
+                    }
+                }
+            }
+            if (!children) {
+                out.write("/>");
+                return;
+            }
+            out.write('>');
+            for (EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+                boolean nested = feature instanceof EReference ? ((EReference) feature).isContainment() : feature.isMany();
+                if (!nested || !isSaved(feature) || !element.eIsSet(feature)) {
+                    continue;
+                }
+                if (feature instanceof EAttribute) {
+                    for (Object value : (List<?>) element.eGet(feature)) {
+                        writeIndent(depth + 1);
+                        out.write('<');
+                        out.write(feature.getName());
+                        if (value == null) {
+                            // As in the save of XMI resources
+                            out.write(" xsi:nil=\"true\"/>");
+                            continue;
+                        }
+                        out.write('>');
+                        writeEscaped(EcoreUtil.convertToString(((EAttribute) feature).getEAttributeType(), value),
+                                false);
+                        out.write("</");
+                        out.write(feature.getName());
+                        out.write('>');
+                    }
+                }
+                else {
+                    EReference reference = (EReference) feature;
+                    for (EObject child : getValues(element, reference)) {
+                        if (child.eIsProxy() || ((InternalEObject) child).eDirectResource() != null) {
+                            // Cross-resource containment
+                            writeIndent(depth + 1);
+                            out.write('<');
+                            out.write(reference.getName());
+                            if (child.eClass() != reference.getEReferenceType()) {
+                                out.write(" xsi:type=\"");
+                                out.write(qualifiedName(child.eClass()));
+                                out.write('"');
+                            }
+                            out.write(" href=\"");
+                            writeEscaped(getUri(child), true);
+                            out.write("\"/>");
+                        }
+                        else {
+                            writeElement(reference.getName(), child, reference.getEReferenceType(), depth + 1, false);
+                        }
+                    }
+                }
+            }
+            writeIndent(depth);
+            out.write("</");
+            out.write(tag);
+            out.write('>');
+        }
+
+        private void writeReference(EObject element, EReference reference) throws IOException {
+            List<EObject> targets = getValues(element, reference);
+            if (targets.isEmpty()) {
+                return;
+            }
+            out.write(' ');
+            out.write(reference.getName());
+            out.write("=\"");
+            boolean first = true;
+            for (EObject target : targets) {
+                if (!first) {
+                    out.write(' ');
+                }
+                first = false;
+                if (target.eIsProxy() || target.eResource() != resource) {
+                    if (target.eClass() != reference.getEReferenceType()) {
+                        out.write(qualifiedName(target.eClass()));
+                        out.write(' ');
+                    }
+                    writeEscaped(getUri(target), true);
+                }
+                else {
+                    writeEscaped(getId(target, true), true);
+                }
+            }
+            out.write('"');
+        }
+
+        private void writeAttribute(String name, String value) throws IOException {
+            out.write(' ');
+            out.write(name);
+            out.write("=\"");
+            writeEscaped(value, true);
+            out.write('"');
+        }
+
+        private void writeIndent(int depth) throws IOException {
+            while (indents.size() <= depth) {
+                StringBuilder indent = new StringBuilder("\n");
+                for (int i = 0; i < indents.size(); i++) {
+                    indent.append("  ");
+                }
+                indents.add(indent.toString());
+            }
+            out.write(indents.get(depth));
+        }
+
+        private void writeEscaped(String value, boolean attribute) throws IOException {
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                String entity;
+                switch (value.charAt(i)) {
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '"':
+                    entity = attribute ? "&quot;" : null;
+                    break;
+                case '\n':
+                    entity = attribute ? "&#xA;" : null;
+                    break;
+                case '\r':
+                    entity = "&#xD;";
+                    break;
+                case '\t':
+                    entity = attribute ? "&#x9;" : null;
+                    break;
+                default:
+                    entity = null;
+                }
+                if (entity != null) {
+                    out.write(value, start, i - start);
+                    out.write(entity);
+                    start = i + 1;
+                }
+            }
+            out.write(value, start, value.length() - start);
+        }
+
+        /**
+         * @param element an element of the resource
+         * @param generate if an id is generated when the element has none
+         * @return the id of the element, or null
+         */
+        private String getId(EObject element, boolean generate) {
+            if (xmlResource != null) {
+                String id = xmlResource.getID(element);
+                if (id != null) {
+                    return id;
+                }
+            }
+            int id = ids.get(element);
+            if (id < 0) {
+                if (!generate) {
+                    return null;
+                }
+                id = nextId++;
+                ids.put(element, id);
+            }
+            return "_" + id;
+        }
+
+        private boolean isReferenceable(EClass eClass) {
+            Boolean result = referenceable.get(eClass);
+            if (result == null) {
+                result = false;
+                for (EReference reference : references) {
+                    EClass type = reference.getEReferenceType();
+                    if (type == EcorePackage.Literals.EOBJECT || type.isSuperTypeOf(eClass)) {
+                        result = true;
+                        break;
+                    }
+                }
+                referenceable.put(eClass, result);
+            }
+            return result;
+        }
+
+        private String qualifiedName(EClass eClass) throws IOException {
+            String prefix = prefixes.get(eClass.getEPackage());
+            if (prefix == null) {
+                throw new IOException(String.format("The package of %s is not reachable from the roots or the "
+                        + "resource set", eClass.getName()));
+            }
+            return prefix + ":" + eClass.getName();
+        }
+
+        private String getUri(EObject target) {
+            URI uri = EcoreUtil.getURI(target);
+            URI base = resource.getURI();
+            if (base != null && base.isHierarchical() && !base.isRelative()) {
+                uri = uri.deresolve(base);
+            }
+            return uri.toString();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<EObject> getValues(EObject element, EReference reference) {
+            if (reference.isMany()) {
+                // The basic list does not resolve proxies
+                return ((InternalEList<EObject>) element.eGet(reference, false)).basicList();
+            }
+            EObject value = (EObject) element.eGet(reference, false);
+            return value == null ? Collections.<EObject>emptyList() : Collections.singletonList(value);
+        }
+
+        private static boolean isSaved(EStructuralFeature feature) {
+            return !feature.isTransient() && !feature.isDerived();
+        }
+    }
+
+}
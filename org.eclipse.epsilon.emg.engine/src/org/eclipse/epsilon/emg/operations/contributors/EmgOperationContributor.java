@@ -12,25 +12,52 @@
  ******************************************************************************/
 package org.eclipse.epsilon.emg.operations.contributors;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.epsilon.common.module.ModuleElement;
+import org.eclipse.epsilon.common.parse.AST;
 import org.eclipse.epsilon.emg.EmgModule;
+import org.eclipse.epsilon.emg.random.EmgCorrelatedVectors;
 import org.eclipse.epsilon.emg.random.EmgRandomGenerator;
 import org.eclipse.epsilon.emg.random.IEmgRandomGenerator;
+import org.eclipse.epsilon.eol.dom.Expression;
+import org.eclipse.epsilon.eol.exceptions.EolInternalException;
 import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
+import org.eclipse.epsilon.eol.execute.introspection.java.ObjectMethod;
 import org.eclipse.epsilon.eol.execute.operations.contributors.OperationContributor;
+import org.eclipse.epsilon.eol.util.ReflectionUtil;
 
 
 /**
  * The Class ObjectOperationContributor delegates all the random generating
  * functions to a EmgRandomGenerator but overloads the nextXXXList operations
  * to allow the user to specify @list annotations values as listIDs.
+ * <p>
+ * The operations are contributed to contextless calls (e.g.
+ * <code>nextInt(10)</code>) and to calls on any other receiver, which is
+ * ignored (e.g. <code>self.nextInt(10)</code>). The operations are resolved
+ * from a dispatch table of method handles keyed by name and number of
+ * arguments that is built on the first lookup, instead of searching the
+ * methods of the class for each call, so calls of other operations (e.g. of
+ * model elements) are rejected with a single lookup.
+ * Overloads are chosen as {@link ReflectionUtil#getMethodFor(Object, String, Object[], boolean, boolean)}
+ * does.
  */
 public class EmgOperationContributor extends OperationContributor implements IEmgRandomGenerator {
 
+    /** The lookup used to create the method handles of the dispatch table. */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
     /** The delegate. */
     private final EmgRandomGenerator delegate;
 
@@ -40,6 +67,9 @@ public class EmgOperationContributor extends OperationContributor implements IEm
     /** The list samples. */
     private Map<String, List<Integer>> createListSampleIndices;
 
+    /** The contributed methods by name, indexed by number of parameters. */
+    private Map<String, ContributedMethod[][]> dispatchTable;
+
     /**
      * Instantiates a new emg operation contributor.
      *
@@ -61,11 +91,39 @@ public class EmgOperationContributor extends OperationContributor implements IEm
         this.module = module;
     }
 
+    /**
+     * Share the values read from list definitions with other generators.
+     *
+     * @param listCorpusCache the cache of list values
+     * @see EmgRandomGenerator#setListCorpusCache(Map)
+     */
+    public void setListCorpusCache(Map<String, List<Object>> listCorpusCache) {
+        delegate.setListCorpusCache(listCorpusCache);
+    }
+
     @Override
     public boolean contributesTo(Object target) {
         return target instanceof Object;
     }
 
+    @Override
+    public ObjectMethod findContributedMethodForUnevaluatedParameters(Object target, String name,
+            List<Expression> parameterExpressions, IEolContext context) {
+        return findContributedMethod(target, name, new Object[] {new AST()}, context, true);
+    }
+
+    @Override
+    public ObjectMethod findContributedMethodForEvaluatedParameters(Object target, String name, Object[] parameters,
+            IEolContext context) {
+        return findContributedMethod(target, name, parameters, context, false);
+    }
+
+    @Override
+    public ObjectMethod findContributedMethodForEvaluatedParameters(Object target, String name, Object[] parameters,
+            IEolContext context, boolean overrideContextOperationContributorRegistry) {
+        return findContributedMethod(target, name, parameters, context, false);
+    }
+
     /**
      * Gets the elements from create rules with the @list annotation with the
      * given name parameter.
@@ -76,6 +134,69 @@ public class EmgOperationContributor extends OperationContributor implements IEm
     public Collection<Object> getNamedListValues(String name) {
         return module.getNamedCreatedObjects().get(name);
     }
+
+    /**
+     * Get an instance of a type of a partitioned model, or its proxy if it
+     * belongs to another partition.
+     *
+     * @param type the name of the type
+     * @param index the number of the instance across partitions
+     * @return the instance or its proxy
+     * @throws EolRuntimeException if the model is not partitioned or there is
+     * no such instance
+     * @see EmgModule#getPartitionElement(String, long)
+     */
+    public Object getPartitionElement(String type, int index) throws EolRuntimeException {
+        return module.getPartitionElement(type, index);
+    }
+
+    /**
+     * Get an instance of a type of a partitioned model, or its proxy if it
+     * belongs to another partition.
+     *
+     * @param type the name of the type
+     * @param index the number of the instance across partitions
+     * @return the instance or its proxy
+     * @throws EolRuntimeException if the model is not partitioned or there is
+     * no such instance
+     * @see EmgModule#getPartitionElement(String, long)
+     */
+    public Object getPartitionElement(String type, long index) throws EolRuntimeException {
+        return module.getPartitionElement(type, index);
+    }
+
+    /**
+     * @param type the name of the type
+     * @return the number of instances of the type in all the partitions, or
+     * zero if the model is not partitioned
+     */
+    public long getPartitionInstances(String type) {
+        return module.getPartition() == null ? 0 : module.getPartition().getInstances(type);
+    }
+
+    /**
+     * Get a random instance of a type of a partitioned model, or its proxy if
+     * it belongs to another partition.
+     *
+     * @param type the name of the type
+     * @return the instance or its proxy
+     * @throws EolRuntimeException if the model is not partitioned or there are
+     * no instances of the type
+     */
+    public Object nextPartitionElement(String type) throws EolRuntimeException {
+        long total = getPartitionInstances(type);
+        if (total == 0) {
+            throw new EolRuntimeException(String.format("There are no %s instances in the partitions", type));
+        }
+        long index;
+        if (total <= Integer.MAX_VALUE) {
+            index = delegate.nextInt((int) total);
+        }
+        else {
+            index = Math.floorMod(((long) delegate.nextInt() << 32) | (delegate.nextInt() & 0xFFFFFFFFL), total);
+        }
+        return module.getPartitionElement(type, index);
+    }
     
     @Override
     public boolean isFromListAsSampleRefill() {
@@ -87,6 +208,123 @@ public class EmgOperationContributor extends OperationContributor implements IEm
         return delegate.nextAddTo(n, m);
     }
 
+    @Override
+    public int[] nextComposition(int n, int m) throws EolRuntimeException {
+        return delegate.nextComposition(n, m);
+    }
+
+    @Override
+    public int[] nextComposition(int n, int m, int min) throws EolRuntimeException {
+        return delegate.nextComposition(n, m, min);
+    }
+
+    @Override
+    public int[] nextMultinomial(int m, double[] weights) throws EolRuntimeException {
+        return delegate.nextMultinomial(m, weights);
+    }
+
+    /**
+     * The {@link #nextMultinomial(int, double[])} of EOL sequences of weights.
+     */
+    public int[] nextMultinomial(int m, Collection<? extends Number> weights) throws EolRuntimeException {
+        return delegate.nextMultinomial(m, toDoubles(weights));
+    }
+
+    @Override
+    public double[] nextDirichlet(double[] alpha) throws EolRuntimeException {
+        return delegate.nextDirichlet(alpha);
+    }
+
+    /**
+     * The {@link #nextDirichlet(double[])} of EOL sequences of alphas.
+     */
+    public double[] nextDirichlet(Collection<? extends Number> alpha) throws EolRuntimeException {
+        return delegate.nextDirichlet(toDoubles(alpha));
+    }
+
+    @Override
+    public int[] nextDirichletSplit(int m, double[] alpha) throws EolRuntimeException {
+        return delegate.nextDirichletSplit(m, alpha);
+    }
+
+    /**
+     * The {@link #nextDirichletSplit(int, double[])} of EOL sequences of alphas.
+     */
+    public int[] nextDirichletSplit(int m, Collection<? extends Number> alpha) throws EolRuntimeException {
+        return delegate.nextDirichletSplit(m, toDoubles(alpha));
+    }
+
+    @Override
+    public EmgCorrelatedVectors getCorrelatedVectors(double[] mean, double[][] covariance)
+            throws EolRuntimeException {
+        return delegate.getCorrelatedVectors(mean, covariance);
+    }
+
+    /**
+     * The {@link #getCorrelatedVectors(double[], double[][])} of an EOL
+     * sequence of means and a sequence of covariance rows.
+     */
+    public EmgCorrelatedVectors getCorrelatedVectors(Collection<? extends Number> mean,
+            Collection<? extends Collection<? extends Number>> covariance) throws EolRuntimeException {
+        return delegate.getCorrelatedVectors(toDoubles(mean), toMatrix(covariance));
+    }
+
+    @Override
+    public double[] nextCorrelated(double[] mean, double[][] covariance) throws EolRuntimeException {
+        return delegate.nextCorrelated(mean, covariance);
+    }
+
+    /**
+     * The {@link #nextCorrelated(double[], double[][])} of an EOL sequence of
+     * means and a sequence of covariance rows.
+     */
+    public double[] nextCorrelated(Collection<? extends Number> mean,
+            Collection<? extends Collection<? extends Number>> covariance) throws EolRuntimeException {
+        return delegate.nextCorrelated(toDoubles(mean), toMatrix(covariance));
+    }
+
+    @Override
+    public double[][] nextCorrelated(double[] mean, double[][] covariance, int count) throws EolRuntimeException {
+        return delegate.nextCorrelated(mean, covariance, count);
+    }
+
+    /**
+     * The {@link #nextCorrelated(double[], double[][], int)} of an EOL
+     * sequence of means and a sequence of covariance rows.
+     */
+    public double[][] nextCorrelated(Collection<? extends Number> mean,
+            Collection<? extends Collection<? extends Number>> covariance, int count) throws EolRuntimeException {
+        return delegate.nextCorrelated(toDoubles(mean), toMatrix(covariance), count);
+    }
+
+    @Override
+    public int getProfileInstances(String profile, String type, double scale) throws EolRuntimeException {
+        return delegate.getProfileInstances(profile, type, scale);
+    }
+
+    @Override
+    public String nextProfileType(String profile) throws EolRuntimeException {
+        return delegate.nextProfileType(profile);
+    }
+
+    @Override
+    public Object nextProfileValue(String profile, String type, String attribute) throws EolRuntimeException {
+        return delegate.nextProfileValue(profile, type, attribute);
+    }
+
+    @Override
+    public int nextProfileCardinality(String profile, String type, String feature) throws EolRuntimeException {
+        return delegate.nextProfileCardinality(profile, type, feature);
+    }
+
+    private static double[] toDoubles(Collection<? extends Number> values) {
+        return values.stream().mapToDouble(Number::doubleValue).toArray();
+    }
+
+    private static double[][] toMatrix(Collection<? extends Collection<? extends Number>> rows) {
+        return rows.stream().map(EmgOperationContributor::toDoubles).toArray(double[][]::new);
+    }
+
     @Override
     public boolean nextBoolean() {
         return delegate.nextBoolean();
@@ -112,6 +350,11 @@ public class EmgOperationContributor extends OperationContributor implements IEm
         return delegate.nextFromCollection(c);
     }
     
+    @Override
+    public String nextFromPattern(String regex) throws EolRuntimeException {
+        return delegate.nextFromPattern(regex);
+    }
+
     @Override
     public Object nextFromList(String listID) throws EolRuntimeException {
         Collection<Object> existing = getNamedListValues(listID);
@@ -123,6 +366,16 @@ public class EmgOperationContributor extends OperationContributor implements IEm
         }
     }
     
+    @Override
+    public String nextName(String listID) throws EolRuntimeException {
+        return delegate.nextName(listID);
+    }
+
+    @Override
+    public String nextName(String listID, int order, int minLength, int maxLength) throws EolRuntimeException {
+        return delegate.nextName(listID, order, minLength, maxLength);
+    }
+
     @Override
     public Object nextFromListAsSample(String listID) throws EolRuntimeException {
         List<Object> existing = (List<Object>) getNamedListValues(listID);
@@ -158,6 +411,16 @@ public class EmgOperationContributor extends OperationContributor implements IEm
     public float nextGaussian() {
 		return delegate.nextGaussian();
 	}
+
+    @Override
+    public double nextGaussian(double mean, double sd) throws EolRuntimeException {
+        return delegate.nextGaussian(mean, sd);
+    }
+
+    @Override
+    public double nextExponential(double mean) throws EolRuntimeException {
+        return delegate.nextExponential(mean);
+    }
 	
     @Override
     public String nextHttpURI(boolean addPort, boolean addPath, boolean addQuery, boolean addFragment)
@@ -240,6 +503,72 @@ public class EmgOperationContributor extends OperationContributor implements IEm
 	public String nextUUID() {
 		return delegate.nextUUID();
 	}
+
+    @Override
+    public String nextUniqueString(String scope, int length) throws EolRuntimeException {
+        return delegate.nextUniqueString(scope, length);
+    }
+
+    @Override
+    public String nextUniqueString(String scope, String charSet, int length) throws EolRuntimeException {
+        return delegate.nextUniqueString(scope, charSet, length);
+    }
+
+    @Override
+    public String nextUniqueCamelCaseWords(String scope, String characterSet, int length, int minWordLength)
+            throws EolRuntimeException {
+        return delegate.nextUniqueCamelCaseWords(scope, characterSet, length, minWordLength);
+    }
+
+    @Override
+    public int nextUniqueInt(String scope, int lower, int upper) throws EolRuntimeException {
+        return delegate.nextUniqueInt(scope, lower, upper);
+    }
+
+    @Override
+    public String nextUniqueFromPattern(String scope, String regex) throws EolRuntimeException {
+        return delegate.nextUniqueFromPattern(scope, regex);
+    }
+
+    @Override
+    public boolean addUniqueValue(String scope, Object value) {
+        return delegate.addUniqueValue(scope, value);
+    }
+
+    @Override
+    public List<String> nextUUIDs(int count) {
+        return delegate.nextUUIDs(count);
+    }
+
+    @Override
+    public String nextULID() throws EolRuntimeException {
+        return delegate.nextULID();
+    }
+
+    @Override
+    public List<String> nextULIDs(int count) throws EolRuntimeException {
+        return delegate.nextULIDs(count);
+    }
+
+    @Override
+    public String nextBase62(int length) throws EolRuntimeException {
+        return delegate.nextBase62(length);
+    }
+
+    @Override
+    public String nextUniqueBase62(int length) throws EolRuntimeException {
+        return delegate.nextUniqueBase62(length);
+    }
+
+    @Override
+    public List<String> nextUniqueBase62s(int length, int count) throws EolRuntimeException {
+        return delegate.nextUniqueBase62s(length, count);
+    }
+
+    @Override
+    public int nextUniqueInt(int n) throws EolRuntimeException {
+        return delegate.nextUniqueInt(n);
+    }
     
     
     @Override
@@ -257,6 +586,40 @@ public class EmgOperationContributor extends OperationContributor implements IEm
 	public void setFromListAsSampleRefill(boolean refill) {
 		delegate.setFromListAsSampleRefill(refill);
 	}
+
+    @Override
+    public void setNameModelPersistence(boolean persist) {
+        delegate.setNameModelPersistence(persist);
+    }
+
+    @Override
+    public void setQuasiRandomSequence(QuasiRandomSequence sequence, int dimensions, int start)
+            throws EolRuntimeException {
+        delegate.setQuasiRandomSequence(sequence, dimensions, start);
+    }
+
+    /**
+     * The {@link #setQuasiRandomSequence(QuasiRandomSequence, int, int)} of
+     * EOL, which names the sequence ("Sobol", "Halton" or "None").
+     */
+    public void setQuasiRandomSequence(String sequence, int dimensions, int start) throws EolRuntimeException {
+        try {
+            delegate.setQuasiRandomSequence(QuasiRandomSequence.valueOf(sequence), dimensions, start);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new EolRuntimeException("Unknown quasi random sequence: " + sequence);
+        }
+    }
+
+    @Override
+    public void nextQuasiRandomPoint() {
+        delegate.nextQuasiRandomPoint();
+    }
+
+    @Override
+    public void endQuasiRandomPoint() {
+        delegate.endQuasiRandomPoint();
+    }
     
     @Override
 	public void setNextValueDistribution(Distribution distribution,
@@ -286,6 +649,155 @@ public class EmgOperationContributor extends OperationContributor implements IEm
 		return createListSampleIndices;
 	}
 
+
+    /**
+     * Find the contributed method for the arguments. As in the reflective
+     * lookup, the first method whose parameters accept the arguments without
+     * primitive conversions is chosen and, if there is none, the first one
+     * that accepts them unboxed.
+     *
+     * @param target the target of the call
+     * @param name the name of the operation
+     * @param arguments the arguments
+     * @param exact if true, the type of the parameters must be the class of
+     * the arguments
+     * @param context the context
+     * @return the method, or null if this contributor does not provide it
+     */
+    private ObjectMethod findContributedMethod(Object target, String name, Object[] arguments, IEolContext context,
+            boolean exact) {
+        ContributedMethod[][] byArity = getDispatchTable().get(name);
+        if (byArity == null || arguments.length >= byArity.length || byArity[arguments.length] == null) {
+            return null;
+        }
+        ContributedMethod[] candidates = byArity[arguments.length];
+        for (int pass = 0; pass < 2; pass++) {
+            for (ContributedMethod candidate : candidates) {
+                if (candidate.accepts(arguments, exact, pass == 1)) {
+                    setTarget(target);
+                    setContext(context);
+                    return new MethodHandleObjectMethod(getReflectionTarget(target), candidate);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Map<String, ContributedMethod[][]> getDispatchTable() {
+        if (dispatchTable == null) {
+            Method[] methods = includeInheritedMethods() ? getClass().getMethods() : getClass().getDeclaredMethods();
+            Map<String, List<ContributedMethod>> byName = new HashMap<>();
+            for (Method method : methods) {
+                String name = method.getName().startsWith("_") ? method.getName().substring(1) : method.getName();
+                List<ContributedMethod> named = byName.get(name);
+                if (named == null) {
+                    named = new ArrayList<>();
+                    byName.put(name, named);
+                }
+                named.add(new ContributedMethod(method));
+            }
+            Map<String, ContributedMethod[][]> table = new HashMap<>();
+            for (Map.Entry<String, List<ContributedMethod>> entry : byName.entrySet()) {
+                int maxArity = 0;
+                for (ContributedMethod method : entry.getValue()) {
+                    maxArity = Math.max(maxArity, method.parameterTypes.length);
+                }
+                ContributedMethod[][] byArity = new ContributedMethod[maxArity + 1][];
+                for (int arity = 0; arity <= maxArity; arity++) {
+                    List<ContributedMethod> candidates = new ArrayList<>();
+                    for (ContributedMethod method : entry.getValue()) {
+                        if (method.parameterTypes.length == arity) {
+                            candidates.add(method);
+                        }
+                    }
+                    if (!candidates.isEmpty()) {
+                        byArity[arity] = candidates.toArray(new ContributedMethod[candidates.size()]);
+                    }
+                }
+                table.put(entry.getKey(), byArity);
+            }
+            dispatchTable = table;
+        }
+        return dispatchTable;
+    }
+
+    /**
+     * A method of the contributor and a method handle that invokes it with
+     * the receiver and an array of arguments.
+     */
+    private static class ContributedMethod {
+
+        private final Method method;
+
+        private final Class<?>[] parameterTypes;
+
+        private MethodHandle handle;
+
+        ContributedMethod(Method method) {
+            this.method = method;
+            this.parameterTypes = method.getParameterTypes();
+        }
+
+        boolean accepts(Object[] arguments, boolean exact, boolean unboxed) {
+            for (int i = 0; i < parameterTypes.length; i++) {
+                boolean accepted;
+                if (exact) {
+                    accepted = arguments[i] != null && parameterTypes[i].equals(arguments[i].getClass());
+                }
+                else if (unboxed) {
+                    accepted = ReflectionUtil.isInstance(parameterTypes[i], arguments[i]);
+                }
+                else {
+                    accepted = parameterTypes[i].isInstance(arguments[i]);
+                }
+                if (!accepted) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The handle is created the first time the method is called, most of
+         * the methods of the table are never called by a script.
+         */
+        MethodHandle getHandle() throws IllegalAccessException {
+            if (handle == null) {
+                // Public methods of non public classes can not be unreflected as they are
+                if (!Modifier.isPublic(method.getModifiers())
+                        || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+                    method.setAccessible(true);
+                }
+                MethodHandle direct = LOOKUP.unreflect(method);
+                handle = direct.asType(MethodType.genericMethodType(parameterTypes.length + 1))
+                        .asSpreader(Object[].class, parameterTypes.length);
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * An ObjectMethod that invokes the method through its method handle.
+     */
+    private static class MethodHandleObjectMethod extends ObjectMethod {
+
+        private final ContributedMethod contributed;
+
+        MethodHandleObjectMethod(Object object, ContributedMethod contributed) {
+            super(object, contributed.method);
+            this.contributed = contributed;
+        }
+
+        @Override
+        public Object execute(Object[] parameters, ModuleElement ast) throws EolRuntimeException {
+            try {
+                return (Object) contributed.getHandle().invokeExact(object, parameters);
+            } catch (Throwable t) {
+                throw new EolInternalException(t, ast);
+            }
+        }
+    }
+
 }
 
 
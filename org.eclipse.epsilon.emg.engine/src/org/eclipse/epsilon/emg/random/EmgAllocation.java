@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgAllocation splits a total into parts, e.g. the arcs of a net
+ * between its transitions, using primitive arrays:
+ * <ul>
+ * <li>Compositions: all the ways of splitting the total into the parts
+ * (zeros included) are equally likely. The parts are the gaps between the
+ * bars of a stars and bars arrangement, chosen by sequential random sampling
+ * (Vitter's Algorithm D), which draws the gaps in order in O(n) expected
+ * time, independent of the total.</li>
+ * <li>Multinomial allocations: each unit goes to a part with a probability
+ * proportional to the weight of the part. The units are sorted uniform
+ * values, generated in order, merged with the cumulative weights in O(n + m)
+ * time.</li>
+ * <li>Dirichlet splits: the proportions of the parts are Dirichlet
+ * distributed and the total is split in those proportions, in O(n) time.</li>
+ * </ul>
+ */
+public class EmgAllocation {
+
+    /** The inverse of Vitter's alpha, the ratio at which Algorithm D switches to Algorithm A. */
+    private static final int ALPHA_INV = 13;
+
+    /** The generator. */
+    private final RandomGenerator random;
+
+    /**
+     * Instantiates a new allocation.
+     *
+     * @param random the pseudo random generator
+     */
+    public EmgAllocation(RandomGenerator random) {
+        this.random = random;
+    }
+
+    /**
+     * Returns a uniformly distributed composition of the total in the given
+     * number of parts, each part at least the minimum.
+     *
+     * @param parts the number of parts
+     * @param total the sum of the parts
+     * @param min the minimum of each part
+     * @return the parts
+     * @throws EolRuntimeException if there are no parts, or the total is less
+     * than the minimum of the parts
+     */
+    public int[] nextComposition(int parts, int total, int min) throws EolRuntimeException {
+        if (parts < 1) {
+            throw new EolRuntimeException("The number of parts must be positive: " + parts);
+        }
+        if (min < 0 || (long) parts * min > total) {
+            throw new EolRuntimeException(String.format("%d can not be split in %d parts of at least %d",
+                    total, parts, min));
+        }
+        int[] result = new int[parts];
+        int stars = (int) (total - (long) parts * min);
+        // The parts are the stars between the bars, the last one after the last bar
+        long remaining = sequentialSkips(stars + parts - 1L, parts - 1, result);
+        result[parts - 1] = (int) remaining;
+        if (min > 0) {
+            for (int i = 0; i < parts; i++) {
+                result[i] += min;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a multinomial allocation of the total: each unit is given to a
+     * part with a probability proportional to its weight.
+     *
+     * @param total the number of units
+     * @param weights the non negative weights of the parts
+     * @return the parts
+     * @throws EolRuntimeException if the weights are negative or add to zero
+     */
+    public int[] nextMultinomial(int total, double[] weights) throws EolRuntimeException {
+        if (total < 0) {
+            throw new EolRuntimeException("The total must not be negative: " + total);
+        }
+        double sum = 0;
+        for (double weight : weights) {
+            if (!(weight >= 0) || Double.isInfinite(weight)) {
+                throw new EolRuntimeException("The weights must be finite and not negative: " + weight);
+            }
+            sum += weight;
+        }
+        if (sum == 0) {
+            throw new EolRuntimeException("The weights must not add to zero");
+        }
+        int[] result = new int[weights.length];
+        // The sorted uniform values, from the largest (U(k) = U(k+1) * V^(1/k)),
+        // are allocated to the parts from the last one
+        int part = weights.length - 1;
+        double lower = sum - weights[part];
+        double value = sum;
+        for (int k = total; k > 0; k--) {
+            value *= Math.pow(random.nextDouble(), 1.0 / k);
+            while (value < lower && part > 0) {
+                part--;
+                lower -= weights[part];
+            }
+            // Rounding could leave a zero weight part with the unit
+            while (weights[part] == 0 && part > 0) {
+                part--;
+            }
+            result[part]++;
+        }
+        return result;
+    }
+
+    /**
+     * Returns Dirichlet distributed proportions: non negative values that add
+     * to one, the i-th with mean alpha[i]/sum(alpha). Alphas of one make all
+     * the proportions equally likely; larger alphas give proportions closer
+     * to their mean, smaller ones more uneven proportions.
+     *
+     * @param alpha the positive concentration of each proportion
+     * @return the proportions
+     * @throws EolRuntimeException if an alpha is not positive
+     */
+    public double[] nextDirichlet(double[] alpha) throws EolRuntimeException {
+        double[] result = new double[alpha.length];
+        double sum = 0;
+        for (int i = 0; i < alpha.length; i++) {
+            if (!(alpha[i] > 0) || Double.isInfinite(alpha[i])) {
+                throw new EolRuntimeException("The alphas must be finite and positive: " + alpha[i]);
+            }
+            result[i] = nextGamma(alpha[i]);
+            sum += result[i];
+        }
+        if (sum == 0) {
+            // All the gammas underflowed (tiny alphas), one part takes all
+            result[random.nextInt(alpha.length)] = 1;
+            return result;
+        }
+        for (int i = 0; i < alpha.length; i++) {
+            result[i] /= sum;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a split of the total in Dirichlet distributed proportions, see
+     * {@link #nextDirichlet(double[])}. The parts are rounded so the i-th part
+     * is the difference between the rounded cumulative totals of the first i
+     * and the first i-1 proportions; each part differs in less than one from
+     * its exact proportion.
+     *
+     * @param total the sum of the parts
+     * @param alpha the positive concentration of each part
+     * @return the parts
+     * @throws EolRuntimeException if the total is negative or an alpha is not
+     * positive
+     */
+    public int[] nextDirichletSplit(int total, double[] alpha) throws EolRuntimeException {
+        if (total < 0) {
+            throw new EolRuntimeException("The total must not be negative: " + total);
+        }
+        double[] proportions = nextDirichlet(alpha);
+        int[] result = new int[alpha.length];
+        double cumulative = 0;
+        long previous = 0;
+        for (int i = 0; i < alpha.length; i++) {
+            cumulative += proportions[i];
+            long current = i == alpha.length - 1 ? total : Math.min(total, Math.round(cumulative * total));
+            result[i] = (int) (current - previous);
+            previous = current;
+        }
+        return result;
+    }
+
+    /**
+     * Gamma(shape, 1) distributed value, with Marsaglia and Tsang's method.
+     * Shapes less than one use Gamma(shape + 1) * U^(1/shape).
+     */
+    private double nextGamma(double shape) {
+        if (shape < 1) {
+            return nextGamma(shape + 1) * Math.pow(random.nextDouble(), 1 / shape);
+        }
+        if (shape == 1) {
+            return -Math.log(1 - random.nextDouble());
+        }
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x;
+            double v;
+            do {
+                x = random.nextGaussian();
+                v = 1 + c * x;
+            } while (v <= 0);
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+                return d * v;
+            }
+        }
+    }
+
+    /**
+     * Selects the given number of records, in order and uniformly, from the
+     * records (Vitter's Algorithm D, with Algorithm A once the selections are
+     * dense). The number of records skipped before each selection is stored
+     * in the skips.
+     *
+     * @param records the number of records
+     * @param selections the number of records to select
+     * @param skips the number of records skipped before each selection
+     * @return the number of records after the last selection
+     */
+    private long sequentialSkips(long records, int selections, int[] skips) {
+        int i = 0;
+        int n = selections;
+        double nreal = n;
+        double N = records;
+        if (n == 0) {
+            return records;
+        }
+        double ninv = 1.0 / nreal;
+        double vprime = Math.exp(Math.log(random.nextDouble()) * ninv);
+        double qu1real = -nreal + 1.0 + N;
+        double threshold = ALPHA_INV * nreal;
+        while (n > 1 && threshold < N) {
+            double nmin1inv = 1.0 / (-1.0 + nreal);
+            long s;
+            while (true) {
+                double x;
+                while (true) {
+                    x = N * (-vprime + 1.0);
+                    s = (long) x;
+                    if (s < qu1real) {
+                        break;
+                    }
+                    vprime = Math.exp(Math.log(random.nextDouble()) * ninv);
+                }
+                double u = random.nextDouble();
+                double negSreal = -s;
+                double y1 = Math.exp(Math.log(u * N / qu1real) * nmin1inv);
+                vprime = y1 * (-x / N + 1.0) * (qu1real / (negSreal + qu1real));
+                if (vprime <= 1.0) {
+                    // Accepted, vprime is the value of the next selection
+                    break;
+                }
+                double y2 = 1.0;
+                double top = -1.0 + N;
+                double bottom;
+                double limit;
+                if (n - 1 > s) {
+                    bottom = -nreal + N;
+                    limit = -s + N;
+                }
+                else {
+                    bottom = -1.0 + negSreal + N;
+                    limit = qu1real;
+                }
+                for (double t = -1.0 + N; t >= limit; t--) {
+                    y2 = (y2 * top) / bottom;
+                    top--;
+                    bottom--;
+                }
+                if (N / (-x + N) >= y1 * Math.exp(Math.log(y2) * nmin1inv)) {
+                    vprime = Math.exp(Math.log(random.nextDouble()) * nmin1inv);
+                    break;
+                }
+                vprime = Math.exp(Math.log(random.nextDouble()) * ninv);
+            }
+            skips[i++] = (int) s;
+            N = -s + (-1.0 + N);
+            nreal = -1.0 + nreal;
+            n--;
+            ninv = nmin1inv;
+            qu1real = -s + qu1real;
+            threshold -= ALPHA_INV;
+        }
+        if (n > 1) {
+            // Algorithm A
+            double top = N - nreal;
+            while (n > 1) {
+                double v = random.nextDouble();
+                long s = 0;
+                double quot = top / N;
+                while (quot > v) {
+                    s++;
+                    top--;
+                    N--;
+                    quot = (quot * top) / N;
+                }
+                skips[i++] = (int) s;
+                N--;
+                n--;
+            }
+            vprime = random.nextDouble();
+        }
+        long s = (long) (N * vprime);
+        skips[i] = (int) s;
+        return (long) N - s - 1;
+    }
+
+}
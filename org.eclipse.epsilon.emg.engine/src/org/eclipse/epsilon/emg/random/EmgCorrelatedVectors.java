@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.random.CorrelatedRandomVectorGenerator;
+import org.apache.commons.math3.random.NormalizedRandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgCorrelatedVectors draws vectors of normally distributed values with
+ * a given mean and covariance, e.g. the size and weight of an element. The
+ * covariance is factorised once, when the vectors are created, by the
+ * {@link CorrelatedRandomVectorGenerator}, which supports positive
+ * semi-definite matrices, i.e. values that are linear combinations of other
+ * values. Each vector is then the mean plus the root of the covariance times
+ * a vector of standard normal values, without allocating anything but the
+ * returned array.
+ */
+public class EmgCorrelatedVectors {
+
+    /** The threshold below which the covariance is considered singular. */
+    private static final double SMALL = 1e-12;
+
+    /** The mean. */
+    private final double[] mean;
+
+    /** The root of the covariance, of dimension x rank. */
+    private final double[][] root;
+
+    /** The rank of the covariance. */
+    private final int rank;
+
+    /** The standard normal values. */
+    private final NormalizedRandomGenerator normal;
+
+    /** The standard normal values of the current vector. */
+    private final double[] normals;
+
+    /**
+     * Instantiates new correlated vectors.
+     *
+     * @param mean the mean of each value
+     * @param covariance the symmetric positive semi-definite covariance of
+     * the values
+     * @param normal the standard normal values
+     * @throws EolRuntimeException if the covariance does not match the mean,
+     * is not symmetric or not positive semi-definite
+     */
+    public EmgCorrelatedVectors(double[] mean, double[][] covariance, NormalizedRandomGenerator normal)
+            throws EolRuntimeException {
+        int dimension = mean.length;
+        if (dimension == 0) {
+            throw new EolRuntimeException("The mean must have at least one value.");
+        }
+        if (covariance.length != dimension) {
+            throw new EolRuntimeException(String.format("The covariance must have %d rows, one per value: %d",
+                    dimension, covariance.length));
+        }
+        for (int i = 0; i < dimension; i++) {
+            if (covariance[i].length != dimension) {
+                throw new EolRuntimeException(String.format("The covariance must have %d columns, one per value: %d",
+                        dimension, covariance[i].length));
+            }
+            for (int j = 0; j < i; j++) {
+                double scale = Math.max(Math.abs(covariance[i][j]), Math.abs(covariance[j][i]));
+                if (Math.abs(covariance[i][j] - covariance[j][i]) > SMALL * Math.max(1, scale)) {
+                    throw new EolRuntimeException(String.format("The covariance must be symmetric: [%d][%d] is %s and [%d][%d] is %s",
+                            i, j, covariance[i][j], j, i, covariance[j][i]));
+                }
+            }
+        }
+        CorrelatedRandomVectorGenerator factorisation;
+        try {
+            factorisation = new CorrelatedRandomVectorGenerator(mean.clone(),
+                    new Array2DRowRealMatrix(covariance), SMALL, normal);
+        }
+        catch (MathIllegalArgumentException ex) {
+            throw new EolRuntimeException("The covariance must be positive semi-definite: " + ex.getMessage());
+        }
+        RealMatrix rootMatrix = factorisation.getRootMatrix();
+        this.mean = mean.clone();
+        this.root = rootMatrix.getData();
+        this.rank = factorisation.getRank();
+        this.normal = normal;
+        this.normals = new double[rank];
+    }
+
+    /**
+     * @return the number of values of each vector
+     */
+    public int getDimension() {
+        return mean.length;
+    }
+
+    /**
+     * @return the next vector
+     */
+    public double[] next() {
+        double[] values = new double[mean.length];
+        next(values);
+        return values;
+    }
+
+    /**
+     * Draw the next vector into the given array.
+     *
+     * @param values the array of the values, of at least
+     * {@link #getDimension()} length
+     */
+    public void next(double[] values) {
+        for (int j = 0; j < rank; j++) {
+            normals[j] = normal.nextNormalizedDouble();
+        }
+        for (int i = 0; i < mean.length; i++) {
+            double[] row = root[i];
+            double value = mean[i];
+            for (int j = 0; j < rank; j++) {
+                value += row[j] * normals[j];
+            }
+            values[i] = value;
+        }
+    }
+
+    /**
+     * @param count the number of vectors
+     * @return the next <code>count</code> vectors
+     * @throws EolRuntimeException if the count is negative
+     */
+    public double[][] next(int count) throws EolRuntimeException {
+        if (count < 0) {
+            throw new EolRuntimeException("The number of vectors must not be negative: " + count);
+        }
+        double[][] vectors = new double[count][mean.length];
+        for (double[] vector : vectors) {
+            next(vector);
+        }
+        return vectors;
+    }
+
+}
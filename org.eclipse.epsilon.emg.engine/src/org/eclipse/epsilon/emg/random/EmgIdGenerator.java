@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgIdGenerator generates identifiers from the pseudo random generator of
+ * an {@link EmgRandomGenerator}, so identifiers are reproducible when the
+ * generator is seeded. It provides:
+ * <ul>
+ * <li>Version 4 UUIDs, with the format of {@link java.util.UUID#randomUUID()}.</li>
+ * <li>ULIDs: 26 characters (Crockford's base 32) made of a 48 bit timestamp
+ * and 80 random bits. ULIDs generated in the same millisecond increment the
+ * random bits of the previous one, so ULIDs sort in generation order.</li>
+ * <li>Base 62 identifiers of a given length, random or unique.</li>
+ * <li>Unique integers in a range.</li>
+ * </ul>
+ * Unique values are drawn from a pseudo random permutation of their range,
+ * a keyed bijection walked by a counter, so uniqueness does not require
+ * remembering the generated values.
+ */
+public class EmgIdGenerator {
+
+    /** The digits of the base 62 identifiers. */
+    private static final char[] BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    /** The digits of the ULIDs, Crockford's base 32. */
+    private static final char[] BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    /** The hexadecimal digits of the UUIDs. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The maximum length of base 62 identifiers whose range fits a long. */
+    public static final int MAX_BASE62_LENGTH = 10;
+
+    /** The largest ULID timestamp, 48 bits. */
+    private static final long MAX_TIME = (1L << 48) - 1;
+
+    /** The generator. */
+    private final RandomGenerator random;
+
+    /** The clock of the ULID timestamps. */
+    private final LongSupplier clock;
+
+    /** The unique sequences, by size of their range. */
+    private final Map<Long, UniqueSequence> uniqueSequences = new HashMap<>();
+
+    /** The unique sequences of the scopes of unique integers, by scope. */
+    private final Map<String, UniqueSequence> scopedSequences = new HashMap<>();
+
+    /** The timestamp of the last ULID, -1 if none has been generated. */
+    private long lastTime = -1;
+
+    /** The high 16 random bits of the last ULID. */
+    private long lastHigh;
+
+    /** The low 64 random bits of the last ULID. */
+    private long lastLow;
+
+    /**
+     * Instantiates a new id generator.
+     *
+     * @param random the pseudo random generator
+     * @param clock the clock that provides the ULID timestamps, in milliseconds
+     */
+    public EmgIdGenerator(RandomGenerator random, LongSupplier clock) {
+        this.random = random;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns a version 4 UUID.
+     *
+     * @return the string representation of the UUID
+     */
+    public String nextUUID() {
+        long high = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long low = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        char[] chars = new char[36];
+        hex(chars, 0, high >>> 32, 8);
+        chars[8] = '-';
+        hex(chars, 9, high >>> 16, 4);
+        chars[13] = '-';
+        hex(chars, 14, high, 4);
+        chars[18] = '-';
+        hex(chars, 19, low >>> 48, 4);
+        chars[23] = '-';
+        hex(chars, 24, low, 12);
+        return new String(chars);
+    }
+
+    /**
+     * Returns a batch of version 4 UUIDs.
+     *
+     * @param count the number of UUIDs
+     * @return the UUIDs
+     */
+    public List<String> nextUUIDs(int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextUUID());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a ULID. ULIDs generated with the same (or an earlier) timestamp
+     * as the previous one increment its random bits, so successive ULIDs are
+     * always sorted.
+     *
+     * @return the ULID
+     * @throws EolRuntimeException if the timestamp exceeds 48 bits
+     */
+    public String nextULID() throws EolRuntimeException {
+        long time = clock.getAsLong();
+        if (time > lastTime) {
+            lastTime = time;
+            lastHigh = random.nextInt() & 0xFFFFL;
+            lastLow = random.nextLong();
+        }
+        else {
+            lastLow++;
+            if (lastLow == 0) {
+                lastHigh = (lastHigh + 1) & 0xFFFFL;
+                if (lastHigh == 0) {
+                    lastTime++;
+                }
+            }
+        }
+        if (lastTime > MAX_TIME) {
+            throw new EolRuntimeException("The ULID timestamp does not fit in 48 bits: " + lastTime);
+        }
+        char[] chars = new char[26];
+        // 10 characters of timestamp (50 bits, the first 2 are 0)
+        base32(chars, 0, lastTime, 10);
+        // 16 characters of randomness: 80 bits, 4 + 60 low bits and 16 high bits
+        base32(chars, 10, (lastHigh << 4) | (lastLow >>> 60), 4);
+        base32(chars, 14, lastLow, 12);
+        return new String(chars);
+    }
+
+    /**
+     * Returns a batch of ULIDs, sorted in generation order.
+     *
+     * @param count the number of ULIDs
+     * @return the ULIDs
+     * @throws EolRuntimeException if the timestamp exceeds 48 bits
+     */
+    public List<String> nextULIDs(int count) throws EolRuntimeException {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextULID());
+        }
+        return ids;
+    }
+
+    /**
+     * Returns a random base 62 identifier. Identifiers are not guaranteed to
+     * be unique, see {@link #nextUniqueBase62(int)}.
+     *
+     * @param length the number of characters
+     * @return the identifier
+     * @throws EolRuntimeException if the length is not positive
+     */
+    public String nextBase62(int length) throws EolRuntimeException {
+        if (length < 1) {
+            throw new EolRuntimeException("The length of an identifier must be positive: " + length);
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = BASE62[random.nextInt(62)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns a base 62 identifier that is different from all the identifiers
+     * of the same length previously returned by this generator.
+     *
+     * @param length the number of characters, at most {@link #MAX_BASE62_LENGTH}
+     * @return the identifier
+     * @throws EolRuntimeException if the length is out of range or all the
+     * identifiers of the length have been generated
+     */
+    public String nextUniqueBase62(int length) throws EolRuntimeException {
+        if (length < 1 || length > MAX_BASE62_LENGTH) {
+            throw new EolRuntimeException("The length of a unique identifier must be between 1 and "
+                    + MAX_BASE62_LENGTH + ": " + length);
+        }
+        long range = 1;
+        for (int i = 0; i < length; i++) {
+            range *= 62;
+        }
+        long value = getUniqueSequence(range).next();
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            chars[i] = BASE62[(int) (value % 62)];
+            value /= 62;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns a batch of unique base 62 identifiers.
+     *
+     * @param length the number of characters, at most {@link #MAX_BASE62_LENGTH}
+     * @param count the number of identifiers
+     * @return the identifiers
+     * @throws EolRuntimeException if the length is out of range or all the
+     * identifiers of the length have been generated
+     * @see #nextUniqueBase62(int)
+     */
+    public List<String> nextUniqueBase62s(int length, int count) throws EolRuntimeException {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(nextUniqueBase62(length));
+        }
+        return ids;
+    }
+
+    /**
+     * Returns an integer between 0 (inclusive) and n (exclusive) that is
+     * different from all the integers previously returned by this generator
+     * for the same n.
+     *
+     * @param n the upper bound, must be positive
+     * @return the integer
+     * @throws EolRuntimeException if n is not positive or all the integers of
+     * the range have been generated
+     */
+    public int nextUniqueInt(int n) throws EolRuntimeException {
+        if (n < 1) {
+            throw new EolRuntimeException("The upper bound of a unique integer must be positive: " + n);
+        }
+        return (int) getUniqueSequence(n).next();
+    }
+
+    /**
+     * Returns an integer between lower and upper (inclusive) that the scope
+     * accepts. The integers are drawn from a pseudo random permutation of
+     * the range of the scope, so integers the scope rejects (e.g. issued
+     * before by other generators of the scope) are skipped and every integer
+     * of the range can be returned. The permutation of a scope starts again
+     * if the scope is used with a different range.
+     *
+     * @param scope the name of the scope
+     * @param lower the lower bound (inclusive)
+     * @param upper the upper bound (inclusive)
+     * @param accept tells if an integer has not been issued in the scope, and
+     * marks it as issued
+     * @return the integer
+     * @throws EolRuntimeException if upper is less than lower or the scope
+     * has rejected or been given all the integers of the range
+     */
+    public int nextUniqueInt(String scope, int lower, int upper, IntPredicate accept) throws EolRuntimeException {
+        if (upper < lower) {
+            throw new EolRuntimeException("The upper bound of a unique integer must not be less than the lower bound: "
+                    + lower + ", " + upper);
+        }
+        long range = (long) upper - lower + 1;
+        UniqueSequence sequence = scopedSequences.get(scope);
+        if (sequence == null || sequence.lower != lower || sequence.range != range) {
+            sequence = new UniqueSequence(lower, range, random);
+            scopedSequences.put(scope, sequence);
+        }
+        int value;
+        do {
+            value = (int) sequence.next();
+        } while (!accept.test(value));
+        return value;
+    }
+
+    private UniqueSequence getUniqueSequence(long range) {
+        UniqueSequence sequence = uniqueSequences.get(range);
+        if (sequence == null) {
+            sequence = new UniqueSequence(0, range, random);
+            uniqueSequences.put(range, sequence);
+        }
+        return sequence;
+    }
+
+    private static void hex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    private static void base32(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = BASE32[(int) (value & 0x1F)];
+            value >>>= 5;
+        }
+    }
+
+    /**
+     * A pseudo random permutation of the integers in [lower, lower + range),
+     * walked by a counter. The permutation is a keyed bijection of the smallest power of
+     * two that holds the range (rounds of xor-shift, multiplication by an odd
+     * number and addition, all invertible modulo a power of two); values
+     * outside of the range are permuted again until they fall in it (cycle
+     * walking), which keeps the mapping a bijection of the range.
+     */
+    private static class UniqueSequence {
+
+        private static final int ROUNDS = 3;
+
+        private final long lower;
+
+        private final long range;
+
+        private final int bits;
+
+        private final long mask;
+
+        private final long[] multipliers = new long[ROUNDS];
+
+        private final long[] addends = new long[ROUNDS];
+
+        private long counter;
+
+        UniqueSequence(long lower, long range, RandomGenerator random) {
+            this.lower = lower;
+            this.range = range;
+            this.bits = Math.max(2, 64 - Long.numberOfLeadingZeros(range - 1));
+            this.mask = bits == 64 ? -1L : (1L << bits) - 1;
+            for (int i = 0; i < ROUNDS; i++) {
+                multipliers[i] = random.nextLong() | 1L;
+                addends[i] = random.nextLong();
+            }
+        }
+
+        long next() throws EolRuntimeException {
+            if (counter >= range) {
+                throw new EolRuntimeException("All the " + range + " unique values have been generated");
+            }
+            long value = counter++;
+            do {
+                value = permute(value);
+            } while (value >= range);
+            return lower + value;
+        }
+
+        private long permute(long value) {
+            int shift = (bits + 1) / 2;
+            for (int i = 0; i < ROUNDS; i++) {
+                value ^= value >>> shift;
+                value = (value * multipliers[i] + addends[i]) & mask;
+            }
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgNameModel is a character n-gram (Markov chain) model of the words of
+ * a corpus, e.g. a list of names. The model of order n picks each character
+ * with the probability it followed the previous n characters in the corpus,
+ * so generated names look like the ones in the corpus without being copies.
+ * <p>
+ * The states (the last n characters) and their transitions are compiled to
+ * primitive arrays: the transitions of a state are contiguous, with their
+ * cumulative counts and the index of the state they lead to, so generating a
+ * character is a binary search over the transitions of the current state.
+ * <p>
+ * Models can be written to and read from a stream, so they are trained once
+ * per corpus.
+ */
+public class EmgNameModel {
+
+    /** The number of names drawn before giving up on a novel name. */
+    public static final int MAX_ATTEMPTS = 100;
+
+    /** The magic number of the persisted models, "EMGN". */
+    private static final int MAGIC = 0x454d474e;
+
+    /** The version of the persisted models. */
+    private static final int VERSION = 1;
+
+    /** The character that pads the start of the names and marks their end. */
+    private static final char BOUNDARY = '\0';
+
+    /** The target of the transitions that end a name. */
+    private static final int END = -1;
+
+    /** The number of characters of the states. */
+    private final int order;
+
+    /** The first transition of each state, and the number of transitions. */
+    private final int[] firstTransition;
+
+    /** The character of each transition. */
+    private final char[] symbols;
+
+    /** The cumulative count of the transitions of each state. */
+    private final int[] cumulative;
+
+    /** The state each transition leads to, {@link #END} if it ends the name. */
+    private final int[] targets;
+
+    /** The words of the corpus, sorted. */
+    private final String[] corpus;
+
+    /** The length of the shortest word of the corpus. */
+    private final int minLength;
+
+    /** The length of the longest word of the corpus. */
+    private final int maxLength;
+
+    private EmgNameModel(int order, int[] firstTransition, char[] symbols, int[] cumulative, int[] targets,
+            String[] corpus) {
+        this.order = order;
+        this.firstTransition = firstTransition;
+        this.symbols = symbols;
+        this.cumulative = cumulative;
+        this.targets = targets;
+        this.corpus = corpus;
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (String word : corpus) {
+            min = Math.min(min, word.length());
+            max = Math.max(max, word.length());
+        }
+        this.minLength = min;
+        this.maxLength = max;
+    }
+
+    /**
+     * Train a model of the given order from the words of the corpus. The
+     * words are the string values of the elements, trimmed; empty words are
+     * ignored.
+     *
+     * @param words the corpus
+     * @param order the number of characters that determine the next one
+     * @return the model
+     * @throws EolRuntimeException if the order is not positive or the corpus
+     * has no words
+     */
+    public static EmgNameModel train(Collection<?> words, int order) throws EolRuntimeException {
+        if (order < 1) {
+            throw new EolRuntimeException("The order of the name model must be positive: " + order);
+        }
+        TreeSet<String> corpus = new TreeSet<>();
+        for (Object word : words) {
+            String name = String.valueOf(word).trim();
+            if (!name.isEmpty() && name.indexOf(BOUNDARY) < 0) {
+                corpus.add(name);
+            }
+        }
+        if (corpus.isEmpty()) {
+            throw new EolRuntimeException("The corpus of the name model has no words");
+        }
+        // The counts of the characters that follow each state, states by first appearance
+        Map<String, Integer> states = new HashMap<>();
+        List<TreeMap<Character, Integer>> counts = new ArrayList<>();
+        char[] padding = new char[order];
+        Arrays.fill(padding, BOUNDARY);
+        String start = new String(padding);
+        for (String word : corpus) {
+            String state = start;
+            for (int i = 0; i <= word.length(); i++) {
+                char next = i < word.length() ? word.charAt(i) : BOUNDARY;
+                Integer index = states.get(state);
+                if (index == null) {
+                    index = counts.size();
+                    states.put(state, index);
+                    counts.add(new TreeMap<>());
+                }
+                counts.get(index).merge(next, 1, Integer::sum);
+                state = state.substring(1) + next;
+            }
+        }
+        // Compile the transitions
+        int transitions = counts.stream().mapToInt(Map::size).sum();
+        int[] firstTransition = new int[counts.size() + 1];
+        char[] symbols = new char[transitions];
+        int[] cumulative = new int[transitions];
+        int[] targets = new int[transitions];
+        String[] names = new String[counts.size()];
+        states.forEach((state, index) -> names[index] = state);
+        int t = 0;
+        for (int s = 0; s < counts.size(); s++) {
+            firstTransition[s] = t;
+            int total = 0;
+            for (Map.Entry<Character, Integer> entry : counts.get(s).entrySet()) {
+                char symbol = entry.getKey();
+                total += entry.getValue();
+                symbols[t] = symbol;
+                cumulative[t] = total;
+                targets[t] = symbol == BOUNDARY ? END : states.get(names[s].substring(1) + symbol);
+                t++;
+            }
+        }
+        firstTransition[counts.size()] = t;
+        return new EmgNameModel(order, firstTransition, symbols, cumulative, targets,
+                corpus.toArray(new String[corpus.size()]));
+    }
+
+    /**
+     * @return the number of characters that determine the next one
+     */
+    public int getOrder() {
+        return order;
+    }
+
+    /**
+     * @return the length of the shortest word of the corpus
+     */
+    public int getMinLength() {
+        return minLength;
+    }
+
+    /**
+     * @return the length of the longest word of the corpus
+     */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * @param name the name
+     * @return true if the name is a word of the corpus
+     */
+    public boolean isInCorpus(String name) {
+        return Arrays.binarySearch(corpus, name) >= 0;
+    }
+
+    /**
+     * Generate a name that is not a word of the corpus, with the lengths of
+     * the words of the corpus.
+     *
+     * @param random the pseudo random generator
+     * @return the name
+     * @throws EolRuntimeException if no such name is generated in
+     * {@link #MAX_ATTEMPTS} attempts
+     */
+    public String generate(RandomGenerator random) throws EolRuntimeException {
+        return generate(random, minLength, maxLength, true);
+    }
+
+    /**
+     * Generate a name with a length in the given range.
+     *
+     * @param random the pseudo random generator
+     * @param minLength the minimum length of the name
+     * @param maxLength the maximum length of the name
+     * @param novel if true, the name is not a word of the corpus
+     * @return the name
+     * @throws EolRuntimeException if no such name is generated in
+     * {@link #MAX_ATTEMPTS} attempts
+     */
+    public String generate(RandomGenerator random, int minLength, int maxLength, boolean novel)
+            throws EolRuntimeException {
+        StringBuilder name = new StringBuilder(maxLength + 1);
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            name.setLength(0);
+            if (walk(random, name, maxLength) && name.length() >= minLength
+                    && !(novel && isInCorpus(name.toString()))) {
+                return name.toString();
+            }
+        }
+        throw new EolRuntimeException(String.format("No name of length %d to %d%s was generated in %d attempts",
+                minLength, maxLength, novel ? " that is not in the corpus" : "", MAX_ATTEMPTS));
+    }
+
+    /**
+     * Append the characters of a walk from the start state, and return false
+     * if the walk is longer than the maximum length.
+     */
+    private boolean walk(RandomGenerator random, StringBuilder name, int maxLength) {
+        int state = 0;
+        while (true) {
+            int first = firstTransition[state];
+            int last = firstTransition[state + 1] - 1;
+            int r = random.nextInt(cumulative[last]);
+            // The first transition whose cumulative count is greater than r
+            while (first < last) {
+                int mid = (first + last) >>> 1;
+                if (cumulative[mid] > r) {
+                    last = mid;
+                }
+                else {
+                    first = mid + 1;
+                }
+            }
+            state = targets[first];
+            if (state == END) {
+                return true;
+            }
+            if (name.length() == maxLength) {
+                return false;
+            }
+            name.append(symbols[first]);
+        }
+    }
+
+    /**
+     * Write the model to the stream.
+     *
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(order);
+        data.writeInt(firstTransition.length);
+        for (int first : firstTransition) {
+            data.writeInt(first);
+        }
+        data.writeInt(symbols.length);
+        for (int t = 0; t < symbols.length; t++) {
+            data.writeChar(symbols[t]);
+            data.writeInt(cumulative[t]);
+            data.writeInt(targets[t]);
+        }
+        data.writeInt(corpus.length);
+        for (String word : corpus) {
+            data.writeUTF(word);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read a model written by {@link #write(OutputStream)}.
+     *
+     * @param in the stream
+     * @return the model
+     * @throws IOException if the stream fails or does not contain a model
+     */
+    public static EmgNameModel read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("The stream does not contain a name model");
+        }
+        int order = data.readInt();
+        int[] firstTransition = new int[data.readInt()];
+        for (int s = 0; s < firstTransition.length; s++) {
+            firstTransition[s] = data.readInt();
+        }
+        int transitions = data.readInt();
+        char[] symbols = new char[transitions];
+        int[] cumulative = new int[transitions];
+        int[] targets = new int[transitions];
+        for (int t = 0; t < transitions; t++) {
+            symbols[t] = data.readChar();
+            cumulative[t] = data.readInt();
+            targets[t] = data.readInt();
+        }
+        String[] corpus = new String[data.readInt()];
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i] = data.readUTF();
+        }
+        return new EmgNameModel(order, firstTransition, symbols, cumulative, targets, corpus);
+    }
+
+}
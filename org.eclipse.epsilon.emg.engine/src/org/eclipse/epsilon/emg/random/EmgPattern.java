@@ -0,0 +1,559 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * An EmgPattern generates random strings that match a regular expression. The
+ * expression is parsed once, when the pattern is compiled, into a tree of
+ * generators, so generating a string does not parse the expression.
+ * <p>
+ * The supported syntax is a subset of {@link Pattern}:
+ * <ul>
+ * <li>Literal characters and escaped characters, e.g. <code>\.</code>,
+ * <code>\t</code>, <code>\x41</code>, <code>\x{41}</code>, <code>\u0041</code>
+ * or <code>A</code>. Characters beyond <code>\uFFFF</code> are not
+ * supported.</li>
+ * <li>Character classes, e.g. <code>[a-z0-9_]</code> and <code>[^,]</code>,
+ * the predefined classes <code>\d \w \s \D \W \S</code> and <code>.</code>.
+ * Negated classes and <code>.</code> generate printable ASCII characters.</li>
+ * <li>Groups, <code>(...)</code> and <code>(?:...)</code>, and alternatives
+ * <code>a|b</code>, each alternative is chosen with the same probability.</li>
+ * <li>Quantifiers <code>? * + {n} {n,} {n,m}</code>, the number of
+ * repetitions is uniformly distributed between the bounds. Unbounded
+ * quantifiers repeat at most {@link #UNBOUNDED_REPETITIONS} more times than
+ * their lower bound. Reluctant and possessive quantifiers are generated as
+ * greedy ones.</li>
+ * <li>The anchors <code>^</code> and <code>$</code> are ignored.</li>
+ * </ul>
+ */
+public class EmgPattern {
+
+    /** The maximum number of additional repetitions of unbounded quantifiers. */
+    public static final int UNBOUNDED_REPETITIONS = 8;
+
+    /** The printable ASCII characters. */
+    private static final BitSet PRINTABLE = range(' ', '~');
+
+    /**
+     * A node of the compiled expression.
+     */
+    private interface Node {
+        void generate(RandomGenerator random, StringBuilder sb);
+    }
+
+    /** The expression. */
+    private final String regex;
+
+    /** The root of the compiled expression. */
+    private final Node root;
+
+    /** The position of the parser in the expression. */
+    private int position;
+
+    private EmgPattern(String regex) throws EolRuntimeException {
+        this.regex = regex;
+        this.root = parseAlternation();
+        if (position < regex.length()) {
+            throw error("Unmatched closing ')'");
+        }
+    }
+
+    /**
+     * Compile the regular expression.
+     *
+     * @param regex the regular expression
+     * @return the pattern
+     * @throws EolRuntimeException if the expression is not valid or uses
+     * unsupported constructs
+     */
+    public static EmgPattern compile(String regex) throws EolRuntimeException {
+        try {
+            Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new EolRuntimeException("Invalid pattern: " + e.getMessage());
+        }
+        return new EmgPattern(regex);
+    }
+
+    /**
+     * @return the regular expression
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * Generate a string that matches the pattern.
+     *
+     * @param random the pseudo random generator
+     * @return the string
+     */
+    public String generate(RandomGenerator random) {
+        StringBuilder sb = new StringBuilder();
+        root.generate(random, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Append a string that matches the pattern.
+     *
+     * @param random the pseudo random generator
+     * @param sb the builder the string is appended to
+     */
+    public void generate(RandomGenerator random, StringBuilder sb) {
+        root.generate(random, sb);
+    }
+
+    private Node parseAlternation() throws EolRuntimeException {
+        List<Node> alternatives = new ArrayList<>();
+        alternatives.add(parseSequence());
+        while (position < regex.length() && regex.charAt(position) == '|') {
+            position++;
+            alternatives.add(parseSequence());
+        }
+        if (alternatives.size() == 1) {
+            return alternatives.get(0);
+        }
+        return new Alternation(alternatives.toArray(new Node[alternatives.size()]));
+    }
+
+    private Node parseSequence() throws EolRuntimeException {
+        List<Node> nodes = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        while (position < regex.length() && regex.charAt(position) != '|' && regex.charAt(position) != ')') {
+            Node node = parseQuantified();
+            if (node == null) {
+                continue;
+            }
+            // Adjacent literal characters are merged in a single node
+            if (node instanceof Literal) {
+                literal.append(((Literal) node).value);
+            }
+            else {
+                if (literal.length() > 0) {
+                    nodes.add(new Literal(literal.toString()));
+                    literal.setLength(0);
+                }
+                nodes.add(node);
+            }
+        }
+        if (literal.length() > 0) {
+            nodes.add(new Literal(literal.toString()));
+        }
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        return new Sequence(nodes.toArray(new Node[nodes.size()]));
+    }
+
+    private Node parseQuantified() throws EolRuntimeException {
+        Node atom = parseAtom();
+        if (atom == null || position >= regex.length()) {
+            return atom;
+        }
+        int min;
+        int max;
+        char c = regex.charAt(position);
+        switch (c) {
+        case '?':
+            min = 0;
+            max = 1;
+            position++;
+            break;
+        case '*':
+            min = 0;
+            max = UNBOUNDED_REPETITIONS;
+            position++;
+            break;
+        case '+':
+            min = 1;
+            max = 1 + UNBOUNDED_REPETITIONS;
+            position++;
+            break;
+        case '{':
+            position++;
+            int close = regex.indexOf('}', position);
+            if (close < 0) {
+                throw error("Unclosed quantifier");
+            }
+            String[] bounds = regex.substring(position, close).split(",", -1);
+            if (bounds.length > 2) {
+                throw error("Malformed quantifier");
+            }
+            min = parseBound(bounds[0]);
+            if (bounds.length == 1) {
+                max = min;
+            }
+            else if (bounds[1].trim().isEmpty()) {
+                max = min + UNBOUNDED_REPETITIONS;
+            }
+            else {
+                max = parseBound(bounds[1]);
+                if (max < min) {
+                    throw error("Illegal repetition range");
+                }
+            }
+            position = close + 1;
+            break;
+        default:
+            return atom;
+        }
+        // Reluctant and possessive modifiers
+        if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+            position++;
+        }
+        return new Repetition(atom, min, max);
+    }
+
+    private int parseBound(String bound) throws EolRuntimeException {
+        String digits = bound.trim();
+        if (digits.isEmpty() || digits.length() > 9) {
+            throw error("Malformed quantifier");
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                throw error("Malformed quantifier");
+            }
+        }
+        return Integer.parseInt(digits);
+    }
+
+    /**
+     * @return the atom, or null for anchors
+     */
+    private Node parseAtom() throws EolRuntimeException {
+        char c = regex.charAt(position++);
+        switch (c) {
+        case '^':
+        case '$':
+            return null;
+        case '(':
+            if (regex.startsWith("?:", position)) {
+                position += 2;
+            }
+            else if (regex.startsWith("?", position)) {
+                throw error("Unsupported group construct");
+            }
+            Node group = parseAlternation();
+            if (position >= regex.length() || regex.charAt(position) != ')') {
+                throw error("Unclosed group");
+            }
+            position++;
+            return new Group(group);
+        case '[':
+            return parseClass();
+        case '.':
+            return new CharacterClass(PRINTABLE);
+        case '\\':
+            BitSet predefined = parsePredefinedClass();
+            if (predefined != null) {
+                return new CharacterClass(predefined);
+            }
+            return new Literal(String.valueOf(parseEscapedCharacter()));
+        default:
+            return new Literal(String.valueOf(c));
+        }
+    }
+
+    private Node parseClass() throws EolRuntimeException {
+        boolean negated = false;
+        if (position < regex.length() && regex.charAt(position) == '^') {
+            negated = true;
+            position++;
+        }
+        BitSet chars = new BitSet();
+        boolean first = true;
+        while (position < regex.length() && (first || regex.charAt(position) != ']')) {
+            first = false;
+            char c = regex.charAt(position++);
+            if (c == '\\') {
+                BitSet predefined = parsePredefinedClass();
+                if (predefined != null) {
+                    chars.or(predefined);
+                    continue;
+                }
+                c = parseEscapedCharacter();
+            }
+            else if (c == '[' || (c == '&' && regex.startsWith("&", position))) {
+                throw error("Unsupported nested class");
+            }
+            if (position + 1 < regex.length() && regex.charAt(position) == '-' && regex.charAt(position + 1) != ']') {
+                position++;
+                char end = regex.charAt(position++);
+                if (end == '\\') {
+                    end = parseEscapedCharacter();
+                }
+                if (end < c) {
+                    throw error("Illegal character range");
+                }
+                chars.or(range(c, end));
+            }
+            else {
+                chars.set(c);
+            }
+        }
+        position++;
+        if (negated) {
+            BitSet complement = (BitSet) PRINTABLE.clone();
+            complement.andNot(chars);
+            chars = complement;
+        }
+        if (chars.isEmpty()) {
+            throw error("Empty character class");
+        }
+        return new CharacterClass(chars);
+    }
+
+    /**
+     * Parse a predefined class after a backslash.
+     *
+     * @return the characters of the class, or null if the escape is not a
+     * predefined class (the position is not advanced)
+     */
+    private BitSet parsePredefinedClass() throws EolRuntimeException {
+        if (position >= regex.length()) {
+            throw error("Unterminated escape");
+        }
+        char c = regex.charAt(position);
+        BitSet chars;
+        switch (Character.toLowerCase(c)) {
+        case 'd':
+            chars = range('0', '9');
+            break;
+        case 'w':
+            chars = range('a', 'z');
+            chars.or(range('A', 'Z'));
+            chars.or(range('0', '9'));
+            chars.set('_');
+            break;
+        case 's':
+            chars = new BitSet();
+            chars.set(' ');
+            break;
+        default:
+            return null;
+        }
+        position++;
+        if (Character.isUpperCase(c)) {
+            BitSet complement = (BitSet) PRINTABLE.clone();
+            complement.andNot(chars);
+            return complement;
+        }
+        return chars;
+    }
+
+    private char parseEscapedCharacter() throws EolRuntimeException {
+        if (position >= regex.length()) {
+            throw error("Unterminated escape");
+        }
+        int escape = position - 1;
+        char c = regex.charAt(position++);
+        switch (c) {
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        case 'x':
+            if (position < regex.length() && regex.charAt(position) == '{') {
+                int close = regex.indexOf('}', position);
+                if (close < 0) {
+                    throw error("Unclosed escape \\x{", escape);
+                }
+                position++;
+                int value = parseHex(close - position, 6, escape);
+                position++;
+                if (value > Character.MAX_VALUE) {
+                    throw error("Unsupported supplementary character " + regex.substring(escape, position), escape);
+                }
+                return (char) value;
+            }
+            return (char) parseHex(2, 2, escape);
+        case 'u':
+            return (char) parseHex(4, 4, escape);
+        default:
+            if (Character.isLetterOrDigit(c)) {
+                throw error("Unsupported escape \\" + c);
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Parse the hexadecimal digits of an escape.
+     *
+     * @param digits the number of digits
+     * @param maxDigits the maximum number of digits
+     * @param escape the position of the backslash of the escape
+     * @return the value of the digits
+     */
+    private int parseHex(int digits, int maxDigits, int escape) throws EolRuntimeException {
+        if (digits < 1 || digits > maxDigits || position + digits > regex.length()) {
+            throw error("Malformed hexadecimal escape", escape);
+        }
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = regex.charAt(position);
+            int digit = c < 0x80 ? Character.digit(c, 16) : -1;
+            if (digit < 0) {
+                throw error("Malformed hexadecimal escape", escape);
+            }
+            value = value * 16 + digit;
+            position++;
+        }
+        return value;
+    }
+
+    private EolRuntimeException error(String message) {
+        return error(message, position - 1);
+    }
+
+    private EolRuntimeException error(String message, int index) {
+        return new EolRuntimeException(message + " at index " + index + " of pattern " + regex);
+    }
+
+    private static BitSet range(char start, char end) {
+        BitSet chars = new BitSet();
+        chars.set(start, end + 1);
+        return chars;
+    }
+
+    /**
+     * A literal string.
+     */
+    private static class Literal implements Node {
+
+        private final String value;
+
+        Literal(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void generate(RandomGenerator random, StringBuilder sb) {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * One of a set of characters.
+     */
+    private static class CharacterClass implements Node {
+
+        private final char[] chars;
+
+        CharacterClass(BitSet set) {
+            chars = new char[set.cardinality()];
+            int i = 0;
+            for (int c = set.nextSetBit(0); c >= 0; c = set.nextSetBit(c + 1)) {
+                chars[i++] = (char) c;
+            }
+        }
+
+        @Override
+        public void generate(RandomGenerator random, StringBuilder sb) {
+            sb.append(chars.length == 1 ? chars[0] : chars[random.nextInt(chars.length)]);
+        }
+    }
+
+    /**
+     * A sequence of nodes.
+     */
+    private static class Sequence implements Node {
+
+        private final Node[] nodes;
+
+        Sequence(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public void generate(RandomGenerator random, StringBuilder sb) {
+            for (Node node : nodes) {
+                node.generate(random, sb);
+            }
+        }
+    }
+
+    /**
+     * A group, kept as a node so a quantifier after it applies to the
+     * whole group and not only to its last literal.
+     */
+    private static class Group implements Node {
+
+        private final Node content;
+
+        Group(Node content) {
+            this.content = content;
+        }
+
+        @Override
+        public void generate(RandomGenerator random, StringBuilder sb) {
+            content.generate(random, sb);
+        }
+    }
+
+    /**
+     * One of a set of alternatives.
+     */
+    private static class Alternation implements Node {
+
+        private final Node[] alternatives;
+
+        Alternation(Node[] alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        @Override
+        public void generate(RandomGenerator random, StringBuilder sb) {
+            alternatives[random.nextInt(alternatives.length)].generate(random, sb);
+        }
+    }
+
+    /**
+     * A node repeated between min and max times.
+     */
+    private static class Repetition implements Node {
+
+        private final Node node;
+
+        private final int min;
+
+        private final int max;
+
+        Repetition(Node node, int min, int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public void generate(RandomGenerator random, StringBuilder sb) {
+            int count = min == max ? min : min + random.nextInt(max - min + 1);
+            for (int i = 0; i < count; i++) {
+                node.generate(random, sb);
+            }
+        }
+    }
+
+}
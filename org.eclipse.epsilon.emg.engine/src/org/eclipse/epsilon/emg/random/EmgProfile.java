@@ -0,0 +1,662 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.math3.random.EmpiricalDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.util.ResizableDoubleArray;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgProfile keeps the empirical distributions of an existing model, so
+ * look-alike models of any size can be generated without writing the logic
+ * that imitates its values: the number of instances of each type, the values
+ * of the attributes and the number of values (the cardinality) of the many
+ * valued features of each type. Features are identified by the name of the
+ * type of the elements and the name of the feature.
+ * <p>
+ * Non numeric attributes, and numeric attributes with few distinct values (at
+ * most {@value #MAX_CATEGORIES}), keep the frequency of each value, e.g.
+ * booleans, enumerations and strings. Numeric attributes with more values
+ * keep a histogram built by an {@link EmpiricalDistribution}; a drawn value
+ * is uniform between the minimum and maximum of its bin, and is rounded for
+ * integral types. Every draw picks its value or bin with the alias method, in
+ * constant time.
+ * <p>
+ * Profiles are built by a {@link Builder}, e.g. the one of the EMF profiler,
+ * and can be saved to a file and read back.
+ */
+public class EmgProfile {
+
+    /** The default number of bins of the histograms. */
+    public static final int DEFAULT_BINS = 50;
+
+    /** The maximum distinct values of an attribute whose frequencies are kept. */
+    public static final int MAX_CATEGORIES = 256;
+
+    /** The stream magic, "EMGP". */
+    private static final int MAGIC = 0x454d4750;
+
+    /** The version of the stream format. */
+    private static final int VERSION = 1;
+
+    /** The number of instances of each type. */
+    private final Map<String, Integer> instances;
+
+    /** The types, by their number of instances. */
+    private final Values types;
+
+    /** The values of the attributes, by type and attribute. */
+    private final Map<String, Values> values;
+
+    /** The cardinalities of the many valued features, by type and feature. */
+    private final Map<String, Values> cardinalities;
+
+    private EmgProfile(Map<String, Integer> instances, Map<String, Values> values,
+            Map<String, Values> cardinalities) {
+        this.instances = instances;
+        this.values = values;
+        this.cardinalities = cardinalities;
+        double[] weights = new double[instances.size()];
+        Object[] names = new Object[instances.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : instances.entrySet()) {
+            names[i] = entry.getKey();
+            weights[i++] = entry.getValue();
+        }
+        this.types = new Values(names, weights);
+    }
+
+    /**
+     * @return the profiled types, in the order they were found
+     */
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(instances.keySet());
+    }
+
+    /**
+     * @param type the type
+     * @return the number of instances of the type, zero if it has none
+     */
+    public int getInstances(String type) {
+        Integer count = instances.get(type);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * @param type the type
+     * @param attribute the attribute
+     * @return true if the profile has values of the attribute of the type
+     */
+    public boolean hasValues(String type, String attribute) {
+        return values.containsKey(key(type, attribute));
+    }
+
+    /**
+     * @param type the type
+     * @param feature the many valued feature
+     * @return true if the profile has cardinalities of the feature of the type
+     */
+    public boolean hasCardinalities(String type, String feature) {
+        return cardinalities.containsKey(key(type, feature));
+    }
+
+    /**
+     * @param random the generator
+     * @return a type, with the probability of its instances
+     * @throws EolRuntimeException if the profile has no types
+     */
+    public String nextType(RandomGenerator random) throws EolRuntimeException {
+        if (instances.isEmpty()) {
+            throw new EolRuntimeException("The profile has no types");
+        }
+        return (String) types.next(random);
+    }
+
+    /**
+     * @param random the generator
+     * @param type the type
+     * @param attribute the attribute
+     * @return a value of the attribute, with its empirical distribution
+     * @throws EolRuntimeException if the profile has no values of the
+     * attribute
+     */
+    public Object nextValue(RandomGenerator random, String type, String attribute) throws EolRuntimeException {
+        return get(values, "values", type, attribute).next(random);
+    }
+
+    /**
+     * @param random the generator
+     * @param type the type
+     * @param feature the many valued feature
+     * @return a number of values of the feature, with its empirical
+     * distribution
+     * @throws EolRuntimeException if the profile has no cardinalities of the
+     * feature
+     */
+    public int nextCardinality(RandomGenerator random, String type, String feature) throws EolRuntimeException {
+        return ((Number) get(cardinalities, "cardinalities", type, feature).next(random)).intValue();
+    }
+
+    /**
+     * Write the profile to the stream.
+     *
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(instances.size());
+        for (Map.Entry<String, Integer> entry : instances.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeInt(entry.getValue());
+        }
+        writeValues(data, values);
+        writeValues(data, cardinalities);
+        data.flush();
+    }
+
+    /**
+     * Save the profile to the file.
+     *
+     * @param file the file
+     * @throws IOException if the file can not be written
+     */
+    public void save(File file) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Read a profile written by {@link #write(OutputStream)}.
+     *
+     * @param in the stream
+     * @return the profile
+     * @throws IOException if the stream fails or does not contain a profile
+     */
+    public static EmgProfile read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+            throw new IOException("The stream does not contain a profile");
+        }
+        Map<String, Integer> instances = new LinkedHashMap<>();
+        int types = data.readInt();
+        for (int i = 0; i < types; i++) {
+            instances.put(data.readUTF(), data.readInt());
+        }
+        Map<String, Values> values = readValues(data);
+        Map<String, Values> cardinalities = readValues(data);
+        return new EmgProfile(instances, values, cardinalities);
+    }
+
+    /**
+     * Load the profile saved in the file.
+     *
+     * @param file the file
+     * @return the profile
+     * @throws IOException if the file can not be read or does not contain a
+     * profile
+     */
+    public static EmgProfile load(File file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return read(in);
+        }
+    }
+
+    private static String key(String type, String feature) {
+        return type + "." + feature;
+    }
+
+    private static Values get(Map<String, Values> map, String kind, String type, String feature)
+            throws EolRuntimeException {
+        Values result = map.get(key(type, feature));
+        if (result == null) {
+            throw new EolRuntimeException(String.format("The profile has no %s of %s.%s", kind, type, feature));
+        }
+        return result;
+    }
+
+    private static void writeValues(DataOutputStream data, Map<String, Values> map) throws IOException {
+        data.writeInt(map.size());
+        for (Map.Entry<String, Values> entry : map.entrySet()) {
+            data.writeUTF(entry.getKey());
+            entry.getValue().write(data);
+        }
+    }
+
+    private static Map<String, Values> readValues(DataInputStream data) throws IOException {
+        Map<String, Values> map = new LinkedHashMap<>();
+        int size = data.readInt();
+        for (int i = 0; i < size; i++) {
+            map.put(data.readUTF(), Values.read(data));
+        }
+        return map;
+    }
+
+    /**
+     * The Builder collects the instances, values and cardinalities of a model
+     * and builds its profile.
+     */
+    public static class Builder {
+
+        /** The number of instances of each type. */
+        private final Map<String, Integer> instances = new LinkedHashMap<>();
+
+        /** The values of each attribute. */
+        private final Map<String, Samples> values = new LinkedHashMap<>();
+
+        /** The cardinalities of each feature. */
+        private final Map<String, Samples> cardinalities = new LinkedHashMap<>();
+
+        /**
+         * Count an instance of the type.
+         *
+         * @param type the type
+         */
+        public void addInstance(String type) {
+            instances.merge(type, 1, Integer::sum);
+        }
+
+        /**
+         * Add a value of the attribute of the type. Values other than strings,
+         * booleans, characters and numbers are kept as strings, null values
+         * are ignored.
+         *
+         * @param type the type
+         * @param attribute the attribute
+         * @param value the value
+         */
+        public void addValue(String type, String attribute, Object value) {
+            if (value == null) {
+                return;
+            }
+            values.computeIfAbsent(key(type, attribute), k -> new Samples()).add(value);
+        }
+
+        /**
+         * Add the number of values of the many valued feature of an instance
+         * of the type.
+         *
+         * @param type the type
+         * @param feature the feature
+         * @param cardinality the number of values
+         */
+        public void addCardinality(String type, String feature, int cardinality) {
+            cardinalities.computeIfAbsent(key(type, feature), k -> new Samples()).add(cardinality);
+        }
+
+        /**
+         * @return the profile, with {@value EmgProfile#DEFAULT_BINS} bins per
+         * histogram
+         */
+        public EmgProfile build() {
+            return build(DEFAULT_BINS);
+        }
+
+        /**
+         * @param bins the number of bins of the histograms
+         * @return the profile
+         */
+        public EmgProfile build(int bins) {
+            return new EmgProfile(new LinkedHashMap<>(instances), build(values, bins), build(cardinalities, bins));
+        }
+
+        private static Map<String, Values> build(Map<String, Samples> samples, int bins) {
+            Map<String, Values> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().build(bins));
+            }
+            return result;
+        }
+
+    }
+
+    /**
+     * The values of an attribute or the cardinalities of a feature, while the
+     * model is scanned.
+     */
+    private static final class Samples {
+
+        /** The count of each distinct value, null if there are too many. */
+        private Map<Object, Integer> counts = new LinkedHashMap<>();
+
+        /** The numeric values, null if a value is not a number. */
+        private ResizableDoubleArray numbers = new ResizableDoubleArray();
+
+        /** The tag of the type of the numbers. */
+        private char numericType;
+
+        void add(Object value) {
+            char tag = tag(value);
+            if (tag == 'T') {
+                value = String.valueOf(value);
+            }
+            if (numbers != null) {
+                if (Values.NUMERIC_TAGS.indexOf(tag) >= 0 && (numericType == 0 || numericType == tag)) {
+                    numericType = tag;
+                    numbers.addElement(((Number) value).doubleValue());
+                }
+                else if (counts != null) {
+                    numbers = null;
+                }
+                else {
+                    // A histogram ignores values of other types
+                    return;
+                }
+            }
+            if (counts != null) {
+                counts.merge(value, 1, Integer::sum);
+                if (counts.size() > MAX_CATEGORIES && numbers != null) {
+                    counts = null;
+                }
+            }
+        }
+
+        Values build(int bins) {
+            if (counts != null) {
+                Object[] categories = counts.keySet().toArray();
+                double[] weights = new double[categories.length];
+                int i = 0;
+                for (int count : counts.values()) {
+                    weights[i++] = count;
+                }
+                return new Values(categories, weights);
+            }
+            EmpiricalDistribution distribution = new EmpiricalDistribution(bins);
+            distribution.load(numbers.getElements());
+            List<SummaryStatistics> stats = distribution.getBinStats();
+            List<SummaryStatistics> used = new ArrayList<>();
+            for (SummaryStatistics bin : stats) {
+                if (bin.getN() > 0) {
+                    used.add(bin);
+                }
+            }
+            double[] lower = new double[used.size()];
+            double[] upper = new double[used.size()];
+            double[] weights = new double[used.size()];
+            int i = 0;
+            for (SummaryStatistics bin : used) {
+                lower[i] = bin.getMin();
+                upper[i] = bin.getMax();
+                weights[i++] = bin.getN();
+            }
+            return new Values(numericType, lower, upper, weights);
+        }
+
+        private static char tag(Object value) {
+            if (value instanceof Integer) {
+                return 'I';
+            }
+            if (value instanceof Long) {
+                return 'J';
+            }
+            if (value instanceof Double) {
+                return 'D';
+            }
+            if (value instanceof Float) {
+                return 'F';
+            }
+            if (value instanceof Short) {
+                return 'S';
+            }
+            if (value instanceof Byte) {
+                return 'B';
+            }
+            if (value instanceof Boolean) {
+                return 'Z';
+            }
+            if (value instanceof Character) {
+                return 'C';
+            }
+            return 'T';
+        }
+
+    }
+
+    /**
+     * The empirical distribution of an attribute or a cardinality: either the
+     * distinct values or the bins of a histogram, drawn with the alias method.
+     */
+    private static final class Values {
+
+        /** The tags of the numeric types. */
+        static final String NUMERIC_TAGS = "IJDFSB";
+
+        /** The distinct values, null for a histogram. */
+        private final Object[] categories;
+
+        /** The tag of the numeric type of the histogram. */
+        private final char numericType;
+
+        /** The minimum of each bin of the histogram. */
+        private final double[] lower;
+
+        /** The maximum of each bin of the histogram. */
+        private final double[] upper;
+
+        /** The weight of each value or bin, as counted. */
+        private final double[] weights;
+
+        /** The probability of keeping each column of the alias table. */
+        private final double[] probability;
+
+        /** The alias of each column of the alias table. */
+        private final int[] alias;
+
+        Values(Object[] categories, double[] weights) {
+            this(categories, (char) 0, null, null, weights);
+        }
+
+        Values(char numericType, double[] lower, double[] upper, double[] weights) {
+            this(null, numericType, lower, upper, weights);
+        }
+
+        private Values(Object[] categories, char numericType, double[] lower, double[] upper, double[] weights) {
+            this.categories = categories;
+            this.numericType = numericType;
+            this.lower = lower;
+            this.upper = upper;
+            this.weights = weights;
+            int n = weights.length;
+            probability = new double[n];
+            alias = new int[n];
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+            // Vose's alias method
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smalls = 0;
+            int larges = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / total;
+                if (scaled[i] < 1) {
+                    small[smalls++] = i;
+                }
+                else {
+                    large[larges++] = i;
+                }
+            }
+            while (smalls > 0 && larges > 0) {
+                int less = small[--smalls];
+                int more = large[--larges];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                if (scaled[more] < 1) {
+                    small[smalls++] = more;
+                }
+                else {
+                    large[larges++] = more;
+                }
+            }
+            while (larges > 0) {
+                probability[large[--larges]] = 1;
+            }
+            while (smalls > 0) {
+                // Only left by rounding errors
+                probability[small[--smalls]] = 1;
+            }
+        }
+
+        Object next(RandomGenerator random) {
+            double column = random.nextDouble() * probability.length;
+            int index = (int) column;
+            if (column - index >= probability[index]) {
+                index = alias[index];
+            }
+            if (categories != null) {
+                return categories[index];
+            }
+            double value = lower[index] + random.nextDouble() * (upper[index] - lower[index]);
+            switch (numericType) {
+            case 'I':
+                return (int) Math.round(value);
+            case 'J':
+                return Math.round(value);
+            case 'F':
+                return (float) value;
+            case 'S':
+                return (short) Math.round(value);
+            case 'B':
+                return (byte) Math.round(value);
+            default:
+                return value;
+            }
+        }
+
+        void write(DataOutputStream data) throws IOException {
+            data.writeBoolean(categories != null);
+            data.writeInt(weights.length);
+            if (categories != null) {
+                for (int i = 0; i < categories.length; i++) {
+                    writeValue(data, categories[i]);
+                    data.writeDouble(weights[i]);
+                }
+            }
+            else {
+                data.writeChar(numericType);
+                for (int i = 0; i < weights.length; i++) {
+                    data.writeDouble(lower[i]);
+                    data.writeDouble(upper[i]);
+                    data.writeDouble(weights[i]);
+                }
+            }
+        }
+
+        static Values read(DataInputStream data) throws IOException {
+            boolean categorical = data.readBoolean();
+            int n = data.readInt();
+            double[] weights = new double[n];
+            if (categorical) {
+                Object[] categories = new Object[n];
+                for (int i = 0; i < n; i++) {
+                    categories[i] = readValue(data);
+                    weights[i] = data.readDouble();
+                }
+                return new Values(categories, weights);
+            }
+            char numericType = data.readChar();
+            double[] lower = new double[n];
+            double[] upper = new double[n];
+            for (int i = 0; i < n; i++) {
+                lower[i] = data.readDouble();
+                upper[i] = data.readDouble();
+                weights[i] = data.readDouble();
+            }
+            return new Values(numericType, lower, upper, weights);
+        }
+
+        private static void writeValue(DataOutputStream data, Object value) throws IOException {
+            char tag = Samples.tag(value);
+            data.writeChar(tag);
+            switch (tag) {
+            case 'I':
+                data.writeInt((Integer) value);
+                break;
+            case 'J':
+                data.writeLong((Long) value);
+                break;
+            case 'D':
+                data.writeDouble((Double) value);
+                break;
+            case 'F':
+                data.writeFloat((Float) value);
+                break;
+            case 'S':
+                data.writeShort((Short) value);
+                break;
+            case 'B':
+                data.writeByte((Byte) value);
+                break;
+            case 'Z':
+                data.writeBoolean((Boolean) value);
+                break;
+            case 'C':
+                data.writeChar((Character) value);
+                break;
+            default:
+                data.writeUTF((String) value);
+            }
+        }
+
+        private static Object readValue(DataInputStream data) throws IOException {
+            char tag = data.readChar();
+            switch (tag) {
+            case 'I':
+                return data.readInt();
+            case 'J':
+                return data.readLong();
+            case 'D':
+                return data.readDouble();
+            case 'F':
+                return data.readFloat();
+            case 'S':
+                return data.readShort();
+            case 'B':
+                return data.readByte();
+            case 'Z':
+                return data.readBoolean();
+            case 'C':
+                return data.readChar();
+            case 'T':
+                return data.readUTF();
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+            }
+        }
+
+    }
+
+}
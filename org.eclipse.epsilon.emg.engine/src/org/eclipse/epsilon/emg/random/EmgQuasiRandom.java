@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import org.apache.commons.math3.exception.MathIllegalArgumentException;
+import org.apache.commons.math3.random.HaltonSequenceGenerator;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.RandomVectorGenerator;
+import org.apache.commons.math3.random.SobolSequenceGenerator;
+import org.eclipse.epsilon.emg.random.IEmgRandomGenerator.QuasiRandomSequence;
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgQuasiRandom provides the uniform values of the quasi random
+ * (low discrepancy) mode of the {@link EmgRandomGenerator}. Each generated
+ * element is a point of a Sobol or Halton sequence: the i-th uniform value
+ * drawn while the element is generated is the i-th coordinate of the point,
+ * so the combinations of the values of the elements cover the space evenly
+ * with fewer elements than pseudo random values.
+ * <p>
+ * The points are randomised with a shift drawn from the pseudo random
+ * generator, so seeded generators are reproducible and the first Sobol point
+ * is not the origin. Sobol points are XORed with the shift (a digital shift),
+ * which keeps their stratification, e.g. any 2<sup>m</sup> consecutive
+ * points from a multiple of 2<sup>m</sup> fall in different cells of a
+ * 2<sup>m/2</sup> grid of the first two coordinates. Halton points are
+ * shifted modulo 1 (a Cranley-Patterson rotation). Values drawn outside a
+ * point, or beyond its dimensions, come from the pseudo random generator.
+ */
+public class EmgQuasiRandom {
+
+    /** The scale of the Sobol coordinates, which have 52 bits. */
+    private static final double SOBOL_SCALE = 0x1p52;
+
+    /** The sequence. */
+    private final RandomVectorGenerator sequence;
+
+    /** The pseudo random generator, for the values outside the points. */
+    private final RandomGenerator random;
+
+    /** If the shift is digital, XOR of the bits of the coordinates. */
+    private final boolean digitalShift;
+
+    /** The shift of the points. */
+    private final double[] shift;
+
+    /** The current point, null if there is none. */
+    private double[] point;
+
+    /** The next coordinate of the current point. */
+    private int coordinate;
+
+    /**
+     * Instantiates a new quasi random mode.
+     *
+     * @param kind the sequence
+     * @param dimensions the number of coordinates of the points
+     * @param start the index of the first point, e.g. to continue the sequence
+     * of a previous model of a suite
+     * @param random the pseudo random generator
+     * @throws EolRuntimeException if the sequence does not support the
+     * dimensions
+     */
+    public EmgQuasiRandom(QuasiRandomSequence kind, int dimensions, int start, RandomGenerator random)
+            throws EolRuntimeException {
+        this.random = random;
+        if (start < 0) {
+            throw new EolRuntimeException("The index of the first point must not be negative: " + start);
+        }
+        try {
+            switch (kind) {
+            case Sobol:
+                SobolSequenceGenerator sobol = new SobolSequenceGenerator(dimensions);
+                if (start > 0) {
+                    // skipTo returns the point of the index
+                    sobol.skipTo(start - 1);
+                }
+                sequence = sobol;
+                break;
+            case Halton:
+                HaltonSequenceGenerator halton = new HaltonSequenceGenerator(dimensions);
+                if (start > 0) {
+                    halton.skipTo(start - 1);
+                }
+                sequence = halton;
+                break;
+            default:
+                throw new EolRuntimeException("Not a quasi random sequence: " + kind);
+            }
+        }
+        catch (MathIllegalArgumentException ex) {
+            throw new EolRuntimeException(String.format("The %s sequence does not support %d dimensions from point %d: %s",
+                    kind, dimensions, start, ex.getMessage()));
+        }
+        digitalShift = kind == QuasiRandomSequence.Sobol;
+        shift = new double[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            shift[i] = digitalShift ? random.nextLong() >>> 12 : random.nextDouble();
+        }
+    }
+
+    /**
+     * Start the next point. The following uniform values are its coordinates.
+     */
+    public void nextPoint() {
+        point = sequence.nextVector();
+        for (int i = 0; i < point.length; i++) {
+            if (digitalShift) {
+                point[i] = (((long) (point[i] * SOBOL_SCALE)) ^ (long) shift[i]) / SOBOL_SCALE;
+            }
+            else {
+                double value = point[i] + shift[i];
+                point[i] = value >= 1 ? value - 1 : value;
+            }
+        }
+        coordinate = 0;
+    }
+
+    /**
+     * End the current point. The following uniform values are pseudo random
+     * until the next point starts.
+     */
+    public void endPoint() {
+        point = null;
+    }
+
+    /**
+     * @return the next coordinate of the current point, or a pseudo random
+     * value if there is no point or its coordinates have been used, in [0, 1)
+     */
+    public double nextDouble() {
+        if (point != null && coordinate < point.length) {
+            return point[coordinate++];
+        }
+        return random.nextDouble();
+    }
+
+}
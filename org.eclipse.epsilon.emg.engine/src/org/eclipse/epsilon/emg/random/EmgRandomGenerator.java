@@ -12,8 +12,15 @@
  ******************************************************************************/
 package org.eclipse.epsilon.emg.random;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -22,13 +29,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Scanner;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.apache.commons.math3.exception.NotStrictlyPositiveException;
 import org.apache.commons.math3.exception.NumberIsTooLargeException;
 import org.apache.commons.math3.random.RandomDataGenerator;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.special.Erf;
 import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
 import org.eclipse.epsilon.eol.execute.context.IEolContext;
 
@@ -41,8 +50,17 @@ import org.eclipse.epsilon.eol.execute.context.IEolContext;
  */
 public class EmgRandomGenerator implements IEmgRandomGenerator {
 
-    /** The uri scheme. */
-    private final String[] URI_SCHEME = {"http", "ssh", "ftp"};
+    /** The earliest first timestamp of the ULIDs of seeded generators, 2017-01-01T00:00:00Z. */
+    private static final long SEEDED_ULID_EPOCH = 1483228800000L;
+
+    /** The range of the first timestamps of the ULIDs of seeded generators, about ten years. */
+    private static final long SEEDED_ULID_RANGE = 3650L * 24 * 60 * 60 * 1000;
+
+    /** The order of the name models of {@link #nextName(String)}. */
+    private static final int NAME_MODEL_ORDER = 3;
+
+    /** The square root of two, to invert the normal distribution. */
+    private static final double SQRT2 = Math.sqrt(2);
 
     /** The uri domain. */
     private final String[] URI_DOMAIN = {".com", ".org", ".net", ".int", ".edu", ".gov", ".mil"};
@@ -50,6 +68,30 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
     /** The generator. */
     private final RandomDataGenerator generator = new RandomDataGenerator();
 
+    /** The compiled patterns, by regular expression. */
+    private final Map<String, EmgPattern> patterns = new HashMap<>();
+
+    /** The compiled patterns of the schemes and hosts of the URIs, http only or not. */
+    private final EmgPattern[] uriHostPatterns = new EmgPattern[2];
+
+    /** The compiled patterns of the paths, queries and fragments of the URIs, by the parts they have. */
+    private final EmgPattern[] uriPathPatterns = new EmgPattern[8];
+
+    /** The values issued by the unique generators. */
+    private final EmgUniqueValues uniqueValues = new EmgUniqueValues();
+
+    /** The normal and exponential samplers, use the generator sequence. */
+    private final EmgZiggurat ziggurat = new EmgZiggurat(generator.getRandomGenerator());
+
+    /** The quasi random mode, null if the values are pseudo random. */
+    private EmgQuasiRandom quasiRandom;
+
+    /** The allocations, use the generator sequence. */
+    private final EmgAllocation allocation = new EmgAllocation(generator.getRandomGenerator());
+
+    /** The identifiers generator, uses the generator sequence. */
+    private EmgIdGenerator idGenerator;
+
     /** The context. */
     private final IEolContext context;
 
@@ -68,8 +110,23 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
     /** The list values for a given list. */
     private Map<String, List<Object>> listValues;
     
+    /** The list values shared between generators, keyed by the list definition (path or CSV). */
+    private Map<String, List<Object>> listCorpusCache;
+    
     boolean refillListSamples;
     
+    /** The name models, by list ID and order. */
+    private final Map<String, EmgNameModel> nameModels = new HashMap<>();
+
+    /** If true, the name models of list files are persisted next to them. */
+    private boolean persistNameModels;
+
+    /** The correlated vectors, by mean and covariance. */
+    private final Map<CovarianceKey, EmgCorrelatedVectors> correlatedVectors = new HashMap<>();
+
+    /** The profiles, by path. */
+    private final Map<String, EmgProfile> profiles = new HashMap<>();
+
 
     /**
      * Instantiates a new emg random generator.
@@ -79,6 +136,7 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
     public EmgRandomGenerator(IEolContext context) {
         super();
         this.context = context;
+        this.idGenerator = new EmgIdGenerator(generator.getRandomGenerator(), System::currentTimeMillis);
     }
 
     /**
@@ -89,7 +147,7 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
      */
     public EmgRandomGenerator(IEolContext context, long seed) {
         this(context);
-        this.generator.reSeed(seed);
+        setSeed(seed);
     }
 
     public List<Integer> createListSampleIndices(int size) throws EolRuntimeException {
@@ -114,6 +172,18 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         return generator;
     }
 
+    /**
+     * Share the values read from list definitions (files or CSV values) with
+     * other generators. The cache is keyed by the list definition and its
+     * values are read only, so generators running in different threads can
+     * use the same cache as long as the map is thread safe.
+     *
+     * @param listCorpusCache the cache of list values
+     */
+    public void setListCorpusCache(Map<String, List<Object>> listCorpusCache) {
+		this.listCorpusCache = listCorpusCache;
+	}
+
     @Override
 	public boolean isFromListAsSampleRefill() {
 
@@ -149,8 +219,101 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         return result;
     }
 
+    @Override
+    public int[] nextComposition(int n, int m) throws EolRuntimeException {
+        return allocation.nextComposition(n, m, 0);
+    }
+
+    @Override
+    public int[] nextComposition(int n, int m, int min) throws EolRuntimeException {
+        return allocation.nextComposition(n, m, min);
+    }
+
+    @Override
+    public int[] nextMultinomial(int m, double[] weights) throws EolRuntimeException {
+        return allocation.nextMultinomial(m, weights);
+    }
+
+    @Override
+    public double[] nextDirichlet(double[] alpha) throws EolRuntimeException {
+        return allocation.nextDirichlet(alpha);
+    }
+
+    @Override
+    public int[] nextDirichletSplit(int m, double[] alpha) throws EolRuntimeException {
+        return allocation.nextDirichletSplit(m, alpha);
+    }
+
+    @Override
+    public EmgCorrelatedVectors getCorrelatedVectors(double[] mean, double[][] covariance)
+            throws EolRuntimeException {
+        CovarianceKey key = new CovarianceKey(mean, covariance);
+        EmgCorrelatedVectors vectors = correlatedVectors.get(key);
+        if (vectors == null) {
+            vectors = new EmgCorrelatedVectors(mean, covariance, this::nextStandardGaussian);
+            // The key keeps copies, the arguments may be reused by the caller
+            correlatedVectors.put(key.copy(), vectors);
+        }
+        return vectors;
+    }
+
+    @Override
+    public double[] nextCorrelated(double[] mean, double[][] covariance) throws EolRuntimeException {
+        return getCorrelatedVectors(mean, covariance).next();
+    }
+
+    @Override
+    public double[][] nextCorrelated(double[] mean, double[][] covariance, int count) throws EolRuntimeException {
+        return getCorrelatedVectors(mean, covariance).next(count);
+    }
+
+    @Override
+    public int getProfileInstances(String profile, String type, double scale) throws EolRuntimeException {
+        return (int) Math.round(getProfile(profile).getInstances(type) * scale);
+    }
+
+    @Override
+    public String nextProfileType(String profile) throws EolRuntimeException {
+        return getProfile(profile).nextType(generator.getRandomGenerator());
+    }
+
+    @Override
+    public Object nextProfileValue(String profile, String type, String attribute) throws EolRuntimeException {
+        return getProfile(profile).nextValue(generator.getRandomGenerator(), type, attribute);
+    }
+
+    @Override
+    public int nextProfileCardinality(String profile, String type, String feature) throws EolRuntimeException {
+        return getProfile(profile).nextCardinality(generator.getRandomGenerator(), type, feature);
+    }
+
+    /**
+     * Gets the profile saved in the file, read the first time.
+     *
+     * @param path the path of the profile
+     * @return the profile
+     * @throws EolRuntimeException if the profile can not be read
+     */
+    private EmgProfile getProfile(String path) throws EolRuntimeException {
+        EmgProfile profile = profiles.get(path);
+        if (profile == null) {
+            try {
+                profile = EmgProfile.load(new File(path));
+            }
+            catch (IOException e) {
+                throw new EolRuntimeException(String.format("The profile %s could not be read: %s", path,
+                        e.getMessage()));
+            }
+            profiles.put(path, profile);
+        }
+        return profile;
+    }
+
     @Override
     public boolean nextBoolean() {
+        if (quasiRandom != null) {
+            return quasiRandom.nextDouble() < 0.5;
+        }
         return generator.getRandomGenerator().nextBoolean();
     }
 
@@ -227,6 +390,9 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         int upper = c.size()-1;
         int index = 0;
         index = nextInt(0, upper);
+        if (c instanceof List && c instanceof RandomAccess) {
+            return ((List<?>) c).get(index);
+        }
         Object[] objects = c.toArray();
         return objects[index];
     }
@@ -280,59 +446,75 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         return result;
     }
 
+    @Override
+    public String nextName(String listID) throws EolRuntimeException {
+        return getNameModel(listID, NAME_MODEL_ORDER).generate(generator.getRandomGenerator());
+    }
+
+    @Override
+    public String nextName(String listID, int order, int minLength, int maxLength) throws EolRuntimeException {
+        return getNameModel(listID, order).generate(generator.getRandomGenerator(), minLength, maxLength, true);
+    }
+
     @Override
 	public float nextGaussian() {
 
-		return (float) generator.nextGaussian(0.0, 1.0);
+		return (float) nextStandardGaussian();
 	}
 
-	@Override
-    public String nextHttpURI(boolean addPort, boolean addPath,
-            boolean addQuery, boolean addFragment) throws EolRuntimeException {
+    @Override
+    public double nextGaussian(double mean, double sd) throws EolRuntimeException {
+        if (!(sd > 0)) {
+            throw new EolRuntimeException("The standard deviation must be positive: " + sd);
+        }
+        return mean + sd * nextStandardGaussian();
+    }
 
-        StringBuilder sb = new StringBuilder();
-        // scheme
-        sb.append("http");
-        sb.append("://");
-        // Host
-        sb.append("www.");
-        sb.append(nextString("LETTER", nextInt(6, 10)));
-        sb.append(getRandomUriDomain());
-        if (addPort) {
-            sb.append(":");
-            sb.append(nextInt(9999));
-        }
-        sb.append("/");
-        if (addPath) {
-            for (int i = 0; i < nextInt(1, 4); i++) {
-                sb.append(nextString("LETTER_LOWER", nextInt(3, 6)));
-                sb.append("/");
-            }
+    @Override
+    public double nextExponential(double mean) throws EolRuntimeException {
+        if (!(mean > 0)) {
+            throw new EolRuntimeException("The mean must be positive: " + mean);
         }
-        if (addQuery) {
-            String separator = "?";
-            for (int i = 0; i < nextInt(1, 4); i++) {
-                sb.append(separator);
-                sb.append(nextString("LETTER_LOWER", nextInt(3, 5)));
-                sb.append("=");
-                sb.append(nextString("NUMERIC", nextInt(5, 8)));
-                separator = "&";
-            }
+        if (quasiRandom != null) {
+            return -mean * Math.log(1 - quasiRandom.nextDouble());
         }
-        if (addFragment) {
-            sb.append("#");
-            sb.append(nextString("ID_SYMBOL", nextInt(1, 15)));
+        return mean * ziggurat.nextExponential();
+    }
+
+    /**
+     * A standard normal value, from the ziggurat or the inverse of the normal
+     * distribution of a quasi random value.
+     */
+    private double nextStandardGaussian() {
+        if (quasiRandom != null) {
+            double u = quasiRandom.nextDouble();
+            return SQRT2 * Erf.erfInv(2 * (u == 0 ? Double.MIN_NORMAL : u) - 1);
         }
-        return sb.toString();
+        return ziggurat.nextGaussian();
+    }
+
+	@Override
+    public String nextHttpURI(boolean addPort, boolean addPath,
+            boolean addQuery, boolean addFragment) throws EolRuntimeException {
+        return generateUri(true, addPort, addPath, addQuery, addFragment);
     }
 
 	@Override
     public int nextInt() {
+        if (quasiRandom != null) {
+            return (int) ((long) (quasiRandom.nextDouble() * 0x100000000L) + Integer.MIN_VALUE);
+        }
         return generator.getRandomGenerator().nextInt();
     }
     	
     @Override
     public int nextInt(int n) {
+        if (quasiRandom != null) {
+            if (n <= 0) {
+                throw new NotStrictlyPositiveException(n);
+            }
+            return (int) (quasiRandom.nextDouble() * n);
+        }
         return generator.getRandomGenerator().nextInt(n);
     }
 
@@ -341,6 +523,12 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
 	public int nextInt(int lower, int upper) throws EolRuntimeException {
     	
     	try {
+            if (quasiRandom != null) {
+                if (lower > upper) {
+                    throw new NumberIsTooLargeException(lower, upper, true);
+                }
+                return (int) (lower + (long) (quasiRandom.nextDouble() * (upper - (long) lower + 1)));
+            }
             return generator.nextInt(lower, upper);
         } catch (NumberIsTooLargeException e) {
             EolRuntimeException.propagate(e);
@@ -350,6 +538,9 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
 
     @Override
 	public float nextReal() {
+    	if (quasiRandom != null) {
+    	    return (float) quasiRandom.nextDouble();
+    	}
     	return generator.getRandomGenerator().nextFloat();
 	}
 
@@ -368,7 +559,7 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         if (diff == 0) {
             return lower;
         }
-        return generator.getRandomGenerator().nextFloat()*diff + lower;
+        return nextReal()*diff + lower;
 	}
 
     @Override
@@ -426,13 +617,7 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
     @Override
     public String nextString(String charSet, int length) {
 
-		EmgCharacterSet cSet;
-		try {
-        	cSet = EmgCharacterSet.valueOf(charSet);
-    	}
-    	catch (IllegalArgumentException ex) {
-    		cSet = EmgCharacterSet.LETTER;
-        }
+		EmgCharacterSet cSet = getCharacterSet(charSet);
         StringBuilder sb = new StringBuilder();
         char[] chars = cSet.getCharacters();
         for (int i = 0; i < length; i++) {
@@ -449,61 +634,110 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
 
     @Override
     public String nextURI(boolean addPort, boolean addPath, boolean addQuery, boolean addFragment) throws EolRuntimeException {
-
-        StringBuilder sb = new StringBuilder();
-        // scheme
-        String uriScheme = getRandomUriScheme();
-        sb.append(uriScheme);
-        sb.append("://");
-        // user:password
-        if (!uriScheme.equals("http")) {
-            if (nextBoolean()) {
-                sb.append(nextString("LETTER_LOWER", nextInt(6, 10)));
-                if (nextBoolean()) {
-                    sb.append(":");
-                    sb.append(generator.nextSecureHexString(nextInt(6, 10)));
-                }
-                sb.append("@");
-            }
-        }
-        // Host
-        sb.append("www.");
-        sb.append(nextString("LETTER", nextInt(6, 10)));
-        sb.append(getRandomUriDomain());
-        if (addPort) {
-            sb.append(":");
-            sb.append(nextInt(9999));
-        }
-        sb.append("/");
-        if (addPath) {
-            for (int i = 0; i < nextInt(1, 4); i++) {
-                sb.append(nextString("LETTER_LOWER", nextInt(3, 6)));
-                sb.append("/");
-            }
-        }
-        if (addQuery) {
-            String separator = "?";
-            for (int i = 0; i < nextInt(1, 4); i++) {
-                sb.append(separator);
-                sb.append(nextString("LETTER_LOWER", nextInt(3, 5)));
-                sb.append("=");
-                sb.append(nextString("NUMERIC", nextInt(5, 8)));
-                separator = "&";
-            }
-        }
-        if (addFragment) {
-            sb.append("#");
-            sb.append(nextString("ID_SYMBOL", nextInt(1, 15)));
-        }
-        return sb.toString();
+        return generateUri(false, addPort, addPath, addQuery, addFragment);
     }
     
+    @Override
+    public String nextFromPattern(String regex) throws EolRuntimeException {
+        EmgPattern pattern = patterns.get(regex);
+        if (pattern == null) {
+            pattern = EmgPattern.compile(regex);
+            patterns.put(regex, pattern);
+        }
+        return pattern.generate(generator.getRandomGenerator());
+    }
+
+    @Override
+    public String nextUniqueString(String scope, int length) throws EolRuntimeException {
+        return nextUniqueString(scope, "LETTER", length);
+    }
+
+    @Override
+    public String nextUniqueString(String scope, String charSet, int length) throws EolRuntimeException {
+        double space = Math.pow(getCharacterSet(charSet).getCharacters().length, length);
+        return uniqueValues.next(scope, space, () -> nextString(charSet, length));
+    }
+
+    @Override
+    public String nextUniqueCamelCaseWords(String scope, String characterSet, int length, int minWordLength)
+            throws EolRuntimeException {
+        // Words are capitalised, so only the letters matter; the split in words is ignored
+        int letters = (int) new String(getCharacterSet(characterSet).getCharacters()).toLowerCase().chars()
+                .distinct().count();
+        double space = Math.pow(letters, length);
+        return uniqueValues.next(scope, space, () -> nextCamelCaseWords(characterSet, length, minWordLength));
+    }
+
+    @Override
+    public int nextUniqueInt(String scope, int lower, int upper) throws EolRuntimeException {
+        // The integers come from a permutation, so the values issued in the scope are skipped, not drawn again
+        return idGenerator.nextUniqueInt(scope, lower, upper, value -> uniqueValues.add(scope, value));
+    }
+
+    @Override
+    public String nextUniqueFromPattern(String scope, String regex) throws EolRuntimeException {
+        return uniqueValues.next(scope, Double.POSITIVE_INFINITY, () -> nextFromPattern(regex));
+    }
+
+    @Override
+    public boolean addUniqueValue(String scope, Object value) {
+        return uniqueValues.add(scope, value);
+    }
+
     @Override
     public String nextUUID() {
-    	return UUID.randomUUID().toString();
+    	return idGenerator.nextUUID();
+    }
+
+    @Override
+    public List<String> nextUUIDs(int count) {
+        return idGenerator.nextUUIDs(count);
+    }
+
+    @Override
+    public String nextULID() throws EolRuntimeException {
+        return idGenerator.nextULID();
+    }
+
+    @Override
+    public List<String> nextULIDs(int count) throws EolRuntimeException {
+        return idGenerator.nextULIDs(count);
+    }
+
+    @Override
+    public String nextBase62(int length) throws EolRuntimeException {
+        return idGenerator.nextBase62(length);
+    }
+
+    @Override
+    public String nextUniqueBase62(int length) throws EolRuntimeException {
+        return idGenerator.nextUniqueBase62(length);
+    }
+
+    @Override
+    public List<String> nextUniqueBase62s(int length, int count) throws EolRuntimeException {
+        return idGenerator.nextUniqueBase62s(length, count);
+    }
+
+    @Override
+    public int nextUniqueInt(int n) throws EolRuntimeException {
+        return idGenerator.nextUniqueInt(n);
     }
     
 
+    /**
+     * A uniform value in [lower, upper), quasi random in the quasi random mode.
+     */
+    private double nextUniform(double lower, double upper) {
+        if (quasiRandom != null) {
+            if (lower >= upper) {
+                throw new NumberIsTooLargeException(lower, upper, false);
+            }
+            return lower + quasiRandom.nextDouble() * (upper - lower);
+        }
+        return generator.nextUniform(lower, upper, true);
+    }
+
     @Override
     public float nextValue() throws EolRuntimeException {
     	double result = 0.0;
@@ -513,10 +747,13 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         	result =  generator.nextBinomial(firstArg.intValue(), secondArg.doubleValue());
         	break;
         case Exponential:
-        	result =  generator.nextExponential(firstArg.doubleValue());
+        	result = nextExponential(firstArg.doubleValue());
+        	break;
+        case Gaussian:
+        	result = nextGaussian(firstArg.doubleValue(), secondArg.doubleValue());
         	break;
         case Uniform:
-        	result = generator.nextUniform(firstArg.doubleValue(), secondArg.doubleValue(), true);
+        	result = nextUniform(firstArg.doubleValue(), secondArg.doubleValue());
         	break;
 		default:
 			break;
@@ -535,15 +772,18 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
     	
     	double result = 0.0;
     	try {
-    	switch(globalDistribution) {
+    	switch(distribution) {
         case Binomial:
         	result =  generator.nextBinomial(args[0].intValue(), args[1].doubleValue());
         	break;
         case Exponential:
-        	result =  generator.nextExponential(args[0].doubleValue());
+        	result = nextExponential(args[0].doubleValue());
+        	break;
+        case Gaussian:
+        	result = nextGaussian(args[0].doubleValue(), args[1].doubleValue());
         	break;
         case Uniform:
-        	result = generator.nextUniform(args[0].doubleValue(), args[1].doubleValue(), true);
+        	result = nextUniform(args[0].doubleValue(), args[1].doubleValue());
         	break;
 		default:
 			break;
@@ -561,6 +801,36 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
     	refillListSamples = refill;
 	}
 
+    @Override
+    public void setNameModelPersistence(boolean persist) {
+        persistNameModels = persist;
+    }
+
+    @Override
+    public void setQuasiRandomSequence(QuasiRandomSequence sequence, int dimensions, int start)
+            throws EolRuntimeException {
+        if (sequence == null || sequence == QuasiRandomSequence.None) {
+            quasiRandom = null;
+        }
+        else {
+            quasiRandom = new EmgQuasiRandom(sequence, dimensions, start, generator.getRandomGenerator());
+        }
+    }
+
+    @Override
+    public void nextQuasiRandomPoint() {
+        if (quasiRandom != null) {
+            quasiRandom.nextPoint();
+        }
+    }
+
+    @Override
+    public void endQuasiRandomPoint() {
+        if (quasiRandom != null) {
+            quasiRandom.endPoint();
+        }
+    }
+
 	@Override
 	public void setNextValueDistribution(Distribution distribution,
 			Number[] args) throws EolRuntimeException {
@@ -577,7 +847,7 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
 
 	@Override
     public void setSeed(int seed) {
-        generator.reSeed(seed);
+        setSeed((long) seed);
     }
 
 	@Override
@@ -594,6 +864,24 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
 	@Override
     public void setSeed(long seed) {
         generator.reSeed(seed);
+        // Unique sequences start again and ULIDs don't depend on the clock
+        long[] time = { seededUlidTime(seed) };
+        idGenerator = new EmgIdGenerator(generator.getRandomGenerator(), () -> time[0]++);
+    }
+
+    /**
+     * The timestamp of the first ULID of a seeded generator, a time of the
+     * ten years from 2017 derived from the seed. The timestamps of the next
+     * ULIDs advance a millisecond per ULID, so they are reproducible and
+     * spread as those of ULIDs generated over time.
+     */
+    private static long seededUlidTime(long seed) {
+        // The finaliser of SplitMix64
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return SEEDED_ULID_EPOCH + Math.floorMod(z, SEEDED_ULID_RANGE);
     }
 
 	/**
@@ -642,42 +930,187 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
         return valuesList;
     }
 
-	/**
-     * Gets the random uri domain.
-     *
-     * @return the random uri domain
-	 * @throws EolRuntimeException 
+    /**
+     * Gets the character set with the given name, LETTER if there is none.
      */
-    private String getRandomUriDomain() throws EolRuntimeException {
-        return (String) nextFromCollection(Arrays.asList(URI_DOMAIN));
+    private EmgCharacterSet getCharacterSet(String charSet) {
+        try {
+            return EmgCharacterSet.valueOf(charSet);
+        }
+        catch (IllegalArgumentException ex) {
+            return EmgCharacterSet.LETTER;
+        }
     }
 
-	/**
-     * Gets the random uri scheme.
-     *
-     * @return the random uri scheme
-	 * @throws EolRuntimeException 
+    /**
+     * Generate an URI with the given parts. The port is drawn uniformly from
+     * 0 to 9998, so it is not generated from a pattern, where the
+     * alternatives and the number of digits would be equally likely.
+     */
+    private String generateUri(boolean http, boolean addPort, boolean addPath, boolean addQuery,
+            boolean addFragment) throws EolRuntimeException {
+        RandomGenerator random = generator.getRandomGenerator();
+        StringBuilder sb = new StringBuilder();
+        getUriHostPattern(http).generate(random, sb);
+        if (addPort) {
+            sb.append(':').append(random.nextInt(9999));
+        }
+        getUriPathPattern(addPath, addQuery, addFragment).generate(random, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Gets the compiled pattern of the scheme, user information and host of
+     * the URIs. The patterns are compiled the first time they are used.
      */
-    private String getRandomUriScheme() throws EolRuntimeException {
-        return (String) nextFromCollection(Arrays.asList(URI_SCHEME));
+    private EmgPattern getUriHostPattern(boolean http) throws EolRuntimeException {
+        int index = http ? 1 : 0;
+        if (uriHostPatterns[index] == null) {
+            StringBuilder sb = new StringBuilder();
+            if (http) {
+                sb.append("http://");
+            }
+            else {
+                // user:password for ssh and ftp
+                String user = "([a-z]{6,10}(:[0-9a-f]{6,10})?@)?";
+                sb.append("(http://|ssh://").append(user).append("|ftp://").append(user).append(")");
+            }
+            sb.append("www\\.[a-zA-Z]{6,10}\\.(");
+            for (int i = 0; i < URI_DOMAIN.length; i++) {
+                sb.append(i > 0 ? "|" : "").append(URI_DOMAIN[i].substring(1));
+            }
+            sb.append(")");
+            uriHostPatterns[index] = EmgPattern.compile(sb.toString());
+        }
+        return uriHostPatterns[index];
+    }
+
+    /**
+     * Gets the compiled pattern of the path, query and fragment of the URIs
+     * with the given parts. The patterns are compiled the first time they are
+     * used.
+     */
+    private EmgPattern getUriPathPattern(boolean addPath, boolean addQuery, boolean addFragment)
+            throws EolRuntimeException {
+        int index = (addPath ? 4 : 0) | (addQuery ? 2 : 0) | (addFragment ? 1 : 0);
+        if (uriPathPatterns[index] == null) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("/");
+            if (addPath) {
+                sb.append("([a-z]{3,6}/){1,4}");
+            }
+            if (addQuery) {
+                sb.append("\\?[a-z]{3,5}=[0-9]{5,8}(&[a-z]{3,5}=[0-9]{5,8}){0,3}");
+            }
+            if (addFragment) {
+                sb.append("#[");
+                for (char c : EmgCharacterSet.ID_SYMBOL.getCharacters()) {
+                    sb.append(Character.isLetterOrDigit(c) ? "" : "\\").append(c);
+                }
+                sb.append("]{1,15}");
+            }
+            uriPathPatterns[index] = EmgPattern.compile(sb.toString());
+        }
+        return uriPathPatterns[index];
     }
 
 	private List<Object> getValuesByListId(String listID) throws EolRuntimeException {
 		List<Object> values = getListValues().get(listID);
     	if (values == null) {
-    		String list;
-			try {
-    			list = (String) context.getFrameStack().get(listID).getValue();
-    		}
-    		catch (NullPointerException ex) {
-    			throw new EolRuntimeException(String.format("List $s not found", listID));
-    		}
-    		values = getListValues(list);
+    		values = getCorpusValues(getListDefinition(listID));
     		getListValues().put(listID, values);
     	}
 		return values;
 	}
 
+	/**
+	 * Gets the list definition (path or CSV) of the list ID.
+	 *
+	 * @param listID the list ID
+	 * @return the list definition
+	 * @throws EolRuntimeException if the list is not found
+	 */
+	private String getListDefinition(String listID) throws EolRuntimeException {
+		try {
+			return (String) context.getFrameStack().get(listID).getValue();
+		}
+		catch (NullPointerException ex) {
+			throw new EolRuntimeException(String.format("List %s not found", listID));
+		}
+	}
+
+	/**
+	 * Gets the name model of the given order for the list ID. The model is
+	 * trained the first time, or read from the file next to the list when
+	 * models are persisted.
+	 *
+	 * @param listID the list ID
+	 * @param order the order of the model
+	 * @return the name model
+	 * @throws EolRuntimeException if the list is not found or is empty
+	 */
+	private EmgNameModel getNameModel(String listID, int order) throws EolRuntimeException {
+		String key = listID + "#" + order;
+		EmgNameModel model = nameModels.get(key);
+		if (model == null) {
+			File modelFile = null;
+			if (persistNameModels) {
+				String list = getListDefinition(listID);
+				File listFile = new File(list);
+				if (list.indexOf(',') < 0 && listFile.isFile()) {
+					modelFile = new File(list + ".ngram" + order);
+					if (modelFile.lastModified() >= listFile.lastModified()) {
+						try (InputStream in = new BufferedInputStream(new FileInputStream(modelFile))) {
+							model = EmgNameModel.read(in);
+						}
+						catch (IOException e) {
+							// Train the model again
+						}
+					}
+				}
+			}
+			if (model == null) {
+				model = EmgNameModel.train(getValuesByListId(listID), order);
+				if (modelFile != null) {
+					try (OutputStream out = new BufferedOutputStream(new FileOutputStream(modelFile))) {
+						model.write(out);
+					}
+					catch (IOException e) {
+						// The model is only a cache, keep it in memory
+						if (modelFile.isFile()) {
+							modelFile.delete();
+						}
+					}
+				}
+			}
+			nameModels.put(key, model);
+		}
+		return model;
+	}
+
+	/**
+	 * Gets the values of the list definition, from the shared corpus cache if
+	 * one has been set.
+	 *
+	 * @param list the list definition
+	 * @return the values of the list
+	 * @throws EolRuntimeException the eol runtime exception
+	 */
+	private List<Object> getCorpusValues(String list) throws EolRuntimeException {
+		if (listCorpusCache == null) {
+			return getListValues(list);
+		}
+		List<Object> values = listCorpusCache.get(list);
+		if (values == null) {
+			values = Collections.unmodifiableList(getListValues(list));
+			List<Object> existing = listCorpusCache.putIfAbsent(list, values);
+			if (existing != null) {
+				values = existing;
+			}
+		}
+		return values;
+	}
+
 	protected Map<String, List<Integer>> getListSampleIndices() {
 		if (listSamplesIndices == null) {
 			listSamplesIndices = new HashMap<>();
@@ -691,4 +1124,46 @@ public class EmgRandomGenerator implements IEmgRandomGenerator {
 		}
 		return listValues;
 	}
+
+    /**
+     * The key of the correlated vectors, by the values of the mean and the
+     * covariance.
+     */
+    private static final class CovarianceKey {
+
+        private final double[] mean;
+
+        private final double[][] covariance;
+
+        private final int hash;
+
+        CovarianceKey(double[] mean, double[][] covariance) {
+            this.mean = mean;
+            this.covariance = covariance;
+            this.hash = 31 * Arrays.hashCode(mean) + Arrays.deepHashCode(covariance);
+        }
+
+        CovarianceKey copy() {
+            double[][] rows = new double[covariance.length][];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = covariance[i].clone();
+            }
+            return new CovarianceKey(mean.clone(), rows);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CovarianceKey)) {
+                return false;
+            }
+            CovarianceKey other = (CovarianceKey) obj;
+            return hash == other.hash && Arrays.equals(mean, other.mean)
+                    && Arrays.deepEquals(covariance, other.covariance);
+        }
+    }
 }
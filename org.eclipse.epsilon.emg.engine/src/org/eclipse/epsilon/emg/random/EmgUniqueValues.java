@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
+
+/**
+ * The EmgUniqueValues keeps track of the values issued for a set of named
+ * scopes (e.g. a feature, "Place.name"), so generators can return values
+ * that are unique within their scope. A value is generated again when it was
+ * already issued in the scope, so the expected cost of a value is constant
+ * while the scope is not close to full.
+ * <p>
+ * Each scope stores a 64 bit fingerprint of the issued values in an open
+ * addressing hash table, about 11 bytes per value instead of the value
+ * itself. Equal values have equal fingerprints, so a value is never issued
+ * twice. Two different values with the same fingerprint only make the
+ * generator draw another value. For strings, numbers and characters the
+ * fingerprint is computed from the whole value, so the chance of a collision
+ * is about n<sup>2</sup>/2<sup>65</sup> for n values. Other values are
+ * fingerprinted from their 32 bit hash code, so their chance is about
+ * n<sup>2</sup>/2<sup>33</sup>.
+ * <p>
+ * Generation fails when the scope has issued {@link #MAX_FILL} of the
+ * values its generator can produce, when that number is known, or when
+ * {@link #MAX_ATTEMPTS} values in a row had been issued before.
+ */
+public class EmgUniqueValues {
+
+    /** The fraction of the value space that can be issued. */
+    public static final double MAX_FILL = 0.9;
+
+    /** The number of consecutive issued values after which generation fails. */
+    public static final int MAX_ATTEMPTS = 100;
+
+    /**
+     * A generator of candidate values.
+     *
+     * @param <T> the type of the values
+     */
+    public interface Generator<T> {
+        T next() throws EolRuntimeException;
+    }
+
+    /** The scopes, by name. */
+    private final Map<String, FingerprintSet> scopes = new HashMap<>();
+
+    /**
+     * Generate a value that has not been issued in the scope.
+     *
+     * @param <T> the type of the values
+     * @param scope the name of the scope
+     * @param spaceSize the number of different values the generator can
+     * produce, or {@link Double#POSITIVE_INFINITY} if it is not known
+     * @param generator the generator of candidate values
+     * @return the value
+     * @throws EolRuntimeException if the scope is close to exhausted or the
+     * generator fails
+     */
+    public <T> T next(String scope, double spaceSize, Generator<T> generator) throws EolRuntimeException {
+        FingerprintSet issued = getScope(scope);
+        if (issued.size() + 1 > spaceSize * MAX_FILL) {
+            throw new EolRuntimeException(String.format("The unique values of '%s' are close to exhausted: "
+                    + "%d of %.0f possible values have been issued", scope, issued.size(), spaceSize));
+        }
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            T value = generator.next();
+            if (issued.add(fingerprint(value))) {
+                return value;
+            }
+        }
+        throw new EolRuntimeException(String.format("The unique values of '%s' are close to exhausted: "
+                + "the last %d generated values had been issued before (%d values issued)",
+                scope, MAX_ATTEMPTS, issued.size()));
+    }
+
+    /**
+     * Mark a value as issued in the scope, e.g. to avoid the values of
+     * existing elements.
+     *
+     * @param scope the name of the scope
+     * @param value the value
+     * @return true if the value had not been issued in the scope
+     */
+    public boolean add(String scope, Object value) {
+        return getScope(scope).add(fingerprint(value));
+    }
+
+    /**
+     * @param scope the name of the scope
+     * @return the number of values issued in the scope
+     */
+    public int size(String scope) {
+        FingerprintSet issued = scopes.get(scope);
+        return issued == null ? 0 : issued.size();
+    }
+
+    /**
+     * Forget the values issued in the scope.
+     *
+     * @param scope the name of the scope
+     */
+    public void clear(String scope) {
+        scopes.remove(scope);
+    }
+
+    private FingerprintSet getScope(String scope) {
+        FingerprintSet issued = scopes.get(scope);
+        if (issued == null) {
+            issued = new FingerprintSet();
+            scopes.put(scope, issued);
+        }
+        return issued;
+    }
+
+    /**
+     * A 64 bit fingerprint of the value. Strings, and big numbers through
+     * their decimal string, use FNV-1a on their characters, integral numbers
+     * and characters their value, floating point numbers the bits of their
+     * double value, and other values their hash code, all followed by a bit
+     * mixer.
+     */
+    static long fingerprint(Object value) {
+        long hash;
+        if (value instanceof CharSequence) {
+            hash = fnv((CharSequence) value);
+        }
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            hash = ((Number) value).longValue();
+        }
+        else if (value instanceof Double || value instanceof Float) {
+            hash = Double.doubleToLongBits(((Number) value).doubleValue());
+        }
+        else if (value instanceof Character) {
+            hash = (Character) value;
+        }
+        else if (value instanceof BigInteger || value instanceof BigDecimal) {
+            hash = fnv(value.toString());
+        }
+        else {
+            hash = value == null ? 0 : value.hashCode();
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static long fnv(CharSequence chars) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < chars.length(); i++) {
+            hash = (hash ^ chars.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * An open addressing (linear probing) hash set of longs. Zero marks the
+     * empty slots and is tracked apart.
+     */
+    private static class FingerprintSet {
+
+        private static final double LOAD_FACTOR = 0.75;
+
+        private long[] table = new long[64];
+
+        private int size;
+
+        private boolean containsZero;
+
+        int size() {
+            return size;
+        }
+
+        boolean add(long value) {
+            if (value == 0) {
+                if (containsZero) {
+                    return false;
+                }
+                containsZero = true;
+                size++;
+                return true;
+            }
+            if (!insert(table, value)) {
+                return false;
+            }
+            size++;
+            if (size > table.length * LOAD_FACTOR) {
+                long[] grown = new long[table.length * 2];
+                for (long existing : table) {
+                    if (existing != 0) {
+                        insert(grown, existing);
+                    }
+                }
+                table = grown;
+            }
+            return true;
+        }
+
+        private static boolean insert(long[] table, long value) {
+            int mask = table.length - 1;
+            // The fingerprints are mixed, the low bits are uniform
+            int slot = (int) value & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == value) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            return true;
+        }
+    }
+
+}
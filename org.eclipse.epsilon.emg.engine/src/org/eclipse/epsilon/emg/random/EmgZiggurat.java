@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2017 The University of York.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Horacio Hoyos - initial API and implementation
+ ******************************************************************************/
+package org.eclipse.epsilon.emg.random;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+/**
+ * The EmgZiggurat draws standard normal and exponential values with the
+ * Ziggurat method of Marsaglia and Tsang. The density is covered by layers of
+ * equal area (128 for the normal, 256 for the exponential); a value is a
+ * random layer and a random point in it, accepted without evaluating the
+ * density about 99% of the times. Only the points at the edge of a layer or
+ * in the tail need an exponential or logarithm.
+ * <p>
+ * Each value takes the layer from the low bits and the point from the high
+ * 32 bits of one <code>nextLong()</code> of the generator, so the layer and
+ * the point are independent.
+ */
+public class EmgZiggurat {
+
+    /** The start of the tail of the normal. */
+    private static final double NORMAL_R = 3.442619855899;
+
+    /** The area of each layer of the normal. */
+    private static final double NORMAL_V = 9.91256303526217e-3;
+
+    /** The start of the tail of the exponential. */
+    private static final double EXPONENTIAL_R = 7.697117470131487;
+
+    /** The area of each layer of the exponential. */
+    private static final double EXPONENTIAL_V = 3.949659822581572e-3;
+
+    /** The limits below which a point of a normal layer is accepted. */
+    private static final int[] NORMAL_K = new int[128];
+
+    /** The width of a normal layer, per unit of the point. */
+    private static final double[] NORMAL_W = new double[128];
+
+    /** The density at the edge of each normal layer. */
+    private static final double[] NORMAL_F = new double[128];
+
+    /** The limits below which a point of an exponential layer is accepted. */
+    private static final long[] EXPONENTIAL_K = new long[256];
+
+    /** The width of an exponential layer, per unit of the point. */
+    private static final double[] EXPONENTIAL_W = new double[256];
+
+    /** The density at the edge of each exponential layer. */
+    private static final double[] EXPONENTIAL_F = new double[256];
+
+    static {
+        double m1 = 2147483648.0;
+        double dn = NORMAL_R;
+        double tn = dn;
+        double q = NORMAL_V / Math.exp(-0.5 * dn * dn);
+        NORMAL_K[0] = (int) ((dn / q) * m1);
+        NORMAL_K[1] = 0;
+        NORMAL_W[0] = q / m1;
+        NORMAL_W[127] = dn / m1;
+        NORMAL_F[0] = 1.0;
+        NORMAL_F[127] = Math.exp(-0.5 * dn * dn);
+        for (int i = 126; i >= 1; i--) {
+            dn = Math.sqrt(-2.0 * Math.log(NORMAL_V / dn + Math.exp(-0.5 * dn * dn)));
+            NORMAL_K[i + 1] = (int) ((dn / tn) * m1);
+            tn = dn;
+            NORMAL_F[i] = Math.exp(-0.5 * dn * dn);
+            NORMAL_W[i] = dn / m1;
+        }
+        double m2 = 4294967296.0;
+        double de = EXPONENTIAL_R;
+        double te = de;
+        q = EXPONENTIAL_V / Math.exp(-de);
+        EXPONENTIAL_K[0] = (long) ((de / q) * m2);
+        EXPONENTIAL_K[1] = 0;
+        EXPONENTIAL_W[0] = q / m2;
+        EXPONENTIAL_W[255] = de / m2;
+        EXPONENTIAL_F[0] = 1.0;
+        EXPONENTIAL_F[255] = Math.exp(-de);
+        for (int i = 254; i >= 1; i--) {
+            de = -Math.log(EXPONENTIAL_V / de + Math.exp(-de));
+            EXPONENTIAL_K[i + 1] = (long) ((de / te) * m2);
+            te = de;
+            EXPONENTIAL_F[i] = Math.exp(-de);
+            EXPONENTIAL_W[i] = de / m2;
+        }
+    }
+
+    /** The generator. */
+    private final RandomGenerator random;
+
+    /**
+     * Instantiates a new ziggurat.
+     *
+     * @param random the pseudo random generator
+     */
+    public EmgZiggurat(RandomGenerator random) {
+        this.random = random;
+    }
+
+    /**
+     * @return a normally distributed value with mean 0 and standard
+     * deviation 1
+     */
+    public double nextGaussian() {
+        long bits = random.nextLong();
+        int layer = (int) bits & 127;
+        int point = (int) (bits >> 32);
+        if (Math.abs(point) < NORMAL_K[layer]) {
+            return point * NORMAL_W[layer];
+        }
+        while (true) {
+            double x = point * NORMAL_W[layer];
+            if (layer == 0) {
+                // The tail, from Marsaglia's method for x > r
+                double y;
+                do {
+                    x = -Math.log(nextOpenDouble()) / NORMAL_R;
+                    y = -Math.log(nextOpenDouble());
+                } while (y + y < x * x);
+                return point > 0 ? NORMAL_R + x : -NORMAL_R - x;
+            }
+            if (NORMAL_F[layer] + random.nextDouble() * (NORMAL_F[layer - 1] - NORMAL_F[layer])
+                    < Math.exp(-0.5 * x * x)) {
+                return x;
+            }
+            bits = random.nextLong();
+            layer = (int) bits & 127;
+            point = (int) (bits >> 32);
+            if (Math.abs(point) < NORMAL_K[layer]) {
+                return point * NORMAL_W[layer];
+            }
+        }
+    }
+
+    /**
+     * @return an exponentially distributed value with mean 1
+     */
+    public double nextExponential() {
+        long bits = random.nextLong();
+        int layer = (int) bits & 255;
+        long point = bits >>> 32;
+        if (point < EXPONENTIAL_K[layer]) {
+            return point * EXPONENTIAL_W[layer];
+        }
+        while (true) {
+            if (layer == 0) {
+                // The tail is an exponential shifted to r
+                return EXPONENTIAL_R - Math.log(nextOpenDouble());
+            }
+            double x = point * EXPONENTIAL_W[layer];
+            if (EXPONENTIAL_F[layer] + random.nextDouble() * (EXPONENTIAL_F[layer - 1] - EXPONENTIAL_F[layer])
+                    < Math.exp(-x)) {
+                return x;
+            }
+            bits = random.nextLong();
+            layer = (int) bits & 255;
+            point = bits >>> 32;
+            if (point < EXPONENTIAL_K[layer]) {
+                return point * EXPONENTIAL_W[layer];
+            }
+        }
+    }
+
+    /**
+     * A uniform value in (0, 1], whose logarithm is finite.
+     */
+    private double nextOpenDouble() {
+        return 1.0 - random.nextDouble();
+    }
+
+}
@@ -49,6 +49,16 @@ public interface IEmgRandomGenerator {
         Weibull,
         Zipf
     }
+
+    /**
+     * The low discrepancy sequences of the quasi random mode, see
+     * {@link IEmgRandomGenerator#setQuasiRandomSequence(QuasiRandomSequence, int, int)}.
+     */
+    public enum QuasiRandomSequence {
+        None,
+        Sobol,
+        Halton
+    }
     
     /**
 	 * A CharacterSet that provides a set of commonly used character sets.
@@ -115,9 +125,158 @@ public interface IEmgRandomGenerator {
      * @return a list of <code>n</code> integers who's sum is equal
      * to <code>m</code>.
      * @throws EolRuntimeException
+     * @see #nextComposition(int, int)
      */
     List<Integer> nextAddTo(int n, int m) throws EolRuntimeException;
 
+    /**
+     * Returns <code>n</code> non negative integers whose sum is equal to
+     * <code>m</code>. All the compositions of <code>m</code> in
+     * <code>n</code> parts are equally likely. See {@link EmgAllocation}.
+     *
+     * @param n the number of parts
+     * @param m the total sum
+     * @return the parts
+     * @throws EolRuntimeException if <code>n</code> is not positive or
+     * <code>m</code> is negative
+     */
+    int[] nextComposition(int n, int m) throws EolRuntimeException;
+
+    /**
+     * Returns <code>n</code> integers of at least <code>min</code> whose sum
+     * is equal to <code>m</code>, as {@link #nextComposition(int, int)}.
+     *
+     * @param n the number of parts
+     * @param m the total sum
+     * @param min the minimum of each part
+     * @return the parts
+     * @throws EolRuntimeException if <code>n</code> is not positive or
+     * <code>m</code> is less than <code>n * min</code>
+     */
+    int[] nextComposition(int n, int m, int min) throws EolRuntimeException;
+
+    /**
+     * Returns a multinomial allocation of <code>m</code> units: each unit is
+     * given to a part with a probability proportional to its weight.
+     *
+     * @param m the number of units
+     * @param weights the non negative weights of the parts
+     * @return the number of units of each part
+     * @throws EolRuntimeException if a weight is negative or all are zero
+     */
+    int[] nextMultinomial(int m, double[] weights) throws EolRuntimeException;
+
+    /**
+     * Returns Dirichlet distributed proportions, which add to one.
+     *
+     * @param alpha the positive concentration of each proportion
+     * @return the proportions
+     * @throws EolRuntimeException if an alpha is not positive
+     */
+    double[] nextDirichlet(double[] alpha) throws EolRuntimeException;
+
+    /**
+     * Returns a split of <code>m</code> in Dirichlet distributed proportions,
+     * see {@link #nextDirichlet(double[])}. The parts add to <code>m</code>.
+     *
+     * @param m the total sum
+     * @param alpha the positive concentration of each part
+     * @return the parts
+     * @throws EolRuntimeException if <code>m</code> is negative or an alpha
+     * is not positive
+     */
+    int[] nextDirichletSplit(int m, double[] alpha) throws EolRuntimeException;
+
+    /**
+     * Returns the correlated vectors of the mean and covariance, e.g. to draw
+     * related attribute values of each element. The covariance is factorised
+     * the first time; the vectors are cached, so later calls with the same
+     * mean and covariance return the same vectors.
+     *
+     * @param mean the mean of each value
+     * @param covariance the symmetric positive semi-definite covariance of
+     * the values
+     * @return the correlated vectors
+     * @throws EolRuntimeException if the covariance does not match the mean,
+     * is not symmetric or not positive semi-definite
+     */
+    EmgCorrelatedVectors getCorrelatedVectors(double[] mean, double[][] covariance) throws EolRuntimeException;
+
+    /**
+     * Returns a vector of normally distributed values with the mean and
+     * covariance, see {@link #getCorrelatedVectors(double[], double[][])}.
+     *
+     * @param mean the mean of each value
+     * @param covariance the covariance of the values
+     * @return the values
+     * @throws EolRuntimeException if the covariance is not valid
+     */
+    double[] nextCorrelated(double[] mean, double[][] covariance) throws EolRuntimeException;
+
+    /**
+     * Returns <code>count</code> vectors of normally distributed values with
+     * the mean and covariance, see
+     * {@link #getCorrelatedVectors(double[], double[][])}.
+     *
+     * @param mean the mean of each value
+     * @param covariance the covariance of the values
+     * @param count the number of vectors
+     * @return the vectors
+     * @throws EolRuntimeException if the covariance is not valid or the count
+     * is negative
+     */
+    double[][] nextCorrelated(double[] mean, double[][] covariance, int count) throws EolRuntimeException;
+
+    /**
+     * Returns the number of instances of the type in the profile, scaled,
+     * e.g. to generate a model 100 times larger than the profiled one. The
+     * profile is a file saved by an {@link EmgProfile}, read the first time it
+     * is used.
+     *
+     * @param profile the path of the profile
+     * @param type the type
+     * @param scale the scale of the model
+     * @return the rounded scaled number of instances
+     * @throws EolRuntimeException if the profile can not be read
+     */
+    int getProfileInstances(String profile, String type, double scale) throws EolRuntimeException;
+
+    /**
+     * Returns a type of the profile, with the probability of its instances.
+     *
+     * @param profile the path of the profile
+     * @return the name of the type
+     * @throws EolRuntimeException if the profile can not be read or has no
+     * types
+     */
+    String nextProfileType(String profile) throws EolRuntimeException;
+
+    /**
+     * Returns a value of the attribute of the type, with its empirical
+     * distribution in the profile.
+     *
+     * @param profile the path of the profile
+     * @param type the type
+     * @param attribute the attribute
+     * @return the value
+     * @throws EolRuntimeException if the profile can not be read or has no
+     * values of the attribute
+     */
+    Object nextProfileValue(String profile, String type, String attribute) throws EolRuntimeException;
+
+    /**
+     * Returns a number of values of the feature of the type, with its
+     * empirical distribution in the profile.
+     *
+     * @param profile the path of the profile
+     * @param type the type
+     * @param feature the feature
+     * @return the number of values
+     * @throws EolRuntimeException if the profile can not be read or has no
+     * cardinalities of the feature
+     */
+    int nextProfileCardinality(String profile, String type, String feature) throws EolRuntimeException;
+
     /**
      * Returns the next pseudorandom, uniformly distributed
      * <code>boolean</code> value from this random number generator's
@@ -220,6 +379,34 @@ public interface IEmgRandomGenerator {
      * is set to false.
      */
     Object nextFromListAsSample(String listID) throws EolRuntimeException;
+
+    /**
+     * Returns a name that looks like the items of the list but is not one of
+     * them. A character n-gram model of order 3 is trained from the list the
+     * first time it is used, see {@link EmgNameModel}. The names have the
+     * lengths of the items of the list.
+     *
+     * @param listID the list ID, as in {@link #nextFromList(String)}
+     * @return the name
+     * @throws EolRuntimeException if the list is not found or is empty, or
+     * no novel name is generated
+     */
+    String nextName(String listID) throws EolRuntimeException;
+
+    /**
+     * Returns a name that looks like the items of the list but is not one of
+     * them, generated by a character n-gram model of the given order. Higher
+     * orders give names closer to the items of the list.
+     *
+     * @param listID the list ID, as in {@link #nextFromList(String)}
+     * @param order the number of characters that determine the next one
+     * @param minLength the minimum length of the name
+     * @param maxLength the maximum length of the name
+     * @return the name
+     * @throws EolRuntimeException if the list is not found or is empty, the
+     * order is not positive, or no such name is generated
+     */
+    String nextName(String listID, int order, int minLength, int maxLength) throws EolRuntimeException;
     
     /**
      * Returns the next pseudorandom, Gaussian ("normally") distributed
@@ -233,6 +420,29 @@ public interface IEmgRandomGenerator {
      */
     float nextGaussian();
 
+    /**
+     * Returns the next pseudorandom, Gaussian ("normally") distributed
+     * <code>double</code> value with the given mean and standard deviation.
+     * The values are drawn with the Ziggurat method, see {@link EmgZiggurat}.
+     *
+     * @param mean the mean
+     * @param sd the standard deviation, must be positive
+     * @return the value
+     * @throws EolRuntimeException if the standard deviation is not positive
+     */
+    double nextGaussian(double mean, double sd) throws EolRuntimeException;
+
+    /**
+     * Returns the next pseudorandom, exponentially distributed
+     * <code>double</code> value with the given mean. The values are drawn with
+     * the Ziggurat method, see {@link EmgZiggurat}.
+     *
+     * @param mean the mean, must be positive
+     * @return the value
+     * @throws EolRuntimeException if the mean is not positive
+     */
+    double nextExponential(double mean) throws EolRuntimeException;
+
     /**
      * Generates a random URI that complies to:
      * <code>http://host[:port][/path][?query][#fragment]</code>
@@ -411,14 +621,188 @@ public interface IEmgRandomGenerator {
     String nextURI(boolean addPort, boolean addPath, boolean addQuery,
             boolean addFragment) throws EolRuntimeException;
     
+    /**
+     * Returns a string that matches the regular expression, e.g.
+     * <code>nextFromPattern("[A-Z]{3}-\\d{4}")</code> returns strings as
+     * "KQT-0472". The regular expression is compiled the first time it is
+     * used. The supported syntax is described in {@link EmgPattern}.
+     * 
+     * @param regex the regular expression
+     * @return the string
+     * @throws EolRuntimeException if the regular expression is not valid or
+     * uses unsupported constructs
+     */
+	String nextFromPattern(String regex) throws EolRuntimeException;
+
+    /**
+     * Returns a string as {@link #nextString(int)} that has not been returned
+     * before for the same scope. Scopes are named by the user, e.g. after the
+     * feature that must have unique values ("Place.name").
+     * 
+     * @param scope the name of the scope
+     * @param length the length of the string
+     * @return the string
+     * @throws EolRuntimeException if the strings of the scope are close to
+     * exhausted
+     */
+	String nextUniqueString(String scope, int length) throws EolRuntimeException;
+
+    /**
+     * Returns a string as {@link #nextString(String, int)} that has not been
+     * returned before for the same scope.
+     * 
+     * @param scope the name of the scope
+     * @param charSet the name of the character set
+     * @param length the length of the string
+     * @return the string
+     * @throws EolRuntimeException if the strings of the scope are close to
+     * exhausted
+     */
+	String nextUniqueString(String scope, String charSet, int length) throws EolRuntimeException;
+
+    /**
+     * Returns a string as {@link #nextCamelCaseWords(String, int, int)} that
+     * has not been returned before for the same scope.
+     * 
+     * @param scope the name of the scope
+     * @param characterSet the name of the character set
+     * @param length the length of the string
+     * @param minWordLength the minimum word length
+     * @return the string
+     * @throws EolRuntimeException if the strings of the scope are close to
+     * exhausted, or as {@link #nextCamelCaseWords(String, int, int)}
+     */
+	String nextUniqueCamelCaseWords(String scope, String characterSet, int length, int minWordLength)
+			throws EolRuntimeException;
+
+    /**
+     * Returns an <tt>int</tt> value between lower and upper (inclusive) that
+     * has not been returned before for the same scope, nor added to it with
+     * {@link #addUniqueValue(String, Object)}. Successive calls walk a random
+     * permutation of the range, as {@link #nextUniqueInt(int)} does, skipping
+     * the values issued in the scope, so every value of the range can be
+     * returned. Use it for values that must be unique among the other values
+     * of a scope, e.g. the existing values of a feature; use
+     * {@link #nextUniqueInt(int)} for integers that only need to be unique
+     * among themselves, as it does not keep the issued values.
+     * 
+     * @param scope the name of the scope
+     * @param lower the lower bound (inclusive)
+     * @param upper the upper bound (inclusive)
+     * @return the value
+     * @throws EolRuntimeException if upper is less than lower or all the
+     * values of the range have been issued in the scope
+     */
+	int nextUniqueInt(String scope, int lower, int upper) throws EolRuntimeException;
+
+    /**
+     * Returns a string as {@link #nextFromPattern(String)} that has not been
+     * returned before for the same scope.
+     * 
+     * @param scope the name of the scope
+     * @param regex the regular expression
+     * @return the string
+     * @throws EolRuntimeException if the strings of the scope are close to
+     * exhausted
+     */
+	String nextUniqueFromPattern(String scope, String regex) throws EolRuntimeException;
+
+    /**
+     * Marks a value as returned for the scope, so the unique generators will
+     * not return it, e.g. the values of the elements of an existing model.
+     * 
+     * @param scope the name of the scope
+     * @param value the value
+     * @return <code>true</code> if the value had not been returned before
+     */
+	boolean addUniqueValue(String scope, Object value);
+
     /**
      * Returns a type 4 (pseudo randomly generated) UUID. The UUID is generated using
-     * a cryptographically strong pseudo random number generator.
+     * this random number generator's sequence, so it is reproducible when the
+     * generator is seeded.
      * 
      * @return The string representation of the generated UUID.
      */
 	String nextUUID();
 
+    /**
+     * Returns a list of type 4 UUIDs.
+     * 
+     * @param count the number of UUIDs
+     * @return the string representations of the UUIDs
+     * @see #nextUUID()
+     */
+	List<String> nextUUIDs(int count);
+
+    /**
+     * Returns a ULID: 26 characters that encode a millisecond timestamp and
+     * 80 random bits. ULIDs generated by this generator are sorted, ULIDs in
+     * the same millisecond increment the random bits of the previous one. When
+     * the generator is seeded the clock is not used, so ULIDs are reproducible:
+     * the first timestamp is derived from the seed and each ULID advances it a
+     * millisecond.
+     * 
+     * @return the ULID
+     */
+	String nextULID() throws EolRuntimeException;
+
+    /**
+     * Returns a list of sorted ULIDs.
+     * 
+     * @param count the number of ULIDs
+     * @return the ULIDs
+     * @see #nextULID()
+     */
+	List<String> nextULIDs(int count) throws EolRuntimeException;
+
+    /**
+     * Returns a random identifier of the given length made of the characters
+     * 0-9, A-Z and a-z. The identifiers are not guaranteed to be unique.
+     * 
+     * @param length the length of the identifier
+     * @return the identifier
+     * @see #nextUniqueBase62(int)
+     */
+	String nextBase62(int length) throws EolRuntimeException;
+
+    /**
+     * Returns an identifier of the given length made of the characters 0-9,
+     * A-Z and a-z that has not been returned before by this generator. The
+     * length must be between 1 and 10, and there are 62<sup>length</sup>
+     * identifiers of a length.
+     * 
+     * @param length the length of the identifier
+     * @return the identifier
+     */
+	String nextUniqueBase62(int length) throws EolRuntimeException;
+
+    /**
+     * Returns a list of unique identifiers made of the characters 0-9, A-Z
+     * and a-z.
+     * 
+     * @param length the length of the identifiers
+     * @param count the number of identifiers
+     * @return the identifiers
+     * @see #nextUniqueBase62(int)
+     */
+	List<String> nextUniqueBase62s(int length, int count) throws EolRuntimeException;
+
+    /**
+     * Returns an <tt>int</tt> value between 0 (inclusive) and the specified
+     * value (exclusive) that has not been returned before by this generator
+     * for the same bound, i.e. successive calls return a random permutation
+     * of the range. The issued values are not kept, so it takes constant
+     * memory for any number of values, e.g. to pick distinct indices of a
+     * collection; the values are not unique within the scopes of
+     * {@link #nextUniqueInt(String, int, int)}, which should be used when
+     * they must not repeat other values of a scope.
+     * 
+     * @param n the bound on the number to be returned. Must be positive.
+     * @return the unique value
+     */
+	int nextUniqueInt(int n) throws EolRuntimeException;
+
     /**
      * Returns the next pseudorandom, value from this random attribute
      * generator's sequence. The value is picked from the configured
@@ -454,6 +838,50 @@ public interface IEmgRandomGenerator {
      * exhausted.
      */
     void setFromListAsSampleRefill(boolean refill);
+
+    /**
+     * Configure whether the name models of {@link #nextName(String)} are
+     * persisted. If <code>true</code>, the model of a list read from a file
+     * is written next to it (e.g. <code>names.txt.ngram3</code>) and read
+     * instead of trained while it is newer than the file. A model that can't
+     * be written is only kept in memory.
+     *
+     * @param persist if <code>true</code> the name models are persisted
+     */
+    void setNameModelPersistence(boolean persist);
+
+    /**
+     * Configure the quasi random mode. In this mode each created element is
+     * a point of a low discrepancy sequence (see {@link EmgQuasiRandom}): the
+     * i-th number drawn by the create operation of an element (by nextInt,
+     * nextReal, nextBoolean, nextGaussian, nextExponential and the uniform,
+     * exponential and Gaussian nextValue) is derived from the i-th coordinate
+     * of the point, so the elements cover the combinations of their values
+     * evenly. Other draws, and the draws beyond the dimensions, are pseudo
+     * random.
+     *
+     * @param sequence the sequence, {@link QuasiRandomSequence#None} for
+     * pseudo random values
+     * @param dimensions the number of draws of each element that are quasi
+     * random; up to 1000 for Sobol and 40 for Halton
+     * @param start the index of the first point, e.g. the number of points
+     * used by the previous models of a suite
+     * @throws EolRuntimeException if the sequence does not support the
+     * dimensions
+     */
+    void setQuasiRandomSequence(QuasiRandomSequence sequence, int dimensions, int start) throws EolRuntimeException;
+
+    /**
+     * Start the next point of the quasi random mode. The module starts a
+     * point for each element, before its create operation is executed.
+     */
+    void nextQuasiRandomPoint();
+
+    /**
+     * End the current point of the quasi random mode, so the following draws
+     * are pseudo random until the next point starts.
+     */
+    void endQuasiRandomPoint();
     
     /**
      * Define the distribution to use for calls to {@link #nextValue()}.